@@ -0,0 +1,108 @@
+// Headless batch analyzer: ./gradlew :analyzer:installDist, then
+// analyzer/build/install/analyzer/bin/analyzer <directory> [options]
+// and the accuracy harness over WFDB records (e.g. MIT-BIH):
+// analyzer/build/install/analyzer/bin/accuracy <directory> [options]
+plugins {
+    application
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_1_8
+    targetCompatibility = JavaVersion.VERSION_1_8
+}
+
+application {
+    mainClass.set("com.example.myapplication.BatchAnalyzer")
+    applicationName = "analyzer"
+}
+
+// The analysis classes are plain Java and compiled straight from the app's sources
+val shared: SourceSet by sourceSets.creating {
+    java {
+        srcDir("../app/src/main/java")
+        include(
+            "com/example/myapplication/ArrhythmiaEvent.java",
+            "com/example/myapplication/ArrhythmiaEventEngine.java",
+            "com/example/myapplication/BeatClassification.java",
+            "com/example/myapplication/BeatTypes.java",
+            "com/example/myapplication/ECGPreprocessor.java",
+            "com/example/myapplication/Fft.java",
+            "com/example/myapplication/HrvEngine.java",
+            "com/example/myapplication/InferenceSession.java",
+            "com/example/myapplication/LatencyHistogram.java",
+            "com/example/myapplication/Metrics.java",
+            "com/example/myapplication/SignalQualityIndex.java",
+            "com/example/myapplication/StreamingSampleParser.java"
+        )
+    }
+}
+
+// The app's test fixtures, e.g. SyntheticEcg, for this module's tests
+sourceSets {
+    test {
+        java {
+            srcDir("../app/src/testFixtures/java")
+        }
+    }
+}
+
+// TFLite is only published as Android archives; the JVM needs just the classes.jar inside each.
+// Running a model also needs a host build of libtensorflowlite_jni on java.library.path.
+val tfliteAar: Configuration by configurations.creating {
+    isTransitive = false
+}
+
+val extractTflite by tasks.registering {
+    val aars = tfliteAar
+    val outputDir = layout.buildDirectory.dir("tflite")
+    inputs.files(aars)
+    outputs.dir(outputDir)
+    doLast {
+        aars.forEach { aar ->
+            copy {
+                from(zipTree(aar)) { include("classes.jar") }
+                into(outputDir)
+                rename { aar.nameWithoutExtension + ".jar" }
+            }
+        }
+    }
+}
+
+val tfliteJars = files(extractTflite.map { it.outputs.files.asFileTree.matching { include("*.jar") } })
+    .builtBy(extractTflite)
+
+dependencies {
+    tfliteAar("org.tensorflow:tensorflow-lite-api:2.17.0@aar")
+    tfliteAar("org.tensorflow:tensorflow-lite:2.17.0@aar")
+
+    "sharedImplementation"(tfliteJars)
+    compileOnly(shared.output)
+    implementation(tfliteJars)
+
+    testImplementation(shared.output)
+    testImplementation(libs.junit)
+}
+
+// Shared classes ship inside the analyzer jar
+tasks.jar {
+    from(shared.output)
+}
+
+tasks.named<JavaExec>("run") {
+    classpath += shared.output
+}
+
+val accuracyStartScripts by tasks.registering(CreateStartScripts::class) {
+    mainClass.set("com.example.myapplication.AccuracyHarness")
+    applicationName = "accuracy"
+    outputDir = layout.buildDirectory.dir("accuracyScripts").get().asFile
+    classpath = tasks.startScripts.get().classpath
+}
+
+distributions {
+    main {
+        contents {
+            from(accuracyStartScripts) { into("bin") }
+        }
+    }
+}
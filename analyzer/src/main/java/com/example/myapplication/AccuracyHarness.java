@@ -0,0 +1,361 @@
+package com.example.myapplication;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Accuracy and throughput regression check of the app's beat pipeline against annotated WFDB
+ * records such as the MIT-BIH Arrhythmia Database. In one pass per record it runs
+ * {@link ECGPreprocessor} (and the model, when given) and then reports:
+ * <ul>
+ *     <li>beat detection sensitivity and positive predictivity against the reference QRS
+ *     annotations, matched within 150 ms as in ANSI/AAMI EC57;</li>
+ *     <li>a confusion matrix of the reference N/L/R/A/V labels against the model's classes;</li>
+ *     <li>decode and pipeline throughput.</li>
+ * </ul>
+ * A speed optimization should leave the first two unchanged.
+ *
+ * <pre>
+ * accuracy &lt;dir&gt; [--records 100,101,...] [--signal 0] [--annotator atr] [--resample Hz]
+ *          [--model ecg_model.tflite --labels labels.txt]
+ * </pre>
+ */
+public final class AccuracyHarness {
+    private static final String USAGE = "usage: accuracy <dir> [--records 100,101,...] [--signal 0] "
+            + "[--annotator atr] [--resample Hz] [--model ecg_model.tflite --labels labels.txt]";
+    static final double MATCH_WINDOW_SECONDS = 0.150;
+    // Confusion matrix rows: reference N, L, R, A, V, then any other beat label
+    static final int[] CLASSES = {
+            BeatTypes.BEAT_TYPE_NORMAL, BeatTypes.BEAT_TYPE_LEFT_BUNDLE_BRANCH_BLOCK,
+            BeatTypes.BEAT_TYPE_RIGHT_BUNDLE_BRANCH_BLOCK, BeatTypes.BEAT_TYPE_ATRIAL_PREMATURE,
+            BeatTypes.BEAT_TYPE_PREMATURE_VENTRICULAR
+    };
+    static final int OTHER = CLASSES.length;
+    // Detected beat that failed the signal quality gate and was not classified
+    static final int REJECTED = -2;
+
+    private AccuracyHarness() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path root = null;
+        List<String> names = null;
+        int signal = 0;
+        String annotator = "atr";
+        int resampleRate = 0;
+        File modelFile = null;
+        File labelFile = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--records":
+                        names = new ArrayList<>();
+                        for (String name : args[++i].split(",")) names.add(name.trim());
+                        break;
+                    case "--signal": signal = Integer.parseInt(args[++i]); break;
+                    case "--annotator": annotator = args[++i]; break;
+                    case "--resample": resampleRate = Integer.parseInt(args[++i]); break;
+                    case "--model": modelFile = new File(args[++i]); break;
+                    case "--labels": labelFile = new File(args[++i]); break;
+                    default:
+                        if (args[i].startsWith("--") || root != null) throw new IllegalArgumentException(args[i]);
+                        root = Paths.get(args[i]);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            root = null;
+        }
+        if (root == null || signal < 0 || resampleRate < 0 || (modelFile == null) != (labelFile == null)) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        if (names == null) {
+            names = findRecords(root, annotator);
+        }
+        if (names.isEmpty()) {
+            System.err.println("No records with ." + annotator + " annotations in " + root);
+            System.exit(2);
+        }
+
+        ModelClassifier classifier = null;
+        if (modelFile != null) {
+            try {
+                classifier = new ModelClassifier(ModelClassifier.Model.load(modelFile, labelFile));
+            } catch (UnsatisfiedLinkError | RuntimeException e) {
+                System.err.println("Cannot start the TensorFlow Lite runtime (" + e.getMessage()
+                        + "). A host build of libtensorflowlite_jni must be on java.library.path;"
+                        + " omit --model to check beat detection only.");
+                System.exit(2);
+            }
+        }
+
+        Tally total = new Tally();
+        System.out.println("record  ref_beats     TP     FN     FP      Se     PPV  class_acc   beats/s");
+        try {
+            for (String name : names) {
+                Tally tally = new Tally();
+                evaluate(WfdbRecord.open(root, name), signal, annotator, resampleRate, classifier, tally);
+                tally.printRow(System.out, name);
+                total.add(tally);
+            }
+        } finally {
+            if (classifier != null) classifier.close();
+        }
+        total.printRow(System.out, "total");
+        if (classifier != null) total.printConfusion(System.out);
+        total.printThroughput(System.err);
+    }
+
+    static List<String> findRecords(Path root, String annotator) throws IOException {
+        try (Stream<Path> files = Files.list(root)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(".hea"))
+                    .map(name -> name.substring(0, name.length() - 4))
+                    .filter(name -> Files.exists(root.resolve(name + "." + annotator)))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Runs one record through the pipeline and scores it into {@code tally}. Reference beats too
+     * close to either end for a full beat window are left out, since the pipeline cannot classify
+     * them.
+     */
+    static void evaluate(WfdbRecord record, int signal, String annotator, int resampleRate,
+                         ModelClassifier classifier, Tally tally) throws IOException {
+        long t0 = System.nanoTime();
+        float[] samples = record.readSignal(signal);
+        WfdbRecord.Annotations reference = record.readBeats(annotator);
+        tally.decodeNanos += System.nanoTime() - t0;
+        tally.bytes += record.getSignalFileSize(signal);
+
+        int rate = record.sampleRate;
+        long[] referenceSamples = reference.samples;
+        if (resampleRate > 0 && resampleRate != rate) {
+            samples = resample(samples, rate, resampleRate);
+            referenceSamples = new long[reference.size()];
+            for (int i = 0; i < referenceSamples.length; i++) {
+                referenceSamples[i] = Math.round(reference.samples[i] * (double) resampleRate / rate);
+            }
+            rate = resampleRate;
+        }
+
+        long t1 = System.nanoTime();
+        ECGPreprocessor.ProcessedECGData processed = new ECGPreprocessor().processSamples(samples, samples.length);
+        int[] predicted = new int[processed.rPeakIndices.size()];
+        if (classifier != null) {
+            List<BeatClassification> beats = classifier.classify(processed.normalizedBeats, processed.rPeakIndices);
+            for (int i = 0; i < predicted.length; i++) predicted[i] = beats.get(i).type;
+        } else {
+            Arrays.fill(predicted, BeatTypes.BEAT_TYPE_UNKNOWN);
+        }
+        tally.pipelineNanos += System.nanoTime() - t1;
+        tally.samples += samples.length;
+        tally.classified = classifier != null;
+
+        // Accepted and rejected detections merged in sample order
+        int detected = processed.rPeakIndices.size() + processed.rejectedPeakIndices.size();
+        long[] detections = new long[detected];
+        int[] detectionTypes = new int[detected];
+        int a = 0;
+        int r = 0;
+        for (int i = 0; i < detected; i++) {
+            boolean takeAccepted = r >= processed.rejectedPeakIndices.size()
+                    || (a < processed.rPeakIndices.size()
+                    && processed.rPeakIndices.get(a) < processed.rejectedPeakIndices.get(r));
+            if (takeAccepted) {
+                detections[i] = processed.rPeakIndices.get(a);
+                detectionTypes[i] = predicted[a++];
+            } else {
+                detections[i] = processed.rejectedPeakIndices.get(r++);
+                detectionTypes[i] = REJECTED;
+            }
+        }
+
+        long margin = ECGPreprocessor.SEGMENT_LENGTH / 2;
+        List<Long> kept = new ArrayList<>();
+        List<Integer> keptTypes = new ArrayList<>();
+        for (int i = 0; i < referenceSamples.length; i++) {
+            if (referenceSamples[i] < margin || referenceSamples[i] + margin >= samples.length) continue;
+            kept.add(referenceSamples[i]);
+            keptTypes.add(WfdbRecord.toBeatType(reference.codes[i]));
+        }
+        long[] keptSamples = new long[kept.size()];
+        int[] keptTypeArray = new int[kept.size()];
+        for (int i = 0; i < keptSamples.length; i++) {
+            keptSamples[i] = kept.get(i);
+            keptTypeArray[i] = keptTypes.get(i);
+        }
+        tally.match(keptSamples, keptTypeArray, detections, detectionTypes,
+                Math.round(MATCH_WINDOW_SECONDS * rate), margin, samples.length - margin);
+    }
+
+    /** Linear interpolation to {@code toRate}, e.g. MIT-BIH's 360 Hz to the device's 250 Hz. */
+    static float[] resample(float[] samples, int fromRate, int toRate) {
+        int length = (int) ((long) samples.length * toRate / fromRate);
+        float[] out = new float[length];
+        double step = (double) fromRate / toRate;
+        for (int i = 0; i < length; i++) {
+            double position = i * step;
+            int index = (int) position;
+            double fraction = position - index;
+            float next = index + 1 < samples.length ? samples[index + 1] : samples[index];
+            out[i] = (float) (samples[index] + fraction * (next - samples[index]));
+        }
+        return out;
+    }
+
+    /** Counts for one record or the whole run. */
+    static final class Tally {
+        long truePositives;
+        long falseNegatives;
+        long falsePositives;
+        // [reference class or OTHER][predicted class, then unknown, then rejected]
+        final long[][] confusion = new long[CLASSES.length + 1][CLASSES.length + 2];
+        boolean classified;
+        long samples;
+        long bytes;
+        long decodeNanos;
+        long pipelineNanos;
+
+        /**
+         * Matches sorted reference and detected beats one-to-one within {@code window} samples.
+         * Detections outside [{@code from}, {@code to}) are ignored, like the reference beats there.
+         */
+        void match(long[] reference, int[] referenceTypes, long[] detected, int[] detectedTypes,
+                   long window, long from, long to) {
+            int i = 0;
+            int j = 0;
+            while (j < detected.length && detected[j] < from) j++;
+            int end = detected.length;
+            while (end > j && detected[end - 1] >= to) end--;
+            while (i < reference.length || j < end) {
+                if (j >= end) {
+                    falseNegatives++;
+                    i++;
+                } else if (i >= reference.length) {
+                    falsePositives++;
+                    j++;
+                } else if (Math.abs(detected[j] - reference[i]) <= window) {
+                    truePositives++;
+                    confusion[row(referenceTypes[i])][column(detectedTypes[j])]++;
+                    i++;
+                    j++;
+                } else if (detected[j] < reference[i]) {
+                    falsePositives++;
+                    j++;
+                } else {
+                    falseNegatives++;
+                    i++;
+                }
+            }
+        }
+
+        private static int row(int beatType) {
+            for (int k = 0; k < CLASSES.length; k++) {
+                if (CLASSES[k] == beatType) return k;
+            }
+            return OTHER;
+        }
+
+        private static int column(int beatType) {
+            if (beatType == REJECTED) return CLASSES.length + 1;
+            for (int k = 0; k < CLASSES.length; k++) {
+                if (CLASSES[k] == beatType) return k;
+            }
+            return CLASSES.length;
+        }
+
+        double sensitivity() {
+            return ratio(truePositives, truePositives + falseNegatives);
+        }
+
+        double positivePredictivity() {
+            return ratio(truePositives, truePositives + falsePositives);
+        }
+
+        /** Share of matched N/L/R/A/V reference beats given their own class. */
+        double classAccuracy() {
+            long correct = 0;
+            long scored = 0;
+            for (int k = 0; k < CLASSES.length; k++) {
+                correct += confusion[k][k];
+                for (int c = 0; c < CLASSES.length + 2; c++) scored += confusion[k][c];
+            }
+            return classified ? ratio(correct, scored) : Double.NaN;
+        }
+
+        double beatsPerSecond() {
+            return pipelineNanos > 0 ? (truePositives + falsePositives) / (pipelineNanos / 1e9) : Double.NaN;
+        }
+
+        void add(Tally other) {
+            truePositives += other.truePositives;
+            falseNegatives += other.falseNegatives;
+            falsePositives += other.falsePositives;
+            for (int k = 0; k < confusion.length; k++) {
+                for (int c = 0; c < confusion[k].length; c++) confusion[k][c] += other.confusion[k][c];
+            }
+            classified |= other.classified;
+            samples += other.samples;
+            bytes += other.bytes;
+            decodeNanos += other.decodeNanos;
+            pipelineNanos += other.pipelineNanos;
+        }
+
+        void printRow(PrintStream out, String name) {
+            out.println(String.format(Locale.US, "%-6s %10d %6d %6d %6d %7s %7s %10s %9.0f",
+                    name, truePositives + falseNegatives, truePositives, falseNegatives, falsePositives,
+                    percent(sensitivity()), percent(positivePredictivity()), percent(classAccuracy()),
+                    beatsPerSecond()));
+        }
+
+        void printConfusion(PrintStream out) {
+            out.println();
+            out.println("reference \\ predicted      N      L      R      A      V   unkn  rejct      Se     PPV");
+            for (int k = 0; k <= CLASSES.length; k++) {
+                StringBuilder line = new StringBuilder(String.format(Locale.US, "%-22s",
+                        k < CLASSES.length ? BeatTypes.getBeatTypeCode(CLASSES[k]) : "other"));
+                long rowTotal = 0;
+                for (int c = 0; c < confusion[k].length; c++) {
+                    line.append(String.format(Locale.US, " %6d", confusion[k][c]));
+                    rowTotal += confusion[k][c];
+                }
+                if (k < CLASSES.length) {
+                    long columnTotal = 0;
+                    for (int row = 0; row < CLASSES.length; row++) columnTotal += confusion[row][k];
+                    line.append(String.format(Locale.US, " %7s %7s", percent(ratio(confusion[k][k], rowTotal)),
+                            percent(ratio(confusion[k][k], columnTotal))));
+                }
+                out.println(line);
+            }
+        }
+
+        void printThroughput(PrintStream out) {
+            double pipelineSeconds = pipelineNanos / 1e9;
+            double decodeSeconds = decodeNanos / 1e9;
+            out.println(String.format(Locale.US,
+                    "decode %.1f MB/s; pipeline %.0f beats/s, %.0f samples/s over %.2f s",
+                    bytes / 1e6 / decodeSeconds, beatsPerSecond(), samples / pipelineSeconds, pipelineSeconds));
+        }
+
+        private static double ratio(long numerator, long denominator) {
+            return denominator > 0 ? (double) numerator / denominator : Double.NaN;
+        }
+
+        private static String percent(double value) {
+            return Double.isNaN(value) ? "-" : String.format(Locale.US, "%.2f%%", 100 * value);
+        }
+    }
+}
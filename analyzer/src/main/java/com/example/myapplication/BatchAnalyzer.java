@@ -0,0 +1,192 @@
+package com.example.myapplication;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Command-line batch analysis of a directory tree of recordings with the app's own pipeline.
+ * Files are analyzed in parallel, one per worker thread, and each result is written to the
+ * summary as soon as it completes, so memory stays bounded by the files in flight rather than
+ * the size of the tree. Throughput is reported on stderr at the end.
+ *
+ * <pre>
+ * analyzer &lt;dir&gt; [--out summary.csv|summary.jsonl] [--threads N] [--rate Hz]
+ *          [--model ecg_model.tflite --labels labels.txt]
+ * </pre>
+ */
+public final class BatchAnalyzer {
+    private static final String USAGE = "usage: analyzer <dir> [--out summary.csv|summary.jsonl] "
+            + "[--threads N] [--rate Hz] [--model ecg_model.tflite --labels labels.txt]";
+
+    private BatchAnalyzer() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path root = null;
+        Path out = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int sampleRate = ECGPreprocessor.DEFAULT_SAMPLE_RATE;
+        File modelFile = null;
+        File labelFile = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--out": out = Paths.get(args[++i]); break;
+                    case "--threads": threads = Integer.parseInt(args[++i]); break;
+                    case "--rate": sampleRate = Integer.parseInt(args[++i]); break;
+                    case "--model": modelFile = new File(args[++i]); break;
+                    case "--labels": labelFile = new File(args[++i]); break;
+                    default:
+                        if (args[i].startsWith("--") || root != null) throw new IllegalArgumentException(args[i]);
+                        root = Paths.get(args[i]);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            root = null;
+        }
+        if (root == null || threads < 1 || sampleRate < 1 || (modelFile == null) != (labelFile == null)) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        if (!Files.isDirectory(root)) {
+            System.err.println("Not a directory: " + root);
+            System.exit(2);
+        }
+
+        ModelClassifier.Model model = null;
+        if (modelFile != null) {
+            model = ModelClassifier.Model.load(modelFile, labelFile);
+            try {
+                new ModelClassifier(model).close(); // Fail now rather than once per file
+            } catch (UnsatisfiedLinkError | RuntimeException e) {
+                System.err.println("Cannot start the TensorFlow Lite runtime (" + e.getMessage()
+                        + "). A host build of libtensorflowlite_jni must be on java.library.path;"
+                        + " omit --model to analyze without classification.");
+                System.exit(2);
+            }
+        } else {
+            System.err.println("No --model given: beats are detected and measured but not classified");
+        }
+
+        SummaryWriter writer = out != null
+                ? SummaryWriter.open(out)
+                : new SummaryWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), false);
+        Totals totals;
+        try {
+            totals = run(root, threads, sampleRate, model, writer);
+        } finally {
+            writer.close();
+        }
+        totals.print(System.err);
+        System.exit(totals.failures > 0 ? 1 : 0);
+    }
+
+    static final class Totals {
+        int files;
+        int failures;
+        long beats;
+        long bytes;
+        double signalSeconds;
+        long wallNanos;
+
+        void print(PrintStream stream) {
+            double seconds = wallNanos / 1e9;
+            stream.println(String.format(Locale.US,
+                    "%d files (%d failed), %d beats, %.1f h of signal in %.2f s: "
+                            + "%.1f files/s, %.0f beats/s, %.1f MB/s",
+                    files, failures, beats, signalSeconds / 3600, seconds,
+                    files / seconds, beats / seconds, bytes / 1e6 / seconds));
+        }
+    }
+
+    /**
+     * Analyzes every recording under {@code root} on {@code threads} workers and writes each
+     * summary from the calling thread as it completes. At most two files per worker are in flight,
+     * which keeps the workers busy while the writer catches up.
+     */
+    static Totals run(Path root, int threads, int sampleRate, ModelClassifier.Model model,
+                      SummaryWriter writer) throws IOException, InterruptedException {
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(root)) {
+            files = walk.filter(Files::isRegularFile).filter(BatchAnalyzer::isRecording).sorted()
+                    .collect(Collectors.toList());
+        }
+
+        ConcurrentLinkedQueue<RecordingAnalyzer> analyzers = new ConcurrentLinkedQueue<>();
+        ThreadLocal<RecordingAnalyzer> perThread = ThreadLocal.withInitial(() -> {
+            RecordingAnalyzer analyzer = new RecordingAnalyzer(sampleRate, model);
+            analyzers.add(analyzer);
+            return analyzer;
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "analyzer-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        CompletionService<RecordingAnalyzer.Summary> completion = new ExecutorCompletionService<>(executor);
+        int maxInFlight = threads * 2;
+
+        Totals totals = new Totals();
+        long start = System.nanoTime();
+        try {
+            int submitted = 0;
+            int inFlight = 0;
+            while (submitted < files.size() || inFlight > 0) {
+                while (submitted < files.size() && inFlight < maxInFlight) {
+                    Path file = files.get(submitted++);
+                    String name = root.relativize(file).toString();
+                    completion.submit(() -> perThread.get().analyze(file.toFile(), name));
+                    inFlight++;
+                }
+                RecordingAnalyzer.Summary summary;
+                try {
+                    summary = completion.take().get();
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Analysis worker failed", e.getCause());
+                }
+                inFlight--;
+                writer.write(summary);
+                totals.files++;
+                if (summary.error != null) {
+                    totals.failures++;
+                } else {
+                    totals.beats += summary.beats;
+                    totals.bytes += summary.bytes;
+                    totals.signalSeconds += summary.getDurationSeconds();
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+            totals.wallNanos = System.nanoTime() - start;
+            for (RecordingAnalyzer analyzer : new ArrayList<>(analyzers)) {
+                analyzer.close();
+            }
+        }
+        return totals;
+    }
+
+    static boolean isRecording(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.US);
+        return name.endsWith(".csv") || name.endsWith(".txt");
+    }
+}
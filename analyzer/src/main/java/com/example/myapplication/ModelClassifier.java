@@ -0,0 +1,91 @@
+package com.example.myapplication;
+
+import org.tensorflow.lite.InterpreterApi;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The ECG model on the desktop JVM, through the same {@link InferenceSession} the app uses.
+ * An interpreter is not thread-safe, so each worker thread opens its own over the shared mapped
+ * model. Creating one needs a host build of libtensorflowlite_jni on java.library.path.
+ */
+final class ModelClassifier implements AutoCloseable {
+
+    /**
+     * The model file mapped once, plus its label file, shared by every thread's classifier.
+     */
+    static final class Model {
+        final ByteBuffer buffer;
+        final int[] classTypes; // model output index -> BEAT_TYPE constant
+
+        Model(ByteBuffer buffer, int[] classTypes) {
+            this.buffer = buffer;
+            this.classTypes = classTypes;
+        }
+
+        static Model load(File modelFile, File labelFile) throws IOException {
+            MappedByteBuffer buffer;
+            try (RandomAccessFile file = new RandomAccessFile(modelFile, "r");
+                 FileChannel channel = file.getChannel()) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+
+            List<String> labels = new ArrayList<>();
+            for (String line : Files.readAllLines(labelFile.toPath(), StandardCharsets.UTF_8)) {
+                if (!line.trim().isEmpty()) labels.add(line.trim());
+            }
+            int[] classTypes = new int[labels.size()];
+            for (int i = 0; i < classTypes.length; i++) {
+                classTypes[i] = BeatTypes.getBeatTypeForCode(labels.get(i));
+            }
+            return new Model(buffer, classTypes);
+        }
+    }
+
+    private final Model model;
+    private final InferenceSession session;
+
+    ModelClassifier(Model model) {
+        this.model = model;
+        InterpreterApi.Options options = new InterpreterApi.Options()
+                .setNumThreads(1) // Parallelism comes from analyzing several files at once
+                .setRuntime(InterpreterApi.Options.TfLiteRuntime.FROM_APPLICATION_ONLY);
+        InterpreterApi interpreter = InterpreterApi.create(model.buffer.duplicate(), options);
+        session = new InferenceSession(interpreter, 1);
+        session.ensureBatchSize(InferenceSession.DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Classifies {@code beats}; {@code peaks} gives each beat's R-peak sample, used as its index.
+     */
+    List<BeatClassification> classify(List<float[]> beats, List<Integer> peaks) {
+        int[] classIndices = new int[beats.size()];
+        float[] confidences = new float[beats.size()];
+        session.classify(beats, classIndices, confidences);
+
+        List<BeatClassification> results = new ArrayList<>(beats.size());
+        for (int i = 0; i < beats.size(); i++) {
+            BeatClassification result = new BeatClassification();
+            result.beatIndex = peaks.get(i);
+            int index = classIndices[i];
+            result.type = index < model.classTypes.length ? model.classTypes[index] : BeatTypes.BEAT_TYPE_UNKNOWN;
+            result.confidence = confidences[i];
+            results.add(result);
+        }
+        return results;
+    }
+
+    @Override
+    public void close() {
+        session.close();
+    }
+}
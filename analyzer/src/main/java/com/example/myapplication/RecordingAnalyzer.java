@@ -0,0 +1,147 @@
+package com.example.myapplication;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs one recording through the app's file-analysis pipeline: streaming parse, preprocessing with
+ * the signal quality gate, classification when a model is loaded, HRV and rhythm events. Not
+ * thread-safe; each worker thread has its own.
+ */
+final class RecordingAnalyzer implements AutoCloseable {
+
+    /**
+     * Everything reported for one file. Beat type counts are indexed N, L, R, A, V, unknown.
+     */
+    static final class Summary {
+        static final int[] COUNTED_TYPES = {
+                BeatTypes.BEAT_TYPE_NORMAL, BeatTypes.BEAT_TYPE_LEFT_BUNDLE_BRANCH_BLOCK,
+                BeatTypes.BEAT_TYPE_RIGHT_BUNDLE_BRANCH_BLOCK, BeatTypes.BEAT_TYPE_ATRIAL_PREMATURE,
+                BeatTypes.BEAT_TYPE_PREMATURE_VENTRICULAR, BeatTypes.BEAT_TYPE_UNKNOWN
+        };
+
+        final String path;
+        long bytes;
+        int samples;
+        int sampleRate;
+        int beats;
+        int rejectedBeats;
+        boolean classified;
+        final int[] typeCounts = new int[COUNTED_TYPES.length];
+        HrvEngine.Metrics hrv;
+        final List<ArrhythmiaEvent> events = new ArrayList<>();
+        long elapsedNanos;
+        String error;
+
+        Summary(String path) {
+            this.path = path;
+        }
+
+        double getDurationSeconds() {
+            return sampleRate > 0 ? (double) samples / sampleRate : 0;
+        }
+    }
+
+    private final int sampleRate;
+    private final ModelClassifier classifier;
+    private final StreamingSampleParser parser = new StreamingSampleParser();
+
+    /**
+     * {@code model} may be null, in which case beats are found and measured but not classified.
+     */
+    RecordingAnalyzer(int sampleRate, ModelClassifier.Model model) {
+        this.sampleRate = sampleRate;
+        this.classifier = model != null ? new ModelClassifier(model) : null;
+    }
+
+    Summary analyze(File file, String displayPath) {
+        long t0 = System.nanoTime();
+        Summary summary = new Summary(displayPath);
+        summary.sampleRate = sampleRate;
+        try {
+            StreamingSampleParser.Result parsed;
+            try (FileInputStream stream = new FileInputStream(file);
+                 FileChannel channel = stream.getChannel()) {
+                parsed = parser.parse(channel, channel.size());
+            }
+            summary.bytes = parsed.bytesRead;
+            summary.samples = parsed.count;
+
+            ECGPreprocessor.ProcessedECGData processed =
+                    new ECGPreprocessor().processSamples(parsed.samples, parsed.count);
+            summary.beats = processed.normalizedBeats.size();
+            summary.rejectedBeats = processed.rejectedPeakIndices.size();
+
+            List<BeatClassification> beats;
+            if (classifier != null) {
+                beats = classifier.classify(processed.normalizedBeats, processed.rPeakIndices);
+                summary.classified = true;
+            } else {
+                beats = new ArrayList<>(processed.rPeakIndices.size());
+                for (int peak : processed.rPeakIndices) {
+                    BeatClassification beat = new BeatClassification();
+                    beat.beatIndex = peak;
+                    beat.type = BeatTypes.BEAT_TYPE_UNKNOWN;
+                    beats.add(beat);
+                }
+            }
+            for (BeatClassification beat : beats) {
+                for (int i = 0; i < Summary.COUNTED_TYPES.length; i++) {
+                    if (Summary.COUNTED_TYPES[i] == beat.type) summary.typeCounts[i]++;
+                }
+            }
+
+            replay(beats, processed.rejectedPeakIndices, summary);
+        } catch (IOException | RuntimeException e) {
+            summary.error = e.getClass().getSimpleName() + ": " + e.getMessage();
+        }
+        summary.elapsedNanos = System.nanoTime() - t0;
+        return summary;
+    }
+
+    /**
+     * Feeds the beats in order to HRV and the rhythm event engine. A skipped low-quality beat
+     * breaks the NN sequence and restarts event detection, as in the app.
+     */
+    private void replay(List<BeatClassification> beats, List<Integer> rejected, Summary summary) {
+        HrvEngine hrv = new HrvEngine(sampleRate);
+        ArrhythmiaEventEngine engine = new ArrhythmiaEventEngine(sampleRate, new ArrhythmiaEventEngine.Listener() {
+            @Override
+            public void onEventStarted(ArrhythmiaEvent event) {
+                summary.events.add(event);
+            }
+
+            @Override
+            public void onEventEnded(ArrhythmiaEvent event) {
+            }
+        });
+
+        int nextRejected = 0;
+        for (BeatClassification beat : beats) {
+            boolean gap = false;
+            while (nextRejected < rejected.size() && rejected.get(nextRejected) < beat.beatIndex) {
+                nextRejected++;
+                gap = true;
+            }
+            if (gap) {
+                hrv.breakSequence();
+                engine.reset();
+            }
+            hrv.addBeat(beat.beatIndex);
+            engine.onBeat(beat.beatIndex, beat.type, -1);
+        }
+        engine.finish();
+        summary.hrv = hrv.getMetrics();
+    }
+
+    @Override
+    public void close() {
+        if (classifier != null) {
+            classifier.close();
+        }
+    }
+}
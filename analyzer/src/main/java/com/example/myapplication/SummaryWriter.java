@@ -0,0 +1,143 @@
+package com.example.myapplication;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Streams one line per analyzed file as CSV, or as JSON Lines when the output name ends in
+ * {@code .jsonl}. Only the JSON form lists the individual rhythm events. Each line is flushed, so
+ * a long run can be followed with {@code tail -f}.
+ */
+final class SummaryWriter implements Closeable {
+    private static final String[] TYPE_COLUMNS = {"n", "l", "r", "a", "v", "unknown"};
+
+    private final Writer out;
+    private final boolean json;
+
+    SummaryWriter(Writer out, boolean json) throws IOException {
+        this.out = out;
+        this.json = json;
+        if (!json) writeHeader();
+    }
+
+    static SummaryWriter open(Path path) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) Files.createDirectories(parent);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(path), StandardCharsets.UTF_8));
+        return new SummaryWriter(writer, path.getFileName().toString().endsWith(".jsonl"));
+    }
+
+    private void writeHeader() throws IOException {
+        StringBuilder header = new StringBuilder("path,bytes,samples,duration_s,beats,rejected_beats,classified");
+        for (String column : TYPE_COLUMNS) header.append(',').append(column);
+        header.append(",mean_hr_bpm,sdnn_ms,rmssd_ms,events,elapsed_ms,error\n");
+        out.write(header.toString());
+    }
+
+    void write(RecordingAnalyzer.Summary summary) throws IOException {
+        out.write(json ? toJson(summary) : toCsv(summary));
+        out.write('\n');
+        out.flush();
+    }
+
+    private static String toCsv(RecordingAnalyzer.Summary s) {
+        StringBuilder line = new StringBuilder(160);
+        line.append(csvField(s.path)).append(',').append(s.bytes).append(',').append(s.samples)
+                .append(',').append(number(s.getDurationSeconds()))
+                .append(',').append(s.beats).append(',').append(s.rejectedBeats).append(',').append(s.classified);
+        for (int count : s.typeCounts) line.append(',').append(count);
+        line.append(',').append(s.hrv != null ? number(meanHeartRate(s.hrv)) : "")
+                .append(',').append(s.hrv != null ? number(s.hrv.sdnnMs) : "")
+                .append(',').append(s.hrv != null ? number(s.hrv.rmssdMs) : "")
+                .append(',').append(s.events.size())
+                .append(',').append(number(s.elapsedNanos / 1e6))
+                .append(',').append(s.error != null ? csvField(s.error) : "");
+        return line.toString();
+    }
+
+    private static String toJson(RecordingAnalyzer.Summary s) {
+        StringBuilder line = new StringBuilder(256);
+        line.append("{\"path\":").append(jsonString(s.path))
+                .append(",\"bytes\":").append(s.bytes)
+                .append(",\"samples\":").append(s.samples)
+                .append(",\"duration_s\":").append(jsonNumber(s.getDurationSeconds()))
+                .append(",\"beats\":").append(s.beats)
+                .append(",\"rejected_beats\":").append(s.rejectedBeats)
+                .append(",\"classified\":").append(s.classified)
+                .append(",\"types\":{");
+        for (int i = 0; i < TYPE_COLUMNS.length; i++) {
+            if (i > 0) line.append(',');
+            line.append('"').append(TYPE_COLUMNS[i]).append("\":").append(s.typeCounts[i]);
+        }
+        line.append('}');
+        if (s.hrv != null) {
+            line.append(",\"hrv\":{\"mean_hr_bpm\":").append(jsonNumber(meanHeartRate(s.hrv)))
+                    .append(",\"nn_count\":").append(s.hrv.nnCount)
+                    .append(",\"sdnn_ms\":").append(jsonNumber(s.hrv.sdnnMs))
+                    .append(",\"rmssd_ms\":").append(jsonNumber(s.hrv.rmssdMs))
+                    .append(",\"pnn50\":").append(jsonNumber(s.hrv.pnn50))
+                    .append(",\"lf_hf\":").append(jsonNumber(s.hrv.lfHfRatio))
+                    .append('}');
+        }
+        line.append(",\"events\":[");
+        for (int i = 0; i < s.events.size(); i++) {
+            ArrhythmiaEvent event = s.events.get(i);
+            if (i > 0) line.append(',');
+            line.append("{\"type\":\"").append(event.type.name())
+                    .append("\",\"onset_s\":").append(jsonNumber((double) event.onsetSample / s.sampleRate))
+                    .append(",\"offset_s\":").append(event.offsetSample >= 0
+                            ? jsonNumber((double) event.offsetSample / s.sampleRate) : "null")
+                    .append(",\"beats\":").append(event.beatCount)
+                    .append('}');
+        }
+        line.append("],\"elapsed_ms\":").append(jsonNumber(s.elapsedNanos / 1e6));
+        if (s.error != null) line.append(",\"error\":").append(jsonString(s.error));
+        return line.append('}').toString();
+    }
+
+    private static double meanHeartRate(HrvEngine.Metrics hrv) {
+        return hrv.meanNnMs > 0 ? 60_000.0 / hrv.meanNnMs : Double.NaN;
+    }
+
+    private static String number(double value) {
+        return Double.isNaN(value) || Double.isInfinite(value) ? "" : String.format(Locale.US, "%.3f", value);
+    }
+
+    // JSON has no NaN or infinity
+    private static String jsonNumber(double value) {
+        String text = number(value);
+        return text.isEmpty() ? "null" : text;
+    }
+
+    private static String csvField(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) return value;
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private static String jsonString(String value) {
+        StringBuilder text = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                text.append('\\').append(c);
+            } else if (c < 0x20) {
+                text.append(String.format(Locale.US, "\\u%04x", (int) c));
+            } else {
+                text.append(c);
+            }
+        }
+        return text.append('"').toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
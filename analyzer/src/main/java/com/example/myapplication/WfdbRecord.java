@@ -0,0 +1,273 @@
+package com.example.myapplication;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A PhysioNet WFDB record, e.g. one of the MIT-BIH Arrhythmia Database: the {@code .hea} header,
+ * one signal decoded from its format 212 (or 16) signal file, and the beat annotations from an
+ * annotation file such as {@code .atr}. Signal and annotation files are memory-mapped and decoded
+ * in one pass with no per-sample allocation.
+ */
+final class WfdbRecord {
+    // MIT annotation codes (ecgcodes.h) of QRS complexes
+    static final int NORMAL = 1;
+    static final int LBBB = 2;
+    static final int RBBB = 3;
+    static final int PVC = 5;
+    static final int APC = 8;
+    private static final boolean[] IS_QRS = new boolean[64];
+
+    static {
+        for (int code : new int[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 25, 30, 34, 35, 38, 41}) {
+            IS_QRS[code] = true;
+        }
+    }
+
+    // Pseudo-annotation codes in the MIT annotation format
+    private static final int SKIP = 59;
+    private static final int NUM = 60;
+    private static final int SUB = 61;
+    private static final int CHN = 62;
+    private static final int AUX = 63;
+
+    final String name;
+    final int sampleRate;
+    final int signalCount;
+    final long sampleCount;
+    final List<Signal> signals;
+
+    /** One signal line of the header. */
+    static final class Signal {
+        final String fileName;
+        final int format;
+        final double gain; // ADC units per mV
+        final int adcZero;
+        final String description;
+
+        Signal(String fileName, int format, double gain, int adcZero, String description) {
+            this.fileName = fileName;
+            this.format = format;
+            this.gain = gain;
+            this.adcZero = adcZero;
+            this.description = description;
+        }
+    }
+
+    /** Beat annotations: parallel arrays of sample index and MIT annotation code. */
+    static final class Annotations {
+        final long[] samples;
+        final int[] codes;
+
+        Annotations(long[] samples, int[] codes) {
+            this.samples = samples;
+            this.codes = codes;
+        }
+
+        int size() {
+            return samples.length;
+        }
+    }
+
+    private final Path directory;
+
+    private WfdbRecord(Path directory, String name, int sampleRate, long sampleCount, List<Signal> signals) {
+        this.directory = directory;
+        this.name = name;
+        this.sampleRate = sampleRate;
+        this.signalCount = signals.size();
+        this.sampleCount = sampleCount;
+        this.signals = signals;
+    }
+
+    /**
+     * Reads the header {@code <name>.hea} in {@code directory}.
+     */
+    static WfdbRecord open(Path directory, String name) throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (String line : Files.readAllLines(directory.resolve(name + ".hea"), StandardCharsets.US_ASCII)) {
+            String trimmed = line.trim();
+            if (!trimmed.isEmpty() && trimmed.charAt(0) != '#') lines.add(trimmed);
+        }
+        if (lines.isEmpty()) throw new IOException(name + ".hea: empty header");
+
+        // "name[/segments] nsig [fs[/counterfreq][(base)] [nsamp ...]]"
+        String[] record = lines.get(0).split("\\s+");
+        if (record.length < 2) throw new IOException(name + ".hea: bad record line");
+        if (record[0].contains("/")) throw new IOException(name + ": multi-segment records are not supported");
+        int signalCount = Integer.parseInt(record[1]);
+        int sampleRate = record.length > 2 ? (int) Math.round(Double.parseDouble(leadingNumber(record[2]))) : 250;
+        long sampleCount = record.length > 3 ? Long.parseLong(record[3]) : -1;
+
+        List<Signal> signals = new ArrayList<>(signalCount);
+        for (int i = 0; i < signalCount; i++) {
+            if (i + 1 >= lines.size()) throw new IOException(name + ".hea: missing signal line " + i);
+            // "file format[xsamp][:skew][+offset] gain[(baseline)][/units] adcres adczero init checksum block desc"
+            String[] fields = lines.get(i + 1).split("\\s+", 9);
+            int format = Integer.parseInt(leadingNumber(fields[1]));
+            if (!fields[1].equals(Integer.toString(format))) {
+                throw new IOException(name + ": sample skew, offsets and oversampled signals are not supported");
+            }
+            double gain = fields.length > 2 ? Double.parseDouble(leadingNumber(fields[2])) : 200;
+            int adcZero = fields.length > 4 ? Integer.parseInt(fields[4]) : 0;
+            String description = fields.length > 8 ? fields[8] : "signal " + i;
+            signals.add(new Signal(fields[0], format, gain == 0 ? 200 : gain, adcZero, description));
+        }
+        return new WfdbRecord(directory, name, sampleRate, sampleCount, signals);
+    }
+
+    private static String leadingNumber(String field) {
+        int end = 0;
+        while (end < field.length() && (Character.isDigit(field.charAt(end)) || field.charAt(end) == '.'
+                || field.charAt(end) == '-')) end++;
+        return field.substring(0, end);
+    }
+
+    /**
+     * Decodes signal {@code index} in raw ADC units. All signals must share one file, as in
+     * MIT-BIH, since frames interleave them.
+     */
+    float[] readSignal(int index) throws IOException {
+        Signal signal = signals.get(index);
+        for (Signal other : signals) {
+            if (!other.fileName.equals(signal.fileName) || other.format != signal.format) {
+                throw new IOException(name + ": signals in several files or formats are not supported");
+            }
+        }
+        try (FileChannel channel = FileChannel.open(directory.resolve(signal.fileName), StandardOpenOption.READ)) {
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            data.order(ByteOrder.LITTLE_ENDIAN);
+            switch (signal.format) {
+                case 212:
+                    return decode212(data, index);
+                case 16:
+                    return decode16(data, index);
+                default:
+                    throw new IOException(name + ": format " + signal.format + " is not supported");
+            }
+        }
+    }
+
+    long getSignalFileSize(int index) throws IOException {
+        return Files.size(directory.resolve(signals.get(index).fileName));
+    }
+
+    // Pairs of 12-bit two's complement samples packed in 3 bytes: the first sample's low byte, a
+    // byte with the first's high nibble low and the second's high, then the second's low byte
+    private float[] decode212(ByteBuffer data, int index) {
+        long available = data.limit() * 2L / 3 / signalCount;
+        int length = (int) (sampleCount >= 0 ? Math.min(sampleCount, available) : available);
+        float[] samples = new float[length];
+        int frameSamples = signalCount;
+        long total = (long) length * frameSamples;
+        int out = 0;
+        int position = 0;
+        for (long s = 0; s < total; s += 2) {
+            int b0 = data.get(position) & 0xFF;
+            int b1 = data.get(position + 1) & 0xFF;
+            int b2 = position + 2 < data.limit() ? data.get(position + 2) & 0xFF : 0;
+            position += 3;
+            if (s % frameSamples == index) {
+                samples[out++] = signExtend12(((b1 & 0x0F) << 8) | b0);
+            }
+            if (s + 1 < total && (s + 1) % frameSamples == index) {
+                samples[out++] = signExtend12(((b1 & 0xF0) << 4) | b2);
+            }
+        }
+        return samples;
+    }
+
+    private static float signExtend12(int value) {
+        return (value << 20) >> 20;
+    }
+
+    private float[] decode16(ByteBuffer data, int index) {
+        long available = data.limit() / 2L / signalCount;
+        int length = (int) (sampleCount >= 0 ? Math.min(sampleCount, available) : available);
+        float[] samples = new float[length];
+        for (int i = 0; i < length; i++) {
+            samples[i] = data.getShort(((i * signalCount) + index) * 2);
+        }
+        return samples;
+    }
+
+    /**
+     * Reads the QRS annotations of {@code <name>.<extension>}, e.g. "atr" for the reference beat
+     * labels. Rhythm, noise and other non-beat annotations are skipped.
+     */
+    Annotations readBeats(String extension) throws IOException {
+        try (FileChannel channel = FileChannel.open(directory.resolve(name + "." + extension), StandardOpenOption.READ)) {
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            data.order(ByteOrder.LITTLE_ENDIAN);
+
+            long[] samples = new long[Math.max(16, data.limit() / 4)];
+            int[] codes = new int[samples.length];
+            int count = 0;
+            long time = 0;
+            while (data.remaining() >= 2) {
+                int word = data.getShort() & 0xFFFF;
+                int code = word >>> 10;
+                int value = word & 0x3FF;
+                if (code == 0 && value == 0) break;
+                switch (code) {
+                    case SKIP:
+                        // 32-bit interval stored as two little-endian words, high word first
+                        int high = data.getShort() & 0xFFFF;
+                        int low = data.getShort() & 0xFFFF;
+                        time += (high << 16) | low;
+                        break;
+                    case AUX:
+                        data.position(data.position() + ((value + 1) & ~1));
+                        break;
+                    case NUM:
+                    case SUB:
+                    case CHN:
+                        break;
+                    default:
+                        time += value;
+                        if (IS_QRS[code]) {
+                            if (count == samples.length) {
+                                samples = Arrays.copyOf(samples, count * 2);
+                                codes = Arrays.copyOf(codes, count * 2);
+                            }
+                            samples[count] = time;
+                            codes[count] = code;
+                            count++;
+                        }
+                }
+            }
+            return new Annotations(Arrays.copyOf(samples, count), Arrays.copyOf(codes, count));
+        }
+    }
+
+    /**
+     * The {@link BeatTypes} class of an MIT annotation code: the five the model was trained on,
+     * otherwise {@link BeatTypes#BEAT_TYPE_UNKNOWN}.
+     */
+    static int toBeatType(int code) {
+        switch (code) {
+            case NORMAL:
+                return BeatTypes.BEAT_TYPE_NORMAL;
+            case LBBB:
+                return BeatTypes.BEAT_TYPE_LEFT_BUNDLE_BRANCH_BLOCK;
+            case RBBB:
+                return BeatTypes.BEAT_TYPE_RIGHT_BUNDLE_BRANCH_BLOCK;
+            case APC:
+                return BeatTypes.BEAT_TYPE_ATRIAL_PREMATURE;
+            case PVC:
+                return BeatTypes.BEAT_TYPE_PREMATURE_VENTRICULAR;
+            default:
+                return BeatTypes.BEAT_TYPE_UNKNOWN;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.myapplication;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+
+import static org.junit.Assert.*;
+
+public class BatchAnalyzerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void analyzesEveryRecordingInTheTreeAndSkipsOtherFiles() throws Exception {
+        writeRecording(new File(folder.getRoot(), "one.csv"), 60);
+        File nested = folder.newFolder("day2");
+        writeRecording(new File(nested, "two.txt"), 75);
+        try (Writer notes = new FileWriter(new File(nested, "notes.md"))) {
+            notes.write("not a recording\n");
+        }
+
+        StringWriter out = new StringWriter();
+        BatchAnalyzer.Totals totals = BatchAnalyzer.run(folder.getRoot().toPath(), 2,
+                ECGPreprocessor.DEFAULT_SAMPLE_RATE, null, new SummaryWriter(out, false));
+
+        assertEquals(2, totals.files);
+        assertEquals(0, totals.failures);
+        assertTrue(totals.beats > 0);
+        String[] lines = out.toString().split("\n");
+        assertEquals(3, lines.length);
+        assertTrue(lines[0], lines[0].startsWith("path,bytes,samples,"));
+        assertTrue(out.toString(), out.toString().contains("one.csv,"));
+        assertTrue(out.toString(), out.toString().contains("two.txt,"));
+    }
+
+    @Test
+    public void unreadableFileIsReportedAsAFailure() throws Exception {
+        File recording = new File(folder.getRoot(), "gone.csv");
+        RecordingAnalyzer.Summary summary;
+        try (RecordingAnalyzer analyzer = new RecordingAnalyzer(ECGPreprocessor.DEFAULT_SAMPLE_RATE, null)) {
+            summary = analyzer.analyze(recording, recording.getName());
+        }
+
+        assertNotNull(summary.error);
+        assertEquals(0, summary.beats);
+    }
+
+    private static void writeRecording(File file, int heartRate) throws IOException {
+        SyntheticEcg ecg = new SyntheticEcg(ECGPreprocessor.DEFAULT_SAMPLE_RATE, heartRate);
+        ecg.setHeartRate(heartRate);
+        try (Writer writer = new FileWriter(file)) {
+            ecg.writeCsv(writer, ECGPreprocessor.DEFAULT_SAMPLE_RATE * 60);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.myapplication;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class WfdbRecordTest {
+    private static final int RATE = 360;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void decodesFormat212AndBeatAnnotations() throws IOException {
+        int[] first = {0, 1, -1, 2047, -2048, 1024, 5};
+        int[] second = {10, -10, 300, -300, 1, 0, -7};
+        writeHeader("t1", first.length);
+        writeFormat212("t1", first, second);
+        // A beat 2000 samples on needs a SKIP; the aux string and rhythm change are not beats
+        AnnotationWriter atr = new AnnotationWriter();
+        atr.beat(100, WfdbRecord.NORMAL);
+        atr.aux(28, 0, "(AFIB");
+        atr.beat(2100, WfdbRecord.PVC);
+        atr.beat(2300, 12); // paced
+        atr.write(new File(folder.getRoot(), "t1.atr"));
+
+        WfdbRecord record = WfdbRecord.open(folder.getRoot().toPath(), "t1");
+        assertEquals(RATE, record.sampleRate);
+        assertEquals(2, record.signalCount);
+        assertEquals(200, record.signals.get(0).gain, 0);
+        assertEquals("MLII", record.signals.get(0).description);
+
+        float[] decodedFirst = record.readSignal(0);
+        float[] decodedSecond = record.readSignal(1);
+        for (int i = 0; i < first.length; i++) {
+            assertEquals(first[i], decodedFirst[i], 0);
+            assertEquals(second[i], decodedSecond[i], 0);
+        }
+
+        WfdbRecord.Annotations beats = record.readBeats("atr");
+        assertArrayEquals(new long[]{100, 2100, 2300}, beats.samples);
+        assertArrayEquals(new int[]{WfdbRecord.NORMAL, WfdbRecord.PVC, 12}, beats.codes);
+        assertEquals(BeatTypes.BEAT_TYPE_PREMATURE_VENTRICULAR, WfdbRecord.toBeatType(beats.codes[1]));
+        assertEquals(BeatTypes.BEAT_TYPE_UNKNOWN, WfdbRecord.toBeatType(beats.codes[2]));
+    }
+
+    @Test
+    public void matchingCountsDetectionErrorsAndConfusion() {
+        AccuracyHarness.Tally tally = new AccuracyHarness.Tally();
+        tally.classified = true;
+        long[] reference = {1000, 2000, 3000, 4000};
+        int[] referenceTypes = {BeatTypes.BEAT_TYPE_NORMAL, BeatTypes.BEAT_TYPE_PREMATURE_VENTRICULAR,
+                BeatTypes.BEAT_TYPE_NORMAL, BeatTypes.BEAT_TYPE_NORMAL};
+        // 3000 missed, 2500 spurious, 4000 found but failed the quality gate
+        long[] detected = {1010, 1990, 2500, 4020};
+        int[] detectedTypes = {BeatTypes.BEAT_TYPE_NORMAL, BeatTypes.BEAT_TYPE_NORMAL,
+                BeatTypes.BEAT_TYPE_NORMAL, AccuracyHarness.REJECTED};
+
+        tally.match(reference, referenceTypes, detected, detectedTypes, 54, 0, 10000);
+
+        assertEquals(3, tally.truePositives);
+        assertEquals(1, tally.falseNegatives);
+        assertEquals(1, tally.falsePositives);
+        assertEquals(0.75, tally.sensitivity(), 1e-9);
+        assertEquals(1, tally.confusion[0][0]);
+        assertEquals(1, tally.confusion[4][0]);
+        assertEquals(1, tally.confusion[0][AccuracyHarness.CLASSES.length + 1]);
+        assertEquals(1 / 3.0, tally.classAccuracy(), 1e-9);
+    }
+
+    @Test
+    public void harnessRunsOverASyntheticRecord() throws IOException {
+        SyntheticEcg ecg = new SyntheticEcg(RATE, 9);
+        ecg.setEctopicRate(BeatTypes.BEAT_TYPE_PREMATURE_VENTRICULAR, 0.05f);
+        int length = RATE * 120;
+        int[] adc = new int[length];
+        for (int i = 0; i < length; i++) adc[i] = Math.round(ecg.nextSample()) - 1024;
+        writeHeader("syn", length);
+        writeFormat212("syn", adc, new int[length]);
+        AnnotationWriter atr = new AnnotationWriter();
+        List<SyntheticEcg.Beat> beats = ecg.getBeats();
+        for (SyntheticEcg.Beat beat : beats) {
+            atr.beat(beat.peakSample, beat.type == BeatTypes.BEAT_TYPE_PREMATURE_VENTRICULAR
+                    ? WfdbRecord.PVC : WfdbRecord.NORMAL);
+        }
+        atr.write(new File(folder.getRoot(), "syn.atr"));
+
+        assertEquals(1, AccuracyHarness.findRecords(folder.getRoot().toPath(), "atr").size());
+        AccuracyHarness.Tally tally = new AccuracyHarness.Tally();
+        AccuracyHarness.evaluate(WfdbRecord.open(folder.getRoot().toPath(), "syn"), 0, "atr", 250, null, tally);
+
+        assertTrue(tally.truePositives + tally.falseNegatives >= beats.size() - 4);
+        assertTrue(tally.truePositives > 0);
+        assertEquals(length * 250 / RATE, tally.samples);
+        assertTrue(Double.isNaN(tally.classAccuracy()));
+    }
+
+    private void writeHeader(String name, int length) throws IOException {
+        String header = name + " 2 " + RATE + " " + length + "\n"
+                + name + ".dat 212 200 11 1024 0 0 0 MLII\n"
+                + name + ".dat 212 200 11 1024 0 0 0 V5\n";
+        Files.write(new File(folder.getRoot(), name + ".hea").toPath(), header.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private void writeFormat212(String name, int[] first, int[] second) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < first.length; i++) {
+            int a = first[i] & 0xFFF;
+            int b = second[i] & 0xFFF;
+            out.write(a & 0xFF);
+            out.write((a >> 8) | ((b >> 8) << 4));
+            out.write(b & 0xFF);
+        }
+        Files.write(new File(folder.getRoot(), name + ".dat").toPath(), out.toByteArray());
+    }
+
+    /** MIT format annotations: little-endian words of a 6-bit code and a 10-bit interval. */
+    private static final class AnnotationWriter {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        private long time;
+
+        void beat(long sample, int code) {
+            long interval = sample - time;
+            if (interval > 1023) {
+                word(59 << 10);
+                word((int) (interval >> 16));
+                word((int) interval);
+                interval = 0;
+            }
+            word((code << 10) | (int) interval);
+            time = sample;
+        }
+
+        void aux(int code, int interval, String text) {
+            word((code << 10) | interval);
+            word((63 << 10) | text.length());
+            byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+            out.write(bytes, 0, bytes.length);
+            if (bytes.length % 2 == 1) out.write(0);
+        }
+
+        private void word(int value) {
+            out.write(value & 0xFF);
+            out.write((value >> 8) & 0xFF);
+        }
+
+        void write(File file) throws IOException {
+            word(0);
+            Files.write(file.toPath(), out.toByteArray());
+        }
+    }
+}
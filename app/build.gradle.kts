@@ -36,6 +36,12 @@ android {
     buildFeatures {
         viewBinding = true
     }
+
+    // Plain-Java helpers for tests, e.g. SyntheticEcg, kept out of the APK. The unit tests get
+    // them automatically; :analyzer and :benchmark compile the same directory.
+    testFixtures {
+        enable = true
+    }
 }
 
 dependencies {
@@ -0,0 +1,47 @@
+package com.example.myapplication;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+/**
+ * Runs the float/INT8 comparison on a device. Needs the quantized model in the app assets and a
+ * labelled beat set at labelled_beats.csv in the test assets; skipped otherwise.
+ */
+@RunWith(AndroidJUnit4.class)
+public class QuantizationComparisonTest {
+    private static final String LABELLED_BEATS = "labelled_beats.csv";
+
+    @Test
+    public void compareFloatAndInt8Models() throws IOException {
+        Context appContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        Context testContext = InstrumentationRegistry.getInstrumentation().getContext();
+        assumeTrue(ECGClassifier.isModelAvailable(appContext, ECGClassifier.ModelVariant.INT8));
+
+        QuantizationComparison.LabelledBeats set;
+        try (InputStream stream = testContext.getAssets().open(LABELLED_BEATS)) {
+            set = QuantizationComparison.loadLabelledBeats(stream);
+        } catch (IOException e) {
+            assumeNoException(e);
+            return;
+        }
+
+        QuantizationComparison.Result result = QuantizationComparison.compare(appContext, set);
+        Log.i("QuantizationComparison", result.toString());
+
+        assertTrue(result.floatModel.loaded);
+        assertTrue(result.int8Model.loaded);
+        assertEquals(set.types.length, result.int8Model.predicted.length);
+    }
+}
@@ -0,0 +1,742 @@
+package com.example.myapplication;
+
+import androidx.core.app.NotificationCompat;
+import androidx.core.app.ServiceCompat;
+import androidx.core.content.ContextCompat;
+
+import android.Manifest;
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothManager;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.content.pm.ServiceInfo;
+import android.os.Binder;
+import android.os.Build;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
+import android.os.PowerManager;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Foreground service that owns a recording session: the device link, the ingest task and
+ * everything recorded from it. The session keeps running while the UI is rotated, paged away or
+ * backgrounded; fragments bind to read its state and data and never sit on the ingest path.
+ * Sessions are started with {@link #ACTION_START} and end after {@link #RECORDING_DURATION}, on
+ * {@link #stopRecording()}, or when the connection drops and cannot be re-established. The
+ * service stays started after a session, holding the recording, until it is exported or
+ * discarded with {@link #releaseSession()} or {@link #ACTION_DISCARD}, or a new session replaces
+ * it; clients coming and going do not end it. A session that ends with no client bound also
+ * keeps the service in the foreground until one binds, so a recording finished in the
+ * background is not lost with it.
+ */
+public class AcquisitionService extends Service {
+    private static final String TAG = "AcquisitionService";
+    public static final String ACTION_START = "com.example.myapplication.action.START_RECORDING";
+    public static final String ACTION_STOP = "com.example.myapplication.action.STOP_RECORDING";
+    // Drops a finished session that was never exported, from its notification
+    public static final String ACTION_DISCARD = "com.example.myapplication.action.DISCARD_RECORDING";
+    public static final long RECORDING_DURATION = 7 * 60 * 1000; // 7 minutes
+    // Link to record over, an extra of ACTION_START: TRANSPORT_RFCOMM (the default) or TRANSPORT_BLE
+    public static final String EXTRA_TRANSPORT = "com.example.myapplication.extra.TRANSPORT";
+    public static final String TRANSPORT_RFCOMM = "rfcomm";
+    public static final String TRANSPORT_BLE = "ble";
+
+    private static final String ESP32_MAC_ADDRESS = "6C:C8:40:4E:B1:36";
+    private static final String CHANNEL_ID = "acquisition";
+    private static final int NOTIFICATION_ID = 1;
+    private static final int ECG_PEAK_THRESHOLD = 2500;
+    // Reconnect backoff: from a quarter second doubling to eight, for up to a minute of outage
+    private static final long RECONNECT_INITIAL_MS = 250;
+    private static final long RECONNECT_MAX_MS = 8_000;
+    private static final long RECONNECT_BUDGET_MS = 60_000;
+
+    private static final Metrics.Counter INGEST_BYTES = Metrics.getInstance().counter("ingest_bytes");
+    private static final Metrics.Counter INGEST_SAMPLES = Metrics.getInstance().counter("ingest_samples");
+    private static final Metrics.Counter INGEST_LEAD_OFF = Metrics.getInstance().counter("ingest_lead_off_samples");
+    private static final Metrics.Gauge INGEST_RATE = Metrics.getInstance().gauge("ingest_rate_hz");
+    private static final Metrics.Gauge INGEST_EFFECTIVE_RATE = Metrics.getInstance().gauge("ingest_effective_rate_hz");
+    private static final Metrics.Counter INGEST_GAPS = Metrics.getInstance().counter("ingest_gaps");
+    private static final Metrics.Counter INGEST_LOST = Metrics.getInstance().counter("ingest_lost_samples");
+    private static final Metrics.Counter INGEST_DUPLICATES = Metrics.getInstance().counter("ingest_duplicate_samples");
+    private static final LatencyHistogram INGEST_PARSE = Metrics.getInstance().histogram("ingest_parse");
+    private static final Metrics.Counter RECONNECTS = Metrics.getInstance().counter("reconnects");
+    private static final Metrics.Counter RECONNECT_ATTEMPTS = Metrics.getInstance().counter("reconnect_attempts");
+    private static final Metrics.Counter RECONNECT_FAILURES = Metrics.getInstance().counter("reconnect_failures");
+    // From the link dropping to recording again
+    private static final LatencyHistogram RECONNECT_TIME = Metrics.getInstance().histogram("reconnect");
+
+    public enum State {
+        IDLE, CONNECTING, RECORDING, RECONNECTING, COMPLETE, FAILED
+    }
+
+    /**
+     * Session state changes, delivered on the main thread.
+     */
+    public interface Listener {
+        void onStateChanged(State state, String message);
+
+        /**
+         * The analysis of a finished session is complete, shortly after it ended.
+         */
+        default void onReportReady(SessionAnalyzer.Report report) {
+        }
+    }
+
+    public class LocalBinder extends Binder {
+        public AcquisitionService getService() {
+            return AcquisitionService.this;
+        }
+    }
+
+    private final IBinder binder = new LocalBinder();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    private volatile State state = State.IDLE;
+    private volatile String statusMessage = "Ready to connect";
+    private volatile EcgTransport transport;
+    private volatile String transportType = TRANSPORT_RFCOMM;
+    // Counters of the current or last link
+    private volatile EcgTransport.Stats transportStats;
+    private volatile int reconnectCount = 0;
+    private volatile long deadline = 0;
+    private PowerManager.WakeLock wakeLock;
+    // The connect-and-ingest task; cancelled with the service, unlike the analysis finishing a
+    // session's report
+    private volatile TaskScheduler.Task<Void> sessionTask;
+    private volatile boolean bound = false;
+    // An ended session no client has bound to see yet; guarded by this
+    private boolean awaitingClient = false;
+
+    // Latest values for the UI, written only by the ingest task
+    private volatile int lastEcgValue, lastLoPlus, lastLoMinus;
+    private volatile boolean lastLeadOff = false;
+    private volatile int heartRate = 0;
+    private long lastPeakTime = 0;
+
+    // Beats found in the live signal feed the HRV engine; both are used on the ingest task.
+    // Beats in noisy or lead-off windows are left out and break the NN sequence.
+    private final HrvEngine hrvEngine = new HrvEngine(ECGPreprocessor.DEFAULT_SAMPLE_RATE);
+    private final SignalQualityIndex signalQuality = new SignalQualityIndex();
+    private final StreamingBeatDetector beatDetector = new StreamingBeatDetector(
+            ECGPreprocessor.DEFAULT_SAMPLE_RATE, signalQuality, new StreamingBeatDetector.BeatListener() {
+                @Override
+                public void onBeat(long peakIndex, float[] beat) {
+                    hrvEngine.addBeat(peakIndex);
+                    sessionAnalyzer.onBeat(peakIndex, beat);
+                }
+
+                @Override
+                public void onBeatRejected(long peakIndex, SignalQualityIndex.Issue issue) {
+                    hrvEngine.breakSequence();
+                    sessionAnalyzer.onBeatRejected(peakIndex, issue);
+                }
+            });
+    // Classifies and summarizes the session's beats in the background while it records; one per
+    // session, replaced when the next one starts
+    private volatile SessionAnalyzer sessionAnalyzer = newSessionAnalyzer();
+
+    // Only ECG values taken while the electrodes are in contact; the lead-off channel keeps the
+    // full timeline. Guarded by itself, since export reads it while a session may be appending.
+    private final StringBuilder ecgData = new StringBuilder();
+    private final LeadOffChannel leadOffChannel = new LeadOffChannel();
+    // Places each sample on the device's timeline, so lost packets become gaps rather than
+    // silently shortening the recording; used on the ingest task
+    private final SampleClock sampleClock = new SampleClock(ECGPreprocessor.DEFAULT_SAMPLE_RATE);
+    private volatile long sessionStartMillis = 0;
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationChannel channel = new NotificationChannel(CHANNEL_ID, "ECG recording",
+                    NotificationManager.IMPORTANCE_LOW);
+            getSystemService(NotificationManager.class).createNotificationChannel(channel);
+        }
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        String action = intent != null ? intent.getAction() : null;
+        if (ACTION_STOP.equals(action)) {
+            stopRecording();
+        } else if (ACTION_DISCARD.equals(action)) {
+            releaseSession();
+        } else if (ACTION_START.equals(action)) {
+            String type = intent.getStringExtra(EXTRA_TRANSPORT);
+            startRecording(TRANSPORT_BLE.equals(type) ? TRANSPORT_BLE : TRANSPORT_RFCOMM);
+        }
+        // A restarted service would have lost its socket and data, so there is nothing to resume
+        return START_NOT_STICKY;
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        onClientBound();
+        return binder;
+    }
+
+    @Override
+    public void onRebind(Intent intent) {
+        onClientBound();
+    }
+
+    @Override
+    public boolean onUnbind(Intent intent) {
+        bound = false;
+        // Have onRebind called for the next client
+        return true;
+    }
+
+    private synchronized void onClientBound() {
+        bound = true;
+        if (awaitingClient) {
+            // The client has the ended session now; the service stays started until it is released
+            awaitingClient = false;
+            ServiceCompat.stopForeground(this, ServiceCompat.STOP_FOREGROUND_REMOVE);
+        }
+    }
+
+    /**
+     * The finished session has been exported or dismissed and need not be kept any longer: the
+     * service stops once no client is bound. Does nothing while a session is running.
+     */
+    public synchronized void releaseSession() {
+        if (state == State.CONNECTING || isRecording()) return;
+        awaitingClient = false;
+        ServiceCompat.stopForeground(this, ServiceCompat.STOP_FOREGROUND_REMOVE);
+        stopSelf();
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        closeSession(State.IDLE, "Disconnected");
+        TaskScheduler.Task<Void> task = sessionTask;
+        if (task != null) {
+            task.cancel(true);
+        }
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public String getStatusMessage() {
+        return statusMessage;
+    }
+
+    /**
+     * Whether a session is under way, including while it reconnects; its timer keeps running.
+     */
+    public boolean isRecording() {
+        return state == State.RECORDING || state == State.RECONNECTING;
+    }
+
+    public long getRemainingMillis() {
+        if (!isRecording()) return RECORDING_DURATION;
+        return Math.max(0, deadline - SystemClock.elapsedRealtime());
+    }
+
+    public int getLastEcgValue() {
+        return lastEcgValue;
+    }
+
+    public int getLastLoPlus() {
+        return lastLoPlus;
+    }
+
+    public int getLastLoMinus() {
+        return lastLoMinus;
+    }
+
+    public boolean isLeadOff() {
+        return lastLeadOff;
+    }
+
+    public int getHeartRate() {
+        return heartRate;
+    }
+
+    public HrvEngine.Metrics getHrvMetrics() {
+        return hrvEngine.getMetrics();
+    }
+
+    public SignalQualityIndex getSignalQuality() {
+        return signalQuality;
+    }
+
+    public LeadOffChannel getLeadOffChannel() {
+        return leadOffChannel;
+    }
+
+    /**
+     * Counters of the current or last link, null before the first connects. A reconnect starts
+     * a new link.
+     */
+    public EcgTransport.Stats getTransportStats() {
+        return transportStats;
+    }
+
+    /**
+     * Times the current or last session got its link back after losing it.
+     */
+    public int getReconnectCount() {
+        return reconnectCount;
+    }
+
+    public SampleClock getSampleClock() {
+        return sampleClock;
+    }
+
+    /**
+     * Wall-clock time the current or last session started recording, or 0 before the first.
+     */
+    public long getSessionStartMillis() {
+        return sessionStartMillis;
+    }
+
+    /**
+     * Analysis of the last finished session, or null while recording or until it is complete.
+     */
+    public SessionAnalyzer.Report getSessionReport() {
+        return sessionAnalyzer.getReport();
+    }
+
+    public boolean hasData() {
+        synchronized (ecgData) {
+            return ecgData.length() > 0;
+        }
+    }
+
+    /**
+     * Stored ECG values of the current or last session, one per line.
+     */
+    public String getSamples() {
+        synchronized (ecgData) {
+            return ecgData.toString();
+        }
+    }
+
+    private synchronized void startRecording(String type) {
+        if (state == State.CONNECTING || isRecording()) {
+            Log.d(TAG, "Session already running");
+            return;
+        }
+        transportType = type;
+        awaitingClient = false;
+        startInForeground();
+        setState(State.CONNECTING, "Connecting...");
+        sessionTask = TaskScheduler.getInstance().submit(TaskScheduler.Pool.IO, TaskScheduler.Priority.LIVE_INGEST,
+                this, "esp32-session", this::runSession);
+    }
+
+    /**
+     * Ends a running session, keeping its data.
+     */
+    public void stopRecording() {
+        endSession(State.IDLE, "Disconnected");
+    }
+
+    private void startInForeground() {
+        Notification notification = buildNotification("Connecting to ECG device...");
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            startForeground(NOTIFICATION_ID, notification, ServiceInfo.FOREGROUND_SERVICE_TYPE_CONNECTED_DEVICE);
+        } else {
+            startForeground(NOTIFICATION_ID, notification);
+        }
+
+        // Keep the CPU up with the screen off for no longer than a session
+        PowerManager powerManager = (PowerManager) getSystemService(Context.POWER_SERVICE);
+        wakeLock = powerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, "AortaSync:acquisition");
+        wakeLock.acquire(RECORDING_DURATION + 60 * 1000);
+    }
+
+    private Notification buildNotification(String text) {
+        return buildNotification(text, false);
+    }
+
+    private Notification buildNotification(String text, boolean discardable) {
+        Intent open = new Intent(this, MainActivity.class).setFlags(Intent.FLAG_ACTIVITY_SINGLE_TOP);
+        PendingIntent contentIntent = PendingIntent.getActivity(this, 0, open,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(this, CHANNEL_ID)
+                .setContentTitle("ECG recording")
+                .setContentText(text)
+                .setSmallIcon(R.drawable.ic_launcher_foreground)
+                .setContentIntent(contentIntent)
+                .setCategory(NotificationCompat.CATEGORY_SERVICE)
+                .setPriority(NotificationCompat.PRIORITY_LOW)
+                .setOnlyAlertOnce(true)
+                .setOngoing(true);
+        if (discardable) {
+            Intent discard = new Intent(this, AcquisitionService.class).setAction(ACTION_DISCARD);
+            builder.addAction(0, "Discard", PendingIntent.getService(this, 1, discard,
+                    PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE));
+        }
+        return builder.build();
+    }
+
+    private void updateNotification(String text) {
+        NotificationManager manager = (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
+        manager.notify(NOTIFICATION_ID, buildNotification(text));
+    }
+
+    private void setState(State newState, String message) {
+        state = newState;
+        statusMessage = message;
+        Log.d(TAG, newState + ": " + message);
+        mainHandler.post(() -> {
+            for (Listener listener : listeners) {
+                listener.onStateChanged(newState, message);
+            }
+        });
+    }
+
+    // Runs on an I/O thread for the whole session: connect, then read until the deadline
+    private void runSession() {
+        EcgTransport link;
+        try {
+            link = connect();
+        } catch (SecurityException e) {
+            Log.e(TAG, "Security exception", e);
+            endSession(State.FAILED, "Bluetooth permission error: " + e.getMessage());
+            return;
+        } catch (Exception e) {
+            Log.e(TAG, "Connection error", e);
+            endSession(State.FAILED, "Connection error: " + e.getMessage());
+            return;
+        }
+        if (link == null) return;
+
+        synchronized (this) {
+            if (state != State.CONNECTING) {
+                // Stopped while connecting
+                link.close();
+                return;
+            }
+            transport = link;
+            transportStats = link.getStats();
+            resetSession();
+            deadline = SystemClock.elapsedRealtime() + RECORDING_DURATION;
+            LiveECGStream.getInstance().start(ECGPreprocessor.DEFAULT_SAMPLE_RATE);
+            setState(State.RECORDING, "Connected over " + link.getName() + "! Recording...");
+        }
+        ingest(link);
+    }
+
+    // Returns the connected transport, or null after ending the session with the reason
+    private EcgTransport connect() throws IOException {
+        BluetoothManager bluetoothManager = getSystemService(BluetoothManager.class);
+        BluetoothAdapter bluetoothAdapter = bluetoothManager != null ? bluetoothManager.getAdapter() : null;
+        if (bluetoothAdapter == null || !bluetoothAdapter.isEnabled()) {
+            endSession(State.FAILED, "Bluetooth not enabled");
+            return null;
+        }
+
+        BluetoothDevice device;
+        try {
+            device = bluetoothAdapter.getRemoteDevice(ESP32_MAC_ADDRESS);
+        } catch (IllegalArgumentException e) {
+            endSession(State.FAILED, "Invalid MAC address");
+            return null;
+        }
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S
+                && ContextCompat.checkSelfPermission(this, Manifest.permission.BLUETOOTH_CONNECT) != PackageManager.PERMISSION_GRANTED) {
+            endSession(State.FAILED, "Bluetooth permission denied");
+            return null;
+        }
+
+        EcgTransport link = TRANSPORT_BLE.equals(transportType)
+                ? new BleTransport(new AndroidGattClient(this, device), ECGPreprocessor.DEFAULT_SAMPLE_RATE)
+                : new RfcommTransport(bluetoothAdapter, device);
+        link.connect();
+        return link;
+    }
+
+    private void resetSession() {
+        synchronized (ecgData) {
+            ecgData.setLength(0);
+        }
+        leadOffChannel.clear();
+        sampleClock.reset();
+        sessionStartMillis = System.currentTimeMillis();
+        beatDetector.reset();
+        signalQuality.resetCounters();
+        hrvEngine.reset();
+        sessionAnalyzer = newSessionAnalyzer();
+        reconnectCount = 0;
+        heartRate = 0;
+        lastPeakTime = 0;
+        lastLeadOff = false;
+    }
+
+    private SessionAnalyzer newSessionAnalyzer() {
+        return new SessionAnalyzer(ECGPreprocessor.DEFAULT_SAMPLE_RATE,
+                (beats, peaks) -> {
+                    ECGClassifier classifier = ClassifierHolder.getInstance().getClassifier();
+                    return classifier != null ? classifier.classifyBeats(beats, peaks) : null;
+                },
+                work -> TaskScheduler.getInstance().submit(TaskScheduler.Pool.INFERENCE,
+                        TaskScheduler.Priority.BATCH, this, "session-analysis", work),
+                report -> {
+                    Log.d(TAG, "Session report ready " + report.finishNanos / 1_000_000 + " ms after stop: "
+                            + report.result.getBeatCount() + " beats");
+                    mainHandler.post(() -> {
+                        for (Listener listener : listeners) {
+                            listener.onReportReady(report);
+                        }
+                    });
+                });
+    }
+
+    private void ingest(EcgTransport link) {
+        EcgTransport.SampleSink sink = this::onSample;
+        long lastNotified = 0;
+        long samplesAtLastNotify = 0;
+        while (state == State.RECORDING) {
+            long now = SystemClock.elapsedRealtime();
+            if (now >= deadline) {
+                endSession(State.COMPLETE, "Recording Complete!");
+                break;
+            }
+            // The notification shows whole seconds, so refresh it once per second
+            if (now - lastNotified >= 1000) {
+                long samples = leadOffChannel.getSampleCount();
+                if (lastNotified > 0) {
+                    INGEST_RATE.set((samples - samplesAtLastNotify) * 1000.0 / (now - lastNotified));
+                    INGEST_EFFECTIVE_RATE.set(sampleClock.getEffectiveRate());
+                }
+                samplesAtLastNotify = samples;
+                lastNotified = now;
+                updateNotification("Recording - " + formatRemaining(deadline - now) + " left");
+            }
+
+            try {
+                long t0 = System.nanoTime();
+                int bytes = link.read(sink);
+                if (bytes > 0) {
+                    INGEST_BYTES.add(bytes);
+                    INGEST_PARSE.record(System.nanoTime() - t0);
+                }
+                Thread.sleep(10);
+            } catch (IOException e) {
+                // Also how a read blocked in a stopped session returns
+                if (state != State.RECORDING) break;
+                Log.e(TAG, "Connection lost, " + link.getStats().summary(System.nanoTime()), e);
+                link = reconnect(link);
+                if (link == null) break;
+            } catch (InterruptedException e) {
+                Log.e(TAG, "Ingest interrupted", e);
+                break;
+            } catch (Exception e) {
+                Log.e(TAG, "Unexpected error", e);
+            }
+        }
+    }
+
+    /**
+     * Gets the link back after it drops mid-session, backing off between attempts. The detector,
+     * filters, timers and everything recorded so far are kept, and the outage becomes a gap on
+     * the timeline once samples flow again. Returns the new link, or null once the session has
+     * ended: stopped, out of time or out of attempts.
+     */
+    private EcgTransport reconnect(EcgTransport lost) {
+        synchronized (this) {
+            if (state != State.RECORDING) return null;
+            transport = null;
+            setState(State.RECONNECTING, "Connection lost. Reconnecting...");
+        }
+        lost.close();
+        updateNotification("Reconnecting to ECG device...");
+
+        long startNanos = System.nanoTime();
+        long start = SystemClock.elapsedRealtime();
+        Backoff backoff = new Backoff(RECONNECT_INITIAL_MS, RECONNECT_MAX_MS, RECONNECT_BUDGET_MS, new Random());
+        while (true) {
+            long delay = backoff.nextDelayMillis(SystemClock.elapsedRealtime() - start);
+            if (delay < 0) {
+                RECONNECT_FAILURES.increment();
+                endSession(State.FAILED, "Connection lost");
+                return null;
+            }
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Log.e(TAG, "Reconnect interrupted", e);
+                return null;
+            }
+            if (state != State.RECONNECTING) return null;
+            if (SystemClock.elapsedRealtime() >= deadline) {
+                endSession(State.COMPLETE, "Recording Complete!");
+                return null;
+            }
+
+            RECONNECT_ATTEMPTS.increment();
+            EcgTransport link;
+            try {
+                link = connect();
+            } catch (SecurityException e) {
+                Log.e(TAG, "Security exception", e);
+                endSession(State.FAILED, "Bluetooth permission error: " + e.getMessage());
+                return null;
+            } catch (Exception e) {
+                Log.w(TAG, "Reconnect attempt " + backoff.getAttempts() + " failed: " + e.getMessage());
+                continue;
+            }
+            if (link == null) return null;
+
+            synchronized (this) {
+                if (state != State.RECONNECTING) {
+                    // Stopped while connecting
+                    link.close();
+                    return null;
+                }
+                transport = link;
+                transportStats = link.getStats();
+                sampleClock.resync();
+                reconnectCount++;
+                RECONNECTS.increment();
+                RECONNECT_TIME.record(System.nanoTime() - startNanos);
+                Log.d(TAG, "Reconnected after " + backoff.getAttempts() + " attempts, "
+                        + (SystemClock.elapsedRealtime() - start) + " ms");
+                setState(State.RECORDING, "Reconnected over " + link.getName() + "! Recording...");
+            }
+            return link;
+        }
+    }
+
+    // One decoded sample from the transport, on the ingest task
+    private void onSample(int ecgValue, int loPlus, int loMinus, long sequence, long arrivalNanos) {
+        boolean leadOff = loPlus == 1 || loMinus == 1;
+        int missing = sampleClock.onSample(sequence, arrivalNanos);
+        if (missing < 0) {
+            INGEST_DUPLICATES.increment();
+            return;
+        }
+        if (missing > 0) {
+            recordGap(missing);
+        }
+
+        // Only store the ECG value, and skip it entirely while an electrode is off
+        leadOffChannel.add(leadOff);
+        INGEST_SAMPLES.increment();
+        if (leadOff) {
+            INGEST_LEAD_OFF.increment();
+        } else {
+            calculateHeartRate(ecgValue, sampleClock.getSampleIndex() - 1);
+            synchronized (ecgData) {
+                ecgData.append(ecgValue).append("\n");
+            }
+        }
+        beatDetector.addSample(ecgValue, leadOff);
+        LiveECGStream.getInstance().publish(ecgValue, leadOff);
+
+        lastEcgValue = ecgValue;
+        lastLoPlus = loPlus;
+        lastLoMinus = loMinus;
+        lastLeadOff = leadOff;
+    }
+
+    /**
+     * Marks samples lost in transit on the timeline and runs them through the live stages as
+     * lead-off, so every later sample keeps its true index.
+     */
+    private void recordGap(int missing) {
+        Log.w(TAG, "Gap of " + missing + " samples at " + leadOffChannel.getSampleCount());
+        INGEST_GAPS.increment();
+        INGEST_LOST.add(missing);
+        leadOffChannel.addGap(missing);
+        for (int i = 0; i < missing; i++) {
+            beatDetector.addSample(lastEcgValue, true);
+            LiveECGStream.getInstance().publish(lastEcgValue, true);
+        }
+    }
+
+    // Times beats on the sample clock, so late or bunched packets do not skew the rate
+    private void calculateHeartRate(int ecgValue, long sampleIndex) {
+        if (ecgValue > ECG_PEAK_THRESHOLD) {
+            long currentTime = sampleClock.sampleTimeMillis(sampleIndex);
+            if (lastPeakTime > 0) {
+                long timeDiff = currentTime - lastPeakTime;
+                if (timeDiff > 300) {
+                    int newHeartRate = (int) (60000 / timeDiff);
+                    if (newHeartRate > 40 && newHeartRate < 200) {
+                        heartRate = newHeartRate;
+                    }
+                }
+            }
+            lastPeakTime = currentTime;
+        }
+    }
+
+    /**
+     * Closes the session and records why it ended. The service stays started, holding the
+     * recording, until {@link #releaseSession()}; with a client bound it only leaves the
+     * foreground, otherwise it stays there until a client binds.
+     */
+    private synchronized void endSession(State endState, String message) {
+        if (!closeSession(endState, message)) return;
+        if (bound) {
+            ServiceCompat.stopForeground(this, ServiceCompat.STOP_FOREGROUND_REMOVE);
+        } else {
+            awaitingClient = true;
+            NotificationManager manager = (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
+            manager.notify(NOTIFICATION_ID, buildNotification(message + " - open the app to view the recording", true));
+        }
+    }
+
+    // Closes the transport and finishes the session; false if none was running
+    private synchronized boolean closeSession(State endState, String message) {
+        // A session can only end once; a late failure from a stopped session is ignored
+        if (state != State.CONNECTING && !isRecording()) return false;
+
+        EcgTransport link = transport;
+        transport = null;
+        if (link != null) {
+            Log.d(TAG, link.getName() + ": " + link.getStats().summary(System.nanoTime()));
+            link.close();
+        }
+        if (isRecording()) {
+            LiveECGStream.getInstance().stop();
+            sessionAnalyzer.finish(leadOffChannel.getSampleCount());
+        }
+        if (wakeLock != null && wakeLock.isHeld()) {
+            wakeLock.release();
+        }
+        wakeLock = null;
+
+        setState(endState, message);
+        return true;
+    }
+
+    static String formatRemaining(long millis) {
+        int minutes = (int) (millis / 1000) / 60;
+        int seconds = (int) (millis / 1000) % 60;
+        return String.format(Locale.getDefault(), "%02d:%02d", minutes, seconds);
+    }
+}
@@ -1,9 +1,11 @@
     package com.example.myapplication;
 
     import android.app.Activity;
+    import android.content.ContentResolver;
     import android.content.Intent;
     import android.net.Uri;
     import android.os.Bundle;
+    import android.os.ParcelFileDescriptor;
     import android.util.Log;
     import android.view.LayoutInflater;
     import android.view.View;
@@ -17,27 +19,52 @@
     import androidx.annotation.Nullable;
     import androidx.fragment.app.Fragment;
 
+    import java.io.BufferedOutputStream;
     import java.io.BufferedReader;
+    import java.io.DataOutputStream;
+    import java.io.File;
+    import java.io.FileInputStream;
+    import java.io.FileNotFoundException;
+    import java.io.FileOutputStream;
+    import java.io.IOException;
     import java.io.InputStream;
     import java.io.InputStreamReader;
+    import java.nio.channels.Channels;
+    import java.nio.channels.FileChannel;
     import java.util.ArrayList;
     import java.util.List;
+    import java.util.concurrent.CancellationException;
+    import java.util.concurrent.ExecutionException;
+    import java.util.concurrent.RejectedExecutionException;
     import java.util.concurrent.atomic.AtomicBoolean;
 
-    public class AnalyseFragment extends Fragment {
+    public class AnalyseFragment extends Fragment implements ClassifierHolder.Listener {
 
         private static final String TAG = "Analyser";
         private static final int PICK_CSV_FILE = 1001;
+        // Beats listed one per line under the summary; the rest are only counted
+        private static final int MAX_LISTED_BEATS = 500;
+        // Min-max scaling done here before beats reach ECGPreprocessor; part of the cache key
+        private static final String FRAGMENT_PREPROCESSING_KEY = "minmax";
 
         // View references
         private ECGClassifier ecgClassifier;
+        private AnalysisCache analysisCache;
+        private volatile StreamingSampleParser activeParser;
+        private volatile WindowedAnalyzer activeWindowedAnalyzer;
+        private volatile LiveBeatClassifier liveClassifier;
+        private ArrhythmiaEventEngine liveEventEngine;
+        private LiveECGStream.Listener liveStreamListener;
+        // Live session tallies, touched only by the live classifier's drain task (one at a time)
+        private int liveNormalBeats, liveAbnormalBeats;
+        private final StringBuilder liveBeatLog = new StringBuilder();
         private Button btnProcessCSV, btnRealTime;
         private ProgressBar progressBar;
         private TextView tvStatus, resultsTextView, tvNormalBeats, tvAbnormalBeats, tvTotalBeats;
 
         // State management
         private final AtomicBoolean isFragmentActive = new AtomicBoolean(false);
-        private boolean isProcessing = false;
+        private final AtomicBoolean isProcessing = new AtomicBoolean(false);
         private Uri currentFileUri;
 
         @Nullable
@@ -112,35 +139,42 @@
         private void initializeClassifier() {
             if (!isFragmentActive.get() || getActivity() == null) return;
 
-            try {
-                Log.d(TAG, "Initializing ECG classifier...");
-                ecgClassifier = new ECGClassifier(getActivity());
+            // The shared classifier loads off the main thread; we are notified when it is ready
+            Log.d(TAG, "Waiting for shared ECG classifier...");
+            ClassifierHolder holder = ClassifierHolder.getInstance();
+            holder.load(requireActivity());
+            if (holder.getClassifier() == null) {
+                tvStatus.setText("Loading ECG model...");
+                btnProcessCSV.setEnabled(false);
+            }
+            holder.addListener(this);
+        }
 
-                if (ecgClassifier.isModelLoaded()) {
-                    Log.i(TAG, "ECG classifier ready");
-                    updateUI(() -> {
-                        tvStatus.setText("✅ Ready - " + (currentFileUri != null ? "File selected" : "Select CSV file"));
-                        btnProcessCSV.setEnabled(true);
-                        updateFileSelectionStatus();
-                    });
-                } else {
-                    throw new IllegalStateException("Model not loaded");
-                }
+        @Override
+        public void onClassifierReady(ECGClassifier classifier) {
+            ecgClassifier = classifier;
+            Log.i(TAG, "ECG classifier ready");
+            updateUI(() -> {
+                tvStatus.setText("✅ Ready - " + (currentFileUri != null ? "File selected" : "Select CSV file"));
+                btnProcessCSV.setEnabled(true);
+                updateFileSelectionStatus();
+            });
+        }
 
-            } catch (Exception e) {
-                Log.e(TAG, "Classifier init failed", e);
-                updateUI(() -> {
-                    tvStatus.setText("❌ Classifier failed");
-                    resultsTextView.setText("Model loading error: " + e.getMessage());
-                    btnProcessCSV.setEnabled(false);
-                });
-            }
+        @Override
+        public void onClassifierFailed(String message) {
+            Log.e(TAG, "Classifier init failed: " + message);
+            updateUI(() -> {
+                tvStatus.setText("❌ Classifier failed");
+                resultsTextView.setText("Model loading error: " + message);
+                btnProcessCSV.setEnabled(false);
+            });
         }
 
         private void setupClickListeners() {
             // REVISED LOGIC: Check state on every click
             btnProcessCSV.setOnClickListener(v -> {
-                if (!isProcessing) {
+                if (!isProcessing.get()) {
                     if (currentFileUri != null) {
                         // File is already selected, so let's process it
                         processSelectedCSVFile(currentFileUri);
@@ -151,7 +185,13 @@
                 }
             });
 
-            btnRealTime.setOnClickListener(v -> startDemoRealTimeMode());
+            btnRealTime.setOnClickListener(v -> {
+                if (liveClassifier == null) {
+                    startRealTimeMode();
+                } else {
+                    stopRealTimeMode();
+                }
+            });
         }
 
         private void openFilePicker() {
@@ -164,7 +204,8 @@
                         "application/csv",
                         "text/comma-separated-values",
                         "application/vnd.ms-excel",
-                        "text/plain"
+                        "text/plain",
+                        "application/octet-stream" // Binary .ecgb recordings
                 };
                 intent.putExtra(Intent.EXTRA_MIME_TYPES, mimeTypes);
                 intent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION |
@@ -259,6 +300,7 @@
                 if (getActivity() == null) return false;
 
                 String fileName = getFileNameFromUri(fileUri).toLowerCase();
+                if (fileName.endsWith(BinaryRecording.EXTENSION)) return true;
                 boolean hasCsvExtension = fileName.endsWith(".csv") || fileName.endsWith(".txt");
 
                 // Quick content check: Try to read the first line
@@ -322,7 +364,10 @@
                 return;
             }
 
-            isProcessing = true;
+            if (!isProcessing.compareAndSet(false, true)) {
+                Log.w(TAG, "Already processing a file");
+                return;
+            }
             setLoadingState(true);
             updateUI(() -> {
                 tvStatus.setText("📊 Analyzing ECG...");
@@ -330,43 +375,71 @@
                         "\n\nSteps:\n• Reading file data\n• Preprocessing signal\n• Detecting heartbeats\n• Classifying rhythms\n\nPlease wait...");
             });
 
-            new Thread(() -> {
+            Runnable analysis = () -> {
                 try {
-                    // Read file content
-                    updateUI(() -> tvStatus.setText("Reading file..."));
-                    String fileContent = readFileContent(fileUri);
-                    if (fileContent == null || fileContent.isEmpty()) {
-                        throw new Exception("File is empty or cannot be read");
+                    if (getFileNameFromUri(fileUri).toLowerCase().endsWith(BinaryRecording.EXTENSION)) {
+                        analyzeBinaryRecording(fileUri);
+                        return;
+                    }
+
+                    // Same bytes, same model and same parameters give the same result
+                    updateUI(() -> tvStatus.setText("Checking previous analyses..."));
+                    long t0 = System.nanoTime();
+                    String cacheKey = computeCacheKey(fileUri);
+                    AnalysisCache cache = getAnalysisCache();
+                    if (cacheKey != null && cache != null) {
+                        AnalysisResult cached = cache.get(cacheKey);
+                        if (cached != null) {
+                            Log.d(TAG, "Cache hit in " + (System.nanoTime() - t0) / 1_000_000 + " ms");
+                            if (cached.hrv == null) {
+                                cached.computeHrv();
+                            }
+                            if (isFragmentActive.get()) {
+                                displayResults(cached, findRhythmEvents(cached), fileUri, true);
+                            }
+                            return;
+                        }
                     }
 
-                    // Parse ECG values
-                    updateUI(() -> tvStatus.setText("Parsing ECG data..."));
-                    List<Double> ecgValues = parseECGValuesFromContent(fileContent);
-                    Log.d(TAG, "Parsed " + ecgValues.size() + " ECG values");
+                    // Read and parse ECG values in one streaming pass
+                    updateUI(() -> tvStatus.setText("Reading file..."));
+                    StreamingSampleParser.Result parsed = readECGValues(fileUri);
+                    Log.d(TAG, "Parsed " + parsed.count + " ECG values (" + parsed.format + ", "
+                            + parsed.skippedLines + " lines skipped)");
 
-                    if (ecgValues.isEmpty()) {
+                    if (parsed.count == 0) {
                         throw new Exception("No valid ECG data found. Please check the file format.");
                     }
 
                     // Preprocess data
                     updateUI(() -> tvStatus.setText("Preprocessing signal..."));
-                    float[] processedData = preprocessECGData(ecgValues);
+                    float[] processedData = preprocessECGData(parsed.toArray());
 
                     // Analyze data
                     updateUI(() -> tvStatus.setText("Analyzing heartbeats..."));
-                    List<ECGClassifier.BeatClassification> results = analyzeECGData(processedData);
+                    ECGPreprocessor.ProcessedECGData beats =
+                            new ECGPreprocessor().processSamples(processedData, processedData.length);
+                    List<BeatClassification> results = analyzeECGData(beats);
+                    AnalysisResult result = AnalysisResult.fromBeats(results, beats.rejectedPeakIndices,
+                            parsed.count, ECGPreprocessor.DEFAULT_SAMPLE_RATE);
+                    result.computeHrv();
+                    if (cacheKey != null && cache != null) {
+                        cache.put(cacheKey, result);
+                    }
 
                     // Display results
                     if (isFragmentActive.get()) {
-                        updateUI(() -> displayResults(results, fileUri, ecgValues.size()));
+                        displayResults(result, findRhythmEvents(result), fileUri, false);
                     }
 
+                } catch (CancellationException e) {
+                    Log.d(TAG, "ECG processing cancelled");
                 } catch (Exception e) {
                     Log.e(TAG, "ECG processing error", e);
                     if (isFragmentActive.get()) {
                         updateUI(() -> {
                             setLoadingState(false);
-                            isProcessing = false;
+                            isProcessing.set(false);
                             tvStatus.setText("❌ Processing Failed");
                             resultsTextView.setText("Error processing file:\n" + e.getMessage() +
                                     "\n\nPlease ensure:\n• File is a valid CSV with numeric values\n• File is not corrupted\n• Try selecting the file again");
@@ -374,40 +447,96 @@
                         });
                     }
                 } finally {
-                    isProcessing = false;
+                    isProcessing.set(false);
                 }
-            }).start();
+            };
+            try {
+                TaskScheduler.getInstance().submit(TaskScheduler.Pool.CPU, TaskScheduler.Priority.BATCH,
+                        this, "file-analysis", analysis);
+            } catch (RejectedExecutionException e) {
+                isProcessing.set(false);
+                setLoadingState(false);
+                updateUI(() -> tvStatus.setText("Busy, try again shortly"));
+            }
         }
 
-        private String readFileContent(Uri fileUri) throws Exception {
-            StringBuilder content = new StringBuilder();
-            try (InputStream inputStream = requireActivity().getContentResolver().openInputStream(fileUri);
-                 BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream))) {
+        /**
+         * Streams the file once through XXH64. Returns null if the file cannot be read, in which
+         * case the analysis simply runs uncached.
+         */
+        private String computeCacheKey(Uri fileUri) {
+            try (InputStream stream = requireActivity().getContentResolver().openInputStream(fileUri)) {
+                if (stream == null) return null;
+                return AnalysisCache.keyFor(XxHash64.hash(stream));
+            } catch (Exception e) {
+                Log.w(TAG, "Could not hash file for caching: " + e.getMessage());
+                return null;
+            }
+        }
 
-                if (inputStream == null) {
-                    Log.e(TAG, "Input stream is null. The file cannot be opened from the provided URI.");
-                    throw new Exception("Cannot open file stream");
-                }
+        private synchronized AnalysisCache getAnalysisCache() {
+            if (analysisCache == null && ecgClassifier != null && getActivity() != null) {
+                analysisCache = new AnalysisCache(
+                        new File(getActivity().getCacheDir(), "analysis"),
+                        ecgClassifier.getModelVersion(),
+                        ECGPreprocessor.getParameterKey() + ";" + FRAGMENT_PREPROCESSING_KEY,
+                        AnalysisCache.DEFAULT_MAX_BYTES);
+            }
+            return analysisCache;
+        }
 
-                String line;
-                int lineCount = 0;
-                while ((line = reader.readLine()) != null) {
-                    lineCount++;
-                    content.append(line).append("\n");
+        /**
+         * Streams the file through {@link StreamingSampleParser}, reporting progress as a
+         * percentage when the provider knows the file size. Uses the file descriptor's channel
+         * when the provider offers one, otherwise wraps the plain input stream.
+         */
+        private StreamingSampleParser.Result readECGValues(Uri fileUri) throws Exception {
+            StreamingSampleParser parser = new StreamingSampleParser();
+            activeParser = parser;
+            try {
+                ContentResolver resolver = requireActivity().getContentResolver();
+                ParcelFileDescriptor descriptor = null;
+                try {
+                    descriptor = resolver.openFileDescriptor(fileUri, "r");
+                } catch (FileNotFoundException e) {
+                    Log.d(TAG, "No file descriptor for " + fileUri + ", falling back to a stream");
                 }
 
-                Log.d(TAG, "Read " + lineCount + " lines from file");
-                return content.toString();
+                if (descriptor != null) {
+                    long totalBytes = descriptor.getStatSize();
+                    parser.setProgressListener((read, total) -> updateReadProgress(read, total));
+                    try (FileInputStream stream = new FileInputStream(descriptor.getFileDescriptor());
+                         FileChannel channel = stream.getChannel()) {
+                        return parser.parse(channel, totalBytes);
+                    } finally {
+                        descriptor.close();
+                    }
+                }
 
+                try (InputStream stream = resolver.openInputStream(fileUri)) {
+                    if (stream == null) {
+                        Log.e(TAG, "Input stream is null. The file cannot be opened from the provided URI.");
+                        throw new Exception("Cannot open file stream");
+                    }
+                    return parser.parse(Channels.newChannel(stream), -1);
+                }
             } catch (SecurityException e) {
                 Log.e(TAG, "Security exception reading file.", e);
                 throw new Exception("Permission denied to read the file");
-            } catch (Exception e) {
+            } catch (IOException e) {
                 Log.e(TAG, "Error reading file content", e);
                 throw new Exception("Error reading file: " + e.getMessage());
+            } finally {
+                activeParser = null;
             }
         }
 
+        private void updateReadProgress(long bytesRead, long totalBytes) {
+            if (totalBytes <= 0) return;
+            int percent = (int) Math.min(100, bytesRead * 100 / totalBytes);
+            updateUI(() -> tvStatus.setText("Reading file... " + percent + "%"));
+        }
+
         private void logFileInfo(Uri fileUri) {
             try {
                 Log.d(TAG, "=== FILE INFO ===");
@@ -432,117 +561,144 @@
             }
         }
 
-        private List<Double> parseECGValuesFromContent(String content) {
-            List<Double> values = new ArrayList<>();
-            String[] lines = content.split("\n");
-            boolean headerSkipped = false;
-
-            for (int i = 0; i < lines.length; i++) {
-                String line = lines[i].trim();
-
-                if (line.isEmpty()) {
-                    continue;
-                }
+        /**
+         * Min-max scales the raw values to [0, 1] in place.
+         */
+        private float[] preprocessECGData(float[] values) {
+            float min = Float.MAX_VALUE;
+            float max = -Float.MAX_VALUE;
+            for (float value : values) {
+                if (value < min) min = value;
+                if (value > max) max = value;
+            }
 
-                if (!headerSkipped && isHeaderLine(line)) {
-                    Log.d(TAG, "Skipping header line: " + line);
-                    headerSkipped = true;
-                    continue;
-                }
+            float range = max - min;
+            if (range == 0) range = 1;
 
-                try {
-                    Double value = parseLineToDouble(line);
-                    if (value != null) {
-                        values.add(value);
-                    }
-                } catch (Exception e) {
-                    Log.w(TAG, "Skipping line " + (i + 1) + ": " + line);
-                }
+            for (int i = 0; i < values.length; i++) {
+                values[i] = (values[i] - min) / range;
             }
+
+            Log.d(TAG, "Normalized ECG data: min=" + min + ", max=" + max);
             return values;
         }
 
-        private boolean isHeaderLine(String line) {
-            String lowerLine = line.toLowerCase();
-            return lowerLine.contains("ecg") ||
-                    lowerLine.contains("value") ||
-                    lowerLine.contains("time") ||
-                    !line.matches(".*\\d+.*");
+        /**
+         * Runs the model on the shared inference pool, so live classification can still go first.
+         */
+        private List<BeatClassification> analyzeECGData(ECGPreprocessor.ProcessedECGData beats)
+                throws InterruptedException {
+            return classifyOnInferencePool(beats.normalizedBeats, beats.rPeakIndices);
         }
 
-        private Double parseLineToDouble(String line) {
+        private List<BeatClassification> classifyOnInferencePool(List<float[]> beats, List<Integer> peaks)
+                throws InterruptedException {
+            ECGClassifier classifier = ecgClassifier;
+            if (classifier == null) {
+                throw new IllegalStateException("ECG classifier not available");
+            }
+            TaskScheduler.Task<List<BeatClassification>> task = TaskScheduler.getInstance().submit(
+                    TaskScheduler.Pool.INFERENCE, TaskScheduler.Priority.BATCH, this, "file-inference",
+                    () -> classifier.classifyBeats(beats, peaks));
             try {
-                String[] parts = line.split("[,\\s;]");
-                for (String part : parts) {
-                    String cleanPart = part.trim()
-                            .replace("\"", "")
-                            .replace(",", ".");
-                    if (!cleanPart.isEmpty()) {
-                        try {
-                            return Double.parseDouble(cleanPart);
-                        } catch (NumberFormatException e) {
-                            // Continue to the next part
-                        }
-                    }
-                }
-                return null;
-            } catch (Exception e) {
-                Log.w(TAG, "Cannot parse as double: " + line);
-                return null;
+                return task.get();
+            } catch (InterruptedException e) {
+                task.cancel(true);
+                throw e;
+            } catch (ExecutionException e) {
+                Log.e(TAG, "ECG analysis error", e.getCause());
+                throw new RuntimeException("Analysis failed: " + e.getCause().getMessage());
             }
         }
 
-        private float[] preprocessECGData(List<Double> rawValues) {
-            float[] processed = new float[rawValues.size()];
-
-            double min = Double.MAX_VALUE;
-            double max = Double.MIN_VALUE;
-            for (double value : rawValues) {
-                if (value < min) min = value;
-                if (value > max) max = value;
+        /**
+         * Walks a binary recording window by window through {@link WindowedAnalyzer}, so memory
+         * stays flat however long it is. Beats are written to
+         * {@code <external files>/analysis/<file>.beats} as they are classified rather than
+         * collected, and only the totals are shown.
+         */
+        private void analyzeBinaryRecording(Uri fileUri) throws Exception {
+            File directory = requireActivity().getExternalFilesDir("analysis");
+            if (directory == null) directory = new File(requireActivity().getFilesDir(), "analysis");
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Cannot create " + directory);
             }
-
-            double range = max - min;
-            if (range == 0) range = 1;
-
-            for (int i = 0; i < rawValues.size(); i++) {
-                processed[i] = (float) ((rawValues.get(i) - min) / range);
+            File resultsFile = new File(directory, getFileNameFromUri(fileUri) + ".beats");
+
+            WindowedAnalyzer analyzer = new WindowedAnalyzer();
+            activeWindowedAnalyzer = analyzer;
+            updateUI(() -> tvStatus.setText("Analyzing recording..."));
+            try (ParcelFileDescriptor descriptor = requireActivity().getContentResolver().openFileDescriptor(fileUri, "r");
+                 FileInputStream stream = new FileInputStream(descriptor.getFileDescriptor());
+                 FileChannel channel = stream.getChannel();
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(resultsFile)))) {
+                BinaryRecording recording = BinaryRecording.open(channel);
+                WindowedAnalyzer.Summary summary = analyzer.analyze(recording, this::classifyOnInferencePool, out,
+                        (done, total) -> {
+                            int percent = (int) (done * 100 / Math.max(1, total));
+                            updateUI(() -> tvStatus.setText("Analyzing recording... " + percent + "%"));
+                        });
+                if (isFragmentActive.get()) {
+                    updateUI(() -> displayWindowedResults(summary, fileUri, resultsFile));
+                }
+            } catch (FileNotFoundException e) {
+                throw new Exception("Cannot open file: " + e.getMessage());
+            } finally {
+                activeWindowedAnalyzer = null;
             }
-
-            Log.d(TAG, "Normalized ECG data: min=" + min + ", max=" + max);
-            return processed;
         }
 
-        private List<ECGClassifier.BeatClassification> analyzeECGData(float[] ecgData) {
-            if (ecgClassifier == null) {
-                throw new IllegalStateException("ECG classifier not available");
+        private void displayWindowedResults(WindowedAnalyzer.Summary summary, Uri fileUri, File resultsFile) {
+            setLoadingState(false);
+            isProcessing.set(false);
+            if (!isFragmentActive.get()) return;
+
+            long normalBeats = summary.countOfType(BeatTypes.BEAT_TYPE_NORMAL);
+            long abnormalBeats = summary.beatCount - normalBeats;
+            StringBuilder text = new StringBuilder();
+            text.append("ECG ANALYSIS RESULTS\n");
+            text.append("File: ").append(getFileNameFromUri(fileUri)).append("\n");
+            text.append(String.format(java.util.Locale.US, "Duration: %.1f h (%d samples at %d Hz)\n",
+                    summary.totalSamples / (3600f * summary.sampleRate), summary.totalSamples, summary.sampleRate));
+            text.append("Total beats analyzed: ").append(summary.beatCount).append("\n");
+            if (summary.meanHeartRate > 0) {
+                text.append(String.format(java.util.Locale.US, "Heart rate: %.0f BPM (min %.0f, max %.0f)\n",
+                        summary.meanHeartRate, summary.minHeartRate, summary.maxHeartRate));
             }
-            try {
-                String csvContent = convertToCSVFormat(ecgData);
-                InputStream stream = new java.io.ByteArrayInputStream(csvContent.getBytes());
-                List<ECGClassifier.BeatClassification> results = ecgClassifier.classifyCSVData(stream);
-                stream.close();
-                return results;
-            } catch (Exception e) {
-                Log.e(TAG, "ECG analysis error", e);
-                throw new RuntimeException("Analysis failed: " + e.getMessage());
+            if (summary.skippedBeats > 0) {
+                text.append("Skipped ").append(summary.skippedBeats).append(" low-quality beats\n");
             }
-        }
-
-        private String convertToCSVFormat(float[] ecgData) {
-            StringBuilder csv = new StringBuilder();
-            for (int i = 0; i < ecgData.length; i++) {
-                csv.append(i * 0.004).append(",").append(ecgData[i]).append("\n");
+            text.append("\n");
+            for (int type = BeatTypes.BEAT_TYPE_NORMAL; type <= BeatTypes.BEAT_TYPE_PREMATURE_VENTRICULAR; type++) {
+                text.append(getBeatTypeDescription(type)).append(": ").append(summary.countOfType(type)).append("\n");
+            }
+            if (summary.hrv != null && summary.hrv.nnCount > 1) {
+                text.append("\nHRV: ").append(summary.hrv).append("\n");
             }
-            return csv.toString();
+            text.append("\nPer-beat results: ").append(resultsFile.getAbsolutePath()).append("\n");
+
+            updateUI(() -> {
+                resultsTextView.setText(text.toString());
+                tvStatus.setText("✅ Analysis Complete!");
+                tvNormalBeats.setText("Normal: " + normalBeats);
+                tvAbnormalBeats.setText("Abnormal: " + abnormalBeats);
+                tvTotalBeats.setText("Total: " + summary.beatCount);
+            });
         }
 
-        private void displayResults(List<ECGClassifier.BeatClassification> results, Uri fileUri, int totalSamples) {
+        /**
+         * Builds the results text on the calling analysis thread and posts only the finished text
+         * to the views.
+         */
+        private void displayResults(AnalysisResult analysis, List<ArrhythmiaEvent> events,
+                                    Uri fileUri, boolean fromCache) {
             setLoadingState(false);
-            isProcessing = false;
+            isProcessing.set(false);
             if (!isFragmentActive.get()) return;
 
-            if (results == null || results.isEmpty()) {
+            int totalSamples = analysis.totalSamples;
+            int beatCount = analysis.getBeatCount();
+            if (beatCount == 0) {
                 String message = "No heartbeats detected in the ECG signal.\n\nPossible reasons:\n" +
                         "• Signal may be too noisy\n" +
                         "• Sampling rate may be incorrect\n" +
@@ -563,23 +719,42 @@
             StringBuilder detailedResults = new StringBuilder();
             detailedResults.append("--- Detailed Results ---\n");
 
-            for (ECGClassifier.BeatClassification beat : results) {
-                String beatType = getBeatTypeDescription(beat.type);
-                detailedResults.append("Beat detected at index ").append(beat.beatIndex)
-                        .append(": ").append(beatType).append("\n");
-                if (beat.type == ECGClassifier.BEAT_TYPE_NORMAL) {
+            for (int i = 0; i < beatCount; i++) {
+                if (i < MAX_LISTED_BEATS) {
+                    detailedResults.append("Beat detected at index ").append(analysis.beatIndices[i])
+                            .append(": ").append(getBeatTypeDescription(analysis.types[i])).append("\n");
+                }
+                if (analysis.types[i] == BeatTypes.BEAT_TYPE_NORMAL) {
                     normalBeats++;
                 } else {
                     abnormalBeats++;
                 }
             }
+            if (beatCount > MAX_LISTED_BEATS) {
+                detailedResults.append("... and ").append(beatCount - MAX_LISTED_BEATS).append(" more beats\n");
+            }
             int totalBeats = normalBeats + abnormalBeats;
 
             StringBuilder finalResult = new StringBuilder();
             finalResult.append("ECG ANALYSIS RESULTS\n");
             finalResult.append("File: ").append(getFileNameFromUri(fileUri)).append("\n");
             finalResult.append("Total samples: ").append(totalSamples).append("\n");
-            finalResult.append("Total beats analyzed: ").append(totalBeats).append("\n\n");
+            finalResult.append("Total beats analyzed: ").append(totalBeats).append("\n");
+            if (analysis.meanHeartRate > 0) {
+                finalResult.append(String.format(java.util.Locale.US, "Heart rate: %.0f BPM (min %.0f, max %.0f)\n",
+                        analysis.meanHeartRate, analysis.minHeartRate, analysis.maxHeartRate));
+            }
+            int skipped = analysis.skippedBeatIndices.length;
+            if (skipped > 0) {
+                long savedNanos = ecgClassifier != null ? skipped * ecgClassifier.getAverageNanosPerBeat() : 0;
+                finalResult.append(String.format(java.util.Locale.US,
+                        "Skipped %d low-quality beats (%.0f%%), ~%.0f ms inference saved\n",
+                        skipped, 100f * skipped / (skipped + analysis.getBeatCount()), savedNanos / 1e6));
+            }
+            if (fromCache) {
+                finalResult.append("(Loaded from a previous analysis of this file)\n");
+            }
+            finalResult.append("\n");
             finalResult.append("Normal beats: ").append(normalBeats).append("\n");
             finalResult.append("Abnormal beats: ").append(abnormalBeats).append("\n\n");
             if (abnormalBeats > 0) {
@@ -589,12 +764,25 @@
                 finalResult.append("✅ **No Abnormalities Detected** ✅\n");
                 finalResult.append("The analyzed signal appears to have a normal rhythm.\n");
             }
+
+            if (analysis.hrv != null && analysis.hrv.nnCount > 1) {
+                finalResult.append("\nHRV: ").append(analysis.hrv).append("\n");
+            }
+
+            if (!events.isEmpty()) {
+                finalResult.append("\nRhythm events:\n");
+                for (ArrhythmiaEvent event : events) {
+                    finalResult.append(String.format(java.util.Locale.US, "• %s at %.1f s\n",
+                            event.getDescription(), event.onsetSample / (float) analysis.sampleRate));
+                }
+            }
             finalResult.append("\n\n").append(detailedResults);
 
+            String text = finalResult.toString();
             int finalNormalBeats = normalBeats;
             int finalAbnormalBeats = abnormalBeats;
             updateUI(() -> {
-                resultsTextView.setText(finalResult.toString());
+                resultsTextView.setText(text);
                 tvStatus.setText("✅ Analysis Complete!");
                 tvNormalBeats.setText("Normal: " + finalNormalBeats);
                 tvAbnormalBeats.setText("Abnormal: " + finalAbnormalBeats);
@@ -602,19 +790,51 @@
             });
         }
 
+        /**
+         * Replays the classified beats through the same event engine used in live mode, starting
+         * over after skipped beats as live mode does. Runs in the analysis task.
+         */
+        private List<ArrhythmiaEvent> findRhythmEvents(AnalysisResult analysis) {
+            int[] skippedBeatIndices = analysis.skippedBeatIndices;
+            List<ArrhythmiaEvent> events = new ArrayList<>();
+            ArrhythmiaEventEngine engine = new ArrhythmiaEventEngine(analysis.sampleRate, new ArrhythmiaEventEngine.Listener() {
+                @Override
+                public void onEventStarted(ArrhythmiaEvent event) {
+                    events.add(event);
+                }
+
+                @Override
+                public void onEventEnded(ArrhythmiaEvent event) {
+                }
+            });
+            int nextSkipped = 0;
+            for (int i = 0; i < analysis.getBeatCount(); i++) {
+                int index = analysis.beatIndices[i];
+                boolean gap = false;
+                while (nextSkipped < skippedBeatIndices.length && skippedBeatIndices[nextSkipped] < index) {
+                    nextSkipped++;
+                    gap = true;
+                }
+                if (gap) engine.reset();
+                engine.onBeat(index, analysis.types[i], -1);
+            }
+            engine.finish();
+            return events;
+        }
+
         private String getBeatTypeDescription(int beatType) {
             switch (beatType) {
-                case ECGClassifier.BEAT_TYPE_NORMAL:
+                case BeatTypes.BEAT_TYPE_NORMAL:
                     return "Normal Beat (N)";
-                case ECGClassifier.BEAT_TYPE_LEFT_BUNDLE_BRANCH_BLOCK:
+                case BeatTypes.BEAT_TYPE_LEFT_BUNDLE_BRANCH_BLOCK:
                     return "Supraventricular Ectopic Beat (L)";
-                case ECGClassifier.BEAT_TYPE_RIGHT_BUNDLE_BRANCH_BLOCK:
+                case BeatTypes.BEAT_TYPE_RIGHT_BUNDLE_BRANCH_BLOCK:
                     return "Ventricular Ectopic Beat (R)";
-                case ECGClassifier.BEAT_TYPE_ATRIAL_PREMATURE:
+                case BeatTypes.BEAT_TYPE_ATRIAL_PREMATURE:
                     return "Fusion Beat (A)";
-                case ECGClassifier.BEAT_TYPE_PREMATURE_VENTRICULAR:
+                case BeatTypes.BEAT_TYPE_PREMATURE_VENTRICULAR:
                     return "Fusion Beat (V)";
-                case ECGClassifier.BEAT_TYPE_UNKNOWN:
+                case BeatTypes.BEAT_TYPE_UNKNOWN:
                     return "Fusion Beat (U)";
                 default:
                     return "Unknown/Unclassified Beat (Q)";
@@ -639,23 +859,173 @@
             }
         }
 
-        private void startDemoRealTimeMode() {
+        /**
+         * Classifies beats from the recording running on the Data tab as they arrive.
+         */
+        private void startRealTimeMode() {
+            if (ecgClassifier == null) {
+                Toast.makeText(getContext(), "Classifier is still loading", Toast.LENGTH_SHORT).show();
+                return;
+            }
+
+            liveNormalBeats = 0;
+            liveAbnormalBeats = 0;
+            liveBeatLog.setLength(0);
+            LiveECGStream stream = LiveECGStream.getInstance();
+            int sampleRate = stream.getSampleRate();
+            liveEventEngine = new ArrhythmiaEventEngine(sampleRate, new ArrhythmiaEventEngine.Listener() {
+                @Override
+                public void onEventStarted(ArrhythmiaEvent event) {
+                    logLiveLine("⚠ " + event.getDescription() + " detected in "
+                            + event.detectionLatencyNanos / 1_000_000 + " ms");
+                }
+
+                @Override
+                public void onEventEnded(ArrhythmiaEvent event) {
+                    if (event.offsetSample != event.onsetSample && event.type != ArrhythmiaEvent.Type.COUPLET) {
+                        logLiveLine("  " + event.getDescription() + " ended");
+                    }
+                }
+            });
+            long windowDelayNanos = StreamingBeatDetector.windowDelayNanos(sampleRate);
+            LiveBeatClassifier classifier = new LiveBeatClassifier(ecgClassifier::classifyBeats,
+                    ecgClassifier.getBatchSize(), sampleRate,
+                    new LiveBeatClassifier.Listener() {
+                        @Override
+                        public void onBeatClassified(BeatClassification beat, long latencyNanos) {
+                            onLiveBeat(beat, latencyNanos, windowDelayNanos);
+                        }
+
+                        @Override
+                        public void onBeatSkipped(long peakIndex, SignalQualityIndex.Issue issue) {
+                            onLiveBeatSkipped(peakIndex, issue);
+                        }
+                    });
+            liveStreamListener = new LiveECGStream.Listener() {
+                @Override
+                public void onStreamStarted(int sampleRate) {
+                    classifier.resetStream();
+                    updateUI(() -> tvStatus.setText("🔴 Live classification running"));
+                }
+
+                @Override
+                public void onSample(int ecgValue, boolean leadOff) {
+                    classifier.addSample(ecgValue, leadOff);
+                }
+
+                @Override
+                public void onStreamStopped() {
+                    updateUI(() -> tvStatus.setText("Live: recording stopped"));
+                }
+            };
+            liveClassifier = classifier;
+            classifier.start();
+
+            btnRealTime.setText("Stop Real-time");
+            tvStatus.setText(stream.isActive() ? "🔴 Live classification running" : "Live: waiting for a recording");
+            resultsTextView.setText("Start a recording on the Data tab. Beats are classified as they arrive, "
+                    + "each within " + classifier.getLatencyBudgetMs() + " ms of its window completing.");
+            stream.addListener(liveStreamListener);
+        }
+
+        private void stopRealTimeMode() {
+            if (liveStreamListener != null) {
+                LiveECGStream.getInstance().removeListener(liveStreamListener);
+                liveStreamListener = null;
+            }
+            if (liveClassifier != null) {
+                liveClassifier.stop();
+                Log.d(TAG, "Live classification: " + liveClassifier.getSummary());
+                liveClassifier = null;
+            }
+            if (liveEventEngine != null) {
+                liveEventEngine.finish();
+                Log.d(TAG, "Live events: " + liveEventEngine.getDetectionLatency().summary());
+                liveEventEngine = null;
+            }
+            if (btnRealTime != null) {
+                updateUI(() -> btnRealTime.setText("Real-time Mode"));
+            }
+        }
+
+        private void onLiveBeat(BeatClassification beat, long latencyNanos, long windowDelayNanos) {
+            LiveBeatClassifier classifier = liveClassifier;
+            if (classifier == null) return;
+
+            if (beat.type == BeatTypes.BEAT_TYPE_NORMAL) {
+                liveNormalBeats++;
+            } else {
+                liveAbnormalBeats++;
+            }
+            logLiveLine(String.format(java.util.Locale.US, "Beat @%d: %s (%.0f%%) in %d ms",
+                    beat.beatIndex, beat.getTypeCode(), beat.confidence * 100, latencyNanos / 1_000_000));
+            ArrhythmiaEventEngine engine = liveEventEngine;
+            if (engine != null) {
+                engine.onBeat(beat.beatIndex, beat.type, System.nanoTime() - latencyNanos - windowDelayNanos);
+            }
+            showLiveStatus(classifier);
+        }
+
+        /**
+         * A beat too noisy to classify leaves a hole in the rhythm, so rhythm rules start over
+         * rather than reading it as a pause.
+         */
+        private void onLiveBeatSkipped(long peakIndex, SignalQualityIndex.Issue issue) {
+            LiveBeatClassifier classifier = liveClassifier;
+            if (classifier == null) return;
+
+            logLiveLine("Beat @" + peakIndex + ": skipped, " + issue.name().toLowerCase(java.util.Locale.US).replace('_', ' '));
+            ArrhythmiaEventEngine engine = liveEventEngine;
+            if (engine != null) {
+                engine.reset();
+            }
+            showLiveStatus(classifier);
+        }
+
+        private void showLiveStatus(LiveBeatClassifier classifier) {
+            LatencyHistogram latency = classifier.getLatencyHistogram();
+            String text = String.format(java.util.Locale.US,
+                    "LIVE CLASSIFICATION\nLatency p50 %.0f ms, p99 %.0f ms (budget %d ms, %d over)\nSignal quality: %s\n\n%s",
+                    latency.getPercentileNanos(50) / 1e6, latency.getPercentileNanos(99) / 1e6,
+                    classifier.getLatencyBudgetMs(), classifier.getDeadlineMisses(),
+                    classifier.getSignalQuality().summary(ecgClassifier != null ? ecgClassifier.getAverageNanosPerBeat() : 0),
+                    liveBeatLog);
+            int normal = liveNormalBeats;
+            int abnormal = liveAbnormalBeats;
             updateUI(() -> {
-                tvStatus.setText("Real-time ECG Demo");
-                resultsTextView.setText("Real-time ECG Monitoring\n\nThis would connect to:\n• ECG sensor via Bluetooth\n• Chest strap monitor\n• Handheld ECG device\n\nFeature coming soon!");
+                tvNormalBeats.setText("Normal: " + normal);
+                tvAbnormalBeats.setText("Abnormal: " + abnormal);
+                tvTotalBeats.setText("Total: " + (normal + abnormal));
+                resultsTextView.setText(text);
             });
         }
 
+        /**
+         * Newest-first log shown in live mode, trimmed to a screenful.
+         */
+        private void logLiveLine(String line) {
+            liveBeatLog.insert(0, line + "\n");
+            if (liveBeatLog.length() > 2000) {
+                liveBeatLog.setLength(liveBeatLog.lastIndexOf("\n", 2000) + 1);
+            }
+        }
+
         private void cleanupResources() {
             isFragmentActive.set(false);
-            isProcessing = false;
+            isProcessing.set(false);
             currentFileUri = null;
-            if (ecgClassifier != null) {
-                try {
-                    ecgClassifier.close();
-                } catch (Exception e) {
-                    Log.w(TAG, "Error closing classifier", e);
-                }
+            StreamingSampleParser parser = activeParser;
+            if (parser != null) {
+                parser.cancel();
+            }
+            WindowedAnalyzer windowed = activeWindowedAnalyzer;
+            if (windowed != null) {
+                windowed.cancel();
             }
+            stopRealTimeMode();
+            TaskScheduler.getInstance().cancelAll(this);
+            // The classifier is shared and stays loaded; just stop listening for it
+            ClassifierHolder.getInstance().removeListener(this);
+            ecgClassifier = null;
         }
     }
\ No newline at end of file
@@ -0,0 +1,151 @@
+package com.example.myapplication;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * On-disk cache of {@link AnalysisResult}s keyed by content, not by file name: the key is the
+ * XXH64 of the recording bytes, and every entry lives under a namespace made of the model
+ * version and the preprocessing parameters. Entries from any other namespace are deleted when
+ * the cache is opened, so a new model or changed parameters invalidate old results. Files are
+ * evicted least-recently-used first (by last-modified time, which reads refresh) once the
+ * cache exceeds its size budget.
+ */
+public class AnalysisCache {
+    public static final long DEFAULT_MAX_BYTES = 8L * 1024 * 1024;
+    private static final String SUFFIX = ".bin";
+
+    private static final Metrics.Counter HITS = Metrics.getInstance().counter("cache_hits");
+    private static final Metrics.Counter MISSES = Metrics.getInstance().counter("cache_misses");
+    private static final LatencyHistogram READ_TIME = Metrics.getInstance().histogram("cache_read");
+    private static final LatencyHistogram WRITE_TIME = Metrics.getInstance().histogram("cache_write");
+
+    private final File directory;
+    private final String namespace;
+    private final long maxBytes;
+
+    public AnalysisCache(File directory, String modelVersion, String preprocessingKey, long maxBytes) {
+        this.directory = directory;
+        this.namespace = sanitize(modelVersion) + "-" + Long.toHexString(hashString(preprocessingKey));
+        this.maxBytes = maxBytes;
+
+        if (!directory.exists() && !directory.mkdirs()) {
+            return;
+        }
+        purgeStaleEntries();
+    }
+
+    /**
+     * Cache key for a recording, from its bytes.
+     */
+    public static String keyFor(long contentHash) {
+        return Long.toHexString(contentHash);
+    }
+
+    public AnalysisResult get(String key) {
+        File file = fileFor(key);
+        if (!file.exists()) {
+            MISSES.increment();
+            return null;
+        }
+
+        long t0 = System.nanoTime();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            AnalysisResult result = AnalysisResult.readFrom(in);
+            file.setLastModified(System.currentTimeMillis());
+            READ_TIME.record(System.nanoTime() - t0);
+            HITS.increment();
+            return result;
+        } catch (IOException e) {
+            file.delete(); // corrupt or from an old format
+            MISSES.increment();
+            return null;
+        }
+    }
+
+    public void put(String key, AnalysisResult result) {
+        File file = fileFor(key);
+        File temp = new File(directory, file.getName() + ".tmp");
+
+        long t0 = System.nanoTime();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            result.writeTo(out);
+        } catch (IOException e) {
+            temp.delete();
+            return;
+        }
+
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            return;
+        }
+        evictToBudget();
+        WRITE_TIME.record(System.nanoTime() - t0);
+    }
+
+    public void clear() {
+        File[] files = directory.listFiles();
+        if (files == null) return;
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    private File fileFor(String key) {
+        return new File(directory, namespace + "_" + key + SUFFIX);
+    }
+
+    private void purgeStaleEntries() {
+        File[] files = directory.listFiles();
+        if (files == null) return;
+        for (File file : files) {
+            if (!file.getName().startsWith(namespace + "_")) {
+                file.delete();
+            }
+        }
+    }
+
+    private synchronized void evictToBudget() {
+        File[] files = directory.listFiles();
+        if (files == null) return;
+
+        long total = 0;
+        for (File file : files) {
+            total += file.length();
+        }
+        if (total <= maxBytes) return;
+
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Long.compare(a.lastModified(), b.lastModified());
+            }
+        });
+        for (File file : files) {
+            if (total <= maxBytes) break;
+            long length = file.length();
+            if (file.delete()) {
+                total -= length;
+            }
+        }
+    }
+
+    private static String sanitize(String value) {
+        return value.replaceAll("[^A-Za-z0-9]", "");
+    }
+
+    private static long hashString(String value) {
+        byte[] bytes = value.getBytes();
+        XxHash64 hash = new XxHash64();
+        hash.update(bytes, 0, bytes.length);
+        return hash.digest();
+    }
+}
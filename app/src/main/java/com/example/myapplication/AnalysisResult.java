@@ -0,0 +1,196 @@
+package com.example.myapplication;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of analyzing one recording: per-beat sample index, class and confidence, stored as
+ * primitive arrays, plus heart-rate statistics derived from the beat spacing and, once
+ * {@link #computeHrv()} has run, HRV.
+ */
+public class AnalysisResult {
+    private static final int FORMAT_VERSION = 3;
+
+    public int totalSamples;
+    public int sampleRate;
+    public int[] beatIndices = new int[0];
+    public int[] types = new int[0];
+    public float[] confidences = new float[0];
+    // R-peaks left out of classification by the signal quality gate
+    public int[] skippedBeatIndices = new int[0];
+
+    // Heart rate over the recording, in BPM (0 when fewer than two beats)
+    public float meanHeartRate;
+    public float minHeartRate;
+    public float maxHeartRate;
+
+    // HRV over the classified beats; null until computeHrv()
+    public HrvEngine.Metrics hrv;
+
+    public static AnalysisResult fromBeats(List<BeatClassification> beats,
+                                           int totalSamples, int sampleRate) {
+        return fromBeats(beats, new ArrayList<Integer>(), totalSamples, sampleRate);
+    }
+
+    public static AnalysisResult fromBeats(List<BeatClassification> beats,
+                                           List<Integer> skippedBeatIndices,
+                                           int totalSamples, int sampleRate) {
+        AnalysisResult result = new AnalysisResult();
+        result.totalSamples = totalSamples;
+        result.sampleRate = sampleRate;
+
+        int n = beats.size();
+        result.beatIndices = new int[n];
+        result.types = new int[n];
+        result.confidences = new float[n];
+        for (int i = 0; i < n; i++) {
+            BeatClassification beat = beats.get(i);
+            result.beatIndices[i] = beat.beatIndex;
+            result.types[i] = beat.type;
+            result.confidences[i] = beat.confidence;
+        }
+        result.skippedBeatIndices = new int[skippedBeatIndices.size()];
+        for (int i = 0; i < result.skippedBeatIndices.length; i++) {
+            result.skippedBeatIndices[i] = skippedBeatIndices.get(i);
+        }
+
+        result.computeHeartRate();
+        return result;
+    }
+
+    private void computeHeartRate() {
+        if (beatIndices.length < 2 || sampleRate <= 0) {
+            return;
+        }
+
+        float min = Float.MAX_VALUE;
+        float max = 0f;
+        for (int i = 1; i < beatIndices.length; i++) {
+            int rr = beatIndices[i] - beatIndices[i - 1];
+            if (rr <= 0) continue;
+            float bpm = 60f * sampleRate / rr;
+            if (bpm < min) min = bpm;
+            if (bpm > max) max = bpm;
+        }
+
+        int span = beatIndices[beatIndices.length - 1] - beatIndices[0];
+        meanHeartRate = span > 0 ? 60f * sampleRate * (beatIndices.length - 1) / span : 0f;
+        minHeartRate = max > 0f ? min : 0f;
+        maxHeartRate = max;
+    }
+
+    /**
+     * Computes {@link #hrv} from the beat spacing. Intervals that span a skipped beat are not NN
+     * intervals. This walks every beat of the recording, so run it off the main thread, before
+     * the result is cached.
+     */
+    public HrvEngine.Metrics computeHrv() {
+        HrvEngine engine = new HrvEngine(sampleRate);
+        int nextSkipped = 0;
+        for (int index : beatIndices) {
+            boolean gap = false;
+            while (nextSkipped < skippedBeatIndices.length && skippedBeatIndices[nextSkipped] < index) {
+                nextSkipped++;
+                gap = true;
+            }
+            if (gap) engine.breakSequence();
+            engine.addBeat(index);
+        }
+        hrv = engine.getMetrics();
+        return hrv;
+    }
+
+    public int getBeatCount() {
+        return types.length;
+    }
+
+    public int countOfType(int type) {
+        int count = 0;
+        for (int t : types) {
+            if (t == type) count++;
+        }
+        return count;
+    }
+
+    public List<BeatClassification> toBeatClassifications() {
+        List<BeatClassification> beats = new ArrayList<>(types.length);
+        for (int i = 0; i < types.length; i++) {
+            BeatClassification beat = new BeatClassification();
+            beat.beatIndex = beatIndices[i];
+            beat.type = types[i];
+            beat.confidence = confidences[i];
+            beats.add(beat);
+        }
+        return beats;
+    }
+
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(totalSamples);
+        out.writeInt(sampleRate);
+        out.writeFloat(meanHeartRate);
+        out.writeFloat(minHeartRate);
+        out.writeFloat(maxHeartRate);
+        out.writeInt(types.length);
+        for (int i = 0; i < types.length; i++) {
+            out.writeInt(beatIndices[i]);
+            out.writeByte(types[i]);
+            out.writeFloat(confidences[i]);
+        }
+        out.writeInt(skippedBeatIndices.length);
+        for (int index : skippedBeatIndices) {
+            out.writeInt(index);
+        }
+        out.writeBoolean(hrv != null);
+        if (hrv != null) {
+            out.writeLong(hrv.nnCount);
+            out.writeLong(hrv.rejectedCount);
+            out.writeFloat(hrv.meanNnMs);
+            out.writeFloat(hrv.sdnnMs);
+            out.writeFloat(hrv.rmssdMs);
+            out.writeFloat(hrv.pnn50);
+            out.writeFloat(hrv.windowSdnnMs);
+            out.writeFloat(hrv.windowRmssdMs);
+            out.writeFloat(hrv.windowPnn50);
+            out.writeFloat(hrv.lfPower);
+            out.writeFloat(hrv.hfPower);
+        }
+    }
+
+    public static AnalysisResult readFrom(DataInputStream in) throws IOException {
+        int version = in.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported analysis format: " + version);
+        }
+
+        AnalysisResult result = new AnalysisResult();
+        result.totalSamples = in.readInt();
+        result.sampleRate = in.readInt();
+        result.meanHeartRate = in.readFloat();
+        result.minHeartRate = in.readFloat();
+        result.maxHeartRate = in.readFloat();
+
+        int n = in.readInt();
+        result.beatIndices = new int[n];
+        result.types = new int[n];
+        result.confidences = new float[n];
+        for (int i = 0; i < n; i++) {
+            result.beatIndices[i] = in.readInt();
+            result.types[i] = in.readByte();
+            result.confidences[i] = in.readFloat();
+        }
+        result.skippedBeatIndices = new int[in.readInt()];
+        for (int i = 0; i < result.skippedBeatIndices.length; i++) {
+            result.skippedBeatIndices[i] = in.readInt();
+        }
+        if (in.readBoolean()) {
+            result.hrv = new HrvEngine.Metrics(in.readLong(), in.readLong(), in.readFloat(), in.readFloat(),
+                    in.readFloat(), in.readFloat(), in.readFloat(), in.readFloat(), in.readFloat(),
+                    in.readFloat(), in.readFloat());
+        }
+        return result;
+    }
+}
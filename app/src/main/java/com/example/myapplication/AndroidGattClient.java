@@ -0,0 +1,129 @@
+package com.example.myapplication;
+
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothGatt;
+import android.bluetooth.BluetoothGattCallback;
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.bluetooth.BluetoothGattDescriptor;
+import android.bluetooth.BluetoothGattService;
+import android.bluetooth.BluetoothProfile;
+import android.content.Context;
+import android.util.Log;
+
+import java.util.UUID;
+
+/**
+ * {@link BleTransport.GattClient} on Android's {@link BluetoothGatt}. Callbacks arrive on a
+ * binder thread and are passed straight on.
+ */
+@SuppressWarnings({"deprecation", "MissingPermission"})
+public class AndroidGattClient implements BleTransport.GattClient {
+    private static final String TAG = "AndroidGattClient";
+    // Client Characteristic Configuration descriptor, written to turn notifications on
+    private static final UUID CCCD_UUID = UUID.fromString("00002902-0000-1000-8000-00805f9b34fb");
+
+    private final Context context;
+    private final BluetoothDevice device;
+    private volatile BluetoothGatt gatt;
+    private volatile Callback callback;
+
+    public AndroidGattClient(Context context, BluetoothDevice device) {
+        this.context = context.getApplicationContext();
+        this.device = device;
+    }
+
+    private final BluetoothGattCallback gattCallback = new BluetoothGattCallback() {
+        @Override
+        public void onConnectionStateChange(BluetoothGatt g, int status, int newState) {
+            callback.onConnectionStateChanged(status == BluetoothGatt.GATT_SUCCESS
+                    && newState == BluetoothProfile.STATE_CONNECTED);
+        }
+
+        @Override
+        public void onServicesDiscovered(BluetoothGatt g, int status) {
+            callback.onServicesDiscovered(status == BluetoothGatt.GATT_SUCCESS);
+        }
+
+        @Override
+        public void onMtuChanged(BluetoothGatt g, int mtu, int status) {
+            callback.onMtuChanged(mtu, status == BluetoothGatt.GATT_SUCCESS);
+        }
+
+        @Override
+        public void onDescriptorWrite(BluetoothGatt g, BluetoothGattDescriptor descriptor, int status) {
+            if (CCCD_UUID.equals(descriptor.getUuid())) {
+                callback.onNotificationsEnabled(status == BluetoothGatt.GATT_SUCCESS);
+            }
+        }
+
+        // Newer platforms deliver here through the value-carrying overload's default
+        @Override
+        public void onCharacteristicChanged(BluetoothGatt g, BluetoothGattCharacteristic characteristic) {
+            byte[] value = characteristic.getValue();
+            if (value != null) {
+                callback.onNotification(value.clone());
+            }
+        }
+    };
+
+    @Override
+    public boolean connect(Callback callback) {
+        this.callback = callback;
+        gatt = device.connectGatt(context, false, gattCallback, BluetoothDevice.TRANSPORT_LE);
+        return gatt != null;
+    }
+
+    @Override
+    public boolean discoverServices() {
+        BluetoothGatt current = gatt;
+        return current != null && current.discoverServices();
+    }
+
+    @Override
+    public boolean requestMtu(int mtu) {
+        BluetoothGatt current = gatt;
+        return current != null && current.requestMtu(mtu);
+    }
+
+    @Override
+    public boolean requestConnectionPriority(BleTransport.ConnectionPriority priority) {
+        BluetoothGatt current = gatt;
+        if (current == null) return false;
+        switch (priority) {
+            case LOW_POWER:
+                return current.requestConnectionPriority(BluetoothGatt.CONNECTION_PRIORITY_LOW_POWER);
+            case HIGH:
+                return current.requestConnectionPriority(BluetoothGatt.CONNECTION_PRIORITY_HIGH);
+            default:
+                return current.requestConnectionPriority(BluetoothGatt.CONNECTION_PRIORITY_BALANCED);
+        }
+    }
+
+    @Override
+    public boolean enableNotifications(UUID serviceUuid, UUID characteristicUuid) {
+        BluetoothGatt current = gatt;
+        if (current == null) return false;
+        BluetoothGattService service = current.getService(serviceUuid);
+        BluetoothGattCharacteristic characteristic = service != null ? service.getCharacteristic(characteristicUuid) : null;
+        if (characteristic == null) {
+            Log.e(TAG, "Characteristic " + characteristicUuid + " not found");
+            return false;
+        }
+        BluetoothGattDescriptor descriptor = characteristic.getDescriptor(CCCD_UUID);
+        if (descriptor == null || !current.setCharacteristicNotification(characteristic, true)) {
+            return false;
+        }
+        descriptor.setValue(BluetoothGattDescriptor.ENABLE_NOTIFICATION_VALUE);
+        return current.writeDescriptor(descriptor);
+    }
+
+    @Override
+    public void close() {
+        BluetoothGatt current = gatt;
+        gatt = null;
+        if (current != null) {
+            current.disconnect();
+            current.close();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.myapplication;
+
+import java.util.Locale;
+
+/**
+ * A rhythm event found by {@link ArrhythmiaEventEngine}. Sample indices are on the same scale as
+ * {@link BeatClassification#beatIndex}, so an event can be matched to the beats it
+ * spans. Sustained events are reported when they start, with {@link #offsetSample} -1, and again
+ * when they end.
+ */
+public class ArrhythmiaEvent {
+
+    public enum Type {
+        COUPLET("Couplet"),
+        RUN("Run"),
+        BIGEMINY("Bigeminy"),
+        TRIGEMINY("Trigeminy"),
+        BRADYCARDIA("Bradycardia"),
+        TACHYCARDIA("Tachycardia"),
+        PAUSE("Pause");
+
+        public final String displayName;
+
+        Type(String displayName) {
+            this.displayName = displayName;
+        }
+    }
+
+    public final Type type;
+    // BeatTypes.BEAT_TYPE_* of the ectopic beats involved; BEAT_TYPE_UNKNOWN for rate events
+    public final int beatType;
+    public final long onsetSample;
+    public long offsetSample = -1;
+    public int beatCount;
+    // Mean heart rate over the event, for rate events
+    public float heartRate;
+    // From the onset in the signal to the moment the event was reported
+    public long detectionLatencyNanos;
+
+    public ArrhythmiaEvent(Type type, int beatType, long onsetSample) {
+        this.type = type;
+        this.beatType = beatType;
+        this.onsetSample = onsetSample;
+    }
+
+    public boolean isOngoing() {
+        return offsetSample < 0;
+    }
+
+    public String getDescription() {
+        StringBuilder text = new StringBuilder();
+        if (beatType == BeatTypes.BEAT_TYPE_PREMATURE_VENTRICULAR) {
+            text.append("Ventricular ");
+        } else if (beatType == BeatTypes.BEAT_TYPE_ATRIAL_PREMATURE) {
+            text.append("Atrial ");
+        }
+        text.append(beatType == BeatTypes.BEAT_TYPE_UNKNOWN
+                ? type.displayName : type.displayName.toLowerCase(Locale.US));
+        if (heartRate > 0) {
+            text.append(String.format(Locale.US, " (%.0f BPM)", heartRate));
+        } else if (beatCount > 0) {
+            text.append(" (").append(beatCount).append(" beats)");
+        }
+        return text.toString();
+    }
+
+    @Override
+    public String toString() {
+        return getDescription() + " @" + onsetSample + (isOngoing() ? "-" : "-" + offsetSample);
+    }
+}
@@ -0,0 +1,324 @@
+package com.example.myapplication;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Turns a stream of classified beats into rhythm events as the beats arrive. Each beat updates a
+ * fixed amount of state (run lengths, the gap since the last ectopic beat, a ring of the last few
+ * RR intervals), so the cost per beat is constant however long the recording runs. Ectopic rules
+ * are tracked separately for ventricular and atrial premature beats and events carry the
+ * matching {@code BeatTypes.BEAT_TYPE_*} code. Not thread-safe: feed it from one thread.
+ */
+public class ArrhythmiaEventEngine {
+
+    public interface Listener {
+        void onEventStarted(ArrhythmiaEvent event);
+
+        /**
+         * Called once {@link ArrhythmiaEvent#offsetSample} is known. Couplets and pauses are
+         * started and ended in the same call to {@link #onBeat}.
+         */
+        void onEventEnded(ArrhythmiaEvent event);
+    }
+
+    public static final float DEFAULT_BRADYCARDIA_BPM = 50f;
+    public static final float DEFAULT_TACHYCARDIA_BPM = 100f;
+    // A rate limit must be crossed for this long before it counts as sustained
+    public static final float DEFAULT_SUSTAIN_SECONDS = 10f;
+    public static final float DEFAULT_PAUSE_SECONDS = 2f;
+    // RR intervals averaged for the rate rules
+    private static final int RR_WINDOW = 8;
+    private static final int MIN_RUN_BEATS = 3;
+    // Ectopic beats in a row of the same spacing before bigeminy/trigeminy is reported
+    private static final int MIN_PATTERN_BEATS = 3;
+
+    private final int sampleRate;
+    private final Listener listener;
+    private final float bradycardiaBpm;
+    private final float tachycardiaBpm;
+    private final long sustainSamples;
+    private final long pauseSamples;
+
+    private final EctopyTracker ventricular = new EctopyTracker(BeatTypes.BEAT_TYPE_PREMATURE_VENTRICULAR);
+    private final EctopyTracker atrial = new EctopyTracker(BeatTypes.BEAT_TYPE_ATRIAL_PREMATURE);
+    private final RateTracker bradycardia = new RateTracker(ArrhythmiaEvent.Type.BRADYCARDIA);
+    private final RateTracker tachycardia = new RateTracker(ArrhythmiaEvent.Type.TACHYCARDIA);
+
+    private final long[] rrIntervals = new long[RR_WINDOW];
+    private int rrCount = 0;
+    private int rrNext = 0;
+    private long rrSum = 0;
+
+    private long beatNumber = 0;
+    private long lastPeak = -1;
+    // Current beat's R-peak, and the time it was received (-1 when unknown, e.g. offline)
+    private long currentPeak;
+    private long currentPeakNanos;
+
+    private final LatencyHistogram detectionLatency = new LatencyHistogram("arrhythmia_detection_latency");
+    private final AtomicLongArray eventCounts = new AtomicLongArray(ArrhythmiaEvent.Type.values().length);
+
+    public ArrhythmiaEventEngine(int sampleRate, Listener listener) {
+        this(sampleRate, DEFAULT_BRADYCARDIA_BPM, DEFAULT_TACHYCARDIA_BPM, DEFAULT_SUSTAIN_SECONDS,
+                DEFAULT_PAUSE_SECONDS, listener);
+    }
+
+    public ArrhythmiaEventEngine(int sampleRate, float bradycardiaBpm, float tachycardiaBpm,
+                                 float sustainSeconds, float pauseSeconds, Listener listener) {
+        this.sampleRate = sampleRate;
+        this.listener = listener;
+        this.bradycardiaBpm = bradycardiaBpm;
+        this.tachycardiaBpm = tachycardiaBpm;
+        this.sustainSamples = Math.round(sustainSeconds * sampleRate);
+        this.pauseSamples = Math.round(pauseSeconds * sampleRate);
+    }
+
+    /**
+     * Feeds the next beat. {@code peakNanos} is the {@link System#nanoTime()} at which the R-peak
+     * sample was received, used for detection latency; pass -1 when replaying a recording, in
+     * which case latency counts signal time only.
+     */
+    public void onBeat(long peakSample, int beatType, long peakNanos) {
+        currentPeak = peakSample;
+        currentPeakNanos = peakNanos;
+        long beat = beatNumber++;
+
+        if (lastPeak >= 0) {
+            long rr = peakSample - lastPeak;
+            if (rr > pauseSamples) {
+                ArrhythmiaEvent pause = start(ArrhythmiaEvent.Type.PAUSE, BeatTypes.BEAT_TYPE_UNKNOWN, lastPeak);
+                end(pause, peakSample);
+            }
+            addRR(rr);
+        }
+
+        ventricular.onBeat(beat, peakSample, beatType);
+        atrial.onBeat(beat, peakSample, beatType);
+
+        if (rrCount == RR_WINDOW) {
+            float heartRate = 60f * sampleRate * RR_WINDOW / rrSum;
+            bradycardia.onRate(peakSample, heartRate, heartRate < bradycardiaBpm);
+            tachycardia.onRate(peakSample, heartRate, heartRate > tachycardiaBpm);
+        }
+        lastPeak = peakSample;
+    }
+
+    /**
+     * Ends any ongoing events at the last beat, e.g. when the recording stops.
+     */
+    public void finish() {
+        if (lastPeak < 0) return;
+        ventricular.finish(lastPeak);
+        atrial.finish(lastPeak);
+        bradycardia.finish(lastPeak);
+        tachycardia.finish(lastPeak);
+    }
+
+    /**
+     * Finishes ongoing events and forgets all history, e.g. after a gap in the stream.
+     */
+    public void reset() {
+        finish();
+        ventricular.clear();
+        atrial.clear();
+        bradycardia.clear();
+        tachycardia.clear();
+        rrCount = 0;
+        rrNext = 0;
+        rrSum = 0;
+        lastPeak = -1;
+    }
+
+    public LatencyHistogram getDetectionLatency() {
+        return detectionLatency;
+    }
+
+    public long getEventCount(ArrhythmiaEvent.Type type) {
+        return eventCounts.get(type.ordinal());
+    }
+
+    private void addRR(long rr) {
+        if (rrCount == RR_WINDOW) {
+            rrSum -= rrIntervals[rrNext];
+        } else {
+            rrCount++;
+        }
+        rrIntervals[rrNext] = rr;
+        rrSum += rr;
+        rrNext = (rrNext + 1) % RR_WINDOW;
+    }
+
+    private ArrhythmiaEvent start(ArrhythmiaEvent.Type type, int beatType, long onset) {
+        ArrhythmiaEvent event = new ArrhythmiaEvent(type, beatType, onset);
+        long signalNanos = (currentPeak - onset) * 1_000_000_000L / sampleRate;
+        event.detectionLatencyNanos = currentPeakNanos < 0
+                ? signalNanos : System.nanoTime() - currentPeakNanos + signalNanos;
+        detectionLatency.record(event.detectionLatencyNanos);
+        eventCounts.incrementAndGet(type.ordinal());
+        listener.onEventStarted(event);
+        return event;
+    }
+
+    private void end(ArrhythmiaEvent event, long offset) {
+        event.offsetSample = offset;
+        listener.onEventEnded(event);
+    }
+
+    /**
+     * Runs (consecutive ectopic beats) and bigeminy/trigeminy (an ectopic beat every second or
+     * third beat) for one ectopic beat type.
+     */
+    private class EctopyTracker {
+        private final int beatType;
+
+        private int runLength;
+        private long runStart;
+        private long runLastPeak;
+        private ArrhythmiaEvent run;
+
+        private long lastEctopicBeat = -1;
+        private long lastEctopicPeak;
+        private int patternGap;
+        private int patternBeats;
+        private long patternStart;
+        private long patternLastPeak;
+        private ArrhythmiaEvent pattern;
+
+        EctopyTracker(int beatType) {
+            this.beatType = beatType;
+        }
+
+        void onBeat(long beat, long peak, int type) {
+            if (type == beatType) {
+                if (runLength++ == 0) runStart = peak;
+                runLastPeak = peak;
+                if (runLength == MIN_RUN_BEATS) {
+                    run = start(ArrhythmiaEvent.Type.RUN, beatType, runStart);
+                }
+                if (run != null) run.beatCount = runLength;
+
+                onEctopicBeat(beat, peak);
+            } else {
+                endRun();
+                // A normal beat where the next ectopic beat was due breaks the pattern
+                if (patternBeats > 0 && beat - lastEctopicBeat >= patternGap) {
+                    endPattern();
+                }
+                if (pattern != null) patternLastPeak = peak;
+            }
+        }
+
+        private void onEctopicBeat(long beat, long peak) {
+            int gap = lastEctopicBeat >= 0 ? (int) (beat - lastEctopicBeat) : 0;
+            if (gap == 2 || gap == 3) {
+                if (patternBeats > 0 && gap != patternGap) {
+                    endPattern();
+                }
+                if (patternBeats == 0) {
+                    patternStart = lastEctopicPeak;
+                    patternBeats = 1;
+                }
+                patternGap = gap;
+                patternBeats++;
+                patternLastPeak = peak;
+                if (patternBeats == MIN_PATTERN_BEATS) {
+                    pattern = start(gap == 2 ? ArrhythmiaEvent.Type.BIGEMINY : ArrhythmiaEvent.Type.TRIGEMINY,
+                            beatType, patternStart);
+                }
+                if (pattern != null) pattern.beatCount = patternBeats;
+            } else {
+                endPattern();
+            }
+            lastEctopicBeat = beat;
+            lastEctopicPeak = peak;
+        }
+
+        private void endRun() {
+            if (runLength == 2) {
+                ArrhythmiaEvent couplet = start(ArrhythmiaEvent.Type.COUPLET, beatType, runStart);
+                couplet.beatCount = 2;
+                end(couplet, runLastPeak);
+            } else if (run != null) {
+                end(run, runLastPeak);
+            }
+            run = null;
+            runLength = 0;
+        }
+
+        private void endPattern() {
+            if (pattern != null) {
+                end(pattern, patternLastPeak);
+                pattern = null;
+            }
+            patternBeats = 0;
+        }
+
+        void finish(long lastPeak) {
+            endRun();
+            if (pattern != null) patternLastPeak = lastPeak;
+            endPattern();
+        }
+
+        void clear() {
+            runLength = 0;
+            run = null;
+            lastEctopicBeat = -1;
+            patternBeats = 0;
+            pattern = null;
+        }
+    }
+
+    /**
+     * Sustained brady- or tachycardia: the averaged rate must stay past the limit for
+     * {@link #sustainSamples} before the event starts at the point the limit was first crossed.
+     */
+    private class RateTracker {
+        private final ArrhythmiaEvent.Type type;
+        private long conditionStart = -1;
+        private long lastPeak;
+        private double rateSum;
+        private int rateCount;
+        private ArrhythmiaEvent event;
+
+        RateTracker(ArrhythmiaEvent.Type type) {
+            this.type = type;
+        }
+
+        void onRate(long peak, float heartRate, boolean beyondLimit) {
+            if (!beyondLimit) {
+                finish(lastPeak);
+                conditionStart = -1;
+                lastPeak = peak;
+                return;
+            }
+
+            if (conditionStart < 0) {
+                conditionStart = peak;
+                rateSum = 0;
+                rateCount = 0;
+            }
+            rateSum += heartRate;
+            rateCount++;
+            if (event == null && peak - conditionStart >= sustainSamples) {
+                event = start(type, BeatTypes.BEAT_TYPE_UNKNOWN, conditionStart);
+            }
+            if (event != null) {
+                event.heartRate = (float) (rateSum / rateCount);
+                event.beatCount = rateCount;
+            }
+            lastPeak = peak;
+        }
+
+        void finish(long lastPeak) {
+            if (event != null) {
+                end(event, lastPeak);
+                event = null;
+            }
+        }
+
+        void clear() {
+            event = null;
+            conditionStart = -1;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.myapplication;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Picks the fastest {@link InferenceBackend} for this device by timing the same calibration
+ * batch on each candidate, and remembers the winner per device key so the calibration only
+ * runs once. A backend whose interpreter fails to initialize or run is simply skipped; if every
+ * candidate fails the builtin CPU kernels are used.
+ */
+public class BackendSelector {
+    private static final int WARMUP_RUNS = 2;
+    private static final int TIMED_RUNS = 5;
+
+    /**
+     * Persists the chosen backend, e.g. in SharedPreferences on a device or in memory in tests.
+     */
+    public interface Store {
+        String getPreferredBackend(String deviceKey);
+
+        void setPreferredBackend(String deviceKey, String backend);
+    }
+
+    /**
+     * Outcome of one calibration: median batch time per backend that ran, and the failures.
+     */
+    public static class Calibration {
+        public final Map<InferenceBackend, Long> medianBatchNanos = new EnumMap<>(InferenceBackend.class);
+        public final Map<InferenceBackend, Throwable> failures = new EnumMap<>(InferenceBackend.class);
+        public InferenceBackend winner = InferenceBackend.BUILTIN_CPU;
+    }
+
+    private final ByteBuffer model;
+    private final InterpreterPool.Factory factory;
+    private final Store store;
+    private final List<InferenceBackend> candidates;
+    private int calibrationBatchSize = InferenceSession.DEFAULT_BATCH_SIZE;
+    private Calibration lastCalibration;
+
+    public BackendSelector(ByteBuffer model, InterpreterPool.Factory factory, Store store) {
+        this(model, factory, store, Arrays.asList(InferenceBackend.values()));
+    }
+
+    public BackendSelector(ByteBuffer model, InterpreterPool.Factory factory, Store store,
+                           List<InferenceBackend> candidates) {
+        this.model = model;
+        this.factory = factory;
+        this.store = store;
+        this.candidates = new ArrayList<>(candidates);
+    }
+
+    public void setCalibrationBatchSize(int size) {
+        calibrationBatchSize = Math.max(1, size);
+    }
+
+    /**
+     * Calibration that produced the current choice, or null if the choice came from the store.
+     */
+    public Calibration getLastCalibration() {
+        return lastCalibration;
+    }
+
+    /**
+     * Returns the stored backend for {@code deviceKey}, calibrating and storing one first if
+     * none has been recorded yet. The choice is only stored if some candidate actually ran.
+     */
+    public InferenceBackend select(String deviceKey) {
+        InferenceBackend stored = InferenceBackend.fromName(store.getPreferredBackend(deviceKey));
+        if (stored != null) {
+            return stored;
+        }
+
+        lastCalibration = calibrate();
+        // With no timing the fallback is not a measured choice; calibrate again next time
+        if (!lastCalibration.medianBatchNanos.isEmpty()) {
+            store.setPreferredBackend(deviceKey, lastCalibration.winner.name());
+        }
+        return lastCalibration.winner;
+    }
+
+    /**
+     * Times the calibration batch on every candidate backend.
+     */
+    public Calibration calibrate() {
+        Calibration calibration = new Calibration();
+        int threads = InterpreterPool.chooseThreadCount(Runtime.getRuntime().availableProcessors(), 0);
+        List<float[]> beats = null;
+
+        long best = Long.MAX_VALUE;
+        for (InferenceBackend backend : candidates) {
+            InferenceSession session = null;
+            try {
+                session = InterpreterPool.createSession(factory, model, backend, threads);
+                session.ensureBatchSize(calibrationBatchSize);
+                if (beats == null) {
+                    beats = calibrationBeats(session.getBeatLength(), session.getBatchSize());
+                }
+
+                long median = timeBatches(session, beats);
+                calibration.medianBatchNanos.put(backend, median);
+                if (median < best) {
+                    best = median;
+                    calibration.winner = backend;
+                }
+            } catch (Exception | UnsatisfiedLinkError e) {
+                calibration.failures.put(backend, e);
+            } finally {
+                if (session != null) {
+                    session.close();
+                }
+            }
+        }
+        return calibration;
+    }
+
+    private long timeBatches(InferenceSession session, List<float[]> beats) {
+        int[] classIndices = new int[beats.size()];
+        float[] confidences = new float[beats.size()];
+
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            session.classify(beats, classIndices, confidences);
+        }
+
+        long[] times = new long[TIMED_RUNS];
+        for (int i = 0; i < TIMED_RUNS; i++) {
+            times[i] = session.classify(beats, classIndices, confidences);
+        }
+        Arrays.sort(times);
+        return times[TIMED_RUNS / 2];
+    }
+
+    /**
+     * Fixed-seed normalized noise, so every backend and every device sees the same input.
+     */
+    private static List<float[]> calibrationBeats(int beatLength, int count) {
+        Random random = new Random(42);
+        List<float[]> beats = new ArrayList<>(count);
+        for (int b = 0; b < count; b++) {
+            float[] beat = new float[beatLength];
+            for (int i = 0; i < beatLength; i++) {
+                beat[i] = (float) random.nextGaussian();
+            }
+            beats.add(beat);
+        }
+        return beats;
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.myapplication;
+
+import java.util.Random;
+
+/**
+ * Bounded exponential backoff for reconnecting. Each delay doubles, from the initial delay up to
+ * the maximum. It is then jittered down by up to half, so a phone and a device that lost the
+ * link together do not retry in lockstep. Once the next attempt would start past the budget,
+ * there is no next attempt.
+ */
+public class Backoff {
+    private final long initialMillis;
+    private final long maxMillis;
+    private final long budgetMillis;
+    private final Random random;
+    private int attempts = 0;
+
+    public Backoff(long initialMillis, long maxMillis, long budgetMillis, Random random) {
+        this.initialMillis = initialMillis;
+        this.maxMillis = maxMillis;
+        this.budgetMillis = budgetMillis;
+        this.random = random;
+    }
+
+    /**
+     * The delay before the next attempt, or -1 once the budget is spent.
+     *
+     * @param elapsedMillis time since the outage began
+     */
+    public long nextDelayMillis(long elapsedMillis) {
+        long ceiling = maxMillis;
+        if (attempts < 62 && initialMillis << attempts > 0) {
+            ceiling = Math.min(maxMillis, initialMillis << attempts);
+        }
+        long delay = ceiling - (long) (random.nextDouble() * ceiling / 2);
+        if (elapsedMillis + delay > budgetMillis) return -1;
+        attempts++;
+        return delay;
+    }
+
+    /** Attempts handed out since the last reset. */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void reset() {
+        attempts = 0;
+    }
+}
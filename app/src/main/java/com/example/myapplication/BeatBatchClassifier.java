@@ -0,0 +1,59 @@
+package com.example.myapplication;
+
+import java.util.List;
+
+/**
+ * The Android-free part of {@link ECGClassifier#classifyBeats}: borrows a session from an
+ * {@link InterpreterPool}, runs the beats through it one batch per Interpreter.run and maps each
+ * output index to a BEAT_TYPE constant. Plain Java, so :benchmark times the same code the app
+ * runs. Safe to call from several threads; each call borrows its own session.
+ */
+public class BeatBatchClassifier {
+    private final InterpreterPool pool;
+    private final int[] classTypes;
+    private final LatencyHistogram queueWaitHistogram;
+    private final LatencyHistogram inferenceHistogram;
+
+    /**
+     * @param classTypes model output index to BEAT_TYPE constant
+     */
+    public BeatBatchClassifier(InterpreterPool pool, int[] classTypes,
+                               LatencyHistogram queueWaitHistogram, LatencyHistogram inferenceHistogram) {
+        this.pool = pool;
+        this.classTypes = classTypes;
+        this.queueWaitHistogram = queueWaitHistogram;
+        this.inferenceHistogram = inferenceHistogram;
+    }
+
+    /**
+     * Classifies {@code beats} into {@code results}, {@code batchSize} beats per run.
+     * {@code beatIndices} supplies the index reported for each beat (usually the R-peak sample);
+     * when null the position in {@code beats} is used. Returns the time spent inside
+     * Interpreter.run; nothing is added to {@code results} if the run fails.
+     */
+    public long classify(List<float[]> beats, List<Integer> beatIndices, int batchSize,
+                         List<BeatClassification> results) throws InterruptedException {
+        long t0 = System.nanoTime();
+        InferenceSession session = pool.acquire();
+        try {
+            queueWaitHistogram.record(System.nanoTime() - t0);
+
+            session.ensureBatchSize(batchSize);
+            int[] classIndices = new int[beats.size()];
+            float[] confidences = new float[beats.size()];
+            long runNanos = session.classify(beats, classIndices, confidences);
+            inferenceHistogram.record(runNanos);
+
+            for (int i = 0; i < beats.size(); i++) {
+                BeatClassification result = new BeatClassification();
+                result.beatIndex = beatIndices != null ? beatIndices.get(i) : i;
+                result.type = classTypes[classIndices[i]];
+                result.confidence = confidences[i];
+                results.add(result);
+            }
+            return runNanos;
+        } finally {
+            pool.release(session);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.myapplication;
+
+/**
+ * Model output for one beat.
+ */
+public class BeatClassification {
+    public int beatIndex;
+    public int type;  // Uses the BeatTypes.BEAT_TYPE constants
+    public float confidence;
+
+    // Helper method to get display name for this beat
+    public String getTypeName() {
+        return BeatTypes.getBeatTypeName(this.type);
+    }
+
+    // Helper method to get short code for this beat
+    public String getTypeCode() {
+        return BeatTypes.getBeatTypeCode(this.type);
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.myapplication;
+
+/**
+ * Beat classes the model distinguishes, with their display names and MIT-BIH annotation codes.
+ * Plain Java, so the JVM tools can share it with the app.
+ */
+public final class BeatTypes {
+    // Beat type constants based on the initial definitions
+    public static final int BEAT_TYPE_NORMAL = 0;                    // N - Normal beat
+    public static final int BEAT_TYPE_LEFT_BUNDLE_BRANCH_BLOCK = 1;  // L - Left bundle branch block beat
+    public static final int BEAT_TYPE_RIGHT_BUNDLE_BRANCH_BLOCK = 2; // R - Right bundle branch block beat
+    public static final int BEAT_TYPE_ATRIAL_PREMATURE = 3;          // A - Atrial premature beat
+    public static final int BEAT_TYPE_PREMATURE_VENTRICULAR = 4;     // V - Premature ventricular contraction
+    public static final int BEAT_TYPE_UNKNOWN = -1;                  // Fallback type
+
+    private BeatTypes() {
+    }
+
+    /**
+     * Helper method to get the display name for a beat type
+     */
+    public static String getBeatTypeName(int beatType) {
+        switch (beatType) {
+            case BEAT_TYPE_NORMAL:
+                return "Normal beat";
+            case BEAT_TYPE_LEFT_BUNDLE_BRANCH_BLOCK:
+                return "Left bundle branch block beat";
+            case BEAT_TYPE_RIGHT_BUNDLE_BRANCH_BLOCK:
+                return "Right bundle branch block beat";
+            case BEAT_TYPE_ATRIAL_PREMATURE:
+                return "Atrial premature beat";
+            case BEAT_TYPE_PREMATURE_VENTRICULAR:
+                return "Premature ventricular contraction";
+            case BEAT_TYPE_UNKNOWN:
+                return "Unknown beat type";
+            default:
+                return "Invalid beat type";
+        }
+    }
+
+    /**
+     * Helper method to get the short code for a beat type
+     */
+    public static String getBeatTypeCode(int beatType) {
+        switch (beatType) {
+            case BEAT_TYPE_NORMAL:
+                return "N";
+            case BEAT_TYPE_LEFT_BUNDLE_BRANCH_BLOCK:
+                return "L";
+            case BEAT_TYPE_RIGHT_BUNDLE_BRANCH_BLOCK:
+                return "R";
+            case BEAT_TYPE_ATRIAL_PREMATURE:
+                return "A";
+            case BEAT_TYPE_PREMATURE_VENTRICULAR:
+                return "V";
+            case BEAT_TYPE_UNKNOWN:
+                return "U";
+            default:
+                return "?";
+        }
+    }
+
+    /**
+     * Maps a label file entry (N, L, R, A, V) to its beat type constant
+     */
+    public static int getBeatTypeForCode(String code) {
+        switch (code) {
+            case "N":
+                return BEAT_TYPE_NORMAL;
+            case "L":
+                return BEAT_TYPE_LEFT_BUNDLE_BRANCH_BLOCK;
+            case "R":
+                return BEAT_TYPE_RIGHT_BUNDLE_BRANCH_BLOCK;
+            case "A":
+                return BEAT_TYPE_ATRIAL_PREMATURE;
+            case "V":
+                return BEAT_TYPE_PREMATURE_VENTRICULAR;
+            default:
+                return BEAT_TYPE_UNKNOWN;
+        }
+    }
+}
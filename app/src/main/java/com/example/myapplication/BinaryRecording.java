@@ -0,0 +1,146 @@
+package com.example.myapplication;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Compact recording file ({@code .ecgb}): a 16-byte header, then one little-endian 16-bit ADC
+ * reading per sample. Samples taken while a lead was off are stored as {@link #LEAD_OFF}, which
+ * keeps the timeline without a side channel. It is read through {@link FileChannel#map}, one
+ * window at a time, so a recording of any length can be analyzed in fixed memory.
+ * <p>
+ * The header is the magic "ECGB", then three little-endian ints: format version, sample rate,
+ * and a reserved field of 0.
+ */
+public class BinaryRecording {
+    public static final String EXTENSION = ".ecgb";
+    public static final short LEAD_OFF = Short.MIN_VALUE;
+    static final int HEADER_BYTES = 16;
+    private static final int FORMAT_VERSION = 1;
+    private static final byte[] MAGIC = {'E', 'C', 'G', 'B'};
+
+    private final FileChannel channel;
+    private final int sampleRate;
+    private final long sampleCount;
+
+    private BinaryRecording(FileChannel channel, int sampleRate, long sampleCount) {
+        this.channel = channel;
+        this.sampleRate = sampleRate;
+        this.sampleCount = sampleCount;
+    }
+
+    /**
+     * Reads the header of {@code channel}. The channel stays owned by the caller.
+     */
+    public static BinaryRecording open(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) < 0) break;
+        }
+        if (header.position() < HEADER_BYTES || !hasMagic(header)) {
+            throw new IOException("Not a binary ECG recording");
+        }
+        int version = header.getInt(4);
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported recording format version " + version);
+        }
+        int sampleRate = header.getInt(8);
+        if (sampleRate <= 0) {
+            throw new IOException("Bad sample rate " + sampleRate);
+        }
+        return new BinaryRecording(channel, sampleRate, (channel.size() - HEADER_BYTES) / 2);
+    }
+
+    /**
+     * True if {@code start} begins with the recording magic, to tell binary files from CSV.
+     */
+    public static boolean hasMagic(ByteBuffer start) {
+        if (start.limit() < MAGIC.length) return false;
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (start.get(i) != MAGIC[i]) return false;
+        }
+        return true;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public long getSampleCount() {
+        return sampleCount;
+    }
+
+    /**
+     * Maps samples [{@code start}, {@code start + length}) and copies them into {@code dest} as
+     * ADC values. Lead-off samples hold the last reading in contact before them (or the first
+     * after, at the start of the window), so they read as a flat line that the quality gate
+     * rejects. Returns the number of samples copied, short of {@code length} only at the end.
+     */
+    public int read(long start, float[] dest, int length) throws IOException {
+        int count = (int) Math.max(0, Math.min(length, sampleCount - start));
+        if (count == 0) return 0;
+        MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES + start * 2, count * 2L);
+        ShortBuffer samples = mapped.order(ByteOrder.LITTLE_ENDIAN).asShortBuffer();
+
+        int firstValid = -1;
+        float last = 0;
+        for (int i = 0; i < count; i++) {
+            short value = samples.get(i);
+            if (value == LEAD_OFF) {
+                dest[i] = last;
+            } else {
+                last = value;
+                dest[i] = value;
+                if (firstValid < 0) firstValid = i;
+            }
+        }
+        // Leading lead-off samples take the first reading in contact instead of 0
+        if (firstValid > 0) {
+            for (int i = 0; i < firstValid; i++) dest[i] = dest[firstValid];
+        }
+        return count;
+    }
+
+    /**
+     * Streams a recording out sample by sample. Buffer {@code out} for speed; closing the writer
+     * does not close it.
+     */
+    public static class Writer {
+        private final OutputStream out;
+        private final byte[] pair = new byte[2];
+        private long sampleCount;
+
+        public Writer(OutputStream out, int sampleRate) throws IOException {
+            this.out = out;
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.put(MAGIC).putInt(FORMAT_VERSION).putInt(sampleRate).putInt(0);
+            out.write(header.array());
+        }
+
+        public void writeSample(int adcValue) throws IOException {
+            int value = Math.max(Short.MIN_VALUE + 1, Math.min(Short.MAX_VALUE, adcValue));
+            pair[0] = (byte) value;
+            pair[1] = (byte) (value >> 8);
+            out.write(pair);
+            sampleCount++;
+        }
+
+        public void writeLeadOff(int samples) throws IOException {
+            pair[0] = (byte) LEAD_OFF;
+            pair[1] = (byte) (LEAD_OFF >> 8);
+            for (int i = 0; i < samples; i++) {
+                out.write(pair);
+            }
+            sampleCount += samples;
+        }
+
+        public long getSampleCount() {
+            return sampleCount;
+        }
+    }
+}
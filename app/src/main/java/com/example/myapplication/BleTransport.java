@@ -0,0 +1,286 @@
+package com.example.myapplication;
+
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BLE link: the ESP32 packs samples into GATT notifications instead of streaming text over
+ * RFCOMM. This keeps both radios idle between connection events for most of a session. The
+ * connection goes through these steps:
+ * <ol>
+ *     <li>connect and discover services</li>
+ *     <li>negotiate the MTU up to {@link #REQUESTED_MTU}</li>
+ *     <li>pick the most power-saving connection interval that still carries the notification
+ *     rate that MTU gives with headroom ({@link #choosePriority})</li>
+ *     <li>enable notifications</li>
+ * </ol>
+ * <p>
+ * A notification holds a little-endian uint16 sequence number of its first sample. One
+ * little-endian uint16 per sample follows: the ADC reading in bits 0-11, LO+ in bit 14 and LO-
+ * in bit 15. A jump in the sequence is a lost notification. It is counted here, and
+ * {@link SampleClock} records the gap from the per-sample sequence numbers handed on.
+ * <p>
+ * The GATT calls sit behind {@link GattClient} so all of this runs against a fake on the JVM;
+ * {@link AndroidGattClient} is the real one.
+ */
+public class BleTransport implements EcgTransport {
+    // Nordic UART Service, as used by the ESP32 BLE UART examples; samples come on its TX
+    public static final UUID SERVICE_UUID = UUID.fromString("6e400001-b5a3-f393-e0a9-e50e24dcca9e");
+    public static final UUID NOTIFY_UUID = UUID.fromString("6e400003-b5a3-f393-e0a9-e50e24dcca9e");
+    // Fills one LE data packet with data length extension (251 bytes, less the L2CAP header)
+    public static final int REQUESTED_MTU = 247;
+    static final int DEFAULT_MTU = 23;
+    static final int ATT_HEADER_BYTES = 3;
+    static final int PACKET_HEADER_BYTES = 2;
+    static final int BYTES_PER_SAMPLE = 2;
+    static final long CONNECT_TIMEOUT_MS = 15_000;
+    static final long READ_TIMEOUT_MS = 200;
+    // The link must carry this many times the notification rate
+    private static final int RATE_HEADROOM = 2;
+
+    private static final Metrics.Counter NOTIFICATIONS = Metrics.getInstance().counter("ble_notifications");
+    private static final Metrics.Counter NOTIFICATIONS_LOST = Metrics.getInstance().counter("ble_notifications_lost");
+    private static final Metrics.Counter MALFORMED = Metrics.getInstance().counter("ingest_parse_errors");
+    private static final Metrics.Gauge MTU = Metrics.getInstance().gauge("ble_mtu");
+
+    /**
+     * Android's connection priorities, with the longest connection interval each asks for.
+     */
+    public enum ConnectionPriority {
+        LOW_POWER(125), BALANCED(50), HIGH(15);
+
+        public final int maxIntervalMs;
+
+        ConnectionPriority(int maxIntervalMs) {
+            this.maxIntervalMs = maxIntervalMs;
+        }
+    }
+
+    /**
+     * The GATT operations the transport needs. Requests return false if they could not be
+     * started; results come back through the {@link Callback}, on any thread.
+     */
+    public interface GattClient {
+        interface Callback {
+            void onConnectionStateChanged(boolean connected);
+
+            void onServicesDiscovered(boolean success);
+
+            void onMtuChanged(int mtu, boolean success);
+
+            void onNotificationsEnabled(boolean success);
+
+            void onNotification(byte[] value);
+        }
+
+        boolean connect(Callback callback);
+
+        boolean discoverServices();
+
+        boolean requestMtu(int mtu);
+
+        boolean requestConnectionPriority(ConnectionPriority priority);
+
+        boolean enableNotifications(UUID service, UUID characteristic);
+
+        void close();
+    }
+
+    private static final class Packet {
+        final byte[] value;
+        final long arrivalNanos;
+
+        Packet(byte[] value, long arrivalNanos) {
+            this.value = value;
+            this.arrivalNanos = arrivalNanos;
+        }
+    }
+
+    private static final Packet LINK_LOST = new Packet(new byte[0], 0);
+
+    private final GattClient gatt;
+    private final int sampleRate;
+    private final Stats stats = new Stats();
+    private final LinkedBlockingQueue<Packet> packets = new LinkedBlockingQueue<>();
+    private final CountDownLatch ready = new CountDownLatch(1);
+
+    private volatile String failure;
+    private volatile boolean linkLost = false;
+    private volatile int mtu = DEFAULT_MTU;
+    private volatile ConnectionPriority priority;
+    private int expectedSequence = -1;
+
+    public BleTransport(GattClient gatt, int sampleRate) {
+        this.gatt = gatt;
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * The lowest-power priority whose connection events come at least {@link #RATE_HEADROOM}
+     * times as often as notifications, assuming one notification per event.
+     */
+    static ConnectionPriority choosePriority(int samplesPerNotification, int sampleRate) {
+        double notificationsPerSecond = (double) sampleRate / Math.max(1, samplesPerNotification);
+        for (ConnectionPriority priority : ConnectionPriority.values()) {
+            if (1000.0 / priority.maxIntervalMs >= RATE_HEADROOM * notificationsPerSecond) {
+                return priority;
+            }
+        }
+        return ConnectionPriority.HIGH;
+    }
+
+    static int samplesPerNotification(int mtu) {
+        return (mtu - ATT_HEADER_BYTES - PACKET_HEADER_BYTES) / BYTES_PER_SAMPLE;
+    }
+
+    private final GattClient.Callback callback = new GattClient.Callback() {
+        @Override
+        public void onConnectionStateChanged(boolean connected) {
+            if (!connected) {
+                linkLost = true;
+                fail("Disconnected");
+                packets.offer(LINK_LOST);
+            } else if (!gatt.discoverServices()) {
+                fail("Service discovery failed");
+            }
+        }
+
+        @Override
+        public void onServicesDiscovered(boolean success) {
+            if (!success) {
+                fail("Service discovery failed");
+            } else if (!gatt.requestMtu(REQUESTED_MTU)) {
+                onMtuChanged(DEFAULT_MTU, false);
+            }
+        }
+
+        @Override
+        public void onMtuChanged(int newMtu, boolean success) {
+            mtu = success ? newMtu : DEFAULT_MTU;
+            MTU.set(mtu);
+            priority = choosePriority(samplesPerNotification(mtu), sampleRate);
+            // Only a hint to the controller; the link works at any interval, just less efficiently
+            gatt.requestConnectionPriority(priority);
+            if (!gatt.enableNotifications(SERVICE_UUID, NOTIFY_UUID)) {
+                fail("ECG service not found");
+            }
+        }
+
+        @Override
+        public void onNotificationsEnabled(boolean success) {
+            if (success) {
+                ready.countDown();
+            } else {
+                fail("Could not enable notifications");
+            }
+        }
+
+        @Override
+        public void onNotification(byte[] value) {
+            packets.offer(new Packet(value, System.nanoTime()));
+        }
+    };
+
+    private void fail(String reason) {
+        if (failure == null) failure = reason;
+        ready.countDown();
+    }
+
+    @Override
+    public void connect() throws IOException {
+        if (!gatt.connect(callback)) {
+            throw new IOException("BLE connection failed");
+        }
+        boolean done;
+        try {
+            done = ready.await(CONNECT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            done = false;
+        }
+        if (!done || failure != null) {
+            gatt.close();
+            throw new IOException(done ? "BLE: " + failure : "BLE connection timed out");
+        }
+        stats.onConnected(System.nanoTime());
+    }
+
+    @Override
+    public int read(SampleSink sink) throws IOException {
+        Packet packet;
+        try {
+            packet = packets.poll(READ_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted");
+        }
+        if (packet == null) {
+            if (linkLost) throw new IOException("Connection lost");
+            return 0;
+        }
+        if (packet == LINK_LOST) {
+            throw new IOException("Connection lost");
+        }
+        decode(packet, sink);
+        return packet.value.length;
+    }
+
+    private void decode(Packet packet, SampleSink sink) {
+        byte[] value = packet.value;
+        if (value.length < PACKET_HEADER_BYTES || (value.length - PACKET_HEADER_BYTES) % BYTES_PER_SAMPLE != 0) {
+            MALFORMED.increment();
+            return;
+        }
+        int sequence = (value[0] & 0xFF) | (value[1] & 0xFF) << 8;
+        int count = (value.length - PACKET_HEADER_BYTES) / BYTES_PER_SAMPLE;
+        if (expectedSequence >= 0 && sequence != expectedSequence) {
+            int missing = Math.floorMod(sequence - expectedSequence, SampleClock.SEQUENCE_MODULUS);
+            if (missing >= SampleClock.SEQUENCE_MODULUS / 2) {
+                // Repeated or out of order; its samples were already delivered
+                return;
+            }
+            long lost = Math.max(1, Math.round((double) missing / Math.max(1, count)));
+            stats.onPacketsLost(lost);
+            NOTIFICATIONS_LOST.add(lost);
+        }
+        expectedSequence = (sequence + count) % SampleClock.SEQUENCE_MODULUS;
+
+        for (int i = 0; i < count; i++) {
+            int offset = PACKET_HEADER_BYTES + i * BYTES_PER_SAMPLE;
+            int word = (value[offset] & 0xFF) | (value[offset + 1] & 0xFF) << 8;
+            sink.onSample(word & 0x0FFF, (word >> 14) & 1, (word >> 15) & 1,
+                    (sequence + i) % SampleClock.SEQUENCE_MODULUS, packet.arrivalNanos);
+        }
+        stats.onPacket(value.length, count);
+        NOTIFICATIONS.increment();
+    }
+
+    @Override
+    public void close() {
+        linkLost = true;
+        packets.offer(LINK_LOST);
+        gatt.close();
+    }
+
+    @Override
+    public String getName() {
+        return "BLE";
+    }
+
+    @Override
+    public Stats getStats() {
+        return stats;
+    }
+
+    public int getMtu() {
+        return mtu;
+    }
+
+    /** The connection priority requested for the negotiated MTU, null before it is known. */
+    public ConnectionPriority getConnectionPriority() {
+        return priority;
+    }
+}
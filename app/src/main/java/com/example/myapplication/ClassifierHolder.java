@@ -0,0 +1,170 @@
+package com.example.myapplication;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Process-wide owner of the ECG classifier. The model is loaded and warmed up once, off the
+ * main thread, and then shared by every screen; fragments register a listener instead of
+ * building (and closing) their own classifier on each view lifecycle.
+ */
+public class ClassifierHolder {
+    private static final String TAG = "ClassifierHolder";
+
+    public interface Listener {
+        void onClassifierReady(ECGClassifier classifier);
+
+        void onClassifierFailed(String message);
+    }
+
+    private static ClassifierHolder instance;
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<Listener> listeners = new ArrayList<>();
+
+    private ECGClassifier classifier;
+    private String failure;
+    private boolean loading = false;
+
+    // Startup metrics
+    private long loadMillis = -1;
+    private long warmUpMillis = -1;
+
+    public static synchronized ClassifierHolder getInstance() {
+        if (instance == null) {
+            instance = new ClassifierHolder();
+        }
+        return instance;
+    }
+
+    private ClassifierHolder() {
+    }
+
+    /**
+     * Starts loading the classifier in the background if it is not loaded or loading already.
+     * Safe to call from every screen's onCreate.
+     */
+    public synchronized void load(Context context) {
+        if (loading || classifier != null) {
+            return;
+        }
+        loading = true;
+        failure = null;
+
+        final Context appContext = context.getApplicationContext();
+        // Live classification waits on this, so it goes ahead of any batch inference
+        TaskScheduler.getInstance().submit(TaskScheduler.Pool.INFERENCE,
+                TaskScheduler.Priority.LIVE_CLASSIFICATION, this, "classifier-load", () -> {
+            long t0 = System.nanoTime();
+            long load = -1;
+            ECGClassifier loaded = null;
+            try {
+                loaded = new ECGClassifier(appContext);
+                long loadNanos = System.nanoTime() - t0;
+                Metrics.getInstance().histogram("model_load").record(loadNanos);
+                load = loadNanos / 1_000_000;
+
+                if (!loaded.isModelLoaded()) {
+                    loaded.close();
+                    onLoadFinished(null, "Model not loaded", load, -1);
+                    return;
+                }
+
+                long warmUp = loaded.warmUp() / 1_000_000;
+                onLoadFinished(loaded, null, load, warmUp);
+            } catch (RuntimeException | UnsatisfiedLinkError e) {
+                // Otherwise loading would never finish and every later load() would wait on it
+                Log.e(TAG, "Classifier load failed", e);
+                if (loaded != null) {
+                    loaded.close();
+                }
+                onLoadFinished(null, e.toString(), load, -1);
+            }
+        });
+    }
+
+    private void onLoadFinished(ECGClassifier loaded, String error, long load, long warmUp) {
+        final List<Listener> toNotify;
+        synchronized (this) {
+            loading = false;
+            classifier = loaded;
+            failure = error;
+            loadMillis = load;
+            warmUpMillis = warmUp;
+            toNotify = new ArrayList<>(listeners);
+        }
+
+        Log.i(TAG, "Classifier startup: load=" + load + "ms, warm-up=" + warmUp + "ms" +
+                (error != null ? ", failed: " + error : ""));
+
+        mainHandler.post(() -> {
+            for (Listener listener : toNotify) {
+                notify(listener, loaded, error);
+            }
+        });
+    }
+
+    /**
+     * Registers for the load result. If loading already finished the listener is called right
+     * away (on the main thread).
+     */
+    public void addListener(Listener listener) {
+        final ECGClassifier ready;
+        final String error;
+        synchronized (this) {
+            listeners.add(listener);
+            ready = classifier;
+            error = failure;
+        }
+        if (ready != null || error != null) {
+            mainHandler.post(() -> {
+                synchronized (this) {
+                    if (!listeners.contains(listener)) return;
+                }
+                notify(listener, ready, error);
+            });
+        }
+    }
+
+    public synchronized void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    private static void notify(Listener listener, ECGClassifier ready, String error) {
+        if (ready != null) {
+            listener.onClassifierReady(ready);
+        } else {
+            listener.onClassifierFailed(error);
+        }
+    }
+
+    /**
+     * The shared classifier, or null while it is still loading or if loading failed.
+     */
+    public synchronized ECGClassifier getClassifier() {
+        return classifier;
+    }
+
+    public synchronized boolean isLoading() {
+        return loading;
+    }
+
+    /**
+     * Time to map the model, build the interpreter and calibrate, in ms (-1 until loaded).
+     */
+    public synchronized long getLoadMillis() {
+        return loadMillis;
+    }
+
+    /**
+     * Time of the warm-up inference, in ms (-1 until warmed up).
+     */
+    public synchronized long getWarmUpMillis() {
+        return warmUpMillis;
+    }
+}
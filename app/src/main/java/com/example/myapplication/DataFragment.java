@@ -7,16 +7,17 @@ import androidx.fragment.app.Fragment;
 
 import android.Manifest;
 import android.bluetooth.BluetoothAdapter;
-import android.bluetooth.BluetoothDevice;
-import android.bluetooth.BluetoothSocket;
+import android.content.ComponentName;
+import android.content.Context;
 import android.content.Intent;
+import android.content.ServiceConnection;
 import android.content.pm.PackageManager;
 import android.graphics.Color;
 import android.os.Build;
 import android.os.Bundle;
-import android.os.CountDownTimer;
 import android.os.Environment;
 import android.os.Handler;
+import android.os.IBinder;
 import android.os.Looper;
 import android.util.Log;
 import android.view.LayoutInflater;
@@ -29,21 +30,31 @@ import android.widget.Toast;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.firestore.FirebaseFirestore;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.OutputStream;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.List;
 import java.util.Locale;
-import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
 
+/**
+ * Connection controls and live readout for a recording. The session itself runs in
+ * {@link AcquisitionService}; this fragment starts it, binds to it while visible and renders its
+ * state, so the fragment can be destroyed and recreated without interrupting acquisition.
+ */
 public class DataFragment extends Fragment {
     private FirebaseAuth mAuth;
     private static final String TAG = "ECGMonitor";
-    private static final UUID MY_UUID = UUID.fromString("00001101-0000-1000-8000-00805F9B34FB");
-    private static final String ESP32_MAC_ADDRESS = "6C:C8:40:4E:B1:36";
-    private static final long RECORDING_DURATION = 7 * 60 * 1000; // 7 minutes
+    // The live readout is polled from the service rather than pushed per sample
+    private static final long UI_REFRESH_MS = 200;
+    // Link to the ESP32, chosen per device by long-pressing Connect
+    private static final String PREFS_NAME = "acquisition";
+    private static final String PREF_TRANSPORT = "transport";
 
     // UI Components
     private TextView textViewECG, textViewStatus, textViewHeartRate, textViewTimer;
@@ -51,23 +62,43 @@ public class DataFragment extends Fragment {
 
     // Bluetooth
     private BluetoothAdapter bluetoothAdapter;
-    private BluetoothSocket bluetoothSocket;
-    private ConnectedThread connectedThread;
     private Handler handler = new Handler(Looper.getMainLooper());
-    private boolean isConnected = false;
 
-    // ECG Data
-    private int heartRate = 0;
-    private long lastPeakTime = 0;
-    private static final int ECG_PEAK_THRESHOLD = 2500;
+    // Acquisition service, non-null while bound
+    private AcquisitionService service;
+    private final AcquisitionService.Listener serviceListener = new AcquisitionService.Listener() {
+        @Override
+        public void onStateChanged(AcquisitionService.State state, String message) {
+            onSessionStateChanged(state, message);
+        }
 
-    // Data logging - now only storing ECG values
-    private StringBuilder ecgData = new StringBuilder();
-    private SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", Locale.getDefault());
+        @Override
+        public void onReportReady(SessionAnalyzer.Report report) {
+            if (isAdded() && service != null && !isSessionActive()) {
+                textViewStatus.setText("Analysis ready");
+            }
+        }
+    };
+    private final ServiceConnection serviceConnection = new ServiceConnection() {
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder binder) {
+            service = ((AcquisitionService.LocalBinder) binder).getService();
+            service.addListener(serviceListener);
+            // Before the first session the permission and Bluetooth checks own the status line
+            if (service.getState() != AcquisitionService.State.IDLE || service.hasData()) {
+                renderState(service.getState(), service.getStatusMessage());
+            }
+        }
+
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            service = null;
+            handler.removeCallbacks(refreshLiveReadout);
+        }
+    };
+    private final Runnable refreshLiveReadout = this::refreshLiveReadout;
 
-    // Timer
-    private CountDownTimer recordingTimer;
-    private boolean isRecording = false;
+    private SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", Locale.getDefault());
 
     // Permissions
     private static final int PERMISSION_REQUEST_CODE = 1;
@@ -108,6 +139,10 @@ public class DataFragment extends Fragment {
         btnAnalyzeData = view.findViewById(R.id.btnAnalyzeData);
 
         btnConnect.setOnClickListener(v -> connectToESP32());
+        btnConnect.setOnLongClickListener(v -> {
+            toggleTransport();
+            return true;
+        });
         btnDisconnect.setOnClickListener(v -> disconnect());
         btnExportData.setOnClickListener(v -> exportDataToCSV());
         btnAnalyzeData.setOnClickListener(v -> analyzeECGData());
@@ -128,8 +163,9 @@ public class DataFragment extends Fragment {
         btnDisconnect.setEnabled(connected);
         // Only enable export/analyze after recording completes
         if (!connected) {
-            btnExportData.setEnabled(ecgData.length() > 0);
-            btnAnalyzeData.setEnabled(ecgData.length() > 0);
+            boolean hasData = service != null && service.hasData();
+            btnExportData.setEnabled(hasData);
+            btnAnalyzeData.setEnabled(hasData);
         }
     }
 
@@ -262,7 +298,7 @@ public class DataFragment extends Fragment {
         Log.d(TAG, "Fragment resumed, checking permissions again");
 
         // Re-check if we have permissions and Bluetooth is enabled
-        if (hasAllPermissions() && isBluetoothEnabled()) {
+        if (hasAllPermissions() && isBluetoothEnabled() && !isSessionActive()) {
             btnConnect.setEnabled(true);
             Log.d(TAG, "Connect button enabled on resume");
         }
@@ -313,336 +349,273 @@ public class DataFragment extends Fragment {
         }
     }
 
-    private void connectToESP32() {
-        handler.post(() -> {
-            textViewStatus.setText("Connecting...");
-            textViewStatus.setTextColor(Color.YELLOW);
-        });
-
-        new Thread(() -> {
-            try {
-                if (bluetoothAdapter == null || !bluetoothAdapter.isEnabled()) {
-                    handler.post(() -> {
-                        Toast.makeText(requireActivity(), "Bluetooth not enabled", Toast.LENGTH_SHORT).show();
-                        textViewStatus.setText("Bluetooth disabled");
-                    });
-                    return;
-                }
-
-                BluetoothDevice device;
-                try {
-                    device = bluetoothAdapter.getRemoteDevice(ESP32_MAC_ADDRESS);
-                } catch (IllegalArgumentException e) {
-                    handler.post(() -> {
-                        Toast.makeText(requireActivity(), "Invalid MAC address format", Toast.LENGTH_SHORT).show();
-                        textViewStatus.setText("Invalid MAC address");
-                    });
-                    return;
-                }
-
-                // Method 1: Standard connection
-                try {
-                    // Check for Bluetooth connect permission
-                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
-                        if (ContextCompat.checkSelfPermission(requireActivity(), Manifest.permission.BLUETOOTH_CONNECT) != PackageManager.PERMISSION_GRANTED) {
-                            handler.post(() -> textViewStatus.setText("Bluetooth permission denied"));
-                            return;
-                        }
-                    }
-
-                    bluetoothSocket = device.createRfcommSocketToServiceRecord(MY_UUID);
-                    bluetoothAdapter.cancelDiscovery();
-                    bluetoothSocket.connect();
-                    onConnectionSuccess();
-                    return;
-                } catch (IOException e) {
-                    Log.e(TAG, "Standard connection failed", e);
-                }
-
-                // Method 2: Reflection fallback
-                try {
-                    bluetoothSocket = (BluetoothSocket) device.getClass()
-                            .getMethod("createRfcommSocket", int.class)
-                            .invoke(device, 1);
-                    bluetoothSocket.connect();
-                    onConnectionSuccess();
-                    return;
-                } catch (Exception e) {
-                    Log.e(TAG, "Reflection connection failed", e);
-                }
-
-                handler.post(() -> {
-                    textViewStatus.setText("Connection failed");
-                    Toast.makeText(requireActivity(), "Check ESP32 power and pairing. Make sure ESP32 is discoverable.", Toast.LENGTH_LONG).show();
-                });
-
-            } catch (SecurityException e) {
-                Log.e(TAG, "Security exception", e);
-                handler.post(() -> {
-                    textViewStatus.setText("Permission error");
-                    Toast.makeText(requireActivity(), "Bluetooth permission error: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                });
-            } catch (Exception e) {
-                Log.e(TAG, "Connection error", e);
-                handler.post(() -> {
-                    textViewStatus.setText("Connection error");
-                    Toast.makeText(requireActivity(), "Error: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                });
-            }
-        }).start();
+    @Override
+    public void onStart() {
+        super.onStart();
+        Context context = requireContext();
+        context.bindService(new Intent(context, AcquisitionService.class), serviceConnection, Context.BIND_AUTO_CREATE);
     }
 
-    private void onConnectionSuccess() {
-        handler.post(() -> {
-            textViewStatus.setText("Connected! Recording...");
-            textViewStatus.setTextColor(Color.GREEN);
-            isConnected = true;
-            updateButtonStates(true);
-
-            ecgData.setLength(0); // Clear previous data
+    @Override
+    public void onStop() {
+        super.onStop();
+        handler.removeCallbacks(refreshLiveReadout);
+        if (service != null) {
+            service.removeListener(serviceListener);
+            service = null;
+        }
+        // Unbinding leaves the session alone, running or finished; the service stays started until released
+        requireContext().unbindService(serviceConnection);
+    }
 
-            startRecordingTimer();
-            connectedThread = new ConnectedThread(bluetoothSocket);
-            connectedThread.start();
-        });
+    private boolean isSessionActive() {
+        if (service == null) return false;
+        return service.getState() == AcquisitionService.State.CONNECTING || service.isRecording();
     }
 
-    private void startRecordingTimer() {
-        if (recordingTimer != null) {
-            recordingTimer.cancel();
+    private void connectToESP32() {
+        if (bluetoothAdapter == null || !bluetoothAdapter.isEnabled()) {
+            Toast.makeText(requireActivity(), "Bluetooth not enabled", Toast.LENGTH_SHORT).show();
+            textViewStatus.setText("Bluetooth disabled");
+            return;
         }
 
-        recordingTimer = new CountDownTimer(RECORDING_DURATION, 1000) {
-            @Override
-            public void onTick(long millisUntilFinished) {
-                updateTimerText(millisUntilFinished);
-            }
-
-            @Override
-            public void onFinish() {
-                handler.post(() -> {
-                    textViewTimer.setText("Recording Complete!");
-                    textViewTimer.setTextColor(Color.RED);
-                    Toast.makeText(requireActivity(), "7-minute recording complete", Toast.LENGTH_LONG).show();
-                    disconnect();
-                    btnExportData.setEnabled(true);
-                    btnAnalyzeData.setEnabled(true);
-                });
-            }
-        }.start();
-
-        isRecording = true;
+        Context context = requireContext();
+        Intent start = new Intent(context, AcquisitionService.class).setAction(AcquisitionService.ACTION_START)
+                .putExtra(AcquisitionService.EXTRA_TRANSPORT, getTransport());
+        ContextCompat.startForegroundService(context, start);
     }
 
-    private void updateTimerText(long millisUntilFinished) {
-        int minutes = (int) (millisUntilFinished / 1000) / 60;
-        int seconds = (int) (millisUntilFinished / 1000) % 60;
-        String timeFormatted = String.format(Locale.getDefault(), "%02d:%02d", minutes, seconds);
+    private String getTransport() {
+        return requireContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+                .getString(PREF_TRANSPORT, AcquisitionService.TRANSPORT_RFCOMM);
+    }
 
-        handler.post(() -> {
-            textViewTimer.setText("Timer: " + timeFormatted);
-            textViewTimer.setTextColor(minutes < 1 ? Color.RED : Color.BLUE);
-        });
+    // Switches between classic Bluetooth and BLE for the next session, showing the last link's cost
+    private void toggleTransport() {
+        String next = AcquisitionService.TRANSPORT_BLE.equals(getTransport())
+                ? AcquisitionService.TRANSPORT_RFCOMM : AcquisitionService.TRANSPORT_BLE;
+        requireContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+                .edit().putString(PREF_TRANSPORT, next).apply();
+        String text = "Next session uses " + (AcquisitionService.TRANSPORT_BLE.equals(next) ? "BLE" : "classic Bluetooth");
+        EcgTransport.Stats stats = service != null ? service.getTransportStats() : null;
+        if (stats != null && stats.getSamples() > 0) {
+            text += String.format(Locale.US, "\nLast link: %.1f B/sample, %.1f%% packets lost",
+                    stats.getBytesPerSample(), 100 * stats.getLossRate());
+        }
+        Toast.makeText(requireActivity(), text, Toast.LENGTH_LONG).show();
     }
 
     private void disconnect() {
-        isRecording = false;
-        isConnected = false;
+        if (service != null) {
+            service.stopRecording();
+        }
+    }
 
-        try {
-            if (connectedThread != null) {
-                connectedThread.cancel();
-                connectedThread = null;
-            }
-            if (bluetoothSocket != null) {
-                bluetoothSocket.close();
-                bluetoothSocket = null;
-            }
-        } catch (IOException e) {
-            Log.e(TAG, "Error disconnecting", e);
+    private void onSessionStateChanged(AcquisitionService.State state, String message) {
+        if (!isAdded()) return;
+        renderState(state, message);
+        if (state == AcquisitionService.State.COMPLETE) {
+            Toast.makeText(requireActivity(), "7-minute recording complete", Toast.LENGTH_LONG).show();
+        } else if (state == AcquisitionService.State.FAILED) {
+            Toast.makeText(requireActivity(), message, Toast.LENGTH_LONG).show();
         }
+    }
 
-        if (recordingTimer != null) {
-            recordingTimer.cancel();
-            recordingTimer = null;
+    private void renderState(AcquisitionService.State state, String message) {
+        switch (state) {
+            case CONNECTING:
+                textViewStatus.setText(message);
+                textViewStatus.setTextColor(Color.YELLOW);
+                btnConnect.setEnabled(false);
+                break;
+            case RECORDING:
+            case RECONNECTING:
+                textViewStatus.setText(message);
+                textViewStatus.setTextColor(state == AcquisitionService.State.RECORDING ? Color.GREEN : Color.YELLOW);
+                updateButtonStates(true);
+                handler.removeCallbacks(refreshLiveReadout);
+                handler.post(refreshLiveReadout);
+                return;
+            case COMPLETE:
+                resetLiveReadout();
+                textViewStatus.setText("Disconnected");
+                textViewStatus.setTextColor(Color.RED);
+                textViewTimer.setText(message);
+                textViewTimer.setTextColor(Color.RED);
+                updateButtonStates(false);
+                break;
+            default:
+                resetLiveReadout();
+                textViewStatus.setText(message);
+                textViewStatus.setTextColor(Color.RED);
+                updateButtonStates(false);
+                break;
         }
+        handler.removeCallbacks(refreshLiveReadout);
+    }
 
-        handler.post(() -> {
-            textViewStatus.setText("Disconnected");
-            textViewStatus.setTextColor(Color.RED);
-            textViewECG.setText("ECG Value: --\nLO+: --\nLO-: --");
-            textViewHeartRate.setText("Heart Rate: -- BPM");
-            textViewTimer.setText("Timer: 07:00");
-            updateButtonStates(false);
-        });
+    private void resetLiveReadout() {
+        textViewECG.setText("ECG Value: --\nLO+: --\nLO-: --");
+        textViewHeartRate.setText("Heart Rate: -- BPM");
+        textViewTimer.setText("Timer: " + AcquisitionService.formatRemaining(AcquisitionService.RECORDING_DURATION));
     }
 
-    private int calculateHeartRate(int ecgValue) {
-        if (ecgValue > ECG_PEAK_THRESHOLD) {
-            long currentTime = System.currentTimeMillis();
-            if (lastPeakTime > 0) {
-                long timeDiff = currentTime - lastPeakTime;
-                if (timeDiff > 300) {
-                    int newHeartRate = (int) (60000 / timeDiff);
-                    if (newHeartRate > 40 && newHeartRate < 200) {
-                        heartRate = newHeartRate;
-                        handler.post(() -> {
-                            textViewHeartRate.setText("Heart Rate: " + heartRate + " BPM");
-                        });
-                    }
-                }
-            }
-            lastPeakTime = currentTime;
+    private void refreshLiveReadout() {
+        if (service == null || !service.isRecording()) return;
+
+        textViewECG.setText(String.format("ECG: %d\nLO+: %d\nLO-: %d",
+                service.getLastEcgValue(), service.getLastLoPlus(), service.getLastLoMinus()));
+        if (service.getState() == AcquisitionService.State.RECONNECTING) {
+            textViewStatus.setText(service.getStatusMessage());
+            textViewStatus.setTextColor(Color.YELLOW);
+        } else if (service.isLeadOff()) {
+            textViewStatus.setText("Electrode disconnected!");
+            textViewStatus.setTextColor(Color.RED);
+        } else {
+            textViewStatus.setText("Connected - Good signal");
+            textViewStatus.setTextColor(Color.GREEN);
         }
-        return heartRate;
+        int heartRate = service.getHeartRate();
+        if (heartRate > 0) {
+            textViewHeartRate.setText("Heart Rate: " + heartRate + " BPM");
+        }
+        long remaining = service.getRemainingMillis();
+        textViewTimer.setText("Timer: " + AcquisitionService.formatRemaining(remaining));
+        textViewTimer.setTextColor(remaining < 60 * 1000 ? Color.RED : Color.BLUE);
+
+        handler.postDelayed(refreshLiveReadout, UI_REFRESH_MS);
     }
 
     private void exportDataToCSV() {
-        if (ecgData.length() == 0) {
+        if (service == null || !service.hasData()) {
             Toast.makeText(requireActivity(), "No data to export", Toast.LENGTH_SHORT).show();
             return;
         }
 
-        new Thread(() -> {
-            try {
-                String timestamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date());
-                String fileName = "ECG_Recording_" + timestamp + ".csv";
-                File downloadsDir = Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOWNLOADS);
-                File file = new File(downloadsDir, fileName);
+        AcquisitionService session = service;
+        try {
+            TaskScheduler.getInstance().submit(TaskScheduler.Pool.IO, TaskScheduler.Priority.BATCH,
+                    this, "csv-export", () -> writeExportFile(session));
+        } catch (RejectedExecutionException e) {
+            Toast.makeText(requireActivity(), "Busy, try exporting again shortly", Toast.LENGTH_SHORT).show();
+        }
+    }
 
-                FileWriter writer = new FileWriter(file);
-                writer.write("ECG_Value\n"); // Header
-                writer.write(ecgData.toString()); // Only ECG values
-                writer.flush();
-                writer.close();
+    private void writeExportFile(AcquisitionService session) {
+        try {
+            String timestamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date());
+            String fileName = "ECG_Recording_" + timestamp + ".csv";
+            File downloadsDir = Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOWNLOADS);
+            File file = new File(downloadsDir, fileName);
+
+            long t0 = System.nanoTime();
+            FileWriter writer = new FileWriter(file);
+            writer.write("ECG_Value\n"); // Header
+            String samples = session.getSamples();
+            session.getLeadOffChannel().writeSamples(writer, samples); // Only ECG values
+            writer.flush();
+            writer.close();
+            File binaryFile = new File(downloadsDir, "ECG_Recording_" + timestamp + BinaryRecording.EXTENSION);
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(binaryFile))) {
+                writeBinarySamples(new BinaryRecording.Writer(out, ECGPreprocessor.DEFAULT_SAMPLE_RATE),
+                        samples, session.getLeadOffChannel().getSpans());
+            }
+            Metrics.getInstance().histogram("export_write").record(System.nanoTime() - t0);
 
-                // Upload to Firebase using Report class
-                uploadDataToFirestore(fileName);
+            // Upload to Firebase using Report class
+            uploadDataToFirestore(session, samples, fileName);
 
-                handler.post(() -> {
-                    Toast.makeText(requireActivity(), "Data exported to Downloads/" + file.getName(), Toast.LENGTH_LONG).show();
-                    Log.d(TAG, "File saved: " + file.getAbsolutePath());
-                });
-            } catch (IOException e) {
-                Log.e(TAG, "Export failed", e);
-                handler.post(() -> {
-                    Toast.makeText(requireActivity(), "Export failed: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                });
+            handler.post(() -> {
+                // Saved; the service no longer has to hold the session once this fragment unbinds
+                session.releaseSession();
+                Toast.makeText(requireActivity(), "Data exported to Downloads/" + file.getName()
+                        + " and " + binaryFile.getName(), Toast.LENGTH_LONG).show();
+                Log.d(TAG, "File saved: " + file.getAbsolutePath());
+            });
+        } catch (IOException e) {
+            Log.e(TAG, "Export failed", e);
+            handler.post(() -> {
+                Toast.makeText(requireActivity(), "Export failed: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+            });
+        }
+    }
+
+    /**
+     * Writes the stored samples as a binary recording, with each lead-off span filled back in as
+     * lead-off samples so sample indices match the original timeline.
+     */
+    private void writeBinarySamples(BinaryRecording.Writer writer, String samples, List<Integer> spans)
+            throws IOException {
+        int span = 0;
+        int pos = 0;
+        while (true) {
+            while (span < spans.size() && spans.get(span) <= writer.getSampleCount()) {
+                writer.writeLeadOff(spans.get(span + 1));
+                span += 2;
             }
-        }).start();
+            if (pos >= samples.length()) break;
+            int end = samples.indexOf('\n', pos);
+            if (end < 0) end = samples.length();
+            try {
+                writer.writeSample(Integer.parseInt(samples.substring(pos, end).trim()));
+            } catch (NumberFormatException e) {
+                // Not a sample; nothing to keep
+            }
+            pos = end + 1;
+        }
     }
 
     private void analyzeECGData() {
-        if (ecgData.length() == 0) {
+        if (service == null || !service.hasData()) {
             Toast.makeText(requireActivity(), "No data to analyze", Toast.LENGTH_SHORT).show();
             return;
         }
 
-        String[] values = ecgData.toString().split("\n");
-        int dataPoints = values.length;
-
-        String analysis = "ECG Analysis Results:\n" +
-                "Duration: 7 minutes\n" +
-                "Data Points: " + dataPoints + "\n" +
-                "Heart Rate: " + heartRate + " BPM\n" +
-                "Ready for export";
-
-        Toast.makeText(requireActivity(), analysis, Toast.LENGTH_LONG).show();
-        textViewStatus.setText("Analysis Complete");
-    }
-
-    private class ConnectedThread extends Thread {
-        private final InputStream mmInStream;
-        private final BluetoothSocket mmSocket;
-        private final StringBuilder receivedData = new StringBuilder();
-
-        public ConnectedThread(BluetoothSocket socket) {
-            mmSocket = socket;
-            InputStream tmpIn = null;
-            try {
-                tmpIn = socket.getInputStream();
-            } catch (IOException e) {
-                Log.e(TAG, "Error getting input stream", e);
-            }
-            mmInStream = tmpIn;
+        // Analyzed while recording; only a session that just ended may still be finishing
+        SessionAnalyzer.Report report = service.getSessionReport();
+        StringBuilder analysis = new StringBuilder("ECG Analysis Results:\n");
+        if (service.getSessionStartMillis() > 0) {
+            analysis.append("Started: ").append(dateFormat.format(new Date(service.getSessionStartMillis()))).append('\n');
         }
-
-        public void run() {
-            byte[] buffer = new byte[1024];
-            int bytes;
-
-            while (isConnected && isRecording) {
-                try {
-                    bytes = mmInStream.read(buffer);
-                    if (bytes > 0) {
-                        String data = new String(buffer, 0, bytes);
-                        receivedData.append(data);
-
-                        String fullData = receivedData.toString();
-                        if (fullData.contains("\n")) {
-                            String[] lines = fullData.split("\n");
-                            for (int i = 0; i < lines.length - 1; i++) {
-                                processData(lines[i].trim());
-                            }
-                            receivedData.setLength(0);
-                            receivedData.append(lines[lines.length - 1]);
-                        }
-                    }
-                    Thread.sleep(10);
-                } catch (IOException e) {
-                    Log.e(TAG, "Connection lost", e);
-                    disconnect();
-                    break;
-                } catch (InterruptedException e) {
-                    Log.e(TAG, "Thread interrupted", e);
-                    break;
-                } catch (Exception e) {
-                    Log.e(TAG, "Unexpected error", e);
+        if (report != null) {
+            AnalysisResult result = report.result;
+            analysis.append(String.format(Locale.US, "Duration: %s\n",
+                    AcquisitionService.formatRemaining(result.totalSamples * 1000L / result.sampleRate)));
+            analysis.append("Beats: ").append(result.getBeatCount())
+                    .append(" (").append(result.skippedBeatIndices.length).append(" skipped)\n");
+            for (int type = BeatTypes.BEAT_TYPE_NORMAL; type <= BeatTypes.BEAT_TYPE_PREMATURE_VENTRICULAR; type++) {
+                int count = result.countOfType(type);
+                if (count > 0) {
+                    analysis.append(BeatTypes.getBeatTypeCode(type)).append(": ").append(count).append("  ");
                 }
             }
-        }
-
-        public void cancel() {
-            try {
-                mmSocket.close();
-            } catch (IOException e) {
-                Log.e(TAG, "Close error", e);
+            analysis.append('\n');
+            if (report.unclassifiedBeats > 0) {
+                analysis.append("Unclassified: ").append(report.unclassifiedBeats)
+                        .append(" beats (no model loaded or classification failed)\n");
             }
+            analysis.append(String.format(Locale.US, "Heart Rate: %.0f BPM (%.0f-%.0f)\n",
+                    result.meanHeartRate, result.minHeartRate, result.maxHeartRate));
+            analysis.append("HRV: ").append(report.hrv).append('\n');
+            analysis.append("Events: ").append(report.events.size()).append('\n');
+        } else {
+            analysis.append("Data Points: ").append(service.getSamples().split("\n").length).append('\n')
+                    .append("Heart Rate: ").append(service.getHeartRate()).append(" BPM\n")
+                    .append("HRV: ").append(service.getHrvMetrics()).append('\n');
         }
-    }
-
-    private void processData(String data) {
-        if (data.isEmpty()) return;
-
-        try {
-            String[] values = data.split(",");
-            if (values.length >= 3) {
-                int ecgValue = Integer.parseInt(values[0].trim());
-                int loPlus = Integer.parseInt(values[1].trim());
-                int loMinus = Integer.parseInt(values[2].trim());
-
-                int currentHeartRate = calculateHeartRate(ecgValue);
+        SampleClock clock = service.getSampleClock();
+        analysis.append(String.format(Locale.US, "Sample rate: %.2f Hz, %d gaps (%d samples lost), %d reconnects\n",
+                clock.getEffectiveRate(), clock.getGapCount(), clock.getLostSamples(), service.getReconnectCount()));
+        analysis.append("Signal quality: ").append(service.getSignalQuality().summary(0)).append('\n')
+                .append(String.format(Locale.US, "Electrode contact: %.1f%%\n", service.getLeadOffChannel().getContactPercent()))
+                .append("Ready for export");
 
-                // Only store the ECG value
-                ecgData.append(ecgValue).append("\n");
-
-                handler.post(() -> {
-                    textViewECG.setText(String.format("ECG: %d\nLO+: %d\nLO-: %d", ecgValue, loPlus, loMinus));
-                    if (loPlus == 1 || loMinus == 1) {
-                        textViewStatus.setText("Electrode disconnected!");
-                        textViewStatus.setTextColor(Color.RED);
-                    } else {
-                        textViewStatus.setText("Connected - Good signal");
-                        textViewStatus.setTextColor(Color.GREEN);
-                    }
-                });
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "Error processing: " + data, e);
-        }
+        Toast.makeText(requireActivity(), analysis, Toast.LENGTH_LONG).show();
+        textViewStatus.setText("Analysis Complete");
     }
 
-    private void uploadDataToFirestore(String fileName) {
+    private void uploadDataToFirestore(AcquisitionService session, String samples, String fileName) {
         if (mAuth.getCurrentUser() == null) {
             Log.e(TAG, "User not authenticated when trying to upload data");
             handler.post(() -> {
@@ -656,23 +629,30 @@ public class DataFragment extends Fragment {
 
         // Create a Report object with userId
         Report report = new Report(
-                ecgData.toString(),   // ECG values
+                samples,              // ECG values
                 new Date(),           // timestamp
                 fileName,             // filename
-                heartRate,            // heartRate
-                RECORDING_DURATION,   // recordingDuration
+                session.getHeartRate(),                  // heartRate
+                AcquisitionService.RECORDING_DURATION,   // recordingDuration
                 userId                // userId - MAKE SURE THIS IS INCLUDED
         );
+        report.applyHrv(session.getHrvMetrics());
+        report.applyLeadOff(session.getLeadOffChannel(), ECGPreprocessor.DEFAULT_SAMPLE_RATE);
+        report.setEffectiveSampleRate(session.getSampleClock().getEffectiveRate());
 
+        long uploadStart = System.nanoTime();
         db.collection("ecg_reports")
                 .add(report)
                 .addOnSuccessListener(documentReference -> {
+                    Metrics.getInstance().histogram("upload").record(System.nanoTime() - uploadStart);
+                    Metrics.getInstance().counter("upload_succeeded").increment();
                     Log.d(TAG, "DocumentSnapshot added with ID: " + documentReference.getId());
                     handler.post(() -> {
                         Toast.makeText(requireActivity(), "Data uploaded to Firebase", Toast.LENGTH_SHORT).show();
                     });
                 })
                 .addOnFailureListener(e -> {
+                    Metrics.getInstance().counter("upload_failed").increment();
                     Log.w(TAG, "Error adding document", e);
                     handler.post(() -> {
                         Toast.makeText(requireActivity(), "Upload failed: " + e.getMessage(), Toast.LENGTH_SHORT).show();
@@ -683,6 +663,7 @@ public class DataFragment extends Fragment {
     @Override
     public void onDestroy() {
         super.onDestroy();
-        disconnect();
+        // The recording session belongs to AcquisitionService and outlives this fragment
+        TaskScheduler.getInstance().cancelAll(this);
     }
 }
\ No newline at end of file
@@ -1,88 +1,210 @@
 package com.example.myapplication;
 
 import android.content.Context;
+import android.content.SharedPreferences;
 import android.content.res.AssetFileDescriptor;
+import android.os.Build;
 import android.util.Log;
 
-import org.tensorflow.lite.Interpreter;
 
 import java.io.BufferedReader;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.FloatBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class ECGClassifier {
     private static final String TAG = "ECGClassifier";
 
     // Model file names
     private static final String MODEL_FILE = "ecg_model.tflite";
+    private static final String QUANTIZED_MODEL_FILE = "ecg_model_int8.tflite";
     private static final String LABEL_FILE = "class_names.txt";
 
-    // Beat type constants based on the initial definitions
-    public static final int BEAT_TYPE_NORMAL = 0;                    // N - Normal beat
-    public static final int BEAT_TYPE_LEFT_BUNDLE_BRANCH_BLOCK = 1;  // L - Left bundle branch block beat
-    public static final int BEAT_TYPE_RIGHT_BUNDLE_BRANCH_BLOCK = 2; // R - Right bundle branch block beat
-    public static final int BEAT_TYPE_ATRIAL_PREMATURE = 3;          // A - Atrial premature beat
-    public static final int BEAT_TYPE_PREMATURE_VENTRICULAR = 4;     // V - Premature ventricular contraction
-    public static final int BEAT_TYPE_UNKNOWN = -1;                  // Fallback type
+    /**
+     * Model builds shipped as assets. INT8 is the post-training quantized variant (full-integer or
+     * dynamic-range); both share the label file and output classes.
+     */
+    public enum ModelVariant {
+        FLOAT(MODEL_FILE),
+        INT8(QUANTIZED_MODEL_FILE);
+
+        public final String fileName;
+
+        ModelVariant(String fileName) {
+            this.fileName = fileName;
+        }
+    }
+
+    // Per-device backend choice, persisted after the first calibration
+    private static final String PREFS_NAME = "ecg_classifier";
+    private static final String PREF_BACKEND_PREFIX = "backend_";
+
+    // Number of beats packed into one Interpreter.run call
+    public static final int DEFAULT_BATCH_SIZE = InferenceSession.DEFAULT_BATCH_SIZE;
 
-    private Interpreter tflite;
+    // Interpreters sharing the mapped model, so several callers can classify at once
+    private final ModelVariant variant;
+    private volatile InterpreterPool pool;
+    private InferenceBackend requestedBackend;
+    private long modelSizeBytes;
+    private String modelVersion = "";
+    private boolean quantizedInput;
     private List<String> labels;
-    private boolean isLoaded = false;
+    private volatile boolean isLoaded = false;
+
+    // Tensor geometry, read from the model once it is loaded
+    private int[] inputShape;
+    private int beatLength = ECGPreprocessor.SEGMENT_LENGTH;
+    private int numClasses;
+    private int[] classTypes; // model output index -> BEAT_TYPE constant
+    // Runs the beats through the pool; set once the model is loaded
+    private volatile BeatBatchClassifier batchClassifier;
+
+    private volatile int batchSize = DEFAULT_BATCH_SIZE;
+
+    // Throughput counters
+    private final AtomicLong totalBeatsClassified = new AtomicLong();
+    private final AtomicLong totalInferenceNanos = new AtomicLong();
+    private volatile float lastBeatsPerSecond = 0f;
+
+    // Per-request latency: time waiting for a free interpreter, and time inside Interpreter.run
+    private final LatencyHistogram queueWaitHistogram = new LatencyHistogram("inference_queue_wait");
+    private final LatencyHistogram inferenceHistogram = new LatencyHistogram("inference_run");
+    private static final Metrics.Counter BEATS_CLASSIFIED = Metrics.getInstance().counter("beats_classified");
+    private static final Metrics.Gauge BEATS_PER_SECOND = Metrics.getInstance().gauge("inference_beats_per_second");
 
     public ECGClassifier(Context context) {
+        this(context, ModelVariant.FLOAT);
+    }
+
+    public ECGClassifier(Context context, ModelVariant variant) {
+        this.variant = variant;
+        Metrics.getInstance().register(queueWaitHistogram);
+        Metrics.getInstance().register(inferenceHistogram);
         Log.d(TAG, "Starting ECGClassifier initialization...");
-        Log.d(TAG, "Looking for model: " + MODEL_FILE);
+        Log.d(TAG, "Looking for model: " + variant.fileName);
         Log.d(TAG, "Looking for labels: " + LABEL_FILE);
 
         try {
-            // First, list all available assets for debugging
-            listAllAssets(context);
-
             // Load model
-            MappedByteBuffer modelBuffer = loadModelFile(context, MODEL_FILE);
+            MappedByteBuffer modelBuffer = loadModelFile(context, variant.fileName);
             if (modelBuffer == null) {
-                Log.e(TAG, "Failed to load model buffer for: " + MODEL_FILE);
+                Log.e(TAG, "Failed to load model buffer for: " + variant.fileName);
+                // List all available assets for debugging
+                listAllAssets(context);
                 return;
             }
+            modelSizeBytes = modelBuffer.capacity();
 
-            Log.d(TAG, "Model file loaded successfully, initializing interpreter...");
+            // Content hash of the model, so cached results are tied to the exact model bytes
+            XxHash64 modelHash = new XxHash64();
+            modelHash.update(modelBuffer);
+            modelVersion = variant.name() + "-" + Long.toHexString(modelHash.digest());
 
-            // Initialize interpreter with options
-            Interpreter.Options options = new Interpreter.Options();
-            options.setNumThreads(4);
+            Log.d(TAG, "Model file loaded successfully, initializing interpreter pool...");
 
-            tflite = new Interpreter(modelBuffer, options);
-            Log.d(TAG, "TFLite interpreter created successfully");
+            // Pick the fastest backend for this device (calibrates on first run only)
+            requestedBackend = selectBackend(context, modelBuffer);
 
-            // Load labels
-            labels = loadLabelList(context, LABEL_FILE);
-            Log.d(TAG, "Labels loaded: " + labels.size());
+            // Thread counts are chosen per interpreter from the free cores
+            pool = new InterpreterPool(modelBuffer, InterpreterPool.defaultPoolSize(),
+                    requestedBackend, InterpreterPool.DEFAULT_FACTORY);
 
-            // Verify that loaded labels match our expected beat types
-            verifyLabels();
+            // Create the first interpreter now so load errors surface here
+            InferenceSession probe = pool.acquire();
+            try {
+                Log.d(TAG, "TFLite interpreter created successfully (" + probe.getNumThreads() +
+                        " threads, pool of up to " + pool.getMaxSize() + ")");
+                if (pool.getBackend() != requestedBackend) {
+                    Log.w(TAG, requestedBackend + " failed to initialize, fell back to " + pool.getBackend());
+                }
 
-            // Test the model by checking input/output tensors
-            if (tflite.getInputTensorCount() > 0) {
-                Log.i(TAG, "Input tensor shape: " + java.util.Arrays.toString(tflite.getInputTensor(0).shape()));
-            }
-            if (tflite.getOutputTensorCount() > 0) {
-                Log.i(TAG, "Output tensor shape: " + java.util.Arrays.toString(tflite.getOutputTensor(0).shape()));
+                // Load labels
+                labels = loadLabelList(context, LABEL_FILE);
+                Log.d(TAG, "Labels loaded: " + labels.size());
+
+                // Verify that loaded labels match our expected beat types
+                verifyLabels();
+
+                // Test the model by checking input/output tensors
+                inputShape = probe.getInterpreter().getInputTensor(0).shape();
+                Log.i(TAG, "Input tensor shape: " + java.util.Arrays.toString(inputShape));
+                Log.i(TAG, "Output tensor shape: " +
+                        java.util.Arrays.toString(probe.getInterpreter().getOutputTensor(0).shape()));
+
+                readTensorGeometry(probe);
+                quantizedInput = probe.isQuantizedInput();
+                Log.i(TAG, "Model input type: " + probe.getInputType());
+                probe.ensureBatchSize(batchSize);
+                if (probe.getBatchSize() != batchSize) {
+                    Log.w(TAG, "Model rejected batch size " + batchSize + ", using " + probe.getBatchSize());
+                    batchSize = probe.getBatchSize();
+                }
+            } finally {
+                pool.release(probe);
             }
 
+            batchClassifier = new BeatBatchClassifier(pool, classTypes, queueWaitHistogram, inferenceHistogram);
             isLoaded = true;
             Log.i(TAG, "ECGClassifier initialized successfully!");
 
         } catch (Exception e) {
             Log.e(TAG, "Error initializing ECG classifier", e);
             isLoaded = false;
+            // Nothing can use a half-initialized pool; free its interpreters now
+            if (pool != null) {
+                pool.close();
+                pool = null;
+            }
         }
     }
 
+    private InferenceBackend selectBackend(Context context, MappedByteBuffer modelBuffer) {
+        final SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        BackendSelector.Store store = new BackendSelector.Store() {
+            @Override
+            public String getPreferredBackend(String deviceKey) {
+                return prefs.getString(PREF_BACKEND_PREFIX + deviceKey, null);
+            }
+
+            @Override
+            public void setPreferredBackend(String deviceKey, String backend) {
+                prefs.edit().putString(PREF_BACKEND_PREFIX + deviceKey, backend).apply();
+            }
+        };
+
+        // Keyed by device model and model size, so a new model triggers a fresh calibration
+        String deviceKey = Build.MANUFACTURER + "/" + Build.MODEL + "/" + modelBuffer.capacity();
+        BackendSelector selector = new BackendSelector(modelBuffer, InterpreterPool.DEFAULT_FACTORY, store);
+        InferenceBackend backend = selector.select(deviceKey);
+
+        BackendSelector.Calibration calibration = selector.getLastCalibration();
+        if (calibration != null) {
+            for (java.util.Map.Entry<InferenceBackend, Long> entry : calibration.medianBatchNanos.entrySet()) {
+                Log.i(TAG, "Calibration " + entry.getKey() + ": " + (entry.getValue() / 1000) + " us/batch");
+            }
+            for (java.util.Map.Entry<InferenceBackend, Throwable> entry : calibration.failures.entrySet()) {
+                Log.w(TAG, "Calibration " + entry.getKey() + " failed", entry.getValue());
+            }
+        }
+        Log.i(TAG, "Using backend " + backend + " for " + deviceKey);
+        return backend;
+    }
+
+    /**
+     * Backend the interpreters actually run on (after any initialization fallback).
+     */
+    public InferenceBackend getBackend() {
+        InterpreterPool pool = this.pool;
+        return pool != null ? pool.getBackend() : requestedBackend;
+    }
+
     private void listAllAssets(Context context) {
         try {
             String[] files = context.getAssets().list("");
@@ -164,7 +286,7 @@ public class ECGClassifier {
             if (i < labels.size()) {
                 String loadedLabel = labels.get(i);
                 if (loadedLabel.equals(expectedLabels[i])) {
-                    Log.d(TAG, "Label " + i + " OK: " + loadedLabel + " -> " + getBeatTypeName(i));
+                    Log.d(TAG, "Label " + i + " OK: " + loadedLabel + " -> " + BeatTypes.getBeatTypeName(i));
                 } else {
                     Log.w(TAG, "Label " + i + " mismatch: expected " + expectedLabels[i] +
                             ", got " + loadedLabel);
@@ -175,12 +297,61 @@ public class ECGClassifier {
         }
     }
 
+    /**
+     * Reads the per-beat input length and the number of output classes from the model,
+     * and maps each output index to a BEAT_TYPE constant through the label file.
+     */
+    private void readTensorGeometry(InferenceSession session) {
+        beatLength = session.getBeatLength();
+        numClasses = session.getNumClasses();
+
+        classTypes = new int[numClasses];
+        for (int i = 0; i < numClasses; i++) {
+            classTypes[i] = i < labels.size() ? BeatTypes.getBeatTypeForCode(labels.get(i)) : BeatTypes.BEAT_TYPE_UNKNOWN;
+        }
+        Log.d(TAG, "Beat length: " + beatLength + ", classes: " + numClasses);
+    }
+
     public boolean isModelLoaded() {
-        return isLoaded && tflite != null;
+        return isLoaded && pool != null;
     }
 
     public String getModelFileName() {
-        return MODEL_FILE;
+        return variant.fileName;
+    }
+
+    /**
+     * Variant name plus a hash of the model bytes; changes whenever the bundled model changes.
+     */
+    public String getModelVersion() {
+        return modelVersion;
+    }
+
+    public ModelVariant getModelVariant() {
+        return variant;
+    }
+
+    public long getModelSizeBytes() {
+        return modelSizeBytes;
+    }
+
+    /**
+     * True when the loaded model takes int8/uint8 input and beats are quantized before each run.
+     */
+    public boolean isQuantizedInput() {
+        return quantizedInput;
+    }
+
+    /**
+     * Whether the asset for {@code variant} is bundled, e.g. before offering the INT8 model.
+     */
+    public static boolean isModelAvailable(Context context, ModelVariant variant) {
+        try {
+            context.getAssets().openFd(variant.fileName).close();
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
     }
 
     public String getLabelFileName() {
@@ -188,9 +359,8 @@ public class ECGClassifier {
     }
 
     public int getInputShape() {
-        if (tflite != null && tflite.getInputTensorCount() > 0) {
-            int[] shape = tflite.getInputTensor(0).shape();
-            return shape.length > 1 ? shape[1] : -1;
+        if (inputShape != null) {
+            return inputShape.length > 1 ? inputShape[1] : -1;
         }
         return -1;
     }
@@ -199,124 +369,163 @@ public class ECGClassifier {
         return labels;
     }
 
-    public List<BeatClassification> classifyCSVData(java.io.InputStream csvStream) {
-        List<BeatClassification> results = new ArrayList<>();
+    /**
+     * Runs one full batch through an interpreter so tensor allocation and kernel preparation
+     * happen here rather than in the first real classification. Returns the time taken.
+     */
+    public long warmUp() {
+        long t0 = System.nanoTime();
+        List<float[]> beats = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            beats.add(new float[beatLength]);
+        }
+        classifyBeats(beats, null);
+
+        // Keep warm-up out of the throughput and latency numbers
+        queueWaitHistogram.reset();
+        inferenceHistogram.reset();
+        totalBeatsClassified.set(0);
+        totalInferenceNanos.set(0);
+        return System.nanoTime() - t0;
+    }
 
-        if (!isModelLoaded()) {
-            Log.e(TAG, "Model not loaded, cannot classify data");
-            return results;
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Sets how many beats are packed into each inference call. Larger batches amortize
+     * the per-call overhead; each session reallocates its buffers only when the size changes.
+     */
+    public void setBatchSize(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + size);
         }
+        batchSize = size;
+    }
 
-        Log.d(TAG, "Starting CSV data classification...");
+    /**
+     * Beats per second of the most recent classification call, measured around Interpreter.run.
+     */
+    public float getLastBeatsPerSecond() {
+        return lastBeatsPerSecond;
+    }
 
-        try {
-            // Your real classification logic would go here.
-            // For now, this is a placeholder that simulates classification
-            // with the correct beat types based on initial definitions
-
-            int[] classTypes = {
-                    BEAT_TYPE_NORMAL,                    // N
-                    BEAT_TYPE_LEFT_BUNDLE_BRANCH_BLOCK,  // L
-                    BEAT_TYPE_RIGHT_BUNDLE_BRANCH_BLOCK, // R
-                    BEAT_TYPE_ATRIAL_PREMATURE,          // A
-                    BEAT_TYPE_PREMATURE_VENTRICULAR      // V
-            };
-
-            // Simulate classification of 10 beats
-            for (int i = 0; i < 10; i++) {
-                BeatClassification result = new BeatClassification();
-                result.beatIndex = i;
-
-                // Cycle through different beat types for demonstration
-                result.type = classTypes[i % classTypes.length];
-                result.confidence = 0.85f + (i * 0.02f);
-
-                // Ensure confidence doesn't exceed 1.0
-                if (result.confidence > 1.0f) {
-                    result.confidence = 1.0f;
-                }
+    /**
+     * Beats per second over every classification call since the model was loaded.
+     */
+    public float getAverageBeatsPerSecond() {
+        long nanos = totalInferenceNanos.get();
+        if (nanos == 0) {
+            return 0f;
+        }
+        return totalBeatsClassified.get() * 1e9f / nanos;
+    }
 
-                results.add(result);
+    /**
+     * Average model cost of one beat, e.g. to estimate the time saved by beats that were never
+     * classified; 0 until something has been classified.
+     */
+    public long getAverageNanosPerBeat() {
+        long beats = totalBeatsClassified.get();
+        return beats == 0 ? 0 : totalInferenceNanos.get() / beats;
+    }
 
-                Log.d(TAG, "Generated beat " + i + ": " + getBeatTypeName(result.type) +
-                        " (" + result.confidence + ")");
-            }
+    public LatencyHistogram getQueueWaitHistogram() {
+        return queueWaitHistogram;
+    }
 
-            Log.i(TAG, "Classification completed. Results: " + results.size());
+    public LatencyHistogram getInferenceHistogram() {
+        return inferenceHistogram;
+    }
 
-        } catch (Exception e) {
-            Log.e(TAG, "Error in classification: " + e.getMessage(), e);
+    public List<BeatClassification> classifyCSVData(java.io.InputStream csvStream) {
+        if (!isModelLoaded()) {
+            Log.e(TAG, "Model not loaded, cannot classify data");
+            return new ArrayList<>();
         }
 
-        return results;
+        Log.d(TAG, "Starting CSV data classification...");
+
+        ECGPreprocessor.ProcessedECGData processed = new ECGPreprocessor().processCSVData(csvStream);
+        if (processed == null) {
+            Log.e(TAG, "Preprocessing failed, no beats to classify");
+            return new ArrayList<>();
+        }
+
+        return classifyBeats(processed.normalizedBeats, processed.rPeakIndices);
     }
 
     /**
-     * Helper method to get the display name for a beat type
+     * Classifies raw samples without any text round-trip: samples are segmented into beats by
+     * {@link ECGPreprocessor#processSamples(float[], int)} and fed straight to the model.
      */
-    public static String getBeatTypeName(int beatType) {
-        switch (beatType) {
-            case BEAT_TYPE_NORMAL:
-                return "Normal beat";
-            case BEAT_TYPE_LEFT_BUNDLE_BRANCH_BLOCK:
-                return "Left bundle branch block beat";
-            case BEAT_TYPE_RIGHT_BUNDLE_BRANCH_BLOCK:
-                return "Right bundle branch block beat";
-            case BEAT_TYPE_ATRIAL_PREMATURE:
-                return "Atrial premature beat";
-            case BEAT_TYPE_PREMATURE_VENTRICULAR:
-                return "Premature ventricular contraction";
-            case BEAT_TYPE_UNKNOWN:
-                return "Unknown beat type";
-            default:
-                return "Invalid beat type";
+    public List<BeatClassification> classifySamples(float[] samples, int length) {
+        if (!isModelLoaded()) {
+            Log.e(TAG, "Model not loaded, cannot classify data");
+            return new ArrayList<>();
         }
+        ECGPreprocessor.ProcessedECGData processed = new ECGPreprocessor().processSamples(samples, length);
+        return classifyBeats(processed.normalizedBeats, processed.rPeakIndices);
     }
 
     /**
-     * Helper method to get the short code for a beat type
+     * Same as {@link #classifySamples(float[], int)} for the remaining samples of a buffer.
      */
-    public static String getBeatTypeCode(int beatType) {
-        switch (beatType) {
-            case BEAT_TYPE_NORMAL:
-                return "N";
-            case BEAT_TYPE_LEFT_BUNDLE_BRANCH_BLOCK:
-                return "L";
-            case BEAT_TYPE_RIGHT_BUNDLE_BRANCH_BLOCK:
-                return "R";
-            case BEAT_TYPE_ATRIAL_PREMATURE:
-                return "A";
-            case BEAT_TYPE_PREMATURE_VENTRICULAR:
-                return "V";
-            case BEAT_TYPE_UNKNOWN:
-                return "U";
-            default:
-                return "?";
+    public List<BeatClassification> classifySamples(FloatBuffer samples) {
+        if (!isModelLoaded()) {
+            Log.e(TAG, "Model not loaded, cannot classify data");
+            return new ArrayList<>();
         }
+        ECGPreprocessor.ProcessedECGData processed = new ECGPreprocessor().processSamples(samples);
+        return classifyBeats(processed.normalizedBeats, processed.rPeakIndices);
     }
 
-    public void close() {
-        if (tflite != null) {
-            tflite.close();
-            tflite = null;
-            Log.d(TAG, "TFLite interpreter closed");
-        }
-        isLoaded = false;
-    }
+    /**
+     * Classifies normalized beats in batches of {@link #getBatchSize()}, one Interpreter.run per
+     * batch. {@code beatIndices} supplies the index reported for each beat (usually the R-peak
+     * sample); when null the position in {@code beats} is used. Safe to call from several
+     * threads: each call borrows its own interpreter from the pool. The pool work itself is
+     * {@link BeatBatchClassifier}, which :benchmark measures directly.
+     */
+    public List<BeatClassification> classifyBeats(List<float[]> beats, List<Integer> beatIndices) {
+        List<BeatClassification> results = new ArrayList<>(beats.size());
 
-    public static class BeatClassification {
-        public int beatIndex;
-        public int type;  // Uses the BEAT_TYPE constants
-        public float confidence;
+        BeatBatchClassifier classifier = this.batchClassifier;
+        if (!isLoaded || classifier == null) {
+            Log.e(TAG, "Model not loaded, cannot classify data");
+            return results;
+        }
 
-        // Helper method to get display name for this beat
-        public String getTypeName() {
-            return ECGClassifier.getBeatTypeName(this.type);
+        long runNanos = 0;
+        try {
+            runNanos = classifier.classify(beats, beatIndices, batchSize, results);
+        } catch (InterruptedException e) {
+            Log.w(TAG, "Interrupted while waiting for an interpreter");
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            Log.e(TAG, "Error in classification: " + e.getMessage(), e);
         }
 
-        // Helper method to get short code for this beat
-        public String getTypeCode() {
-            return ECGClassifier.getBeatTypeCode(this.type);
+        totalBeatsClassified.addAndGet(results.size());
+        totalInferenceNanos.addAndGet(runNanos);
+        lastBeatsPerSecond = runNanos > 0 ? results.size() * 1e9f / runNanos : 0f;
+        // Called per live batch, so this goes to metrics rather than logcat
+        BEATS_CLASSIFIED.add(results.size());
+        BEATS_PER_SECOND.set(lastBeatsPerSecond);
+
+        return results;
+    }
+
+    public void close() {
+        isLoaded = false;
+        batchClassifier = null;
+        if (pool != null) {
+            Log.d(TAG, queueWaitHistogram.summary());
+            Log.d(TAG, inferenceHistogram.summary());
+            pool.close();
+            pool = null;
+            Log.d(TAG, "TFLite interpreter pool closed");
         }
     }
-}
\ No newline at end of file
+}
@@ -3,19 +3,41 @@ package com.example.myapplication;
 import java.io.BufferedReader;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.FloatBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class ECGPreprocessor {
     public static final int SEGMENT_LENGTH = 300;
+    public static final int DEFAULT_SAMPLE_RATE = 250; // Hz, the ESP32 front end's rate
+
+    static final float PEAK_THRESHOLD_RATIO = 0.6f;
+    static final int PEAK_REFRACTORY_SAMPLES = 100;
+
+    private static final LatencyHistogram PREPROCESS_TIME = Metrics.getInstance().histogram("preprocess");
+    private static final Metrics.Counter PREPROCESSED_BEATS = Metrics.getInstance().counter("preprocess_beats");
+    private static final Metrics.Counter REJECTED_BEATS = Metrics.getInstance().counter("preprocess_rejected_beats");
+
+    /**
+     * Identifies everything that changes the beats this class produces; cached analysis results
+     * are only reused while it stays the same.
+     */
+    public static String getParameterKey() {
+        return "seg=" + SEGMENT_LENGTH + ";thr=" + PEAK_THRESHOLD_RATIO +
+                ";refractory=" + PEAK_REFRACTORY_SAMPLES + ";norm=zscore;sqi=" + SignalQualityIndex.DEFAULT_THRESHOLD + ";v2";
+    }
 
     public static class ProcessedECGData {
         public List<float[]> normalizedBeats;
         public List<Integer> rPeakIndices;
+        // R-peaks whose window failed the signal quality gate; not classified
+        public List<Integer> rejectedPeakIndices;
 
         public ProcessedECGData() {
             normalizedBeats = new ArrayList<>();
             rPeakIndices = new ArrayList<>();
+            rejectedPeakIndices = new ArrayList<>();
         }
 
         // Add setter method to allow modification
@@ -25,92 +47,132 @@ public class ECGPreprocessor {
     }
 
     public ProcessedECGData processCSVData(InputStream csvInputStream) {
-        ProcessedECGData result = new ProcessedECGData();
-
         try {
             BufferedReader reader = new BufferedReader(new InputStreamReader(csvInputStream));
             String line;
-            List<Float> ecgData = new ArrayList<>();
+            float[] ecgData = new float[4096];
+            int count = 0;
 
             // Read CSV data
             while ((line = reader.readLine()) != null) {
                 try {
-                    float value = Float.parseFloat(line.trim());
-                    ecgData.add(value);
+                    // Value is the last column, so both "value" and "time,value" rows work
+                    String field = line.substring(line.lastIndexOf(',') + 1).trim();
+                    float value = Float.parseFloat(field);
+                    if (count == ecgData.length) {
+                        ecgData = Arrays.copyOf(ecgData, count * 2);
+                    }
+                    ecgData[count++] = value;
                 } catch (NumberFormatException e) {
                     // Skip non-numeric lines (headers, etc.)
                 }
             }
             reader.close();
 
-            // Detect R-peaks
-            List<Integer> rPeaks = detectRPeaks(ecgData);
-
-            // Extract beats around R-peaks
-            for (int rPeak : rPeaks) {
-                float[] beat = extractBeatSegment(ecgData, rPeak);
-                if (beat != null) {
-                    float[] normalizedBeat = normalizeBeat(beat);
-                    result.normalizedBeats.add(normalizedBeat);
-                    result.rPeakIndices.add(rPeak); // This should work now
-                }
-            }
+            return processSamples(ecgData, count);
 
         } catch (Exception e) {
             e.printStackTrace();
             return null;
         }
+    }
+
+    /**
+     * Detects beats directly in the first {@code length} samples of {@code samples}.
+     * R-peak indices are relative to the start of the array. Beats whose raw window fails the
+     * {@link SignalQualityIndex} gate are listed in {@code rejectedPeakIndices} instead.
+     */
+    public ProcessedECGData processSamples(float[] samples, int length) {
+        long t0 = System.nanoTime();
+        ProcessedECGData result = new ProcessedECGData();
+        SignalQualityIndex quality = new SignalQualityIndex();
+
+        // Detect R-peaks
+        List<Integer> rPeaks = detectRPeaks(samples, length);
+
+        // Extract beats around R-peaks
+        for (int rPeak : rPeaks) {
+            float[] beat = extractBeatSegment(samples, length, rPeak);
+            if (beat == null) continue;
+            if (!quality.accept(beat, 0, beat.length, 0)) {
+                result.rejectedPeakIndices.add(rPeak);
+                continue;
+            }
+            normalizeBeat(beat);
+            result.normalizedBeats.add(beat);
+            result.rPeakIndices.add(rPeak);
+        }
 
+        PREPROCESS_TIME.record(System.nanoTime() - t0);
+        PREPROCESSED_BEATS.add(result.normalizedBeats.size());
+        REJECTED_BEATS.add(result.rejectedPeakIndices.size());
         return result;
     }
 
-    private List<Integer> detectRPeaks(List<Float> ecgData) {
+    /**
+     * Same as {@link #processSamples(float[], int)} for the remaining samples of a buffer.
+     * Heap buffers are read in place; direct buffers are copied once.
+     */
+    public ProcessedECGData processSamples(FloatBuffer samples) {
+        int length = samples.remaining();
+        if (samples.hasArray() && samples.arrayOffset() + samples.position() == 0) {
+            return processSamples(samples.array(), length);
+        }
+        float[] copy = new float[length];
+        samples.duplicate().get(copy);
+        return processSamples(copy, length);
+    }
+
+    // Package-private for the benchmarks
+    List<Integer> detectRPeaks(float[] ecgData, int length) {
         List<Integer> rPeaks = new ArrayList<>();
-        if (ecgData.isEmpty()) return rPeaks;
+        if (length == 0) return rPeaks;
 
         // Calculate threshold based on data
         float maxVal = Float.MIN_VALUE;
-        for (float value : ecgData) {
-            if (Math.abs(value) > maxVal) {
-                maxVal = Math.abs(value);
+        for (int i = 0; i < length; i++) {
+            float value = Math.abs(ecgData[i]);
+            if (value > maxVal) {
+                maxVal = value;
             }
         }
-        float threshold = maxVal * 0.6f; // 60% of max value
+        float threshold = maxVal * PEAK_THRESHOLD_RATIO; // 60% of max value
 
         // Simple peak detection
-        for (int i = 1; i < ecgData.size() - 1; i++) {
-            float current = Math.abs(ecgData.get(i));
-            float prev = Math.abs(ecgData.get(i - 1));
-            float next = Math.abs(ecgData.get(i + 1));
+        for (int i = 1; i < length - 1; i++) {
+            float current = Math.abs(ecgData[i]);
+            float prev = Math.abs(ecgData[i - 1]);
+            float next = Math.abs(ecgData[i + 1]);
 
             if (current > threshold && current > prev && current > next) {
                 rPeaks.add(i);
-                i += 100; // Skip ahead to avoid multiple detections
+                i += PEAK_REFRACTORY_SAMPLES; // Skip ahead to avoid multiple detections
             }
         }
 
         return rPeaks;
     }
 
-    private float[] extractBeatSegment(List<Float> ecgData, int rPeakIndex) {
+    private float[] extractBeatSegment(float[] ecgData, int length, int rPeakIndex) {
         int halfSegment = SEGMENT_LENGTH / 2;
         int start = rPeakIndex - halfSegment;
         int end = rPeakIndex + halfSegment;
 
-        if (start < 0 || end >= ecgData.size()) {
+        if (start < 0 || end >= length) {
             return null; // Not enough data for segment
         }
 
         float[] segment = new float[SEGMENT_LENGTH];
-        for (int i = 0; i < SEGMENT_LENGTH; i++) {
-            segment[i] = ecgData.get(start + i);
-        }
+        System.arraycopy(ecgData, start, segment, 0, SEGMENT_LENGTH);
 
         return segment;
     }
 
-    private float[] normalizeBeat(float[] beat) {
-        if (beat == null || beat.length == 0) return beat;
+    /**
+     * Z-score normalizes the beat in place.
+     */
+    static void normalizeBeat(float[] beat) {
+        if (beat == null || beat.length == 0) return;
 
         // Calculate mean
         float mean = 0;
@@ -130,11 +192,8 @@ public class ECGPreprocessor {
         if (std < 0.0001f) std = 1.0f;
 
         // Normalize
-        float[] normalized = new float[beat.length];
         for (int i = 0; i < beat.length; i++) {
-            normalized[i] = (beat[i] - mean) / std;
+            beat[i] = (beat[i] - mean) / std;
         }
-
-        return normalized;
     }
-}
\ No newline at end of file
+}
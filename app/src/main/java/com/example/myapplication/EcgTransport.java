@@ -0,0 +1,105 @@
+package com.example.myapplication;
+
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * A link to the ECG device that {@link AcquisitionService} reads samples from: classic Bluetooth
+ * ({@link RfcommTransport}) or BLE notifications ({@link BleTransport}). The service only sees
+ * decoded samples, so a session runs the same way over either link. Used from one ingest thread,
+ * except {@link #close()}, which may come from any thread and must unblock a pending read.
+ */
+public interface EcgTransport {
+
+    /**
+     * Receives each decoded sample, on the ingest thread.
+     */
+    interface SampleSink {
+        /**
+         * @param sequence the device's sample sequence number, or {@link SampleClock#NO_SEQUENCE}
+         */
+        void onSample(int ecgValue, int loPlus, int loMinus, long sequence, long arrivalNanos);
+    }
+
+    /**
+     * Opens the link, blocking until samples can be read.
+     */
+    void connect() throws IOException;
+
+    /**
+     * Waits for data, up to a short timeout, and passes every complete sample in it to
+     * {@code sink}. Returns the bytes received, 0 on a timeout. Throws once the link is lost or
+     * closed.
+     */
+    int read(SampleSink sink) throws IOException;
+
+    void close();
+
+    String getName();
+
+    Stats getStats();
+
+    /**
+     * Link counters of one connection, to compare transports on the same device. Written by the
+     * ingest thread only.
+     */
+    final class Stats {
+        private volatile long connectedNanos;
+        private volatile long bytes;
+        private volatile long samples;
+        private volatile long packets;
+        private volatile long lostPackets;
+
+        void onConnected(long nanos) {
+            connectedNanos = nanos;
+        }
+
+        void onPacket(int packetBytes, int packetSamples) {
+            bytes += packetBytes;
+            samples += packetSamples;
+            packets++;
+        }
+
+        void onPacketsLost(long count) {
+            lostPackets += count;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getSamples() {
+            return samples;
+        }
+
+        public long getPackets() {
+            return packets;
+        }
+
+        public long getLostPackets() {
+            return lostPackets;
+        }
+
+        /** Bytes per second since the link was connected. */
+        public double getThroughput(long nowNanos) {
+            long elapsed = nowNanos - connectedNanos;
+            return connectedNanos == 0 || elapsed <= 0 ? 0 : bytes * 1e9 / elapsed;
+        }
+
+        /** Link bytes spent per sample, the cost to compare between transports. */
+        public double getBytesPerSample() {
+            return samples == 0 ? 0 : (double) bytes / samples;
+        }
+
+        /** Share of packets (notifications, for BLE) that never arrived, 0-1. */
+        public double getLossRate() {
+            long expected = packets + lostPackets;
+            return expected == 0 ? 0 : (double) lostPackets / expected;
+        }
+
+        public String summary(long nowNanos) {
+            return String.format(Locale.US, "%d samples, %.0f B/s, %.1f B/sample, %d/%d packets lost",
+                    samples, getThroughput(nowNanos), getBytesPerSample(), lostPackets, packets + lostPackets);
+        }
+    }
+}
@@ -0,0 +1,373 @@
+package com.example.myapplication;
+
+import java.util.Locale;
+
+/**
+ * Heart-rate variability over the NN-interval series, updated one beat at a time.
+ * <p>
+ * Time-domain metrics (SDNN, RMSSD, pNN50) are kept both for the whole recording and for a
+ * sliding {@link #WINDOW_SECONDS} window, from running sums that each beat adds to and each
+ * interval leaving the window subtracts from. Only the window's intervals are stored, in
+ * primitive rings, so memory stays fixed over a 24-hour recording. LF and HF power come from the
+ * window's tachogram resampled at {@link #RESAMPLE_HZ}, Hann-windowed and run through a
+ * preallocated {@link Fft}; that part is computed on demand by {@link #getMetrics()}.
+ * Intervals outside a physiological range, or jumping too far from the previous NN interval,
+ * are treated as artefact or ectopy and left out.
+ */
+public class HrvEngine {
+    public static final float WINDOW_SECONDS = 300f;
+    public static final float RESAMPLE_HZ = 4f;
+
+    private static final float MIN_RR_MS = 300f;
+    private static final float MAX_RR_MS = 2000f;
+    // Change from the previous NN interval beyond which an interval is not normal-to-normal
+    private static final float MAX_RELATIVE_CHANGE = 0.2f;
+    // After this many rejections in a row the rate has really changed; accept and re-anchor
+    private static final int MAX_CONSECUTIVE_REJECTS = 3;
+    private static final float NN50_MS = 50f;
+    // Enough for a full window at 220 BPM
+    private static final int RING_CAPACITY = 2048;
+    // 256 s of tachogram at 4 Hz
+    private static final int FFT_SIZE = 1024;
+    // LF needs a couple of minutes of data to mean anything
+    private static final float MIN_SPECTRUM_SECONDS = 120f;
+    private static final float LF_LOW_HZ = 0.04f;
+    private static final float LF_HIGH_HZ = 0.15f;
+    private static final float HF_HIGH_HZ = 0.40f;
+
+    /**
+     * Point-in-time results. Times are in milliseconds, pNN50 in percent. Frequency-domain
+     * values are NaN until the window holds {@code MIN_SPECTRUM_SECONDS} of intervals.
+     */
+    public static class Metrics {
+        public final long nnCount;
+        public final long rejectedCount;
+        public final float meanNnMs;
+        public final float sdnnMs;
+        public final float rmssdMs;
+        public final float pnn50;
+        public final float windowSdnnMs;
+        public final float windowRmssdMs;
+        public final float windowPnn50;
+        public final float lfPower;
+        public final float hfPower;
+        public final float lfHfRatio;
+
+        Metrics(long nnCount, long rejectedCount, float meanNnMs, float sdnnMs, float rmssdMs,
+                float pnn50, float windowSdnnMs, float windowRmssdMs, float windowPnn50,
+                float lfPower, float hfPower) {
+            this.nnCount = nnCount;
+            this.rejectedCount = rejectedCount;
+            this.meanNnMs = meanNnMs;
+            this.sdnnMs = sdnnMs;
+            this.rmssdMs = rmssdMs;
+            this.pnn50 = pnn50;
+            this.windowSdnnMs = windowSdnnMs;
+            this.windowRmssdMs = windowRmssdMs;
+            this.windowPnn50 = windowPnn50;
+            this.lfPower = lfPower;
+            this.hfPower = hfPower;
+            this.lfHfRatio = hfPower > 0 ? lfPower / hfPower : Float.NaN;
+        }
+
+        public float getMeanHeartRate() {
+            return meanNnMs > 0 ? 60000f / meanNnMs : 0f;
+        }
+
+        public boolean hasSpectrum() {
+            return !Float.isNaN(lfHfRatio);
+        }
+
+        @Override
+        public String toString() {
+            String text = String.format(Locale.US, "SDNN %.0f ms, RMSSD %.0f ms, pNN50 %.1f%%",
+                    sdnnMs, rmssdMs, pnn50);
+            if (hasSpectrum()) {
+                text += String.format(Locale.US, ", LF/HF %.2f", lfHfRatio);
+            }
+            return text;
+        }
+    }
+
+    private final int sampleRate;
+    private long lastPeak = -1;
+    // Last beat before a break in the sequence; the next beat moves the time axis across the gap
+    private long breakPeak = -1;
+    private double elapsedSeconds = 0;
+    private float lastNn = Float.NaN;
+    private int consecutiveRejects = 0;
+    private boolean previousWasRejected = false;
+    private long rejectedCount = 0;
+
+    // Whole recording: Welford mean/variance plus successive-difference totals
+    private long nnCount = 0;
+    private double mean = 0;
+    private double m2 = 0;
+    private double diffSqTotal = 0;
+    private long diffCount = 0;
+    private long nn50Total = 0;
+
+    // Sliding window: rings of NN value, end time and squared difference to the previous
+    // interval (NaN when that interval was not an NN interval)
+    private final float[] ringNn = new float[RING_CAPACITY];
+    private final double[] ringTime = new double[RING_CAPACITY];
+    private final float[] ringDiffSq = new float[RING_CAPACITY];
+    private int ringStart = 0;
+    private int ringCount = 0;
+    private double windowSum = 0;
+    private double windowSumSq = 0;
+    private double windowDiffSq = 0;
+    private int windowDiffs = 0;
+    private int windowNn50 = 0;
+    private int evictionsSinceRecompute = 0;
+
+    // Spectrum scratch space, allocated once
+    private final Fft fft = new Fft(FFT_SIZE);
+    private final float[] re = new float[FFT_SIZE];
+    private final float[] im = new float[FFT_SIZE];
+    // Sum of squared window weights, for the periodogram scale
+    private double windowPowerSum;
+
+    /**
+     * @param sampleRate rate of the sample indices passed to {@link #addBeat}
+     */
+    public HrvEngine(int sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * Adds the beat whose R-peak is at {@code peakSample}; the RR interval is measured from the
+     * previous beat. The first beat after {@link #breakSequence()} adds no interval, but the
+     * window and tachogram still move on by the time since the beat before the break.
+     */
+    public synchronized void addBeat(long peakSample) {
+        if (lastPeak >= 0 && peakSample > lastPeak) {
+            addInterval((peakSample - lastPeak) * 1000f / sampleRate);
+        } else if (breakPeak >= 0 && peakSample > breakPeak) {
+            elapsedSeconds += (double) (peakSample - breakPeak) / sampleRate;
+            evictOlderThan(elapsedSeconds - WINDOW_SECONDS);
+        }
+        breakPeak = -1;
+        lastPeak = peakSample;
+    }
+
+    /**
+     * Adds one RR interval in milliseconds.
+     */
+    public synchronized void addInterval(float rrMs) {
+        elapsedSeconds += rrMs / 1000.0;
+        evictOlderThan(elapsedSeconds - WINDOW_SECONDS);
+
+        boolean inRange = rrMs >= MIN_RR_MS && rrMs <= MAX_RR_MS;
+        boolean steady = Float.isNaN(lastNn) || Math.abs(rrMs - lastNn) <= MAX_RELATIVE_CHANGE * lastNn;
+        if (!inRange || (!steady && consecutiveRejects < MAX_CONSECUTIVE_REJECTS)) {
+            rejectedCount++;
+            consecutiveRejects++;
+            // The next interval is not adjacent to an NN interval, so it gets no difference
+            if (!inRange) lastNn = Float.NaN;
+            previousWasRejected = true;
+            return;
+        }
+
+        float diffSq = Float.NaN;
+        if (!previousWasRejected && !Float.isNaN(lastNn)) {
+            float diff = rrMs - lastNn;
+            diffSq = diff * diff;
+            diffSqTotal += diffSq;
+            diffCount++;
+            if (Math.abs(diff) > NN50_MS) nn50Total++;
+        }
+        consecutiveRejects = 0;
+        previousWasRejected = false;
+        lastNn = rrMs;
+
+        nnCount++;
+        double delta = rrMs - mean;
+        mean += delta / nnCount;
+        m2 += delta * (rrMs - mean);
+
+        if (ringCount == RING_CAPACITY) {
+            evictOldest();
+        }
+        int slot = (ringStart + ringCount) % RING_CAPACITY;
+        ringNn[slot] = rrMs;
+        ringTime[slot] = elapsedSeconds;
+        ringDiffSq[slot] = diffSq;
+        ringCount++;
+        windowSum += rrMs;
+        windowSumSq += (double) rrMs * rrMs;
+        if (!Float.isNaN(diffSq)) {
+            windowDiffSq += diffSq;
+            windowDiffs++;
+            if (diffSq > NN50_MS * NN50_MS) windowNn50++;
+        }
+    }
+
+    public synchronized void reset() {
+        lastPeak = -1;
+        breakPeak = -1;
+        elapsedSeconds = 0;
+        lastNn = Float.NaN;
+        consecutiveRejects = 0;
+        previousWasRejected = false;
+        rejectedCount = 0;
+        nnCount = 0;
+        mean = 0;
+        m2 = 0;
+        diffSqTotal = 0;
+        diffCount = 0;
+        nn50Total = 0;
+        ringStart = 0;
+        ringCount = 0;
+        recomputeWindowSums();
+    }
+
+    /**
+     * Forgets the previous beat without clearing any statistics, so an interval is not measured
+     * across a gap in the signal. With {@link #addBeat} the gap still counts as elapsed time, so
+     * the intervals either side of it keep their place in the tachogram.
+     */
+    public synchronized void breakSequence() {
+        if (lastPeak >= 0) {
+            breakPeak = lastPeak;
+        }
+        lastPeak = -1;
+        previousWasRejected = true;
+    }
+
+    public synchronized Metrics getMetrics() {
+        float sdnn = nnCount > 1 ? (float) Math.sqrt(m2 / (nnCount - 1)) : 0f;
+        float rmssd = diffCount > 0 ? (float) Math.sqrt(diffSqTotal / diffCount) : 0f;
+        float pnn50 = diffCount > 0 ? 100f * nn50Total / diffCount : 0f;
+
+        float windowSdnn = 0f;
+        if (ringCount > 1) {
+            double windowMean = windowSum / ringCount;
+            double variance = (windowSumSq - ringCount * windowMean * windowMean) / (ringCount - 1);
+            windowSdnn = (float) Math.sqrt(Math.max(0, variance));
+        }
+        float windowRmssd = windowDiffs > 0 ? (float) Math.sqrt(windowDiffSq / windowDiffs) : 0f;
+        float windowPnn50 = windowDiffs > 0 ? 100f * windowNn50 / windowDiffs : 0f;
+
+        float lf = Float.NaN;
+        float hf = Float.NaN;
+        if (computeSpectrum()) {
+            lf = bandPower(LF_LOW_HZ, LF_HIGH_HZ);
+            hf = bandPower(LF_HIGH_HZ, HF_HIGH_HZ);
+        }
+        return new Metrics(nnCount, rejectedCount, (float) mean, sdnn, rmssd, pnn50,
+                windowSdnn, windowRmssd, windowPnn50, lf, hf);
+    }
+
+    private void evictOlderThan(double cutoff) {
+        while (ringCount > 0 && ringTime[ringStart] < cutoff) {
+            evictOldest();
+        }
+    }
+
+    private void evictOldest() {
+        float nn = ringNn[ringStart];
+        windowSum -= nn;
+        windowSumSq -= (double) nn * nn;
+        removeDiff(ringStart);
+        ringStart = (ringStart + 1) % RING_CAPACITY;
+        ringCount--;
+        // The new oldest interval's difference refers to one that has left the window
+        if (ringCount > 0) {
+            removeDiff(ringStart);
+            ringDiffSq[ringStart] = Float.NaN;
+        }
+
+        // Rebuild the sums now and then so subtraction error cannot accumulate over a day
+        if (++evictionsSinceRecompute >= RING_CAPACITY) {
+            recomputeWindowSums();
+        }
+    }
+
+    private void removeDiff(int slot) {
+        float diffSq = ringDiffSq[slot];
+        if (!Float.isNaN(diffSq)) {
+            windowDiffSq -= diffSq;
+            windowDiffs--;
+            if (diffSq > NN50_MS * NN50_MS) windowNn50--;
+        }
+    }
+
+    private void recomputeWindowSums() {
+        windowSum = 0;
+        windowSumSq = 0;
+        windowDiffSq = 0;
+        windowDiffs = 0;
+        windowNn50 = 0;
+        for (int i = 0; i < ringCount; i++) {
+            int slot = (ringStart + i) % RING_CAPACITY;
+            windowSum += ringNn[slot];
+            windowSumSq += (double) ringNn[slot] * ringNn[slot];
+            if (!Float.isNaN(ringDiffSq[slot])) {
+                windowDiffSq += ringDiffSq[slot];
+                windowDiffs++;
+                if (ringDiffSq[slot] > NN50_MS * NN50_MS) windowNn50++;
+            }
+        }
+        evictionsSinceRecompute = 0;
+    }
+
+    /**
+     * Fills {@link #re}/{@link #im} with the spectrum of the last (up to) 256 s of the window's
+     * tachogram: linearly interpolated at {@link #RESAMPLE_HZ}, mean removed, Hann-windowed and
+     * zero-padded. Returns false if there is not enough data.
+     */
+    private boolean computeSpectrum() {
+        if (ringCount < 4) return false;
+        int last = (ringStart + ringCount - 1) % RING_CAPACITY;
+        double end = ringTime[last];
+        double start = Math.max(ringTime[ringStart], end - FFT_SIZE / RESAMPLE_HZ);
+        if (end - start < MIN_SPECTRUM_SECONDS) return false;
+
+        int length = Math.min(FFT_SIZE, (int) ((end - start) * RESAMPLE_HZ));
+        int index = 0;
+        double sum = 0;
+        for (int i = 0; i < length; i++) {
+            double t = start + i / RESAMPLE_HZ;
+            while (index < ringCount - 2 && ringTime[(ringStart + index + 1) % RING_CAPACITY] < t) {
+                index++;
+            }
+            int a = (ringStart + index) % RING_CAPACITY;
+            int b = (ringStart + index + 1) % RING_CAPACITY;
+            double span = ringTime[b] - ringTime[a];
+            double fraction = span > 0 ? Math.max(0, Math.min(1, (t - ringTime[a]) / span)) : 0;
+            re[i] = (float) (ringNn[a] + fraction * (ringNn[b] - ringNn[a]));
+            sum += re[i];
+        }
+
+        float average = (float) (sum / length);
+        windowPowerSum = 0;
+        for (int i = 0; i < FFT_SIZE; i++) {
+            if (i < length) {
+                float w = (float) (0.5 - 0.5 * Math.cos(2 * Math.PI * i / (length - 1)));
+                re[i] = (re[i] - average) * w;
+                windowPowerSum += w * w;
+            } else {
+                re[i] = 0f;
+            }
+            im[i] = 0f;
+        }
+        fft.transform(re, im);
+        return true;
+    }
+
+    /**
+     * Power in [low, high) Hz in ms^2 from the one-sided periodogram in {@link #re}/{@link #im}.
+     */
+    private float bandPower(float low, float high) {
+        double binHz = RESAMPLE_HZ / FFT_SIZE;
+        double scale = 2.0 / (RESAMPLE_HZ * windowPowerSum);
+        double power = 0;
+        int from = (int) Math.ceil(low / binHz);
+        int to = (int) Math.ceil(high / binHz);
+        for (int k = from; k < to && k <= FFT_SIZE / 2; k++) {
+            power += (re[k] * re[k] + im[k] * im[k]) * scale * binHz;
+        }
+        return (float) power;
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.myapplication;
+
+import org.tensorflow.lite.InterpreterApi;
+
+/**
+ * CPU backends the classifier can run the model on. The winner for a device is picked by
+ * {@link BackendSelector} from a timed calibration batch.
+ */
+public enum InferenceBackend {
+    // XNNPACK delegate: hand-tuned NEON/SSE kernels for float and int8 ops
+    XNNPACK {
+        @Override
+        public void configure(InterpreterApi.Options options) {
+            options.setUseXNNPACK(true);
+        }
+    },
+    // TFLite builtin (reference/ruy) kernels with no delegate applied
+    BUILTIN_CPU {
+        @Override
+        public void configure(InterpreterApi.Options options) {
+            options.setUseXNNPACK(false);
+        }
+    };
+
+    public abstract void configure(InterpreterApi.Options options);
+
+    /**
+     * Parses a persisted backend name, returning null for unknown or missing values.
+     */
+    public static InferenceBackend fromName(String name) {
+        if (name == null) return null;
+        for (InferenceBackend backend : values()) {
+            if (backend.name().equals(name)) return backend;
+        }
+        return null;
+    }
+}
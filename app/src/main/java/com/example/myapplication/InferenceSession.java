@@ -0,0 +1,272 @@
+package com.example.myapplication;
+
+import org.tensorflow.lite.DataType;
+import org.tensorflow.lite.InterpreterApi;
+import org.tensorflow.lite.Tensor;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.List;
+
+/**
+ * One interpreter plus the direct input/output buffers it runs on. A session is only ever
+ * used by one thread at a time; {@link InterpreterPool} hands sessions out and takes them back.
+ * Float, dynamic-range and full-int8 models are supported: int8/uint8 input tensors are filled
+ * using the scale and zero point read from the tensor, and quantized outputs are dequantized.
+ */
+public class InferenceSession {
+    // Number of beats packed into one Interpreter.run call
+    public static final int DEFAULT_BATCH_SIZE = 32;
+    private static final int BYTES_PER_FLOAT = 4;
+
+    private final InterpreterApi interpreter;
+    private final int numThreads;
+    private final int beatLength;
+    private final int numClasses;
+
+    // Tensor element types and quantization parameters (scale 0 means not quantized)
+    private final DataType inputType;
+    private final float inputScale;
+    private final int inputZeroPoint;
+    private final DataType outputType;
+    private final float outputScale;
+    private final int outputZeroPoint;
+
+    private int batchSize = 0;
+    private ByteBuffer inputBuffer;
+    private ByteBuffer outputBuffer;
+    private FloatBuffer inputFloats;
+    private FloatBuffer outputFloats;
+
+    public InferenceSession(InterpreterApi interpreter, int numThreads) {
+        this.interpreter = interpreter;
+        this.numThreads = numThreads;
+
+        Tensor input = interpreter.getInputTensor(0);
+        int[] inputShape = input.shape();
+        int length = 1;
+        for (int i = 1; i < inputShape.length; i++) {
+            length *= inputShape[i];
+        }
+        beatLength = length;
+        inputType = input.dataType();
+        inputScale = input.quantizationParams().getScale();
+        inputZeroPoint = input.quantizationParams().getZeroPoint();
+
+        Tensor output = interpreter.getOutputTensor(0);
+        int[] outputShape = output.shape();
+        numClasses = outputShape[outputShape.length - 1];
+        outputType = output.dataType();
+        outputScale = output.quantizationParams().getScale();
+        outputZeroPoint = output.quantizationParams().getZeroPoint();
+
+        if (!isSupported(inputType) || !isSupported(outputType)) {
+            throw new IllegalArgumentException("Unsupported tensor types: " + inputType + " -> " + outputType);
+        }
+    }
+
+    private static boolean isSupported(DataType type) {
+        return type == DataType.FLOAT32 || type == DataType.INT8 || type == DataType.UINT8;
+    }
+
+    /**
+     * True when the model takes int8/uint8 input (a fully quantized model).
+     */
+    public boolean isQuantizedInput() {
+        return inputType != DataType.FLOAT32;
+    }
+
+    public DataType getInputType() {
+        return inputType;
+    }
+
+    public InterpreterApi getInterpreter() {
+        return interpreter;
+    }
+
+    public int getNumThreads() {
+        return numThreads;
+    }
+
+    public int getBeatLength() {
+        return beatLength;
+    }
+
+    public int getNumClasses() {
+        return numClasses;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Resizes the input tensor to hold {@code size} beats and allocates matching direct buffers.
+     * Falls back to a batch of one if the model does not accept a resized batch dimension, so
+     * callers should read {@link #getBatchSize()} afterwards.
+     */
+    public void ensureBatchSize(int size) {
+        if (size == batchSize) {
+            return;
+        }
+
+        int[] inputShape = interpreter.getInputTensor(0).shape();
+        inputShape[0] = size;
+        try {
+            interpreter.resizeInput(0, inputShape);
+            interpreter.allocateTensors();
+        } catch (IllegalArgumentException e) {
+            size = 1;
+            inputShape[0] = 1;
+            interpreter.resizeInput(0, inputShape);
+            interpreter.allocateTensors();
+        }
+
+        inputBuffer = ByteBuffer.allocateDirect(size * beatLength * bytesPerElement(inputType))
+                .order(ByteOrder.nativeOrder());
+        outputBuffer = ByteBuffer.allocateDirect(size * numClasses * bytesPerElement(outputType))
+                .order(ByteOrder.nativeOrder());
+        inputFloats = inputBuffer.asFloatBuffer();
+        outputFloats = outputBuffer.asFloatBuffer();
+        batchSize = size;
+    }
+
+    /**
+     * Classifies {@code beats} one batch per Interpreter.run. For beat {@code i} the arg-max model
+     * output index is written to {@code classIndices[i]} and its score to {@code confidences[i]},
+     * so decoding allocates nothing. Returns the time spent inside Interpreter.run.
+     */
+    public long classify(List<float[]> beats, int[] classIndices, float[] confidences) {
+        long runNanos = 0;
+        for (int start = 0; start < beats.size(); start += batchSize) {
+            int count = Math.min(batchSize, beats.size() - start);
+            packBatch(beats, start, count);
+
+            long t0 = System.nanoTime();
+            outputBuffer.rewind();
+            interpreter.run(inputBuffer, outputBuffer);
+            runNanos += System.nanoTime() - t0;
+
+            decodeBatch(start, count, classIndices, confidences);
+        }
+        return runNanos;
+    }
+
+    private static int bytesPerElement(DataType type) {
+        return type == DataType.FLOAT32 ? BYTES_PER_FLOAT : 1;
+    }
+
+    /**
+     * Copies {@code count} beats into the reused input buffer. Slots past {@code count} in a
+     * partial final batch, and any samples past a short beat, are zero-filled.
+     */
+    private void packBatch(List<float[]> beats, int start, int count) {
+        if (inputType != DataType.FLOAT32) {
+            packQuantizedBatch(beats, start, count);
+            return;
+        }
+
+        inputFloats.clear();
+        for (int b = 0; b < batchSize; b++) {
+            if (b < count) {
+                float[] beat = beats.get(start + b);
+                int n = Math.min(beat.length, beatLength);
+                inputFloats.put(beat, 0, n);
+                for (int i = n; i < beatLength; i++) {
+                    inputFloats.put(0f);
+                }
+            } else {
+                for (int i = 0; i < beatLength; i++) {
+                    inputFloats.put(0f);
+                }
+            }
+        }
+        inputBuffer.rewind();
+    }
+
+    /**
+     * Quantizes each sample with the input tensor's parameters: q = round(x / scale) + zeroPoint,
+     * clamped to the int8 or uint8 range. Padding uses the zero point, i.e. a real value of 0.
+     */
+    private void packQuantizedBatch(List<float[]> beats, int start, int count) {
+        int min = inputType == DataType.INT8 ? -128 : 0;
+        int max = inputType == DataType.INT8 ? 127 : 255;
+        float inverseScale = inputScale != 0f ? 1f / inputScale : 1f;
+        byte zero = (byte) inputZeroPoint;
+
+        inputBuffer.clear();
+        for (int b = 0; b < batchSize; b++) {
+            int n = 0;
+            if (b < count) {
+                float[] beat = beats.get(start + b);
+                n = Math.min(beat.length, beatLength);
+                for (int i = 0; i < n; i++) {
+                    int q = Math.round(beat[i] * inverseScale) + inputZeroPoint;
+                    inputBuffer.put((byte) Math.max(min, Math.min(max, q)));
+                }
+            }
+            for (int i = n; i < beatLength; i++) {
+                inputBuffer.put(zero);
+            }
+        }
+        inputBuffer.rewind();
+    }
+
+    /**
+     * Score at {@code index} of the output buffer, dequantized if the output tensor is quantized.
+     */
+    private float outputScore(int index) {
+        switch (outputType) {
+            case INT8:
+                return (outputBuffer.get(index) - outputZeroPoint) * outputScale;
+            case UINT8:
+                return ((outputBuffer.get(index) & 0xFF) - outputZeroPoint) * outputScale;
+            default:
+                return outputFloats.get(index);
+        }
+    }
+
+    /**
+     * Reads the arg-max class and its score for each beat straight from the output buffer.
+     */
+    private void decodeBatch(int start, int count, int[] classIndices, float[] confidences) {
+        for (int b = 0; b < count; b++) {
+            int base = b * numClasses;
+            int best = 0;
+            float bestScore = outputScore(base);
+            float sum = 0f;
+            boolean probabilities = true;
+            for (int c = 0; c < numClasses; c++) {
+                float score = outputScore(base + c);
+                if (score < 0f || score > 1f) probabilities = false;
+                sum += score;
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = c;
+                }
+            }
+
+            // Softmax on the fly if the model emits logits
+            if (!probabilities || Math.abs(sum - 1f) > 0.01f) {
+                float expSum = 0f;
+                for (int c = 0; c < numClasses; c++) {
+                    expSum += (float) Math.exp(outputScore(base + c) - bestScore);
+                }
+                bestScore = 1f / expSum;
+            }
+
+            classIndices[start + b] = best;
+            confidences[start + b] = bestScore;
+        }
+    }
+
+    public void close() {
+        interpreter.close();
+        inputBuffer = null;
+        outputBuffer = null;
+        inputFloats = null;
+        outputFloats = null;
+        batchSize = 0;
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.myapplication;
+
+import org.tensorflow.lite.InterpreterApi;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of interpreters that all run the same memory-mapped model. An Interpreter is not
+ * thread-safe, so each caller borrows a whole {@link InferenceSession} and returns it when done.
+ * Sessions are created lazily; each new one gets a thread count sized to the cores that are not
+ * already busy running other sessions. If the requested backend fails to initialize, the pool
+ * falls back to the builtin CPU kernels for it and every later session.
+ */
+public class InterpreterPool {
+    // XNNPACK/ruy gain little past four threads for a model this small
+    public static final int MAX_THREADS_PER_INTERPRETER = 4;
+    // How often a caller waiting for a session checks whether the pool was closed
+    private static final long CLOSED_CHECK_MS = 100;
+
+    /**
+     * Creates interpreters; the default goes through {@link InterpreterApi#create}, which picks up
+     * whichever TFLite runtime is on the classpath (the Android AAR, or a JVM build in tests).
+     */
+    public interface Factory {
+        InterpreterApi create(ByteBuffer model, InterpreterApi.Options options);
+    }
+
+    public static final Factory DEFAULT_FACTORY = InterpreterApi::create;
+
+    private final ByteBuffer model;
+    private final Factory factory;
+    private volatile InferenceBackend backend;
+    private final int maxSize;
+    private final int cores;
+    private final BlockingQueue<InferenceSession> idle;
+    private final List<InferenceSession> all = new ArrayList<>();
+    private final AtomicInteger busyThreads = new AtomicInteger();
+    private volatile boolean closed = false;
+
+    public InterpreterPool(ByteBuffer model, int maxSize) {
+        this(model, maxSize, InferenceBackend.XNNPACK, DEFAULT_FACTORY);
+    }
+
+    public InterpreterPool(ByteBuffer model, int maxSize, InferenceBackend backend, Factory factory) {
+        this.model = model;
+        this.factory = factory;
+        this.backend = backend;
+        this.maxSize = Math.max(1, maxSize);
+        this.cores = Runtime.getRuntime().availableProcessors();
+        this.idle = new ArrayBlockingQueue<>(this.maxSize);
+    }
+
+    /**
+     * Enough sessions for live classification, file analysis and background re-analysis to run
+     * side by side, but never more than half the cores.
+     */
+    public static int defaultPoolSize() {
+        return Math.max(1, Math.min(3, Runtime.getRuntime().availableProcessors() / 2));
+    }
+
+    /**
+     * Threads for a new interpreter given how many cores are already busy: every free core up to
+     * {@link #MAX_THREADS_PER_INTERPRETER}, and at least one.
+     */
+    public static int chooseThreadCount(int cores, int busyThreads) {
+        int free = cores - busyThreads;
+        return Math.max(1, Math.min(MAX_THREADS_PER_INTERPRETER, free));
+    }
+
+    /**
+     * Creates one session on the given backend.
+     */
+    public static InferenceSession createSession(Factory factory, ByteBuffer model,
+                                                 InferenceBackend backend, int threads) {
+        InterpreterApi.Options options = new InterpreterApi.Options().setNumThreads(threads);
+        backend.configure(options);
+        return new InferenceSession(factory.create(model, options), threads);
+    }
+
+    /**
+     * Backend new sessions are created on; differs from the requested one after a fallback.
+     */
+    public InferenceBackend getBackend() {
+        return backend;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public synchronized int getCreatedCount() {
+        return all.size();
+    }
+
+    public int getBusyThreads() {
+        return busyThreads.get();
+    }
+
+    /**
+     * Borrows a session, creating one if the pool is not full, otherwise waiting for one to be
+     * released. Throws {@link IllegalStateException} once the pool is closed, including to
+     * callers already waiting.
+     */
+    public InferenceSession acquire() throws InterruptedException {
+        checkOpen();
+        InferenceSession session = idle.poll();
+        if (session == null) {
+            session = createIfRoom();
+        }
+        // Released sessions are closed rather than queued after close(), so keep checking
+        while (session == null) {
+            checkOpen();
+            session = idle.poll(CLOSED_CHECK_MS, TimeUnit.MILLISECONDS);
+        }
+
+        busyThreads.addAndGet(session.getNumThreads());
+        return session;
+    }
+
+    public void release(InferenceSession session) {
+        busyThreads.addAndGet(-session.getNumThreads());
+        if (closed || !idle.offer(session)) {
+            session.close();
+        } else if (closed && idle.remove(session)) {
+            // close() drained the idle queue before this session went back on it
+            session.close();
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Interpreter pool is closed");
+        }
+    }
+
+    private synchronized InferenceSession createIfRoom() {
+        checkOpen();
+        if (all.size() >= maxSize) {
+            return null;
+        }
+
+        int threads = chooseThreadCount(cores, busyThreads.get());
+        InferenceSession session;
+        try {
+            session = createSession(factory, model, backend, threads);
+        } catch (RuntimeException e) {
+            if (backend == InferenceBackend.BUILTIN_CPU) {
+                throw e;
+            }
+            backend = InferenceBackend.BUILTIN_CPU;
+            session = createSession(factory, model, backend, threads);
+        }
+        all.add(session);
+        return session;
+    }
+
+    /**
+     * Closes idle sessions now; sessions still in use are closed when they are released.
+     */
+    public synchronized void close() {
+        closed = true;
+        InferenceSession session;
+        while ((session = idle.poll()) != null) {
+            session.close();
+        }
+        all.clear();
+    }
+}
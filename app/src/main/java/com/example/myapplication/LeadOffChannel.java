@@ -0,0 +1,161 @@
+package com.example.myapplication;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Lead-off state of a recording, one bit per sample, kept alongside the samples so the samples
+ * themselves only need to be stored while the electrodes are in contact. Spans are recovered with
+ * {@link BitSet#nextSetBit}/{@link BitSet#nextClearBit}, so summaries cost one step per span
+ * rather than per sample. Samples lost in transit are kept as gaps: they are flagged lead-off too,
+ * since no signal was recorded for them, and also marked so they can be told apart. Methods are
+ * synchronized: the reader thread appends while export and upload read.
+ */
+public class LeadOffChannel {
+    // Timeline resolution for reports
+    public static final int TIMELINE_BUCKET_SECONDS = 10;
+
+    private static final char[] LEVELS = {' ', '▁', '▂', '▃', '▄', '▅', '▆', '▇', '█'};
+
+    private final BitSet leadOff = new BitSet();
+    private final BitSet gaps = new BitSet();
+    private int sampleCount = 0;
+
+    public synchronized void add(boolean isLeadOff) {
+        if (isLeadOff) {
+            leadOff.set(sampleCount);
+        }
+        sampleCount++;
+    }
+
+    /**
+     * Appends {@code samples} lost in transit, e.g. a run of missing sequence numbers.
+     */
+    public synchronized void addGap(int samples) {
+        leadOff.set(sampleCount, sampleCount + samples);
+        gaps.set(sampleCount, sampleCount + samples);
+        sampleCount += samples;
+    }
+
+    public synchronized void clear() {
+        leadOff.clear();
+        gaps.clear();
+        sampleCount = 0;
+    }
+
+    public synchronized boolean isGap(int sample) {
+        return gaps.get(sample);
+    }
+
+    /**
+     * True if every sample of [{@code start}, {@code start + length}) was lost in transit.
+     */
+    public synchronized boolean isGap(int start, int length) {
+        return gaps.get(start, start + length).cardinality() == length;
+    }
+
+    public synchronized int getGapSampleCount() {
+        return gaps.cardinality();
+    }
+
+    public synchronized boolean isLeadOff(int sample) {
+        return leadOff.get(sample);
+    }
+
+    public synchronized int getSampleCount() {
+        return sampleCount;
+    }
+
+    public synchronized int getLeadOffCount() {
+        return leadOff.cardinality();
+    }
+
+    /**
+     * Share of samples with both electrodes in contact, 0-100; 100 for an empty recording.
+     */
+    public synchronized double getContactPercent() {
+        return sampleCount == 0 ? 100.0 : 100.0 * (sampleCount - leadOff.cardinality()) / sampleCount;
+    }
+
+    /**
+     * Lead-off spans, gaps included, as flattened {start, length} pairs in sample indices.
+     */
+    public synchronized List<Integer> getSpans() {
+        return spansOf(leadOff);
+    }
+
+    /**
+     * Gaps alone, as flattened {start, length} pairs in sample indices.
+     */
+    public synchronized List<Integer> getGapSpans() {
+        return spansOf(gaps);
+    }
+
+    private List<Integer> spansOf(BitSet bits) {
+        List<Integer> spans = new ArrayList<>();
+        for (int start = bits.nextSetBit(0); start >= 0 && start < sampleCount;
+             start = bits.nextSetBit(start)) {
+            int end = Math.min(bits.nextClearBit(start), sampleCount);
+            spans.add(start);
+            spans.add(end - start);
+            start = end;
+        }
+        return spans;
+    }
+
+    /**
+     * Writes {@code samples}, the stored lines of this recording, with a "# lead-off N samples"
+     * line where each lead-off span was left out, or "# gap N samples" where samples were lost in
+     * transit, so the file keeps its timeline without the dropped samples.
+     */
+    public synchronized void writeSamples(Writer writer, String samples) throws IOException {
+        List<Integer> spans = getSpans();
+        int written = 0;
+        int pos = 0;
+        int stored = 0;
+        int skipped = 0;
+        for (int i = 0; i < spans.size(); i += 2) {
+            int start = spans.get(i);
+            int length = spans.get(i + 1);
+            // Every sample before the span that was not itself lead-off is a stored line
+            while (stored < start - skipped && pos < samples.length()) {
+                int end = samples.indexOf('\n', pos);
+                pos = end < 0 ? samples.length() : end + 1;
+                stored++;
+            }
+            writer.write(samples, written, pos - written);
+            writer.write((isGap(start, length) ? "# gap " : "# lead-off ") + length + " samples\n");
+            written = pos;
+            skipped += length;
+        }
+        writer.write(samples, written, samples.length() - written);
+    }
+
+    /**
+     * Percentage of samples in contact for each bucket of {@code bucketSamples}.
+     */
+    public synchronized List<Integer> getContactTimeline(int bucketSamples) {
+        List<Integer> timeline = new ArrayList<>();
+        for (int start = 0; start < sampleCount; start += bucketSamples) {
+            int end = Math.min(start + bucketSamples, sampleCount);
+            int off = leadOff.get(start, end).cardinality();
+            timeline.add(Math.round(100f * (end - start - off) / (end - start)));
+        }
+        return timeline;
+    }
+
+    /**
+     * One block character per timeline bucket, full height for complete contact.
+     */
+    public static String sparkline(List<Integer> timeline) {
+        StringBuilder text = new StringBuilder(timeline.size());
+        for (int percent : timeline) {
+            int level = Math.round(Math.max(0, Math.min(100, percent)) * (LEVELS.length - 1) / 100f);
+            text.append(LEVELS[level]);
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,353 @@
+package com.example.myapplication;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Classifies beats from a live stream while it is being recorded. Samples go through a
+ * {@link StreamingBeatDetector} on the caller's thread; completed beats are queued and drained in
+ * batches by one task at a time on the shared inference pool, in the live-classification lane.
+ * A batch is held open for at most {@code maxLingerNanos} after its oldest beat, and always closed
+ * early enough that the expected inference time still fits in the latency budget. Latency is
+ * measured per beat from the moment its window is complete (the earliest it could be classified)
+ * to the moment its result is delivered. Windows that fail the {@link SignalQualityIndex} gate
+ * never reach the model; they are passed on in stream order as skipped beats. Stream resets are
+ * applied on the feeding thread with its next sample, so they may be requested from any thread.
+ */
+public class LiveBeatClassifier implements StreamingBeatDetector.BeatListener {
+    private static final Logger LOG = Logger.getLogger("LiveBeatClassifier");
+
+    public static final long DEFAULT_LATENCY_BUDGET_MS = 500;
+    public static final long DEFAULT_MAX_LINGER_MS = 50;
+    // Beats queued beyond this are dropped oldest-first rather than letting latency grow
+    private static final int MAX_QUEUED_BEATS = 256;
+    // Assumed batch cost until the first batch has been timed
+    private static final long INITIAL_BATCH_ESTIMATE_NANOS = 20_000_000L;
+    private static final long STOP_TIMEOUT_MS = 500;
+
+    public interface Listener {
+        /**
+         * Called on an inference pool thread, once per beat, in stream order.
+         */
+        void onBeatClassified(BeatClassification beat, long latencyNanos);
+
+        /**
+         * Called on an inference pool thread, in stream order, for a beat the quality gate rejected.
+         */
+        default void onBeatSkipped(long peakIndex, SignalQualityIndex.Issue issue) {
+        }
+    }
+
+    private static class QueuedBeat {
+        final long peakIndex;
+        // Null for a beat rejected by the quality gate
+        final float[] samples;
+        final SignalQualityIndex.Issue issue;
+        final long readyNanos;
+
+        QueuedBeat(long peakIndex, float[] samples, SignalQualityIndex.Issue issue, long readyNanos) {
+            this.peakIndex = peakIndex;
+            this.samples = samples;
+            this.issue = issue;
+            this.readyNanos = readyNanos;
+        }
+    }
+
+    private final WindowedAnalyzer.BeatClassifier classifier;
+    private final int batchSize;
+    private final StreamingBeatDetector detector;
+    // Set by resetStream(), applied by the thread feeding samples
+    private volatile boolean resetRequested = false;
+    private final SignalQualityIndex quality = new SignalQualityIndex();
+    private final Listener listener;
+    private final long budgetNanos;
+    private final long maxLingerNanos;
+
+    private final Object lock = new Object();
+    private final ArrayDeque<QueuedBeat> queue = new ArrayDeque<>();
+    private volatile boolean running = false;
+    // A drain task is scheduled or running; only one at a time, guarded by lock
+    private boolean draining = false;
+    private Thread drainThread;
+    // Smoothed cost of one batch, used to decide when a batch must be closed
+    private volatile long expectedBatchNanos = INITIAL_BATCH_ESTIMATE_NANOS;
+
+    private final LatencyHistogram latencyHistogram = new LatencyHistogram("live_beat_latency");
+    private final AtomicLong classifiedBeats = new AtomicLong();
+    private final AtomicLong deadlineMisses = new AtomicLong();
+    private final AtomicLong droppedBeats = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong inferenceNanos = new AtomicLong();
+
+    /**
+     * @param classifier classifies one batch, e.g. {@link ECGClassifier#classifyBeats}
+     * @param batchSize  beats per call to {@code classifier}
+     */
+    public LiveBeatClassifier(WindowedAnalyzer.BeatClassifier classifier, int batchSize, int sampleRate,
+                              Listener listener) {
+        this(classifier, batchSize, sampleRate, DEFAULT_LATENCY_BUDGET_MS, DEFAULT_MAX_LINGER_MS, listener);
+    }
+
+    public LiveBeatClassifier(WindowedAnalyzer.BeatClassifier classifier, int batchSize, int sampleRate,
+                              long latencyBudgetMs, long maxLingerMs, Listener listener) {
+        this.classifier = classifier;
+        this.batchSize = Math.max(1, batchSize);
+        this.listener = listener;
+        this.budgetNanos = latencyBudgetMs * 1_000_000L;
+        this.maxLingerNanos = Math.min(maxLingerMs, latencyBudgetMs) * 1_000_000L;
+        Metrics.getInstance().register(latencyHistogram);
+        this.detector = new StreamingBeatDetector(sampleRate, quality, this);
+    }
+
+    public void start() {
+        synchronized (lock) {
+            running = true;
+        }
+    }
+
+    /**
+     * Stops classifying and waits briefly for a batch in flight to finish, so the listener is
+     * not called after this returns. Beats still queued are discarded.
+     */
+    public void stop() {
+        synchronized (lock) {
+            running = false;
+            queue.clear();
+            lock.notifyAll();
+        }
+        TaskScheduler.getInstance().cancelAll(this);
+        synchronized (lock) {
+            if (drainThread == null) {
+                draining = false; // Cancelled before it started
+            }
+            long deadline = System.nanoTime() + STOP_TIMEOUT_MS * 1_000_000L;
+            try {
+                while (draining && drainThread != Thread.currentThread()) {
+                    long waitMs = (deadline - System.nanoTime()) / 1_000_000L;
+                    if (waitMs <= 0) break;
+                    lock.wait(waitMs);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        LOG.fine("Stopped. " + getSummary());
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Feeds one raw sample. Must be called from a single thread.
+     */
+    public void addSample(float value, boolean leadOff) {
+        if (resetRequested) {
+            resetRequested = false;
+            detector.reset();
+        }
+        detector.addSample(value, leadOff);
+    }
+
+    /**
+     * Forgets buffered samples, e.g. when the stream had a gap and windows would straddle it.
+     * Takes effect with the next sample fed.
+     */
+    public void resetStream() {
+        resetRequested = true;
+    }
+
+    @Override
+    public void onBeat(long peakIndex, float[] beat) {
+        enqueue(new QueuedBeat(peakIndex, beat, SignalQualityIndex.Issue.NONE, System.nanoTime()));
+    }
+
+    @Override
+    public void onBeatRejected(long peakIndex, SignalQualityIndex.Issue issue) {
+        enqueue(new QueuedBeat(peakIndex, null, issue, System.nanoTime()));
+    }
+
+    private void enqueue(QueuedBeat queued) {
+        if (!running) return;
+        synchronized (lock) {
+            if (queue.size() >= MAX_QUEUED_BEATS) {
+                queue.pollFirst();
+                droppedBeats.incrementAndGet();
+            }
+            queue.addLast(queued);
+            lock.notifyAll();
+            if (!draining) {
+                draining = true;
+                scheduleDrain();
+            }
+        }
+    }
+
+    private void scheduleDrain() {
+        try {
+            TaskScheduler.getInstance().submit(TaskScheduler.Pool.INFERENCE,
+                    TaskScheduler.Priority.LIVE_CLASSIFICATION, this, "live-classify", this::drainQueue);
+        } catch (RejectedExecutionException e) {
+            draining = false;
+            LOG.log(Level.WARNING, "Could not schedule classification", e);
+        }
+    }
+
+    /**
+     * Runs on the shared inference pool until the queue is empty, then gives the thread back.
+     */
+    private void drainQueue() {
+        List<QueuedBeat> batch = new ArrayList<>();
+        List<float[]> samples = new ArrayList<>();
+        List<Integer> indices = new ArrayList<>();
+        boolean released = false;
+        try {
+            synchronized (lock) {
+                drainThread = Thread.currentThread();
+            }
+            while (true) {
+                synchronized (lock) {
+                    if (!running || queue.isEmpty()) {
+                        releaseDrain();
+                        released = true;
+                        return;
+                    }
+                }
+                takeBatch(batch);
+                classifyBatch(batch, samples, indices);
+            }
+        } catch (InterruptedException e) {
+            // Cancelled by stop()
+        } finally {
+            if (!released) {
+                synchronized (lock) {
+                    releaseDrain();
+                }
+            }
+        }
+    }
+
+    private void releaseDrain() {
+        draining = false;
+        drainThread = null;
+        lock.notifyAll();
+    }
+
+    private void classifyBatch(List<QueuedBeat> batch, List<float[]> samples, List<Integer> indices) {
+        if (batch.isEmpty()) return;
+
+        samples.clear();
+        indices.clear();
+        for (QueuedBeat beat : batch) {
+            if (beat.samples != null) {
+                samples.add(beat.samples);
+                indices.add((int) beat.peakIndex);
+            }
+        }
+
+        List<BeatClassification> results = Collections.emptyList();
+        long done = System.nanoTime();
+        if (!samples.isEmpty()) {
+            long t0 = done;
+            try {
+                List<BeatClassification> classified = classifier.classify(samples, indices);
+                if (classified != null) {
+                    results = classified;
+                }
+            } catch (Exception e) {
+                LOG.log(Level.WARNING, "Live classification failed", e);
+            }
+            done = System.nanoTime();
+            expectedBatchNanos = (expectedBatchNanos * 7 + (done - t0)) / 8;
+            inferenceNanos.addAndGet(done - t0);
+            batches.incrementAndGet();
+        }
+
+        int next = 0;
+        for (int i = 0; i < batch.size() && running; i++) {
+            QueuedBeat beat = batch.get(i);
+            if (beat.samples == null) {
+                listener.onBeatSkipped(beat.peakIndex, beat.issue);
+                continue;
+            }
+            if (next >= results.size()) break;
+            long latency = done - beat.readyNanos;
+            latencyHistogram.record(latency);
+            classifiedBeats.incrementAndGet();
+            if (latency > budgetNanos) {
+                deadlineMisses.incrementAndGet();
+            }
+            listener.onBeatClassified(results.get(next++), latency);
+        }
+    }
+
+    /**
+     * Keeps the batch open until it is full, the linger time has passed, or waiting any longer
+     * would push the oldest beat past its deadline.
+     */
+    private void takeBatch(List<QueuedBeat> batch) throws InterruptedException {
+        batch.clear();
+        synchronized (lock) {
+            while (running && !queue.isEmpty() && queue.size() < batchSize) {
+                long oldest = queue.peekFirst().readyNanos;
+                long closeAt = Math.min(oldest + maxLingerNanos,
+                        oldest + budgetNanos - 2 * expectedBatchNanos);
+                long waitNanos = closeAt - System.nanoTime();
+                if (waitNanos <= 0) break;
+                lock.wait(waitNanos / 1_000_000L, (int) (waitNanos % 1_000_000L));
+            }
+            while (!queue.isEmpty() && batch.size() < batchSize) {
+                batch.add(queue.pollFirst());
+            }
+        }
+    }
+
+    public LatencyHistogram getLatencyHistogram() {
+        return latencyHistogram;
+    }
+
+    public long getLatencyBudgetMs() {
+        return budgetNanos / 1_000_000L;
+    }
+
+    public long getClassifiedBeats() {
+        return classifiedBeats.get();
+    }
+
+    public long getDeadlineMisses() {
+        return deadlineMisses.get();
+    }
+
+    public long getDroppedBeats() {
+        return droppedBeats.get();
+    }
+
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    /**
+     * Average classification cost of one beat so far, 0 until a beat has been classified.
+     */
+    public long getAverageNanosPerBeat() {
+        long beats = classifiedBeats.get();
+        return beats == 0 ? 0 : inferenceNanos.get() / beats;
+    }
+
+    public SignalQualityIndex getSignalQuality() {
+        return quality;
+    }
+
+    public String getSummary() {
+        return latencyHistogram.summary() + " budget=" + getLatencyBudgetMs() + "ms"
+                + " beats=" + classifiedBeats.get() + " batches=" + batches.get()
+                + " misses=" + deadlineMisses.get() + " dropped=" + droppedBeats.get()
+                + " quality: " + quality.summary(getAverageNanosPerBeat());
+    }
+}
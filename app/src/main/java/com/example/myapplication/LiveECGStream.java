@@ -0,0 +1,84 @@
+package com.example.myapplication;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Process-wide fan-out of the samples coming off the ECG device, so screens other than the one
+ * holding the connection (e.g. live classification on the Analyse tab) can follow a recording.
+ * Listeners are called on the connection's reader thread and must return quickly.
+ */
+public class LiveECGStream {
+
+    public interface Listener {
+        void onStreamStarted(int sampleRate);
+
+        void onSample(int ecgValue, boolean leadOff);
+
+        void onStreamStopped();
+    }
+
+    private static final LiveECGStream INSTANCE = new LiveECGStream();
+
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+    // Added while a stream was running and not yet told it started
+    private final Set<Listener> pendingStart = ConcurrentHashMap.newKeySet();
+    private volatile boolean active = false;
+    private volatile int sampleRate = ECGPreprocessor.DEFAULT_SAMPLE_RATE;
+
+    public static LiveECGStream getInstance() {
+        return INSTANCE;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * Adds a listener; if a stream is already running it is told so on the reader thread, just
+     * before its next sample.
+     */
+    public void addListener(Listener listener) {
+        if (active) {
+            pendingStart.add(listener);
+        }
+        listeners.addIfAbsent(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+        pendingStart.remove(listener);
+    }
+
+    public void start(int sampleRate) {
+        this.sampleRate = sampleRate;
+        active = true;
+        pendingStart.clear();
+        for (Listener listener : listeners) {
+            listener.onStreamStarted(sampleRate);
+        }
+    }
+
+    public void publish(int ecgValue, boolean leadOff) {
+        for (Listener listener : listeners) {
+            if (!pendingStart.isEmpty() && pendingStart.remove(listener)) {
+                listener.onStreamStarted(sampleRate);
+            }
+            listener.onSample(ecgValue, leadOff);
+        }
+    }
+
+    public void stop() {
+        if (!active) return;
+        active = false;
+        pendingStart.clear();
+        for (Listener listener : listeners) {
+            listener.onStreamStopped();
+        }
+    }
+}
@@ -18,6 +18,12 @@ public class MainActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
 
+        // Start loading the ECG model in the background so it is warm by the time it is needed
+        ClassifierHolder.getInstance().load(this);
+
+        MetricsReporter.getInstance().start(this);
+        MetricsReporter.getInstance().attachOverlay(this);
+
         tabLayout = findViewById(R.id.tab_layout);
         viewPager = findViewById(R.id.view_pager);
 
@@ -42,4 +48,17 @@ public class MainActivity extends AppCompatActivity {
                     }
                 }).attach();
     }
-}
\ No newline at end of file
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        // Backgrounded apps may be killed before the next periodic dump
+        MetricsReporter.getInstance().dumpNow();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        MetricsReporter.getInstance().detachOverlay();
+    }
+}
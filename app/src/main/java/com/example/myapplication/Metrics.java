@@ -0,0 +1,177 @@
+package com.example.myapplication;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide registry of pipeline metrics: counters, gauges and {@link LatencyHistogram}s, all
+ * keyed by name. Recording is lock-free and allocation-free; the registry map is only touched when
+ * a metric is looked up, so hot paths look a metric up once and keep the handle. Components that
+ * already own a histogram can {@link #register} it instead. Snapshots are rendered as JSON for the
+ * periodic dump and as plain text for the debug overlay.
+ */
+public final class Metrics {
+    private static final Metrics INSTANCE = new Metrics();
+
+    private final ConcurrentHashMap<String, Counter> counters = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Gauge> gauges = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private final long createdNanos = System.nanoTime();
+
+    public static Metrics getInstance() {
+        return INSTANCE;
+    }
+
+    Metrics() {
+    }
+
+    public static final class Counter {
+        private final AtomicLong value = new AtomicLong();
+
+        public void increment() {
+            value.incrementAndGet();
+        }
+
+        public void add(long delta) {
+            value.addAndGet(delta);
+        }
+
+        public long get() {
+            return value.get();
+        }
+    }
+
+    /**
+     * Last value set; stored as raw double bits so reads and writes never tear.
+     */
+    public static final class Gauge {
+        private final AtomicLong bits = new AtomicLong(Double.doubleToRawLongBits(0));
+
+        public void set(double value) {
+            bits.set(Double.doubleToRawLongBits(value));
+        }
+
+        public double get() {
+            return Double.longBitsToDouble(bits.get());
+        }
+    }
+
+    public Counter counter(String name) {
+        Counter counter = counters.get(name);
+        return counter != null ? counter : computeIfAbsent(counters, name, new Counter());
+    }
+
+    public Gauge gauge(String name) {
+        Gauge gauge = gauges.get(name);
+        return gauge != null ? gauge : computeIfAbsent(gauges, name, new Gauge());
+    }
+
+    public LatencyHistogram histogram(String name) {
+        LatencyHistogram histogram = histograms.get(name);
+        return histogram != null ? histogram : computeIfAbsent(histograms, name, new LatencyHistogram(name));
+    }
+
+    /**
+     * Publishes a histogram owned elsewhere under its own name, replacing any earlier one.
+     */
+    public void register(LatencyHistogram histogram) {
+        histograms.put(histogram.getName(), histogram);
+    }
+
+    private static <T> T computeIfAbsent(ConcurrentHashMap<String, T> map, String name, T created) {
+        T existing = map.putIfAbsent(name, created);
+        return existing != null ? existing : created;
+    }
+
+    /**
+     * Zeroes every counter, gauge and histogram; registrations are kept.
+     */
+    public void reset() {
+        for (Counter counter : counters.values()) counter.value.set(0);
+        for (Gauge gauge : gauges.values()) gauge.set(0);
+        for (LatencyHistogram histogram : histograms.values()) histogram.reset();
+    }
+
+    /**
+     * One JSON object with every metric, names sorted. Histograms are reported in milliseconds.
+     */
+    public String toJson(long timestampMillis) {
+        StringBuilder json = new StringBuilder(1024);
+        json.append("{\"timestamp\":").append(timestampMillis)
+                .append(",\"uptime_ms\":").append((System.nanoTime() - createdNanos) / 1_000_000);
+
+        json.append(",\"counters\":{");
+        boolean first = true;
+        for (Map.Entry<String, Counter> entry : new TreeMap<>(counters).entrySet()) {
+            if (!first) json.append(',');
+            first = false;
+            appendName(json, entry.getKey()).append(entry.getValue().get());
+        }
+
+        json.append("},\"gauges\":{");
+        first = true;
+        for (Map.Entry<String, Gauge> entry : new TreeMap<>(gauges).entrySet()) {
+            if (!first) json.append(',');
+            first = false;
+            appendName(json, entry.getKey()).append(number(entry.getValue().get()));
+        }
+
+        json.append("},\"histograms\":{");
+        first = true;
+        for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(histograms).entrySet()) {
+            if (!first) json.append(',');
+            first = false;
+            LatencyHistogram histogram = entry.getValue();
+            appendName(json, entry.getKey())
+                    .append("{\"count\":").append(histogram.getCount())
+                    .append(",\"mean_ms\":").append(number(histogram.getMeanNanos() / 1e6))
+                    .append(",\"p50_ms\":").append(number(histogram.getPercentileNanos(50) / 1e6))
+                    .append(",\"p99_ms\":").append(number(histogram.getPercentileNanos(99) / 1e6))
+                    .append(",\"p999_ms\":").append(number(histogram.getPercentileNanos(99.9) / 1e6))
+                    .append(",\"max_ms\":").append(number(histogram.getMaxNanos() / 1e6))
+                    .append('}');
+        }
+        return json.append("}}").toString();
+    }
+
+    /**
+     * Compact text for the debug overlay: one line per non-empty histogram, then counters and
+     * gauges.
+     */
+    public String overlayText() {
+        StringBuilder text = new StringBuilder();
+        for (LatencyHistogram histogram : new TreeMap<>(histograms).values()) {
+            if (histogram.getCount() == 0) continue;
+            text.append(String.format(Locale.US, "%s %.1f/%.1f/%.1f ms (%d)\n", histogram.getName(),
+                    histogram.getPercentileNanos(50) / 1e6, histogram.getPercentileNanos(99) / 1e6,
+                    histogram.getPercentileNanos(99.9) / 1e6, histogram.getCount()));
+        }
+        for (Map.Entry<String, Counter> entry : new TreeMap<>(counters).entrySet()) {
+            text.append(entry.getKey()).append(' ').append(entry.getValue().get()).append('\n');
+        }
+        for (Map.Entry<String, Gauge> entry : new TreeMap<>(gauges).entrySet()) {
+            text.append(entry.getKey()).append(' ')
+                    .append(String.format(Locale.US, "%.1f", entry.getValue().get())).append('\n');
+        }
+        return text.length() > 0 ? text.substring(0, text.length() - 1) : "";
+    }
+
+    private static StringBuilder appendName(StringBuilder json, String name) {
+        json.append('"');
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c == '"' || c == '\\') json.append('\\');
+            json.append(c);
+        }
+        return json.append("\":");
+    }
+
+    // JSON has no NaN or infinity
+    private static String number(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) return "null";
+        return String.format(Locale.US, "%.3f", value);
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.myapplication;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.graphics.Color;
+import android.graphics.Typeface;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.Gravity;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+import android.widget.TextView;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Gets {@link Metrics} off the device. Every minute, and whenever the app is backgrounded, a JSON
+ * snapshot is appended as one line to a daily file under the app's external files directory
+ * ({@code metrics/metrics-yyyyMMdd.jsonl}), which can be pulled from field devices without root.
+ * A once-a-second heartbeat on the main looper records how late it runs as
+ * {@code ui_main_thread_lag}, and in debuggable builds refreshes a text overlay of the registry.
+ */
+public final class MetricsReporter {
+    private static final String TAG = "MetricsReporter";
+    private static final long DUMP_INTERVAL_MS = 60 * 1000;
+    private static final long HEARTBEAT_MS = 1000;
+    private static final int MAX_DUMP_FILES = 7;
+
+    private static final MetricsReporter INSTANCE = new MetricsReporter();
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final LatencyHistogram mainThreadLag = Metrics.getInstance().histogram("ui_main_thread_lag");
+    private File directory;
+    private long nextHeartbeat;
+    private long nextDump;
+    private TextView overlay;
+    private boolean overlayExpanded = true;
+
+    public static MetricsReporter getInstance() {
+        return INSTANCE;
+    }
+
+    private MetricsReporter() {
+    }
+
+    /**
+     * Starts the heartbeat and periodic dump; later calls do nothing. Main thread only.
+     */
+    public void start(Context context) {
+        if (directory != null) return;
+        File base = context.getExternalFilesDir(null);
+        directory = new File(base != null ? base : context.getFilesDir(), "metrics");
+
+        long now = SystemClock.uptimeMillis();
+        nextHeartbeat = now + HEARTBEAT_MS;
+        nextDump = now + DUMP_INTERVAL_MS;
+        handler.postAtTime(heartbeat, nextHeartbeat);
+    }
+
+    private final Runnable heartbeat = new Runnable() {
+        @Override
+        public void run() {
+            long now = SystemClock.uptimeMillis();
+            mainThreadLag.record((now - nextHeartbeat) * 1_000_000L);
+            if (now >= nextDump) {
+                nextDump = now + DUMP_INTERVAL_MS;
+                dumpNow();
+            }
+            if (overlay != null) {
+                renderOverlay();
+            }
+            nextHeartbeat = now + HEARTBEAT_MS;
+            handler.postAtTime(this, nextHeartbeat);
+        }
+    };
+
+    /**
+     * Appends a snapshot to today's dump file on the I/O pool. The snapshot is taken now, on the
+     * calling thread, so it reflects this moment even if the write is delayed.
+     */
+    public void dumpNow() {
+        if (directory == null) return;
+        String json = Metrics.getInstance().toJson(System.currentTimeMillis());
+        try {
+            TaskScheduler.getInstance().submit(TaskScheduler.Pool.IO, TaskScheduler.Priority.BATCH,
+                    this, "metrics-dump", () -> writeSnapshot(json));
+        } catch (RejectedExecutionException e) {
+            Log.w(TAG, "I/O queue full, metrics snapshot dropped");
+        }
+    }
+
+    private void writeSnapshot(String json) {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            Log.w(TAG, "Cannot create " + directory);
+            return;
+        }
+        String day = new SimpleDateFormat("yyyyMMdd", Locale.US).format(new Date());
+        File file = new File(directory, "metrics-" + day + ".jsonl");
+        try (Writer writer = new FileWriter(file, true)) {
+            writer.write(json);
+            writer.write('\n');
+        } catch (IOException e) {
+            Log.w(TAG, "Metrics dump failed", e);
+            return;
+        }
+        pruneOldFiles();
+    }
+
+    // Daily names sort chronologically
+    private void pruneOldFiles() {
+        File[] files = directory.listFiles((dir, name) -> name.startsWith("metrics-") && name.endsWith(".jsonl"));
+        if (files == null || files.length <= MAX_DUMP_FILES) return;
+        Arrays.sort(files);
+        for (int i = 0; i < files.length - MAX_DUMP_FILES; i++) {
+            files[i].delete();
+        }
+    }
+
+    /**
+     * Shows the metrics overlay over {@code activity} in debuggable builds. Tap it to collapse.
+     */
+    public void attachOverlay(Activity activity) {
+        if ((activity.getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) == 0) return;
+
+        TextView view = new TextView(activity);
+        view.setTypeface(Typeface.MONOSPACE);
+        view.setTextSize(9);
+        view.setTextColor(Color.WHITE);
+        view.setBackgroundColor(0xAA000000);
+        view.setPadding(8, 4, 8, 4);
+        view.setOnClickListener(v -> {
+            overlayExpanded = !overlayExpanded;
+            renderOverlay();
+        });
+        activity.addContentView(view, new FrameLayout.LayoutParams(ViewGroup.LayoutParams.WRAP_CONTENT,
+                ViewGroup.LayoutParams.WRAP_CONTENT, Gravity.BOTTOM | Gravity.END));
+        overlay = view;
+        renderOverlay();
+    }
+
+    public void detachOverlay() {
+        overlay = null;
+    }
+
+    private void renderOverlay() {
+        overlay.setText(overlayExpanded ? Metrics.getInstance().overlayText() : "metrics");
+    }
+}
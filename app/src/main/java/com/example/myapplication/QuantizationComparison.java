@@ -0,0 +1,173 @@
+package com.example.myapplication;
+
+import android.content.Context;
+import android.os.Debug;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Runs the float and INT8 model variants over the same labelled beat set and reports accuracy,
+ * agreement, per-batch latency and memory, so the quantized model is adopted on evidence.
+ */
+public class QuantizationComparison {
+    private static final int TIMED_RUNS = 5;
+
+    /**
+     * Labelled beats: one row per beat, "code,v1,v2,...", where code is N, L, R, A or V.
+     */
+    public static class LabelledBeats {
+        public final List<float[]> beats = new ArrayList<>();
+        public int[] types = new int[0];
+    }
+
+    public static class VariantResult {
+        public ECGClassifier.ModelVariant variant;
+        public boolean loaded;
+        public boolean quantizedInput;
+        public InferenceBackend backend;
+        public int[] predicted = new int[0];
+        public float accuracy;
+        public long medianRunNanos;
+        public long modelBytes;
+        public long nativeHeapDeltaBytes;
+        public long javaHeapDeltaBytes;
+
+        public float beatsPerSecond() {
+            return medianRunNanos > 0 ? predicted.length * 1e9f / medianRunNanos : 0f;
+        }
+    }
+
+    public static class Result {
+        public VariantResult floatModel;
+        public VariantResult int8Model;
+        public float agreement; // fraction of beats where both variants predict the same class
+
+        public float accuracyDelta() {
+            return int8Model.accuracy - floatModel.accuracy;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder("Quantization comparison\n");
+            for (VariantResult r : new VariantResult[]{floatModel, int8Model}) {
+                if (!r.loaded) {
+                    sb.append(r.variant).append(": not loaded\n");
+                    continue;
+                }
+                sb.append(String.format(Locale.US,
+                        "%s (%s, %s input): accuracy=%.4f median=%.2fms %.0f beats/s model=%dKB nativeHeap=%+dKB javaHeap=%+dKB\n",
+                        r.variant, r.backend, r.quantizedInput ? "int8" : "float", r.accuracy,
+                        r.medianRunNanos / 1e6, r.beatsPerSecond(), r.modelBytes / 1024,
+                        r.nativeHeapDeltaBytes / 1024, r.javaHeapDeltaBytes / 1024));
+            }
+            if (floatModel.loaded && int8Model.loaded) {
+                sb.append(String.format(Locale.US, "accuracy delta=%+.4f agreement=%.4f",
+                        accuracyDelta(), agreement));
+            }
+            return sb.toString();
+        }
+    }
+
+    public static LabelledBeats loadLabelledBeats(InputStream stream) throws IOException {
+        LabelledBeats set = new LabelledBeats();
+        int[] types = new int[1024];
+        int count = 0;
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(",");
+                int type = BeatTypes.getBeatTypeForCode(parts[0].trim());
+                if (type == BeatTypes.BEAT_TYPE_UNKNOWN || parts.length < 2) {
+                    continue; // header or unsupported label
+                }
+
+                float[] beat = new float[parts.length - 1];
+                for (int i = 1; i < parts.length; i++) {
+                    beat[i - 1] = Float.parseFloat(parts[i].trim());
+                }
+                ECGPreprocessor.normalizeBeat(beat);
+                set.beats.add(beat);
+
+                if (count == types.length) {
+                    types = Arrays.copyOf(types, count * 2);
+                }
+                types[count++] = type;
+            }
+        }
+        set.types = Arrays.copyOf(types, count);
+        return set;
+    }
+
+    public static Result compare(Context context, LabelledBeats set) {
+        Result result = new Result();
+        result.floatModel = run(context, ECGClassifier.ModelVariant.FLOAT, set);
+        result.int8Model = run(context, ECGClassifier.ModelVariant.INT8, set);
+
+        if (result.floatModel.loaded && result.int8Model.loaded) {
+            int same = 0;
+            for (int i = 0; i < set.types.length; i++) {
+                if (result.floatModel.predicted[i] == result.int8Model.predicted[i]) same++;
+            }
+            result.agreement = set.types.length > 0 ? (float) same / set.types.length : 0f;
+        }
+        return result;
+    }
+
+    private static VariantResult run(Context context, ECGClassifier.ModelVariant variant, LabelledBeats set) {
+        VariantResult r = new VariantResult();
+        r.variant = variant;
+        if (!ECGClassifier.isModelAvailable(context, variant)) {
+            return r;
+        }
+
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long nativeBefore = Debug.getNativeHeapAllocatedSize();
+        long javaBefore = runtime.totalMemory() - runtime.freeMemory();
+
+        ECGClassifier classifier = new ECGClassifier(context, variant);
+        try {
+            r.loaded = classifier.isModelLoaded();
+            if (!r.loaded) {
+                return r;
+            }
+
+            // First call allocates tensors and warms caches; not timed
+            List<BeatClassification> beats = classifier.classifyBeats(set.beats, null);
+
+            long[] times = new long[TIMED_RUNS];
+            for (int i = 0; i < TIMED_RUNS; i++) {
+                long t0 = System.nanoTime();
+                classifier.classifyBeats(set.beats, null);
+                times[i] = System.nanoTime() - t0;
+            }
+            Arrays.sort(times);
+            r.medianRunNanos = times[TIMED_RUNS / 2];
+
+            r.nativeHeapDeltaBytes = Debug.getNativeHeapAllocatedSize() - nativeBefore;
+            r.javaHeapDeltaBytes = runtime.totalMemory() - runtime.freeMemory() - javaBefore;
+            r.modelBytes = classifier.getModelSizeBytes();
+            r.quantizedInput = classifier.isQuantizedInput();
+            r.backend = classifier.getBackend();
+
+            r.predicted = new int[beats.size()];
+            int correct = 0;
+            for (int i = 0; i < beats.size(); i++) {
+                r.predicted[i] = beats.get(i).type;
+                if (r.predicted[i] == set.types[i]) correct++;
+            }
+            r.accuracy = beats.isEmpty() ? 0f : (float) correct / beats.size();
+        } finally {
+            classifier.close();
+        }
+        return r;
+    }
+}
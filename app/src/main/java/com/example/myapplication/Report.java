@@ -1,6 +1,8 @@
 package com.example.myapplication;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 
 public class Report {
     private String ecgValues;
@@ -9,6 +11,21 @@ public class Report {
     private int heartRate;
     private long recordingDuration;
     private String userId;
+    // Heart-rate variability over the whole recording; 0 (LF/HF: NaN) when not computed
+    private double sdnnMs;
+    private double rmssdMs;
+    private double pnn50;
+    private double lfHfRatio = Double.NaN;
+    // Electrode contact: samples taken while an electrode was off are not in ecgValues. Spans are
+    // flattened {start, length} pairs in recording samples; the timeline is percent in contact
+    // per LeadOffChannel.TIMELINE_BUCKET_SECONDS. Contact is NaN for reports without the data.
+    private List<Integer> leadOffSpans = new ArrayList<>();
+    private List<Integer> contactTimeline = new ArrayList<>();
+    private double contactPercent = Double.NaN;
+    // Spans lost in transit, a subset of leadOffSpans, and the device's measured sample rate
+    // (0 when unknown)
+    private List<Integer> gapSpans = new ArrayList<>();
+    private double effectiveSampleRate;
 
     // Required empty constructor for Firestore
     public Report() {
@@ -74,6 +91,94 @@ public class Report {
         this.userId = userId;
     }
 
+    public double getSdnnMs() {
+        return sdnnMs;
+    }
+
+    public void setSdnnMs(double sdnnMs) {
+        this.sdnnMs = sdnnMs;
+    }
+
+    public double getRmssdMs() {
+        return rmssdMs;
+    }
+
+    public void setRmssdMs(double rmssdMs) {
+        this.rmssdMs = rmssdMs;
+    }
+
+    public double getPnn50() {
+        return pnn50;
+    }
+
+    public void setPnn50(double pnn50) {
+        this.pnn50 = pnn50;
+    }
+
+    public double getLfHfRatio() {
+        return lfHfRatio;
+    }
+
+    public void setLfHfRatio(double lfHfRatio) {
+        this.lfHfRatio = lfHfRatio;
+    }
+
+    // Copies the HRV results of a recording into this report
+    public void applyHrv(HrvEngine.Metrics metrics) {
+        this.sdnnMs = metrics.sdnnMs;
+        this.rmssdMs = metrics.rmssdMs;
+        this.pnn50 = metrics.pnn50;
+        this.lfHfRatio = metrics.lfHfRatio;
+    }
+
+    public List<Integer> getLeadOffSpans() {
+        return leadOffSpans;
+    }
+
+    public void setLeadOffSpans(List<Integer> leadOffSpans) {
+        this.leadOffSpans = leadOffSpans;
+    }
+
+    public List<Integer> getContactTimeline() {
+        return contactTimeline;
+    }
+
+    public void setContactTimeline(List<Integer> contactTimeline) {
+        this.contactTimeline = contactTimeline;
+    }
+
+    public double getContactPercent() {
+        return contactPercent;
+    }
+
+    public void setContactPercent(double contactPercent) {
+        this.contactPercent = contactPercent;
+    }
+
+    public List<Integer> getGapSpans() {
+        return gapSpans;
+    }
+
+    public void setGapSpans(List<Integer> gapSpans) {
+        this.gapSpans = gapSpans;
+    }
+
+    public double getEffectiveSampleRate() {
+        return effectiveSampleRate;
+    }
+
+    public void setEffectiveSampleRate(double effectiveSampleRate) {
+        this.effectiveSampleRate = effectiveSampleRate;
+    }
+
+    // Copies the electrode contact summary of a recording into this report
+    public void applyLeadOff(LeadOffChannel channel, int sampleRate) {
+        this.leadOffSpans = channel.getSpans();
+        this.gapSpans = channel.getGapSpans();
+        this.contactTimeline = channel.getContactTimeline(LeadOffChannel.TIMELINE_BUCKET_SECONDS * sampleRate);
+        this.contactPercent = channel.getContactPercent();
+    }
+
     // Helper method to get the number of ECG data points
     public int getDataPointCount() {
         if (ecgValues == null || ecgValues.isEmpty()) {
@@ -89,6 +194,9 @@ public class Report {
                 "filename='" + filename + '\'' +
                 ", timestamp=" + timestamp +
                 ", heartRate=" + heartRate +
+                ", sdnnMs=" + sdnnMs +
+                ", rmssdMs=" + rmssdMs +
+                ", contactPercent=" + contactPercent +
                 ", recordingDuration=" + recordingDuration +
                 ", userId='" + userId + '\'' +
                 ", dataPoints=" + getDataPointCount() +
@@ -36,6 +36,22 @@ public class ReportAdapter extends RecyclerView.Adapter<ReportAdapter.ReportView
         holder.filenameTextView.setText(String.format("ECG Report - %s", formatter.format(report.getTimestamp())));
         holder.timestampTextView.setText(formatter.format(report.getTimestamp()));
         holder.heartRateTextView.setText(String.format("Heart Rate: %d BPM", report.getHeartRate()));
+        if (report.getSdnnMs() > 0) {
+            String hrv = String.format(Locale.US, "HRV: SDNN %.0f ms, RMSSD %.0f ms, pNN50 %.1f%%",
+                    report.getSdnnMs(), report.getRmssdMs(), report.getPnn50());
+            if (!Double.isNaN(report.getLfHfRatio())) {
+                hrv += String.format(Locale.US, ", LF/HF %.2f", report.getLfHfRatio());
+            }
+            holder.hrvTextView.setText(hrv);
+        } else {
+            holder.hrvTextView.setText("HRV: --");
+        }
+        if (!Double.isNaN(report.getContactPercent())) {
+            holder.contactTextView.setText(String.format(Locale.US, "Contact: %.0f%% %s",
+                    report.getContactPercent(), LeadOffChannel.sparkline(report.getContactTimeline())));
+        } else {
+            holder.contactTextView.setText("Contact: --");
+        }
         holder.durationTextView.setText(String.format("Duration: %d minutes", report.getRecordingDuration() / 60000));
 
         int dataPoints = report.getEcgValues() != null ? report.getEcgValues().split("\n").length : 0;
@@ -48,13 +64,15 @@ public class ReportAdapter extends RecyclerView.Adapter<ReportAdapter.ReportView
     }
 
     static class ReportViewHolder extends RecyclerView.ViewHolder {
-        TextView filenameTextView, timestampTextView, heartRateTextView, durationTextView, dataPointsTextView;
+        TextView filenameTextView, timestampTextView, heartRateTextView, hrvTextView, contactTextView, durationTextView, dataPointsTextView;
 
         ReportViewHolder(@NonNull View itemView) {
             super(itemView);
             filenameTextView = itemView.findViewById(R.id.filenameTextView);
             timestampTextView = itemView.findViewById(R.id.timestampTextView);
             heartRateTextView = itemView.findViewById(R.id.heartRateTextView);
+            hrvTextView = itemView.findViewById(R.id.hrvTextView);
+            contactTextView = itemView.findViewById(R.id.contactTextView);
             durationTextView = itemView.findViewById(R.id.durationTextView);
             dataPointsTextView = itemView.findViewById(R.id.dataPointsTextView);
         }
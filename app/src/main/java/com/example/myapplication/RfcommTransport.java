@@ -0,0 +1,96 @@
+package com.example.myapplication;
+
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothSocket;
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.UUID;
+
+/**
+ * Classic Bluetooth serial (SPP) link: the ESP32 writes its text wire format to an RFCOMM
+ * socket. Simple and fast to connect, but the radio stays fully on for the whole session.
+ */
+public class RfcommTransport implements EcgTransport {
+    private static final String TAG = "RfcommTransport";
+    private static final UUID SPP_UUID = UUID.fromString("00001101-0000-1000-8000-00805F9B34FB");
+
+    private final BluetoothAdapter adapter;
+    private final BluetoothDevice device;
+    private final WireFormatDecoder decoder = new WireFormatDecoder();
+    private final Stats stats = new Stats();
+    private final byte[] buffer = new byte[1024];
+    private volatile BluetoothSocket socket;
+    private InputStream input;
+
+    public RfcommTransport(BluetoothAdapter adapter, BluetoothDevice device) {
+        this.adapter = adapter;
+        this.device = device;
+    }
+
+    @Override
+    public void connect() throws IOException {
+        BluetoothSocket connected = null;
+        // Method 1: Standard connection
+        try {
+            connected = device.createRfcommSocketToServiceRecord(SPP_UUID);
+            adapter.cancelDiscovery();
+            connected.connect();
+        } catch (IOException e) {
+            Log.e(TAG, "Standard connection failed", e);
+            connected = null;
+        }
+
+        // Method 2: Reflection fallback
+        if (connected == null) {
+            try {
+                connected = (BluetoothSocket) device.getClass()
+                        .getMethod("createRfcommSocket", int.class)
+                        .invoke(device, 1);
+                connected.connect();
+            } catch (Exception e) {
+                Log.e(TAG, "Reflection connection failed", e);
+                throw new IOException("Connection failed. Check ESP32 power and pairing. Make sure ESP32 is discoverable.");
+            }
+        }
+        input = connected.getInputStream();
+        socket = connected;
+        decoder.reset();
+        stats.onConnected(System.nanoTime());
+    }
+
+    @Override
+    public int read(SampleSink sink) throws IOException {
+        if (socket == null) throw new IOException("Not connected");
+        int bytes = input.read(buffer);
+        if (bytes < 0) throw new IOException("Stream closed");
+        int samples = decoder.decode(buffer, bytes, System.nanoTime(), sink);
+        stats.onPacket(bytes, samples);
+        return bytes;
+    }
+
+    @Override
+    public void close() {
+        BluetoothSocket current = socket;
+        socket = null;
+        if (current == null) return;
+        try {
+            // Also how a read blocked in a stopped session returns
+            current.close();
+        } catch (IOException e) {
+            Log.e(TAG, "Close error", e);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "Classic Bluetooth";
+    }
+
+    @Override
+    public Stats getStats() {
+        return stats;
+    }
+}
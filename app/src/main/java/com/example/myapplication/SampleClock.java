@@ -0,0 +1,179 @@
+package com.example.myapplication;
+
+/**
+ * Recovers the device's sample clock from the incoming stream, so a sample's index is its true
+ * position in the recording even when Bluetooth packets were lost. Each sample either carries
+ * the device's sequence number, a 16-bit counter that wraps, or only its arrival time.
+ * <ul>
+ *     <li>With sequence numbers, a jump in the counter is a gap of exactly that many samples.</li>
+ *     <li>Without them, a gap is assumed when a sample arrives more than
+ *     {@link #ARRIVAL_GAP_NANOS} later than the clock predicts. The samples that time accounts
+ *     for are taken as lost. A device that buffers through a stall instead of dropping data
+ *     shows up as a false gap here, which is what sequence numbers avoid.</li>
+ * </ul>
+ * The effective sample rate is a least-squares fit of arrival time against sample index. It
+ * tracks the drift between the device's crystal and the phone's clock, within
+ * {@link #MAX_DRIFT} of the nominal rate. Arrival times are on the {@link System#nanoTime}
+ * scale. Not thread-safe: feed it from the ingest thread.
+ */
+public class SampleClock {
+    public static final long NO_SEQUENCE = -1;
+    static final int SEQUENCE_MODULUS = 1 << 16;
+    // Bluetooth delivers samples in bursts and a read stamps them all at once; lateness below
+    // this is jitter, not loss
+    static final long ARRIVAL_GAP_NANOS = 1_000_000_000L;
+    // The fit is trusted after this much signal, and only this far from the nominal rate
+    static final double FIT_MIN_SECONDS = 10;
+    static final double MAX_DRIFT = 0.05;
+
+    private final int nominalRate;
+    private final long maxSequenceGap;
+
+    private long nextIndex = 0;
+    private long lastSequence = NO_SEQUENCE;
+    private boolean resyncing = false;
+    // Read by the UI while the ingest thread writes
+    private volatile long gapCount = 0;
+    private volatile long lostSamples = 0;
+    private volatile long rejectedSamples = 0;
+
+    // Running sums for the fit of arrival time (s, from the first sample) against sample index
+    private long firstArrivalNanos = -1;
+    private long fitCount = 0;
+    private double sumIndex, sumTime, sumIndexIndex, sumIndexTime;
+    private volatile double effectiveRate;
+
+    public SampleClock(int nominalRate) {
+        this.nominalRate = nominalRate;
+        this.effectiveRate = nominalRate;
+        // Longer jumps are a device restart rather than loss; arrival time sizes those instead
+        this.maxSequenceGap = Math.min(SEQUENCE_MODULUS / 2, 30L * nominalRate);
+    }
+
+    /**
+     * Places the next sample on the clock. Returns how many samples were lost just before it,
+     * which the caller records as a gap, or -1 if the sample is a repeat of, or older than, one
+     * already placed and should be dropped.
+     *
+     * @param sequence the device's sequence number, or {@link #NO_SEQUENCE}
+     */
+    public int onSample(long sequence, long arrivalNanos) {
+        if (firstArrivalNanos < 0) {
+            firstArrivalNanos = arrivalNanos;
+        }
+
+        long missing = 0;
+        if (sequence != NO_SEQUENCE) {
+            if (lastSequence != NO_SEQUENCE) {
+                long step = Math.floorMod(sequence - lastSequence, (long) SEQUENCE_MODULUS);
+                if (resyncing) {
+                    missing = step > 0 && step <= maxSequenceGap ? step - 1 : missingByArrival(arrivalNanos, 0);
+                } else if (step == 0 || step > SEQUENCE_MODULUS - maxSequenceGap) {
+                    rejectedSamples++;
+                    return -1;
+                } else {
+                    missing = step <= maxSequenceGap ? step - 1 : missingByArrival(arrivalNanos, ARRIVAL_GAP_NANOS);
+                }
+            }
+            lastSequence = sequence;
+        } else {
+            missing = missingByArrival(arrivalNanos, resyncing ? 0 : ARRIVAL_GAP_NANOS);
+        }
+        resyncing = false;
+
+        if (missing > 0) {
+            gapCount++;
+            lostSamples += missing;
+            nextIndex += missing;
+        }
+        fit(nextIndex, arrivalNanos);
+        nextIndex++;
+        return (int) missing;
+    }
+
+    // Samples the time since the predicted arrival accounts for, once it is past the threshold
+    private long missingByArrival(long arrivalNanos, long thresholdNanos) {
+        if (fitCount == 0) return 0;
+        long lateNanos = arrivalNanos - predictArrivalNanos(nextIndex);
+        if (lateNanos <= thresholdNanos) return 0;
+        return Math.round(lateNanos * effectiveRate / 1e9);
+    }
+
+    private void fit(long index, long arrivalNanos) {
+        double time = (arrivalNanos - firstArrivalNanos) / 1e9;
+        fitCount++;
+        sumIndex += index;
+        sumTime += time;
+        sumIndexIndex += (double) index * index;
+        sumIndexTime += index * time;
+
+        if (time < FIT_MIN_SECONDS) return;
+        double denominator = fitCount * sumIndexIndex - sumIndex * sumIndex;
+        if (denominator <= 0) return;
+        double secondsPerSample = (fitCount * sumIndexTime - sumIndex * sumTime) / denominator;
+        if (secondsPerSample <= 0) return;
+        double rate = 1 / secondsPerSample;
+        effectiveRate = Math.max(nominalRate * (1 - MAX_DRIFT), Math.min(nominalRate * (1 + MAX_DRIFT), rate));
+    }
+
+    /**
+     * When sample {@code index} would arrive, on the fitted line through the arrivals so far.
+     */
+    public long predictArrivalNanos(long index) {
+        if (fitCount == 0) return firstArrivalNanos;
+        // The fitted line passes through the mean index and mean arrival time
+        double meanIndex = sumIndex / fitCount;
+        double meanTime = sumTime / fitCount;
+        return firstArrivalNanos + Math.round((meanTime + (index - meanIndex) / effectiveRate) * 1e9);
+    }
+
+    /**
+     * Marks a break in the stream, such as a reconnect. The next sample is never dropped as
+     * stale, since a restarted device counts from anywhere. Its gap is the sequence step if the
+     * device kept counting through the break, and otherwise however late it arrives.
+     */
+    public void resync() {
+        resyncing = true;
+    }
+
+    /** Index the next sample will get: samples received plus samples lost in gaps. */
+    public long getSampleIndex() {
+        return nextIndex;
+    }
+
+    /** Device samples per second, measured against the phone's clock. */
+    public double getEffectiveRate() {
+        return effectiveRate;
+    }
+
+    /** Time of sample {@code index} since the start of the recording, on the phone's clock. */
+    public long sampleTimeMillis(long index) {
+        return Math.round(index * 1000.0 / effectiveRate);
+    }
+
+    public long getGapCount() {
+        return gapCount;
+    }
+
+    public long getLostSamples() {
+        return lostSamples;
+    }
+
+    /** Repeated or out-of-order samples that were dropped. */
+    public long getRejectedSamples() {
+        return rejectedSamples;
+    }
+
+    public void reset() {
+        nextIndex = 0;
+        lastSequence = NO_SEQUENCE;
+        resyncing = false;
+        gapCount = 0;
+        lostSamples = 0;
+        rejectedSamples = 0;
+        firstArrivalNanos = -1;
+        fitCount = 0;
+        sumIndex = sumTime = sumIndexIndex = sumIndexTime = 0;
+        effectiveRate = nominalRate;
+    }
+}
@@ -0,0 +1,285 @@
+package com.example.myapplication;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Analyzes a recording while it is being made, so its report is ready as soon as the session
+ * ends. It listens to the live {@link StreamingBeatDetector}: beats are queued as they are found
+ * and classified on a background executor once {@link #BATCH_BEATS} have piled up, one batch at a
+ * time. Each batch then feeds HRV and the rhythm event engine in stream order, with a rejected
+ * beat breaking the NN sequence as in the offline analysis. {@link #finish} only leaves the last
+ * partial batch to classify, so the cost is spread over the recording.
+ * <p>
+ * When the executor rejects a batch it runs on a fallback worker instead, never on the thread
+ * that queued the beat or finished the session. If classification falls far behind, beats past
+ * {@link #MAX_QUEUED_BEATS} are queued without their samples and count as rejected.
+ * <p>
+ * Beat indices count samples from the start of the stream, lead-off samples included.
+ */
+public class SessionAnalyzer implements StreamingBeatDetector.BeatListener {
+    // About ten seconds of beats at rest
+    static final int BATCH_BEATS = 16;
+    // About ten minutes of beats at rest; only reached if classification stalls
+    static final int MAX_QUEUED_BEATS = 64 * BATCH_BEATS;
+
+    private static final LatencyHistogram BATCH_TIME = Metrics.getInstance().histogram("session_analysis_batch");
+    private static final LatencyHistogram REPORT_DELAY = Metrics.getInstance().histogram("session_report_delay");
+    // java.util.logging keeps this class testable on the JVM; on Android it ends up in logcat
+    private static final Logger LOG = Logger.getLogger("SessionAnalyzer");
+
+    // Runs drains the executor turned away; one thread, gone again once idle
+    private static ThreadPoolExecutor fallback;
+
+    public interface Listener {
+        /**
+         * Called on the executor, or the fallback worker, once the report of a finished session
+         * is complete.
+         */
+        void onReportReady(Report report);
+    }
+
+    /** Everything known about a finished session. */
+    public static class Report {
+        public final AnalysisResult result;
+        public final HrvEngine.Metrics hrv;
+        public final List<ArrhythmiaEvent> events;
+        // Beats left as BEAT_TYPE_UNKNOWN because no model was loaded or classification failed
+        public final int unclassifiedBeats;
+        // From finish() to the report being complete
+        public final long finishNanos;
+
+        Report(AnalysisResult result, HrvEngine.Metrics hrv, List<ArrhythmiaEvent> events,
+               int unclassifiedBeats, long finishNanos) {
+            this.result = result;
+            this.hrv = hrv;
+            this.events = Collections.unmodifiableList(events);
+            this.unclassifiedBeats = unclassifiedBeats;
+            this.finishNanos = finishNanos;
+        }
+    }
+
+    // A detected beat, or a rejected one when samples is null
+    private static final class QueuedBeat {
+        final long peakIndex;
+        final float[] samples;
+
+        QueuedBeat(long peakIndex, float[] samples) {
+            this.peakIndex = peakIndex;
+            this.samples = samples;
+        }
+    }
+
+    private final int sampleRate;
+    private final WindowedAnalyzer.BeatClassifier classifier;
+    private final Executor executor;
+    private final Listener listener;
+
+    private final Object lock = new Object();
+    private final ArrayDeque<QueuedBeat> queue = new ArrayDeque<>();
+    private boolean draining = false;
+    private boolean finished = false;
+    private long totalSamples;
+    private long finishStartNanos;
+    private volatile Report report;
+
+    // Only used by the drain, which runs one at a time; the lock hands its state between threads
+    private final List<BeatClassification> beats = new ArrayList<>();
+    private final List<Integer> skippedBeats = new ArrayList<>();
+    private final List<ArrhythmiaEvent> events = new ArrayList<>();
+    private final HrvEngine hrv;
+    private final ArrhythmiaEventEngine eventEngine;
+    private int unclassifiedBeats = 0;
+    private boolean reportedUnclassified = false;
+
+    /**
+     * @param classifier returns null, or throws, when no model is available; those beats are
+     *                   kept as {@link BeatTypes#BEAT_TYPE_UNKNOWN}
+     * @param executor   runs the classification batches, e.g. on the inference pool
+     * @param listener   told when the report is ready; may be null
+     */
+    public SessionAnalyzer(int sampleRate, WindowedAnalyzer.BeatClassifier classifier, Executor executor,
+                           Listener listener) {
+        this.sampleRate = sampleRate;
+        this.classifier = classifier;
+        this.executor = executor;
+        this.listener = listener;
+        this.hrv = new HrvEngine(sampleRate);
+        this.eventEngine = new ArrhythmiaEventEngine(sampleRate, new ArrhythmiaEventEngine.Listener() {
+            @Override
+            public void onEventStarted(ArrhythmiaEvent event) {
+            }
+
+            @Override
+            public void onEventEnded(ArrhythmiaEvent event) {
+                events.add(event);
+            }
+        });
+    }
+
+    @Override
+    public void onBeat(long peakIndex, float[] beat) {
+        enqueue(new QueuedBeat(peakIndex, beat));
+    }
+
+    @Override
+    public void onBeatRejected(long peakIndex, SignalQualityIndex.Issue issue) {
+        enqueue(new QueuedBeat(peakIndex, null));
+    }
+
+    private void enqueue(QueuedBeat beat) {
+        synchronized (lock) {
+            // Late beats from the ingest thread after the session ended are dropped
+            if (finished) return;
+            if (beat.samples != null && queue.size() >= MAX_QUEUED_BEATS) {
+                beat = new QueuedBeat(beat.peakIndex, null);
+            }
+            queue.addLast(beat);
+            if (!draining && queue.size() >= BATCH_BEATS) {
+                scheduleDrain();
+            }
+        }
+    }
+
+    /**
+     * Ends the session at {@code totalSamples} and classifies what is still queued. The report
+     * goes to the listener and {@link #getReport()} when done; calls after the first are ignored.
+     */
+    public void finish(long totalSamples) {
+        synchronized (lock) {
+            if (finished) return;
+            finished = true;
+            this.totalSamples = totalSamples;
+            finishStartNanos = System.nanoTime();
+            // A running drain picks up the rest itself
+            if (!draining) scheduleDrain();
+        }
+    }
+
+    /**
+     * The report of the finished session, or null until it is ready.
+     */
+    public Report getReport() {
+        return report;
+    }
+
+    // Call with the lock held
+    private void scheduleDrain() {
+        draining = true;
+        try {
+            executor.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            fallbackExecutor().execute(this::drain);
+        }
+    }
+
+    private static synchronized Executor fallbackExecutor() {
+        if (fallback == null) {
+            fallback = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "session-analysis");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            fallback.allowCoreThreadTimeOut(true);
+        }
+        return fallback;
+    }
+
+    private void drain() {
+        List<QueuedBeat> batch = new ArrayList<>(BATCH_BEATS);
+        while (true) {
+            boolean complete;
+            synchronized (lock) {
+                complete = finished && queue.isEmpty();
+                if (!complete && !finished && queue.size() < BATCH_BEATS) {
+                    draining = false;
+                    return;
+                }
+                batch.clear();
+                while (!queue.isEmpty() && batch.size() < BATCH_BEATS) {
+                    batch.add(queue.pollFirst());
+                }
+            }
+            if (complete) {
+                publishReport();
+                return;
+            }
+            classifyBatch(batch);
+        }
+    }
+
+    private void classifyBatch(List<QueuedBeat> batch) {
+        long t0 = System.nanoTime();
+        List<float[]> samples = new ArrayList<>(batch.size());
+        List<Integer> peaks = new ArrayList<>(batch.size());
+        for (QueuedBeat beat : batch) {
+            if (beat.samples != null) {
+                samples.add(beat.samples);
+                peaks.add((int) beat.peakIndex);
+            }
+        }
+
+        List<BeatClassification> results = null;
+        if (!samples.isEmpty()) {
+            Exception failure = null;
+            try {
+                results = classifier.classify(samples, peaks);
+            } catch (Exception e) {
+                failure = e;
+            }
+            // Kept as unknown beats below; the timing and HRV still count. Later batches
+            // usually fail the same way, so this is said once per session.
+            if (results == null && !reportedUnclassified) {
+                reportedUnclassified = true;
+                LOG.log(Level.WARNING, failure != null
+                        ? "Beat classification failed; beats are kept as unknown"
+                        : "No model loaded; beats are kept as unknown", failure);
+            }
+        }
+
+        int next = 0;
+        for (QueuedBeat queued : batch) {
+            if (queued.samples == null) {
+                skippedBeats.add((int) queued.peakIndex);
+                hrv.breakSequence();
+                eventEngine.reset();
+                continue;
+            }
+            BeatClassification beat;
+            if (results != null && next < results.size()) {
+                beat = results.get(next++);
+            } else {
+                beat = new BeatClassification();
+                beat.beatIndex = (int) queued.peakIndex;
+                beat.type = BeatTypes.BEAT_TYPE_UNKNOWN;
+                unclassifiedBeats++;
+            }
+            beats.add(beat);
+            hrv.addBeat(queued.peakIndex);
+            eventEngine.onBeat(queued.peakIndex, beat.type, -1);
+        }
+        BATCH_TIME.record(System.nanoTime() - t0);
+    }
+
+    private void publishReport() {
+        eventEngine.finish();
+        AnalysisResult result = AnalysisResult.fromBeats(beats, skippedBeats, (int) totalSamples, sampleRate);
+        long delay = System.nanoTime() - finishStartNanos;
+        REPORT_DELAY.record(delay);
+        Report ready = new Report(result, hrv.getMetrics(), new ArrayList<>(events), unclassifiedBeats, delay);
+        report = ready;
+        if (listener != null) {
+            listener.onReportReady(ready);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.example.myapplication;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Scores each beat window before it reaches the model or the HRV engine. The features are
+ * scale-free, so the same thresholds work on raw ADC counts and on min-max scaled files:
+ * <ul>
+ * <li>kurtosis: a window centred on a real QRS is strongly peaked; motion artefact and noise
+ * are close to Gaussian (kurtosis 3)</li>
+ * <li>flat line: the longest run of identical samples, typical of a detached electrode</li>
+ * <li>saturation: samples pinned at the window's minimum or maximum, i.e. a clipped front end</li>
+ * <li>high-frequency power: energy of the second difference relative to the signal variance,
+ * which muscle noise and mains pickup push up</li>
+ * <li>lead-off: any sample flagged by the front end's lead-off comparators</li>
+ * </ul>
+ * Each feature maps to a sub-score in [0, 1] and the window's score is the lowest of them. One
+ * pass over the window, no allocation.
+ */
+public class SignalQualityIndex {
+
+    public enum Issue {
+        NONE, LEAD_OFF, FLAT_LINE, SATURATION, HIGH_FREQUENCY_NOISE, ARTEFACT
+    }
+
+    public static final float DEFAULT_THRESHOLD = 0.5f;
+
+    // Sub-score ramps: {value where the score is 1, value where it reaches 0}
+    private static final float KURTOSIS_GOOD = 5f;
+    private static final float KURTOSIS_BAD = 3f;
+    private static final float FLAT_RUN_GOOD = 0.3f;
+    private static final float FLAT_RUN_BAD = 0.6f;
+    private static final float SATURATED_GOOD = 0.02f;
+    private static final float SATURATED_BAD = 0.10f;
+    private static final float HF_RATIO_GOOD = 0.5f;
+    private static final float HF_RATIO_BAD = 1.5f;
+
+    private final float threshold;
+    private final AtomicLong assessed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLongArray rejectedByIssue = new AtomicLongArray(Issue.values().length);
+
+    private float lastScore = 1f;
+    private Issue lastIssue = Issue.NONE;
+
+    public SignalQualityIndex() {
+        this(DEFAULT_THRESHOLD);
+    }
+
+    public SignalQualityIndex(float threshold) {
+        this.threshold = threshold;
+    }
+
+    /**
+     * Scores {@code length} raw samples starting at {@code offset} and counts the result.
+     * Returns true if the window is good enough to classify.
+     */
+    public boolean accept(float[] samples, int offset, int length, int leadOffSamples) {
+        float score = score(samples, offset, length, leadOffSamples);
+        assessed.incrementAndGet();
+        if (score >= threshold) {
+            return true;
+        }
+        rejected.incrementAndGet();
+        rejectedByIssue.incrementAndGet(lastIssue.ordinal());
+        return false;
+    }
+
+    /**
+     * Score in [0, 1] for the window; {@link #getLastIssue()} names the weakest feature.
+     */
+    public float score(float[] samples, int offset, int length, int leadOffSamples) {
+        lastIssue = Issue.NONE;
+        lastScore = 1f;
+        if (leadOffSamples > 0) {
+            return worse(0f, Issue.LEAD_OFF);
+        }
+        if (length < 4) {
+            return worse(0f, Issue.FLAT_LINE);
+        }
+
+        double sum = 0;
+        float min = Float.MAX_VALUE;
+        float max = -Float.MAX_VALUE;
+        int run = 1;
+        int longestRun = 1;
+        double secondDiffEnergy = 0;
+        for (int i = offset; i < offset + length; i++) {
+            float x = samples[i];
+            sum += x;
+            if (x < min) min = x;
+            if (x > max) max = x;
+            if (i > offset) {
+                run = x == samples[i - 1] ? run + 1 : 1;
+                if (run > longestRun) longestRun = run;
+            }
+            if (i > offset + 1) {
+                double d2 = x - 2.0 * samples[i - 1] + samples[i - 2];
+                secondDiffEnergy += d2 * d2;
+            }
+        }
+        if (max == min) {
+            return worse(0f, Issue.FLAT_LINE);
+        }
+
+        double mean = sum / length;
+        double m2 = 0;
+        double m4 = 0;
+        int atExtremes = 0;
+        for (int i = offset; i < offset + length; i++) {
+            double d = samples[i] - mean;
+            double d2 = d * d;
+            m2 += d2;
+            m4 += d2 * d2;
+            if (samples[i] == min || samples[i] == max) atExtremes++;
+        }
+        double kurtosis = m4 * length / (m2 * m2);
+        double hfRatio = secondDiffEnergy / m2;
+
+        worse(ramp((float) longestRun / length, FLAT_RUN_GOOD, FLAT_RUN_BAD), Issue.FLAT_LINE);
+        worse(ramp((float) atExtremes / length, SATURATED_GOOD, SATURATED_BAD), Issue.SATURATION);
+        worse(ramp((float) hfRatio, HF_RATIO_GOOD, HF_RATIO_BAD), Issue.HIGH_FREQUENCY_NOISE);
+        worse(ramp((float) kurtosis, KURTOSIS_GOOD, KURTOSIS_BAD), Issue.ARTEFACT);
+        return lastScore;
+    }
+
+    private float worse(float score, Issue issue) {
+        if (score < lastScore) {
+            lastScore = score;
+            lastIssue = issue;
+        }
+        return lastScore;
+    }
+
+    /**
+     * 1 at {@code good}, 0 at {@code bad}, linear in between; works for either direction.
+     */
+    private static float ramp(float value, float good, float bad) {
+        float t = (value - good) / (bad - good);
+        return Math.max(0f, Math.min(1f, 1f - t));
+    }
+
+    public float getThreshold() {
+        return threshold;
+    }
+
+    public float getLastScore() {
+        return lastScore;
+    }
+
+    public Issue getLastIssue() {
+        return lastIssue;
+    }
+
+    public long getAssessedCount() {
+        return assessed.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    public long getRejectedCount(Issue issue) {
+        return rejectedByIssue.get(issue.ordinal());
+    }
+
+    public void resetCounters() {
+        assessed.set(0);
+        rejected.set(0);
+        for (int i = 0; i < rejectedByIssue.length(); i++) {
+            rejectedByIssue.set(i, 0);
+        }
+    }
+
+    /**
+     * e.g. "skipped 12/340 windows (lead-off 10, noise 2), saved ~38 ms inference".
+     * {@code nanosPerBeat} is the average model cost per beat; pass 0 if unknown.
+     */
+    public String summary(long nanosPerBeat) {
+        StringBuilder text = new StringBuilder();
+        text.append("skipped ").append(rejected.get()).append('/').append(assessed.get()).append(" windows");
+        String separator = " (";
+        for (Issue issue : Issue.values()) {
+            long count = rejectedByIssue.get(issue.ordinal());
+            if (count > 0) {
+                text.append(separator).append(issue.name().toLowerCase(Locale.US).replace('_', ' '))
+                        .append(' ').append(count);
+                separator = ", ";
+            }
+        }
+        if (!separator.equals(" (")) text.append(')');
+        if (nanosPerBeat > 0) {
+            text.append(String.format(Locale.US, ", saved ~%.0f ms inference",
+                    rejected.get() * nanosPerBeat / 1e6));
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,222 @@
+package com.example.myapplication;
+
+import java.util.Arrays;
+
+/**
+ * Sample-at-a-time counterpart of {@link ECGPreprocessor#processSamples(float[], int)} for live
+ * signals. Peaks are found on a baseline-removed, smoothed copy of the signal against a threshold
+ * that follows the recent maximum, and each beat is cut from the raw samples exactly as the file
+ * path does (SEGMENT_LENGTH samples centred on the peak, z-score normalized) once the last sample
+ * of its window has arrived. Work per sample is constant and nothing is allocated except the
+ * emitted beat. With a {@link SignalQualityIndex} the raw window is scored first and beats that
+ * fail are reported through {@link BeatListener#onBeatRejected} instead.
+ */
+public class StreamingBeatDetector {
+
+    public interface BeatListener {
+        /**
+         * Called on the thread that feeds samples. {@code peakIndex} counts samples from the start
+         * of the stream; {@code beat} is a new normalized array owned by the listener.
+         */
+        void onBeat(long peakIndex, float[] beat);
+
+        /**
+         * Called instead of {@link #onBeat} when the beat's window fails the quality gate.
+         */
+        default void onBeatRejected(long peakIndex, SignalQualityIndex.Issue issue) {
+        }
+    }
+
+    private static final int HALF_SEGMENT = ECGPreprocessor.SEGMENT_LENGTH / 2;
+    // Moving average length for detection; its group delay is subtracted from peak positions
+    private static final int SMOOTHING = 5;
+    private static final int SMOOTHING_DELAY = (SMOOTHING - 1) / 2;
+    private static final double BASELINE_CUTOFF_HZ = 0.5;
+    // The running maximum halves over this many seconds without a larger peak
+    private static final double MAX_HALF_LIFE_SECONDS = 2.0;
+    private static final int MAX_PENDING_PEAKS = 8;
+
+    private final BeatListener listener;
+    private final SignalQualityIndex quality;
+    private final int refractorySamples;
+    private final int warmUpSamples;
+    private final float baselinePole;
+    private final float maxDecay;
+
+    // Raw samples; power-of-two ring long enough for one segment plus the detection delay
+    private final float[] ring;
+    private final int mask;
+    private long sampleCount = 0;
+    private long lastLeadOff = -1;
+    private long warmUpEnd;
+
+    // Baseline removal (one-pole DC blocker) and smoothing state
+    private float lastInput = 0f;
+    private float lastHighPass = 0f;
+    private final float[] smoothing = new float[SMOOTHING];
+
+    // Peak search state on |filtered|
+    private float beforePrevious = 0f;
+    private float previous = 0f;
+    private float runningMax = 0f;
+    private long lastPeak = Long.MIN_VALUE / 2;
+
+    // Peaks whose window is not complete yet, oldest first
+    private final long[] pendingPeaks = new long[MAX_PENDING_PEAKS];
+    private int pendingStart = 0;
+    private int pendingCount = 0;
+
+    public StreamingBeatDetector(int sampleRate, BeatListener listener) {
+        this(sampleRate, null, listener);
+    }
+
+    /**
+     * @param quality gate applied to each raw window before it is emitted; null to emit all beats
+     */
+    public StreamingBeatDetector(int sampleRate, SignalQualityIndex quality, BeatListener listener) {
+        this.listener = listener;
+        this.quality = quality;
+        this.refractorySamples = ECGPreprocessor.PEAK_REFRACTORY_SAMPLES;
+        this.warmUpSamples = 2 * sampleRate;
+        this.warmUpEnd = warmUpSamples;
+        this.baselinePole = (float) (1.0 - 2 * Math.PI * BASELINE_CUTOFF_HZ / sampleRate);
+        this.maxDecay = (float) Math.pow(0.5, 1.0 / (MAX_HALF_LIFE_SECONDS * sampleRate));
+
+        int capacity = Integer.highestOneBit(ECGPreprocessor.SEGMENT_LENGTH + SMOOTHING + 2) << 1;
+        ring = new float[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Time between an R-peak sample arriving and its beat window being complete.
+     */
+    public static long windowDelayNanos(int sampleRate) {
+        return HALF_SEGMENT * 1_000_000_000L / sampleRate;
+    }
+
+    public long getSampleCount() {
+        return sampleCount;
+    }
+
+    public void addSample(float value) {
+        addSample(value, false);
+    }
+
+    /**
+     * @param leadOff the front end reported an electrode off for this sample; such samples are
+     *                not searched for peaks and detection restarts when contact returns
+     */
+    public void addSample(float value, boolean leadOff) {
+        long index = sampleCount++;
+        ring[(int) (index & mask)] = value;
+        if (leadOff) {
+            // Nothing to detect without contact; only let pending windows run into the span
+            lastLeadOff = index;
+            emitCompleteBeats();
+            return;
+        }
+        if (lastLeadOff == index - 1) {
+            restartDetection(value, index);
+        }
+
+        float highPass = value - lastInput + baselinePole * lastHighPass;
+        lastInput = value;
+        lastHighPass = highPass;
+
+        // Summed afresh each sample so rounding error cannot build up over long recordings
+        smoothing[(int) (index % SMOOTHING)] = highPass;
+        float sum = 0f;
+        for (float v : smoothing) {
+            sum += v;
+        }
+        float current = Math.abs(sum / SMOOTHING);
+
+        runningMax = Math.max(current, runningMax * maxDecay);
+        if (index >= warmUpEnd) {
+            // previous is a local maximum above 60% of the recent maximum
+            long candidate = index - 1;
+            if (previous > runningMax * ECGPreprocessor.PEAK_THRESHOLD_RATIO
+                    && previous > beforePrevious && previous > current
+                    && candidate - lastPeak > refractorySamples) {
+                lastPeak = candidate;
+                addPending(candidate - SMOOTHING_DELAY);
+            }
+        }
+        beforePrevious = previous;
+        previous = current;
+
+        emitCompleteBeats();
+    }
+
+    /**
+     * Drops buffered samples and pending peaks, e.g. after a gap in the stream.
+     */
+    public void reset() {
+        sampleCount = 0;
+        lastLeadOff = -1;
+        warmUpEnd = warmUpSamples;
+        lastInput = 0f;
+        lastHighPass = 0f;
+        Arrays.fill(smoothing, 0f);
+        beforePrevious = 0f;
+        previous = 0f;
+        runningMax = 0f;
+        lastPeak = Long.MIN_VALUE / 2;
+        pendingStart = 0;
+        pendingCount = 0;
+    }
+
+    /**
+     * Electrodes back in contact: the filters and threshold start from the new level and warm up
+     * again, but sample numbering carries on.
+     */
+    private void restartDetection(float value, long index) {
+        lastInput = value;
+        lastHighPass = 0f;
+        Arrays.fill(smoothing, 0f);
+        beforePrevious = 0f;
+        previous = 0f;
+        runningMax = 0f;
+        warmUpEnd = index + warmUpSamples;
+    }
+
+    private void addPending(long peak) {
+        if (peak < HALF_SEGMENT) {
+            return; // Not enough history for a full window, as in the file path
+        }
+        if (pendingCount == MAX_PENDING_PEAKS) {
+            pendingStart = (pendingStart + 1) % MAX_PENDING_PEAKS;
+            pendingCount--;
+        }
+        pendingPeaks[(pendingStart + pendingCount) % MAX_PENDING_PEAKS] = peak;
+        pendingCount++;
+    }
+
+    private void emitCompleteBeats() {
+        while (pendingCount > 0) {
+            long peak = pendingPeaks[pendingStart];
+            // Same bound as ECGPreprocessor: sample peak + HALF_SEGMENT must exist
+            if (sampleCount <= peak + HALF_SEGMENT) {
+                return;
+            }
+            pendingStart = (pendingStart + 1) % MAX_PENDING_PEAKS;
+            pendingCount--;
+
+            long start = peak - HALF_SEGMENT;
+            if (start < sampleCount - ring.length) {
+                continue; // Overwritten already; cannot happen with the ring sized above
+            }
+            float[] beat = new float[ECGPreprocessor.SEGMENT_LENGTH];
+            for (int i = 0; i < beat.length; i++) {
+                beat[i] = ring[(int) ((start + i) & mask)];
+            }
+            if (quality != null
+                    && !quality.accept(beat, 0, beat.length, lastLeadOff >= start ? 1 : 0)) {
+                listener.onBeatRejected(peak, quality.getLastIssue());
+                continue;
+            }
+            ECGPreprocessor.normalizeBeat(beat);
+            listener.onBeat(peak, beat);
+        }
+    }
+}
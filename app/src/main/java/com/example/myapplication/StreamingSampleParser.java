@@ -0,0 +1,499 @@
+package com.example.myapplication;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Reads one numeric column out of a delimited text file straight from a byte channel. The
+ * delimiter, decimal separator, header line and column are detected once from the first block;
+ * after that every byte goes through a small state machine that parses digits directly into a
+ * growable float[], so the per-sample cost is a handful of arithmetic operations and no objects.
+ * Lines whose selected field is missing or not a number are skipped and counted.
+ */
+public class StreamingSampleParser {
+    public static final int BUFFER_SIZE = 64 * 1024;
+    // Progress is reported at most once per this many bytes
+    private static final long PROGRESS_INTERVAL_BYTES = 1024 * 1024;
+    private static final int SNIFF_LINES = 20;
+    private static final int MAX_MANTISSA_DIGITS = 18;
+    private static final double[] POW10 = new double[40];
+
+    private static final LatencyHistogram PARSE_TIME = Metrics.getInstance().histogram("file_parse");
+    private static final Metrics.Counter PARSED_BYTES = Metrics.getInstance().counter("file_parse_bytes");
+    private static final Metrics.Counter SKIPPED_LINES = Metrics.getInstance().counter("file_parse_skipped_lines");
+
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; i++) {
+            POW10[i] = POW10[i - 1] * 10;
+        }
+    }
+
+    public interface ProgressListener {
+        /**
+         * Called on the parsing thread; {@code totalBytes} is -1 when the length is unknown.
+         */
+        void onProgress(long bytesRead, long totalBytes);
+    }
+
+    /**
+     * Layout detected from the start of a file. A delimiter of 0 means the file has one column.
+     */
+    public static class Format {
+        public final char delimiter;
+        public final char decimalSeparator;
+        public final boolean hasHeader;
+        public final int column;
+
+        public Format(char delimiter, char decimalSeparator, boolean hasHeader, int column) {
+            this.delimiter = delimiter;
+            this.decimalSeparator = decimalSeparator;
+            this.hasHeader = hasHeader;
+            this.column = column;
+        }
+
+        /**
+         * Detects the layout from the first lines of {@code sample}. The preferred column is the
+         * one whose header mentions "ecg" or "value"; otherwise the first column that is numeric
+         * on every sampled line, which matches the old per-line "first number" behaviour. Lines
+         * that are all a single number with one comma inside it, e.g. "1,5", are read as one
+         * column with a decimal comma unless a header names two columns.
+         */
+        public static Format detect(byte[] sample, int length) {
+            List<String> lines = new ArrayList<>();
+            int start = 0;
+            for (int i = 0; i <= length && lines.size() < SNIFF_LINES; i++) {
+                if (i == length || sample[i] == '\n') {
+                    // A trailing partial line is left out unless it is all we have
+                    if (i < length || lines.isEmpty()) {
+                        String line = new String(sample, start, i - start, StandardCharsets.UTF_8)
+                                .replace("\r", "").replace("\"", "").trim();
+                        // '#' lines are annotations, e.g. lead-off spans in exported recordings
+                        if (!line.isEmpty() && line.charAt(0) != '#') lines.add(line);
+                    }
+                    start = i + 1;
+                }
+            }
+            if (lines.isEmpty()) {
+                return new Format((char) 0, '.', false, 0);
+            }
+
+            boolean hasHeader = lines.get(0).chars().anyMatch(Character::isLetter)
+                    && !isNumericLine(lines.get(0));
+            List<String> data = hasHeader ? lines.subList(1, lines.size()) : lines;
+            if (data.isEmpty()) data = lines;
+
+            char delimiter = detectDelimiter(data);
+            if (delimiter == ',' && isDecimalCommaColumn(data)
+                    && (!hasHeader || lines.get(0).indexOf(',') < 0)) {
+                delimiter = 0;
+            }
+            char decimal = '.';
+            if (delimiter != ',') {
+                for (String line : data) {
+                    if (line.matches(".*\\d,\\d.*")) {
+                        decimal = ',';
+                        break;
+                    }
+                }
+            }
+
+            int column = -1;
+            if (hasHeader) {
+                String[] names = splitLine(lines.get(0), delimiter);
+                for (int c = 0; c < names.length && column < 0; c++) {
+                    String name = names[c].toLowerCase(Locale.US);
+                    if (name.contains("ecg") || name.contains("value")) column = c;
+                }
+            }
+            if (column < 0) {
+                column = firstNumericColumn(data, delimiter, decimal);
+            }
+            return new Format(delimiter, decimal, hasHeader, column);
+        }
+
+        private static boolean isDecimalCommaColumn(List<String> lines) {
+            for (String line : lines) {
+                if (!line.matches("[-+]?\\d+,\\d+")) return false;
+            }
+            return true;
+        }
+
+        private static boolean isNumericLine(String line) {
+            for (String field : line.split("[,;\\s]+")) {
+                if (!field.isEmpty() && !isNumber(field, '.')) return false;
+            }
+            return true;
+        }
+
+        private static char detectDelimiter(List<String> lines) {
+            for (char candidate : new char[]{'\t', ';', ','}) {
+                int expected = -1;
+                boolean consistent = true;
+                for (String line : lines) {
+                    int count = 0;
+                    for (int i = 0; i < line.length(); i++) {
+                        if (line.charAt(i) == candidate) count++;
+                    }
+                    if (count == 0 || (expected >= 0 && count != expected)) {
+                        consistent = false;
+                        break;
+                    }
+                    expected = count;
+                }
+                if (consistent) return candidate;
+            }
+            for (String line : lines) {
+                if (line.indexOf(' ') >= 0) return ' ';
+            }
+            return 0;
+        }
+
+        private static int firstNumericColumn(List<String> lines, char delimiter, char decimal) {
+            int columns = splitLine(lines.get(0), delimiter).length;
+            for (int c = 0; c < columns; c++) {
+                boolean numeric = true;
+                for (String line : lines) {
+                    String[] fields = splitLine(line, delimiter);
+                    if (c >= fields.length || !isNumber(fields[c].trim(), decimal)) {
+                        numeric = false;
+                        break;
+                    }
+                }
+                if (numeric) return c;
+            }
+            return 0;
+        }
+
+        private static String[] splitLine(String line, char delimiter) {
+            if (delimiter == 0) return new String[]{line};
+            if (delimiter == ' ') return line.trim().split(" +");
+            return line.split(String.valueOf(delimiter == '\t' ? "\t" : delimiter), -1);
+        }
+
+        private static boolean isNumber(String field, char decimal) {
+            if (field.isEmpty()) return false;
+            try {
+                Double.parseDouble(decimal == ',' ? field.replace(',', '.') : field);
+                return true;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public String toString() {
+            String name = delimiter == 0 ? "none" : delimiter == '\t' ? "tab"
+                    : delimiter == ' ' ? "space" : String.valueOf(delimiter);
+            return "delimiter=" + name + " decimal=" + decimalSeparator
+                    + " header=" + hasHeader + " column=" + column;
+        }
+    }
+
+    public static class Result {
+        public final float[] samples;
+        public final int count;
+        public final int skippedLines;
+        public final long bytesRead;
+        public final Format format;
+
+        Result(float[] samples, int count, int skippedLines, long bytesRead, Format format) {
+            this.samples = samples;
+            this.count = count;
+            this.skippedLines = skippedLines;
+            this.bytesRead = bytesRead;
+            this.format = format;
+        }
+
+        /**
+         * Samples trimmed to {@link #count}; copies only if the buffer has spare capacity.
+         */
+        public float[] toArray() {
+            return samples.length == count ? samples : Arrays.copyOf(samples, count);
+        }
+    }
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private volatile boolean cancelled = false;
+    private ProgressListener progressListener;
+
+    // Output
+    private float[] samples;
+    private int count;
+    private int skippedLines;
+
+    // Per-line state
+    private int column;
+    private boolean inField;
+    private boolean lineHasContent;
+    private boolean fieldValid;
+    private boolean fieldSeen;
+
+    // Per-number state
+    private long mantissa;
+    private int mantissaDigits;
+    private int decimalShift;
+    private boolean negative;
+    private boolean afterDecimal;
+    private boolean inExponent;
+    private boolean exponentNegative;
+    private int exponent;
+    private boolean hasDigits;
+
+    public void setProgressListener(ProgressListener listener) {
+        this.progressListener = listener;
+    }
+
+    /**
+     * Stops a parse in progress from any thread; {@link #parse} then throws
+     * {@link CancellationException}. Interrupting the parsing thread has the same effect.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Parses the whole channel. {@code totalBytes} is only used for progress and to size the
+     * output array up front; pass -1 if unknown. The channel is not closed.
+     */
+    public Result parse(ReadableByteChannel channel, long totalBytes) throws IOException {
+        long t0 = System.nanoTime();
+        byte[] bytes = buffer.array();
+        buffer.clear();
+        long bytesRead = fill(channel);
+        int length = buffer.position();
+
+        Format format = Format.detect(bytes, length);
+        samples = new float[estimateCapacity(bytes, length, totalBytes)];
+        count = 0;
+        skippedLines = 0;
+        resetLine();
+
+        int offset = 0;
+        if (format.hasHeader) {
+            while (offset < length && bytes[offset] != '\n') offset++;
+            offset++;
+        }
+
+        long nextProgress = PROGRESS_INTERVAL_BYTES;
+        while (length > 0) {
+            if (cancelled || Thread.currentThread().isInterrupted()) {
+                cancelled = true;
+                throw new CancellationException("Parsing cancelled");
+            }
+            if (offset < length) {
+                scan(bytes, offset, length, format);
+            }
+            if (progressListener != null && bytesRead >= nextProgress) {
+                progressListener.onProgress(bytesRead, totalBytes);
+                nextProgress = bytesRead + PROGRESS_INTERVAL_BYTES;
+            }
+
+            buffer.clear();
+            long read = fill(channel);
+            if (read <= 0) break;
+            bytesRead += read;
+            length = buffer.position();
+            offset = 0;
+        }
+        endLastLine();
+
+        if (progressListener != null) {
+            progressListener.onProgress(bytesRead, totalBytes);
+        }
+        PARSE_TIME.record(System.nanoTime() - t0);
+        PARSED_BYTES.add(bytesRead);
+        SKIPPED_LINES.add(skippedLines);
+        return new Result(samples, count, skippedLines, bytesRead, format);
+    }
+
+    /**
+     * Reads until the buffer is full or the channel is exhausted; returns the bytes read, or -1
+     * at end of stream with nothing read.
+     */
+    private long fill(ReadableByteChannel channel) throws IOException {
+        long total = 0;
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer);
+            if (n < 0) break;
+            total += n;
+        }
+        return total == 0 && buffer.position() == 0 ? -1 : total;
+    }
+
+    /**
+     * Output size from the average line length of the first block, so a typical file is parsed
+     * without any regrowth.
+     */
+    private static int estimateCapacity(byte[] bytes, int length, long totalBytes) {
+        int lines = 0;
+        for (int i = 0; i < length; i++) {
+            if (bytes[i] == '\n') lines++;
+        }
+        if (totalBytes <= 0 || lines == 0) {
+            return Math.max(1024, lines * 2);
+        }
+        long estimate = totalBytes * lines / length + 16;
+        return (int) Math.min(Integer.MAX_VALUE - 8, estimate);
+    }
+
+    /**
+     * Runs the state machine over one block. State lives in locals for the duration of the loop
+     * and is written back at the end, since a line can span two blocks.
+     */
+    private void scan(byte[] bytes, int from, int to, Format format) {
+        final int delimiter = format.delimiter;
+        final boolean spaceDelimited = delimiter == ' ';
+        final int decimal = format.decimalSeparator;
+        final int target = format.column;
+
+        int column = this.column;
+        boolean inField = this.inField;
+        boolean lineHasContent = this.lineHasContent;
+        boolean fieldSeen = this.fieldSeen;
+        boolean fieldValid = this.fieldValid;
+        long mantissa = this.mantissa;
+        int mantissaDigits = this.mantissaDigits;
+        int decimalShift = this.decimalShift;
+        boolean negative = this.negative;
+        boolean afterDecimal = this.afterDecimal;
+        boolean inExponent = this.inExponent;
+        boolean exponentNegative = this.exponentNegative;
+        int exponent = this.exponent;
+        boolean hasDigits = this.hasDigits;
+
+        for (int i = from; i < to; i++) {
+            int b = bytes[i];
+            if (b == '\n') {
+                if (fieldSeen && fieldValid && hasDigits) {
+                    append(toFloat(mantissa, decimalShift + (exponentNegative ? -exponent : exponent), negative));
+                } else if (lineHasContent) {
+                    skippedLines++;
+                }
+                column = 0;
+                inField = lineHasContent = fieldSeen = false;
+                fieldValid = true;
+                mantissa = 0;
+                mantissaDigits = decimalShift = exponent = 0;
+                negative = afterDecimal = inExponent = exponentNegative = hasDigits = false;
+                continue;
+            }
+            if (b == delimiter || (spaceDelimited && b == '\t')) {
+                if (!spaceDelimited || inField) column++;
+                inField = false;
+                continue;
+            }
+            if (b == ' ' || b == '\t' || b == '\r' || b == '"') {
+                // Padding and quoting around a field
+                continue;
+            }
+
+            inField = true;
+            lineHasContent = true;
+            if (column != target) {
+                continue;
+            }
+            fieldSeen = true;
+
+            if (b >= '0' && b <= '9') {
+                int digit = b - '0';
+                if (inExponent) {
+                    if (exponent < 1000) exponent = exponent * 10 + digit;
+                } else if (mantissaDigits < MAX_MANTISSA_DIGITS) {
+                    mantissa = mantissa * 10 + digit;
+                    if (mantissa != 0) mantissaDigits++;
+                    if (afterDecimal) decimalShift--;
+                } else if (!afterDecimal) {
+                    decimalShift++;
+                }
+                hasDigits = true;
+            } else if (b == decimal && !afterDecimal && !inExponent) {
+                afterDecimal = true;
+            } else if (b == '-' || b == '+') {
+                if (inExponent && exponent == 0) {
+                    exponentNegative = b == '-';
+                } else if (!hasDigits && !afterDecimal && !negative) {
+                    negative = b == '-';
+                } else {
+                    fieldValid = false;
+                }
+            } else if ((b == 'e' || b == 'E') && hasDigits && !inExponent) {
+                inExponent = true;
+            } else {
+                fieldValid = false;
+            }
+        }
+
+        this.column = column;
+        this.inField = inField;
+        this.lineHasContent = lineHasContent;
+        this.fieldSeen = fieldSeen;
+        this.fieldValid = fieldValid;
+        this.mantissa = mantissa;
+        this.mantissaDigits = mantissaDigits;
+        this.decimalShift = decimalShift;
+        this.negative = negative;
+        this.afterDecimal = afterDecimal;
+        this.inExponent = inExponent;
+        this.exponentNegative = exponentNegative;
+        this.exponent = exponent;
+        this.hasDigits = hasDigits;
+    }
+
+    /**
+     * Finishes a last line that has no trailing newline.
+     */
+    private void endLastLine() {
+        if (fieldSeen && fieldValid && hasDigits) {
+            append(toFloat(mantissa, decimalShift + (exponentNegative ? -exponent : exponent), negative));
+        } else if (lineHasContent) {
+            skippedLines++;
+        }
+        resetLine();
+    }
+
+    private void append(float value) {
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, Math.max(16, samples.length + (samples.length >> 1)));
+        }
+        samples[count++] = value;
+    }
+
+    private static float toFloat(long mantissa, int scale, boolean negative) {
+        double value = mantissa;
+        if (scale > 0) {
+            value = scale < POW10.length ? value * POW10[scale] : value * Math.pow(10, scale);
+        } else if (scale < 0) {
+            value = -scale < POW10.length ? value / POW10[-scale] : value / Math.pow(10, -scale);
+        }
+        return (float) (negative ? -value : value);
+    }
+
+    private void resetLine() {
+        column = 0;
+        inField = false;
+        lineHasContent = false;
+        fieldSeen = false;
+        fieldValid = true;
+        mantissa = 0;
+        mantissaDigits = 0;
+        decimalShift = 0;
+        negative = false;
+        afterDecimal = false;
+        inExponent = false;
+        exponentNegative = false;
+        exponent = 0;
+        hasDigits = false;
+    }
+}
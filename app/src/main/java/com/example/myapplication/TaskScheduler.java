@@ -0,0 +1,347 @@
+package com.example.myapplication;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Process-wide background work. Work runs on one of three fixed pools (blocking I/O, CPU-bound
+ * analysis, model inference) and in one of three priority lanes: queued live-ingest work runs
+ * before live classification, which runs before batch work, and each lane also sets the thread
+ * priority while its task runs. The batch lane is bounded per pool; a full queue rejects new
+ * batch work instead of letting it pile up behind the live lanes. Every task has an owner (usually
+ * a fragment), and {@link #cancelAll(Object)} from the owner's teardown (onDestroyView for a
+ * fragment's view) cancels everything it still has queued or running. An exception thrown by a
+ * task is logged, since fire-and-forget callers never look at the result.
+ */
+public final class TaskScheduler {
+    // java.util.logging rather than android.util.Log keeps this class testable on the JVM; on
+    // Android it ends up in logcat
+    private static final Logger LOG = Logger.getLogger("TaskScheduler");
+
+    public enum Pool {
+        IO, CPU, INFERENCE
+    }
+
+    /**
+     * Declared in precedence order.
+     */
+    public enum Priority {
+        LIVE_INGEST(Thread.MAX_PRIORITY),
+        LIVE_CLASSIFICATION(Thread.NORM_PRIORITY + 2),
+        BATCH(Thread.NORM_PRIORITY - 1);
+
+        final int threadPriority;
+
+        Priority(int threadPriority) {
+            this.threadPriority = threadPriority;
+        }
+    }
+
+    public static final int DEFAULT_BATCH_QUEUE_CAPACITY = 16;
+
+    private static TaskScheduler instance;
+
+    private final PoolExecutor[] pools = new PoolExecutor[Pool.values().length];
+    private final Map<Object, Set<Task<?>>> tasksByOwner = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+
+    public static synchronized TaskScheduler getInstance() {
+        if (instance == null) {
+            int cores = Runtime.getRuntime().availableProcessors();
+            // One I/O thread is held by the live ingest loop for a whole recording
+            instance = new TaskScheduler(3, Math.max(1, cores - 1), 2, DEFAULT_BATCH_QUEUE_CAPACITY);
+            for (PoolExecutor pool : instance.pools) {
+                Metrics.getInstance().register(pool.queueWait);
+            }
+        }
+        return instance;
+    }
+
+    TaskScheduler(int ioThreads, int cpuThreads, int inferenceThreads, int batchQueueCapacity) {
+        pools[Pool.IO.ordinal()] = new PoolExecutor(Pool.IO, ioThreads, batchQueueCapacity);
+        pools[Pool.CPU.ordinal()] = new PoolExecutor(Pool.CPU, cpuThreads, batchQueueCapacity);
+        pools[Pool.INFERENCE.ordinal()] = new PoolExecutor(Pool.INFERENCE, inferenceThreads, batchQueueCapacity);
+    }
+
+    /**
+     * A queued or running unit of work. Cancelling it removes it from its queue or interrupts it.
+     */
+    public final class Task<T> extends FutureTask<T> implements Comparable<Task<?>> {
+        final Pool pool;
+        final Priority priority;
+        final Object owner;
+        final String name;
+        final long order = sequence.getAndIncrement();
+        final long submittedNanos = System.nanoTime();
+
+        Task(Pool pool, Priority priority, Object owner, String name, Callable<T> work) {
+            super(work);
+            this.pool = pool;
+            this.priority = priority;
+            this.owner = owner;
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public int compareTo(Task<?> other) {
+            int byLane = priority.compareTo(other.priority);
+            return byLane != 0 ? byLane : Long.compare(order, other.order);
+        }
+
+        @Override
+        protected void done() {
+            forget(this);
+            if (isCancelled()) {
+                pools[pool.ordinal()].remove(this);
+                pools[pool.ordinal()].cancelled.incrementAndGet();
+            }
+        }
+    }
+
+    public Task<Void> submit(Pool pool, Priority priority, Object owner, String name, Runnable work) {
+        return submit(pool, priority, owner, name, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    /**
+     * Queues {@code work}. Throws {@link RejectedExecutionException} if it is batch work and the
+     * pool's batch queue is full.
+     */
+    public <T> Task<T> submit(Pool pool, Priority priority, Object owner, String name, Callable<T> work) {
+        Task<T> task = new Task<>(pool, priority, owner, name, work);
+        tasksByOwner.compute(owner, (key, owned) -> {
+            if (owned == null) owned = new HashSet<>();
+            owned.add(task);
+            return owned;
+        });
+        try {
+            pools[pool.ordinal()].execute(task);
+        } catch (RejectedExecutionException e) {
+            forget(task);
+            throw e;
+        }
+        return task;
+    }
+
+    // Per-key compute keeps an owner's set consistent with concurrent submits and completions
+    private void forget(Task<?> task) {
+        tasksByOwner.computeIfPresent(task.owner, (key, owned) -> {
+            owned.remove(task);
+            return owned.isEmpty() ? null : owned;
+        });
+    }
+
+    /**
+     * Cancels every task {@code owner} has queued or running. Returns how many were cancelled.
+     */
+    public int cancelAll(Object owner) {
+        Set<Task<?>> owned = tasksByOwner.remove(owner);
+        if (owned == null) return 0;
+        int count = 0;
+        for (Task<?> task : owned) {
+            if (task.cancel(true)) count++;
+        }
+        return count;
+    }
+
+    public PoolStats getStats(Pool pool) {
+        return pools[pool.ordinal()].stats();
+    }
+
+    public String summary() {
+        StringBuilder text = new StringBuilder();
+        for (Pool pool : Pool.values()) {
+            if (text.length() > 0) text.append('\n');
+            text.append(getStats(pool));
+        }
+        return text.toString();
+    }
+
+    /**
+     * Point-in-time counters of one pool. Utilization is busy thread time over available thread
+     * time since the pool was created.
+     */
+    public static class PoolStats {
+        public final Pool pool;
+        public final int threads;
+        public final int active;
+        public final int queued;
+        public final long completed;
+        public final long rejected;
+        public final long cancelled;
+        public final float utilization;
+        public final LatencyHistogram queueWait;
+
+        PoolStats(Pool pool, int threads, int active, int queued, long completed, long rejected,
+                  long cancelled, float utilization, LatencyHistogram queueWait) {
+            this.pool = pool;
+            this.threads = threads;
+            this.active = active;
+            this.queued = queued;
+            this.completed = completed;
+            this.rejected = rejected;
+            this.cancelled = cancelled;
+            this.utilization = utilization;
+            this.queueWait = queueWait;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "%s: %d/%d busy, %d queued, %.0f%% utilized, %d done, %d rejected, %d cancelled, wait p99 %.1f ms",
+                    pool, active, threads, queued, utilization * 100, completed, rejected, cancelled,
+                    queueWait.getPercentileNanos(99) / 1e6);
+        }
+    }
+
+    /**
+     * Priority queue whose batch lane is capped; live work is always accepted.
+     */
+    private static class LaneQueue extends PriorityBlockingQueue<Runnable> {
+        private static final long serialVersionUID = 1L;
+        private final int batchCapacity;
+        private int batchQueued = 0;
+
+        LaneQueue(int batchCapacity) {
+            this.batchCapacity = batchCapacity;
+        }
+
+        @Override
+        public synchronized boolean offer(Runnable runnable) {
+            if (isBatch(runnable)) {
+                if (batchQueued >= batchCapacity) return false;
+                batchQueued++;
+            }
+            return super.offer(runnable);
+        }
+
+        @Override
+        public Runnable take() throws InterruptedException {
+            return taken(super.take());
+        }
+
+        @Override
+        public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException {
+            return taken(super.poll(timeout, unit));
+        }
+
+        @Override
+        public synchronized boolean remove(Object o) {
+            boolean removed = super.remove(o);
+            if (removed && isBatch(o)) batchQueued--;
+            return removed;
+        }
+
+        private synchronized Runnable taken(Runnable runnable) {
+            if (isBatch(runnable)) batchQueued--;
+            return runnable;
+        }
+
+        private static boolean isBatch(Object runnable) {
+            return runnable instanceof TaskScheduler.Task
+                    && ((TaskScheduler.Task<?>) runnable).priority == Priority.BATCH;
+        }
+    }
+
+    private static class PoolExecutor extends ThreadPoolExecutor {
+        final Pool pool;
+        final long createdNanos = System.nanoTime();
+        final AtomicLong busyNanos = new AtomicLong();
+        final AtomicLong rejectedCount = new AtomicLong();
+        final AtomicLong cancelled = new AtomicLong();
+        final LatencyHistogram queueWait;
+        private final ThreadLocal<Long> startNanos = new ThreadLocal<>();
+
+        PoolExecutor(Pool pool, int threads, int batchCapacity) {
+            super(threads, threads, 0L, TimeUnit.MILLISECONDS, new LaneQueue(batchCapacity),
+                    new NamedThreadFactory(pool));
+            this.pool = pool;
+            this.queueWait = new LatencyHistogram(pool.name().toLowerCase(Locale.US) + "_queue_wait");
+            setRejectedExecutionHandler((task, executor) -> {
+                rejectedCount.incrementAndGet();
+                throw new RejectedExecutionException(pool + " queue full");
+            });
+        }
+
+        @Override
+        protected void beforeExecute(Thread thread, Runnable runnable) {
+            super.beforeExecute(thread, runnable);
+            long now = System.nanoTime();
+            startNanos.set(now);
+            if (runnable instanceof TaskScheduler.Task) {
+                TaskScheduler.Task<?> task = (TaskScheduler.Task<?>) runnable;
+                queueWait.record(now - task.submittedNanos);
+                thread.setPriority(task.priority.threadPriority);
+            }
+        }
+
+        @Override
+        protected void afterExecute(Runnable runnable, Throwable error) {
+            super.afterExecute(runnable, error);
+            Long start = startNanos.get();
+            if (start != null) {
+                busyNanos.addAndGet(System.nanoTime() - start);
+            }
+            Thread.currentThread().setPriority(Thread.NORM_PRIORITY);
+            // The task stored its exception instead of throwing it; report it here
+            if (runnable instanceof TaskScheduler.Task) {
+                TaskScheduler.Task<?> task = (TaskScheduler.Task<?>) runnable;
+                if (task.isDone() && !task.isCancelled()) {
+                    try {
+                        task.get();
+                    } catch (ExecutionException e) {
+                        LOG.log(Level.SEVERE, "Task " + task.name + " failed", e.getCause());
+                    } catch (InterruptedException e) {
+                        // Not reached: a done task returns without waiting
+                    }
+                }
+            }
+            // Clear an interrupt left by a cancelled task so it cannot leak into the next one
+            Thread.interrupted();
+        }
+
+        PoolStats stats() {
+            long available = (System.nanoTime() - createdNanos) * getMaximumPoolSize();
+            float utilization = available > 0 ? Math.min(1f, (float) busyNanos.get() / available) : 0f;
+            return new PoolStats(pool, getMaximumPoolSize(), getActiveCount(), getQueue().size(),
+                    getCompletedTaskCount(), rejectedCount.get(), cancelled.get(), utilization, queueWait);
+        }
+    }
+
+    private static class NamedThreadFactory implements ThreadFactory {
+        private final Pool pool;
+        private final AtomicInteger count = new AtomicInteger();
+
+        NamedThreadFactory(Pool pool) {
+            this.pool = pool;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, pool.name().toLowerCase(Locale.US) + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.myapplication;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Analyzes a {@link BinaryRecording} of any length in fixed memory. The recording is walked in
+ * windows of {@link #DEFAULT_WINDOW_SECONDS}; each is read with a margin of
+ * {@link ECGPreprocessor#SEGMENT_LENGTH} samples on both sides, so beats near a window edge still
+ * get a full beat window, and a beat is kept only by the window whose own span holds its R peak.
+ * Classified beats are streamed to a results file as they are found, in the per-beat layout of
+ * {@link AnalysisResult} (int sample index, byte type, float confidence); only running totals and
+ * HRV stay in memory.
+ */
+public class WindowedAnalyzer {
+    public static final int DEFAULT_WINDOW_SECONDS = 60;
+    static final int MARGIN = ECGPreprocessor.SEGMENT_LENGTH;
+
+    private static final LatencyHistogram WINDOW_TIME = Metrics.getInstance().histogram("windowed_analysis_window");
+
+    /**
+     * Classifies the beats of one window; {@code peaks} are their R-peak indices in the window.
+     * {@link ECGClassifier#classifyBeats} fits.
+     */
+    public interface BeatClassifier {
+        List<BeatClassification> classify(List<float[]> beats, List<Integer> peaks) throws Exception;
+    }
+
+    public interface ProgressListener {
+        void onProgress(long samplesDone, long totalSamples);
+    }
+
+    /** Totals for the whole recording. */
+    public static class Summary {
+        public long totalSamples;
+        public int sampleRate;
+        public long beatCount;
+        public long skippedBeats;
+        // Indexed by BEAT_TYPE_* code; the last entry counts unknown beats
+        public final long[] typeCounts = new long[6];
+        public float meanHeartRate;
+        public float minHeartRate;
+        public float maxHeartRate;
+        public HrvEngine.Metrics hrv;
+
+        public long countOfType(int type) {
+            return type >= 0 && type < typeCounts.length - 1 ? typeCounts[type] : typeCounts[typeCounts.length - 1];
+        }
+    }
+
+    private final int windowSeconds;
+    private volatile boolean cancelled;
+
+    public WindowedAnalyzer() {
+        this(DEFAULT_WINDOW_SECONDS);
+    }
+
+    public WindowedAnalyzer(int windowSeconds) {
+        this.windowSeconds = windowSeconds;
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Runs every window through {@link ECGPreprocessor} and {@code classifier}, writing each beat
+     * to {@code out} as it is classified. Samples are min-max scaled with the range of the whole
+     * recording, found in one extra pass over the mapped file, as the CSV path scales the whole
+     * file at once.
+     */
+    public Summary analyze(BinaryRecording recording, BeatClassifier classifier, DataOutputStream out,
+                           ProgressListener listener) throws Exception {
+        int rate = recording.getSampleRate();
+        long total = recording.getSampleCount();
+        int window = windowSeconds * rate;
+        float[] buffer = new float[window + 2 * MARGIN];
+        ECGPreprocessor preprocessor = new ECGPreprocessor();
+        HrvEngine hrv = new HrvEngine(rate);
+
+        Summary summary = new Summary();
+        summary.totalSamples = total;
+        summary.sampleRate = rate;
+        long firstBeat = -1;
+        long lastBeat = -1;
+        float minRate = Float.MAX_VALUE;
+        float maxRate = 0;
+        float[] range = valueRange(recording, buffer);
+
+        for (long start = 0; start < total; start += window) {
+            if (cancelled) throw new CancellationException();
+            long t0 = System.nanoTime();
+            long readFrom = Math.max(0, start - MARGIN);
+            int length = recording.read(readFrom, buffer, (int) Math.min(buffer.length, total - readFrom));
+            long ownedEnd = Math.min(total, start + window);
+            scale(buffer, length, range[0], range[1]);
+
+            ECGPreprocessor.ProcessedECGData processed = preprocessor.processSamples(buffer, length);
+            List<BeatClassification> beats = processed.normalizedBeats.isEmpty()
+                    ? Collections.<BeatClassification>emptyList()
+                    : classifier.classify(processed.normalizedBeats, processed.rPeakIndices);
+
+            List<Integer> rejected = processed.rejectedPeakIndices;
+            int nextRejected = 0;
+            for (int i = 0; i <= beats.size(); i++) {
+                long index = i < beats.size() ? readFrom + beats.get(i).beatIndex : Long.MAX_VALUE;
+                // A skipped beat breaks the NN sequence, as in the app's other HRV paths
+                while (nextRejected < rejected.size() && readFrom + rejected.get(nextRejected) < index) {
+                    long skipped = readFrom + rejected.get(nextRejected++);
+                    if (skipped >= start && skipped < ownedEnd) {
+                        summary.skippedBeats++;
+                        hrv.breakSequence();
+                    }
+                }
+                if (i == beats.size()) break;
+                BeatClassification beat = beats.get(i);
+                // Owned by this window, and not the same beat seen again across a boundary
+                if (index < start || index >= ownedEnd) continue;
+                if (lastBeat >= 0 && index - lastBeat < ECGPreprocessor.PEAK_REFRACTORY_SAMPLES) continue;
+
+                out.writeInt((int) index);
+                out.writeByte(beat.type);
+                out.writeFloat(beat.confidence);
+                summary.beatCount++;
+                summary.typeCounts[beat.type >= 0 && beat.type < 5 ? beat.type : 5]++;
+
+                if (lastBeat >= 0) {
+                    float bpm = 60f * rate / (index - lastBeat);
+                    if (bpm < minRate) minRate = bpm;
+                    if (bpm > maxRate) maxRate = bpm;
+                } else {
+                    firstBeat = index;
+                }
+                hrv.addBeat(index);
+                lastBeat = index;
+            }
+            WINDOW_TIME.record(System.nanoTime() - t0);
+            if (listener != null) listener.onProgress(ownedEnd, total);
+        }
+
+        if (summary.beatCount > 1 && lastBeat > firstBeat) {
+            summary.meanHeartRate = 60f * rate * (summary.beatCount - 1) / (lastBeat - firstBeat);
+            summary.minHeartRate = minRate;
+            summary.maxHeartRate = maxRate;
+        }
+        summary.hrv = hrv.getMetrics();
+        return summary;
+    }
+
+    /**
+     * Smallest and largest sample of the whole recording, read through {@code buffer} a chunk at
+     * a time. Lead-off samples repeat a reading in contact, so they do not widen the range.
+     */
+    static float[] valueRange(BinaryRecording recording, float[] buffer) throws IOException {
+        float min = Float.MAX_VALUE;
+        float max = -Float.MAX_VALUE;
+        long total = recording.getSampleCount();
+        for (long start = 0; start < total; start += buffer.length) {
+            int length = recording.read(start, buffer, buffer.length);
+            for (int i = 0; i < length; i++) {
+                if (buffer[i] < min) min = buffer[i];
+                if (buffer[i] > max) max = buffer[i];
+            }
+        }
+        return total > 0 ? new float[]{min, max} : new float[]{0, 0};
+    }
+
+    // Min-max scaling to [0, 1] in place with the recording's range, matching AnalyseFragment's CSV path
+    private static void scale(float[] values, int length, float min, float max) {
+        float range = max - min;
+        if (range == 0) range = 1;
+        for (int i = 0; i < length; i++) {
+            values[i] = (values[i] - min) / range;
+        }
+    }
+}
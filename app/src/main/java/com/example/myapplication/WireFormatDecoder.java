@@ -0,0 +1,85 @@
+package com.example.myapplication;
+
+/**
+ * Decodes the ESP32's serial wire format, one {@code ecg,loPlus,loMinus[,sequence]} text line per
+ * sample, straight from the bytes as they arrive, without building strings. A line split across
+ * reads is carried over to the next one. Lines that do not parse are counted and skipped.
+ */
+public class WireFormatDecoder {
+    private static final Metrics.Counter PARSE_ERRORS = Metrics.getInstance().counter("ingest_parse_errors");
+    private static final int MAX_FIELDS = 4;
+    // Longer lines are garbage, e.g. from a baud rate mismatch
+    private static final int MAX_LINE = 64;
+
+    private final long[] fields = new long[MAX_FIELDS];
+    private int fieldCount = 0;
+    private long value = 0;
+    private boolean negative = false;
+    private boolean hasDigits = false;
+    private boolean bad = false;
+    private int lineLength = 0;
+
+    /**
+     * Decodes {@code length} bytes of {@code data}. Returns the number of samples passed to
+     * {@code sink}.
+     */
+    public int decode(byte[] data, int length, long arrivalNanos, EcgTransport.SampleSink sink) {
+        int samples = 0;
+        for (int i = 0; i < length; i++) {
+            byte b = data[i];
+            if (b == '\n') {
+                if (endLine(arrivalNanos, sink)) samples++;
+                continue;
+            }
+            if (b == '\r' || b == ' ' || b == '\t') continue;
+            if (++lineLength > MAX_LINE) {
+                bad = true;
+            } else if (b >= '0' && b <= '9') {
+                value = value * 10 + (b - '0');
+                hasDigits = true;
+            } else if (b == ',') {
+                endField();
+            } else if (b == '-' && !hasDigits && !negative) {
+                negative = true;
+            } else {
+                bad = true;
+            }
+        }
+        return samples;
+    }
+
+    private void endField() {
+        if (!hasDigits) bad = true;
+        if (fieldCount < MAX_FIELDS) {
+            fields[fieldCount] = negative ? -value : value;
+        }
+        fieldCount++;
+        value = 0;
+        negative = false;
+        hasDigits = false;
+    }
+
+    private boolean endLine(long arrivalNanos, EcgTransport.SampleSink sink) {
+        boolean empty = lineLength == 0;
+        if (!empty) endField();
+        boolean valid = !empty && !bad && fieldCount >= 3;
+        if (valid) {
+            long sequence = fieldCount >= 4 ? fields[3] : SampleClock.NO_SEQUENCE;
+            sink.onSample((int) fields[0], (int) fields[1], (int) fields[2], sequence, arrivalNanos);
+        } else if (!empty) {
+            PARSE_ERRORS.increment();
+        }
+        reset();
+        return valid;
+    }
+
+    /** Drops a partial line, e.g. after reconnecting mid-stream. */
+    public void reset() {
+        fieldCount = 0;
+        value = 0;
+        negative = false;
+        hasDigits = false;
+        bad = false;
+        lineLength = 0;
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.myapplication;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Streaming XXH64. Several GB/s in plain Java, which makes it cheap enough to hash a whole
+ * recording before deciding whether it needs to be analyzed at all.
+ */
+public class XxHash64 {
+    private static final long PRIME1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME3 = 0x165667B19E3779F9L;
+    private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME5 = 0x27D4EB2F165667C5L;
+
+    private final long seed;
+    private long v1, v2, v3, v4;
+    private long totalLength;
+    private final byte[] pending = new byte[32];
+    private int pendingSize;
+
+    public XxHash64() {
+        this(0);
+    }
+
+    public XxHash64(long seed) {
+        this.seed = seed;
+        reset();
+    }
+
+    public void reset() {
+        v1 = seed + PRIME1 + PRIME2;
+        v2 = seed + PRIME2;
+        v3 = seed;
+        v4 = seed - PRIME1;
+        totalLength = 0;
+        pendingSize = 0;
+    }
+
+    public void update(byte[] data, int offset, int length) {
+        totalLength += length;
+        int end = offset + length;
+
+        if (pendingSize > 0) {
+            int fill = Math.min(32 - pendingSize, length);
+            System.arraycopy(data, offset, pending, pendingSize, fill);
+            pendingSize += fill;
+            offset += fill;
+            if (pendingSize < 32) {
+                return;
+            }
+            consumeStripe(pending, 0);
+            pendingSize = 0;
+        }
+
+        while (offset + 32 <= end) {
+            consumeStripe(data, offset);
+            offset += 32;
+        }
+
+        if (offset < end) {
+            pendingSize = end - offset;
+            System.arraycopy(data, offset, pending, 0, pendingSize);
+        }
+    }
+
+    /**
+     * Hashes the remaining bytes of {@code buffer} without moving its position.
+     */
+    public void update(ByteBuffer buffer) {
+        ByteBuffer view = buffer.duplicate();
+        byte[] chunk = new byte[8192];
+        while (view.hasRemaining()) {
+            int n = Math.min(chunk.length, view.remaining());
+            view.get(chunk, 0, n);
+            update(chunk, 0, n);
+        }
+    }
+
+    public long digest() {
+        long h;
+        if (totalLength >= 32) {
+            h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            h = mergeRound(h, v1);
+            h = mergeRound(h, v2);
+            h = mergeRound(h, v3);
+            h = mergeRound(h, v4);
+        } else {
+            h = seed + PRIME5;
+        }
+        h += totalLength;
+
+        int i = 0;
+        for (; i + 8 <= pendingSize; i += 8) {
+            h ^= round(0, readLong(pending, i));
+            h = Long.rotateLeft(h, 27) * PRIME1 + PRIME4;
+        }
+        if (i + 4 <= pendingSize) {
+            h ^= (readInt(pending, i) & 0xFFFFFFFFL) * PRIME1;
+            h = Long.rotateLeft(h, 23) * PRIME2 + PRIME3;
+            i += 4;
+        }
+        for (; i < pendingSize; i++) {
+            h ^= (pending[i] & 0xFF) * PRIME5;
+            h = Long.rotateLeft(h, 11) * PRIME1;
+        }
+
+        h ^= h >>> 33;
+        h *= PRIME2;
+        h ^= h >>> 29;
+        h *= PRIME3;
+        h ^= h >>> 32;
+        return h;
+    }
+
+    /**
+     * Hashes everything left in {@code stream}. The stream is not closed.
+     */
+    public static long hash(InputStream stream) throws IOException {
+        XxHash64 hash = new XxHash64();
+        byte[] buffer = new byte[64 * 1024];
+        int n;
+        while ((n = stream.read(buffer)) > 0) {
+            hash.update(buffer, 0, n);
+        }
+        return hash.digest();
+    }
+
+    private void consumeStripe(byte[] data, int offset) {
+        v1 = round(v1, readLong(data, offset));
+        v2 = round(v2, readLong(data, offset + 8));
+        v3 = round(v3, readLong(data, offset + 16));
+        v4 = round(v4, readLong(data, offset + 24));
+    }
+
+    private static long round(long acc, long input) {
+        acc += input * PRIME2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * PRIME1;
+    }
+
+    private static long mergeRound(long acc, long value) {
+        acc ^= round(0, value);
+        return acc * PRIME1 + PRIME4;
+    }
+
+    private static long readLong(byte[] b, int i) {
+        return (b[i] & 0xFFL)
+                | (b[i + 1] & 0xFFL) << 8
+                | (b[i + 2] & 0xFFL) << 16
+                | (b[i + 3] & 0xFFL) << 24
+                | (b[i + 4] & 0xFFL) << 32
+                | (b[i + 5] & 0xFFL) << 40
+                | (b[i + 6] & 0xFFL) << 48
+                | (b[i + 7] & 0xFFL) << 56;
+    }
+
+    private static int readInt(byte[] b, int i) {
+        return (b[i] & 0xFF)
+                | (b[i + 1] & 0xFF) << 8
+                | (b[i + 2] & 0xFF) << 16
+                | (b[i + 3] & 0xFF) << 24;
+    }
+}
@@ -0,0 +1,272 @@
+package com.example.myapplication;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Feeds known beat sequences, one beat every {@link #RR} samples unless stated, and checks the
+ * events reported and the beats they start and end on.
+ */
+public class ArrhythmiaEventEngineTest {
+    private static final int RATE = 250;
+    // 75 BPM
+    private static final int RR = 200;
+    private static final int N = BeatTypes.BEAT_TYPE_NORMAL;
+    private static final int V = BeatTypes.BEAT_TYPE_PREMATURE_VENTRICULAR;
+    private static final int A = BeatTypes.BEAT_TYPE_ATRIAL_PREMATURE;
+
+    private final List<ArrhythmiaEvent> started = new ArrayList<>();
+    private final List<ArrhythmiaEvent> ended = new ArrayList<>();
+    private final ArrhythmiaEventEngine engine = new ArrhythmiaEventEngine(RATE, new ArrhythmiaEventEngine.Listener() {
+        @Override
+        public void onEventStarted(ArrhythmiaEvent event) {
+            assertTrue(event.isOngoing());
+            started.add(event);
+        }
+
+        @Override
+        public void onEventEnded(ArrhythmiaEvent event) {
+            assertFalse(event.isOngoing());
+            ended.add(event);
+        }
+    });
+    private long peak = 0;
+    private final List<Long> peaks = new ArrayList<>();
+
+    private void beats(int... types) {
+        for (int type : types) {
+            beat(type, RR);
+        }
+    }
+
+    private void beat(int type, int rr) {
+        if (!peaks.isEmpty()) peak += rr;
+        peaks.add(peak);
+        engine.onBeat(peak, type, -1);
+    }
+
+    private void repeat(int count, int type, int rr) {
+        for (int i = 0; i < count; i++) {
+            beat(type, rr);
+        }
+    }
+
+    private ArrhythmiaEvent only(List<ArrhythmiaEvent> events, ArrhythmiaEvent.Type type) {
+        ArrhythmiaEvent found = null;
+        for (ArrhythmiaEvent event : events) {
+            if (event.type == type) {
+                assertNull("more than one " + type, found);
+                found = event;
+            }
+        }
+        assertNotNull("no " + type, found);
+        return found;
+    }
+
+    @Test
+    public void twoEctopicBeatsAreACouplet() {
+        beats(N, N, V, V, N, N);
+
+        assertEquals(1, started.size());
+        ArrhythmiaEvent couplet = only(ended, ArrhythmiaEvent.Type.COUPLET);
+        assertSame(started.get(0), couplet);
+        assertEquals(V, couplet.beatType);
+        assertEquals(2, couplet.beatCount);
+        assertEquals((long) peaks.get(2), couplet.onsetSample);
+        assertEquals((long) peaks.get(3), couplet.offsetSample);
+    }
+
+    @Test
+    public void threeOrMoreEctopicBeatsAreARun() {
+        beats(N, N, V, V);
+        assertTrue(started.isEmpty());
+        beats(V);
+        ArrhythmiaEvent run = only(started, ArrhythmiaEvent.Type.RUN);
+        assertTrue(run.isOngoing());
+
+        beats(V, N, N);
+        assertSame(run, only(ended, ArrhythmiaEvent.Type.RUN));
+        assertEquals(4, run.beatCount);
+        assertEquals((long) peaks.get(2), run.onsetSample);
+        assertEquals((long) peaks.get(5), run.offsetSample);
+        assertEquals(0, engine.getEventCount(ArrhythmiaEvent.Type.COUPLET));
+    }
+
+    @Test
+    public void atrialRunsAreTrackedApartFromVentricular() {
+        beats(N, A, A, A, V, V, N);
+
+        ArrhythmiaEvent run = only(ended, ArrhythmiaEvent.Type.RUN);
+        assertEquals(A, run.beatType);
+        assertEquals((long) peaks.get(3), run.offsetSample);
+        ArrhythmiaEvent couplet = only(ended, ArrhythmiaEvent.Type.COUPLET);
+        assertEquals(V, couplet.beatType);
+        assertEquals((long) peaks.get(4), couplet.onsetSample);
+    }
+
+    @Test
+    public void everySecondBeatEctopicIsBigeminy() {
+        beats(N, V, N, V, N);
+        assertTrue(started.isEmpty());
+        beats(V);
+        ArrhythmiaEvent bigeminy = only(started, ArrhythmiaEvent.Type.BIGEMINY);
+        assertEquals(V, bigeminy.beatType);
+        assertEquals((long) peaks.get(1), bigeminy.onsetSample);
+
+        // The first normal beat where an ectopic one was due ends it, after the last coupled beat
+        beats(N, N, N);
+        assertSame(bigeminy, only(ended, ArrhythmiaEvent.Type.BIGEMINY));
+        assertEquals(3, bigeminy.beatCount);
+        assertEquals((long) peaks.get(6), bigeminy.offsetSample);
+    }
+
+    @Test
+    public void everyThirdBeatEctopicIsTrigeminy() {
+        beats(N, V, N, N, V, N, N, V);
+        ArrhythmiaEvent trigeminy = only(started, ArrhythmiaEvent.Type.TRIGEMINY);
+        assertEquals((long) peaks.get(1), trigeminy.onsetSample);
+
+        beats(N, N, V, N, N, N, N);
+        assertSame(trigeminy, only(ended, ArrhythmiaEvent.Type.TRIGEMINY));
+        assertEquals(4, trigeminy.beatCount);
+        assertEquals((long) peaks.get(12), trigeminy.offsetSample);
+        assertEquals(0, engine.getEventCount(ArrhythmiaEvent.Type.BIGEMINY));
+    }
+
+    @Test
+    public void patternOfANewSpacingStartsAfterTheLastEnds() {
+        beats(N, V, N, V, N, V);
+        ArrhythmiaEvent bigeminy = only(started, ArrhythmiaEvent.Type.BIGEMINY);
+        beats(N, N, V, N, N, V);
+
+        assertEquals((long) peaks.get(6), bigeminy.offsetSample);
+        ArrhythmiaEvent trigeminy = only(started, ArrhythmiaEvent.Type.TRIGEMINY);
+        // The last ectopic beat of the bigeminy is the first of the trigeminy
+        assertEquals((long) peaks.get(5), trigeminy.onsetSample);
+        assertTrue(started.indexOf(trigeminy) > started.indexOf(bigeminy));
+        assertTrue(trigeminy.isOngoing());
+    }
+
+    @Test
+    public void longGapIsAPause() {
+        beats(N, N, N);
+        beat(N, 2 * RATE + 1);
+        beats(N);
+
+        ArrhythmiaEvent pause = only(ended, ArrhythmiaEvent.Type.PAUSE);
+        assertSame(started.get(0), pause);
+        assertEquals((long) peaks.get(2), pause.onsetSample);
+        assertEquals((long) peaks.get(3), pause.offsetSample);
+        assertEquals(2 * RATE + 1, pause.detectionLatencyNanos * RATE / 1_000_000_000L);
+    }
+
+    @Test
+    public void gapOfExactlyThePauseLengthIsNotAPause() {
+        beats(N, N);
+        beat(N, 2 * RATE);
+        assertTrue(started.isEmpty());
+    }
+
+    @Test
+    public void sustainedSlowRateIsBradycardia() {
+        // 37.5 BPM after 75: the mean of the last 8 intervals first drops below 50 BPM on the
+        // fifth slow interval
+        repeat(10, N, RR);
+        repeat(20, N, 2 * RR);
+        ArrhythmiaEvent bradycardia = only(started, ArrhythmiaEvent.Type.BRADYCARDIA);
+        long conditionStart = peaks.get(9 + 5);
+        assertEquals(conditionStart, bradycardia.onsetSample);
+        // Reported once it has lasted the sustain time: the first beat 10 s past the onset
+        long reportedAt = conditionStart + ((10 * RATE + 2 * RR - 1) / (2 * RR)) * 2 * RR;
+        assertEquals((reportedAt - conditionStart) * 1_000_000_000L / RATE, bradycardia.detectionLatencyNanos);
+        assertEquals(37.5f, bradycardia.heartRate, 6f);
+
+        // Back to 75 BPM: the mean reaches 50 BPM again on the fourth fast interval, and the
+        // event ends on the beat before
+        repeat(6, N, RR);
+        assertSame(bradycardia, only(ended, ArrhythmiaEvent.Type.BRADYCARDIA));
+        assertEquals((long) peaks.get(29 + 3), bradycardia.offsetSample);
+        assertEquals(0, engine.getEventCount(ArrhythmiaEvent.Type.TACHYCARDIA));
+    }
+
+    @Test
+    public void sustainedFastRateIsTachycardia() {
+        // 150 BPM after 75: the mean of the last 8 intervals first exceeds 100 BPM on the fifth
+        // fast interval
+        repeat(10, N, RR);
+        repeat(150, N, RR / 2);
+        ArrhythmiaEvent tachycardia = only(started, ArrhythmiaEvent.Type.TACHYCARDIA);
+        assertEquals((long) peaks.get(9 + 5), tachycardia.onsetSample);
+        assertTrue(tachycardia.heartRate > 140);
+
+        // The mean falls to 100 BPM on the fourth slow interval
+        repeat(6, N, RR);
+        assertSame(tachycardia, only(ended, ArrhythmiaEvent.Type.TACHYCARDIA));
+        assertEquals((long) peaks.get(159 + 3), tachycardia.offsetSample);
+    }
+
+    @Test
+    public void shortSlowSpellIsNotBradycardia() {
+        // Past the limit on the fifth slow interval, back under it three fast intervals later
+        repeat(10, N, RR);
+        repeat(6, N, 2 * RR);
+        repeat(10, N, RR);
+        assertTrue(started.isEmpty());
+    }
+
+    @Test
+    public void finishEndsOngoingEventsAtTheLastBeat() {
+        repeat(10, N, RR);
+        repeat(20, N, 2 * RR);
+        beats(V, V, V);
+        ArrhythmiaEvent bradycardia = only(started, ArrhythmiaEvent.Type.BRADYCARDIA);
+        ArrhythmiaEvent run = only(started, ArrhythmiaEvent.Type.RUN);
+        assertTrue(ended.isEmpty());
+
+        engine.finish();
+        long last = peaks.get(peaks.size() - 1);
+        assertEquals(last, run.offsetSample);
+        assertEquals(last, bradycardia.offsetSample);
+        assertEquals(2, ended.size());
+    }
+
+    @Test
+    public void finishEndsAPatternAtTheLastBeat() {
+        beats(N, V, N, V, N, V, N);
+        ArrhythmiaEvent bigeminy = only(started, ArrhythmiaEvent.Type.BIGEMINY);
+
+        engine.finish();
+        assertEquals((long) peaks.get(6), bigeminy.offsetSample);
+    }
+
+    @Test
+    public void finishReportsAPendingCouplet() {
+        beats(N, V, V);
+        engine.finish();
+        ArrhythmiaEvent couplet = only(ended, ArrhythmiaEvent.Type.COUPLET);
+        assertEquals((long) peaks.get(2), couplet.offsetSample);
+    }
+
+    @Test
+    public void resetEndsEventsAndForgetsHistory() {
+        beats(N, N, V, V, V, V);
+        ArrhythmiaEvent run = only(started, ArrhythmiaEvent.Type.RUN);
+
+        engine.reset();
+        assertEquals((long) peaks.get(5), run.offsetSample);
+        assertEquals(4, run.beatCount);
+
+        // Neither the run nor the last peak carry over: no new run, no pause across the reset
+        started.clear();
+        beat(V, 10 * RATE);
+        beats(V, N);
+        ArrhythmiaEvent couplet = only(started, ArrhythmiaEvent.Type.COUPLET);
+        assertEquals((long) peaks.get(6), couplet.onsetSample);
+        assertEquals(1, started.size());
+        assertEquals(0, engine.getEventCount(ArrhythmiaEvent.Type.PAUSE));
+    }
+}
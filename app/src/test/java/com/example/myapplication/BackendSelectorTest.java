@@ -0,0 +1,86 @@
+package com.example.myapplication;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs on the plain JVM: interpreters come from a fake factory, so no TFLite natives are needed.
+ */
+public class BackendSelectorTest {
+
+    @Test
+    public void picksFasterBackendAndPersistsIt() {
+        FakeInterpreterFactory factory = new FakeInterpreterFactory(5, 1, false);
+        MemoryStore store = new MemoryStore();
+        BackendSelector selector = new BackendSelector(ByteBuffer.allocateDirect(16), factory, store);
+
+        assertEquals(InferenceBackend.BUILTIN_CPU, selector.select("device"));
+        assertEquals("BUILTIN_CPU", store.values.get("device"));
+        assertEquals(2, selector.getLastCalibration().medianBatchNanos.size());
+    }
+
+    @Test
+    public void storedChoiceSkipsCalibration() {
+        FakeInterpreterFactory factory = new FakeInterpreterFactory(1, 5, false);
+        MemoryStore store = new MemoryStore();
+        store.values.put("device", "XNNPACK");
+        BackendSelector selector = new BackendSelector(ByteBuffer.allocateDirect(16), factory, store);
+
+        assertEquals(InferenceBackend.XNNPACK, selector.select("device"));
+        assertNull(selector.getLastCalibration());
+        assertEquals(0, factory.created);
+    }
+
+    @Test
+    public void failingDelegateIsSkipped() {
+        FakeInterpreterFactory factory = new FakeInterpreterFactory(1, 5, true);
+        BackendSelector selector = new BackendSelector(ByteBuffer.allocateDirect(16), factory, new MemoryStore());
+
+        assertEquals(InferenceBackend.BUILTIN_CPU, selector.select("device"));
+        assertTrue(selector.getLastCalibration().failures.containsKey(InferenceBackend.XNNPACK));
+    }
+
+    @Test
+    public void nothingIsStoredWhenEveryCandidateFails() {
+        FakeInterpreterFactory factory = new FakeInterpreterFactory(1, 5, true);
+        MemoryStore store = new MemoryStore();
+        BackendSelector selector = new BackendSelector(ByteBuffer.allocateDirect(16), factory, store,
+                Collections.singletonList(InferenceBackend.XNNPACK));
+
+        assertEquals(InferenceBackend.BUILTIN_CPU, selector.select("device"));
+        assertTrue(selector.getLastCalibration().medianBatchNanos.isEmpty());
+        assertFalse(store.values.containsKey("device"));
+    }
+
+    @Test
+    public void poolFallsBackWhenDelegateFails() throws Exception {
+        FakeInterpreterFactory factory = new FakeInterpreterFactory(1, 1, true);
+        InterpreterPool pool = new InterpreterPool(ByteBuffer.allocateDirect(16), 1,
+                InferenceBackend.XNNPACK, factory);
+
+        InferenceSession session = pool.acquire();
+        assertEquals(InferenceBackend.BUILTIN_CPU, pool.getBackend());
+        pool.release(session);
+        pool.close();
+    }
+
+    private static class MemoryStore implements BackendSelector.Store {
+        final Map<String, String> values = new HashMap<>();
+
+        @Override
+        public String getPreferredBackend(String deviceKey) {
+            return values.get(deviceKey);
+        }
+
+        @Override
+        public void setPreferredBackend(String deviceKey, String backend) {
+            values.put(deviceKey, backend);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.myapplication;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class BackoffTest {
+
+    @Test
+    public void doublesUpToTheMaximumWithJitter() {
+        Backoff backoff = new Backoff(250, 8_000, 60_000, new Random(1));
+        long ceiling = 250;
+        for (int attempt = 0; attempt < 10; attempt++) {
+            long delay = backoff.nextDelayMillis(0);
+            assertTrue(delay + " above " + ceiling, delay <= ceiling);
+            assertTrue(delay + " below half of " + ceiling, delay >= ceiling / 2);
+            ceiling = Math.min(8_000, ceiling * 2);
+        }
+        assertEquals(10, backoff.getAttempts());
+
+        backoff.reset();
+        assertTrue(backoff.nextDelayMillis(0) <= 250);
+    }
+
+    @Test
+    public void stopsOnceTheBudgetIsSpent() {
+        Backoff backoff = new Backoff(1_000, 1_000, 10_000, new Random(1));
+        long elapsed = 0;
+        long delay;
+        while ((delay = backoff.nextDelayMillis(elapsed)) >= 0) {
+            elapsed += delay;
+        }
+        assertTrue(elapsed <= 10_000);
+        assertTrue(elapsed > 9_000);
+        assertTrue(backoff.getAttempts() >= 10 && backoff.getAttempts() <= 20);
+    }
+}
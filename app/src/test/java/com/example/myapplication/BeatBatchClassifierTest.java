@@ -0,0 +1,57 @@
+package com.example.myapplication;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs on the plain JVM: interpreters come from a fake factory, so no TFLite natives are needed.
+ */
+public class BeatBatchClassifierTest {
+
+    private static List<float[]> beats(int count) {
+        List<float[]> beats = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            beats.add(new float[ECGPreprocessor.SEGMENT_LENGTH]);
+        }
+        return beats;
+    }
+
+    @Test
+    public void mapsOutputsToBeatTypesAndPeaks() throws Exception {
+        FakeInterpreterFactory factory = new FakeInterpreterFactory(0, 0, false);
+        InterpreterPool pool = new InterpreterPool(ByteBuffer.allocateDirect(16), 1,
+                InferenceBackend.BUILTIN_CPU, factory);
+        LatencyHistogram queueWait = new LatencyHistogram("queue_wait");
+        LatencyHistogram inference = new LatencyHistogram("inference");
+        // Every output is equal, so each beat takes the first class
+        int[] classTypes = {BeatTypes.BEAT_TYPE_PREMATURE_VENTRICULAR, BeatTypes.BEAT_TYPE_NORMAL,
+                BeatTypes.BEAT_TYPE_NORMAL, BeatTypes.BEAT_TYPE_NORMAL, BeatTypes.BEAT_TYPE_NORMAL};
+        BeatBatchClassifier classifier = new BeatBatchClassifier(pool, classTypes, queueWait, inference);
+
+        List<BeatClassification> results = new ArrayList<>();
+        long runNanos = classifier.classify(beats(5), Arrays.asList(100, 300, 500, 700, 900), 2, results);
+
+        assertTrue(runNanos >= 0);
+        assertEquals(5, results.size());
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals(100 + 200 * i, results.get(i).beatIndex);
+            assertEquals(BeatTypes.BEAT_TYPE_PREMATURE_VENTRICULAR, results.get(i).type);
+            assertEquals(0.2f, results.get(i).confidence, 1e-6f);
+        }
+        assertEquals(1, queueWait.getCount());
+        assertEquals(1, inference.getCount());
+
+        // Positions stand in for missing peaks, and the session went back to the pool
+        results.clear();
+        classifier.classify(beats(2), null, 2, results);
+        assertEquals(1, results.get(1).beatIndex);
+        assertEquals(1, factory.created);
+        pool.close();
+    }
+}
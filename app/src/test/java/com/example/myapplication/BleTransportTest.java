@@ -0,0 +1,166 @@
+package com.example.myapplication;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+/**
+ * Drives the transport through a fake GATT that answers every request straight away, as a
+ * device that accepts the requested MTU would.
+ */
+public class BleTransportTest {
+    private static final int RATE = ECGPreprocessor.DEFAULT_SAMPLE_RATE;
+
+    private static class FakeGatt implements BleTransport.GattClient {
+        Callback callback;
+        int grantedMtu = BleTransport.REQUESTED_MTU;
+        boolean hasService = true;
+        BleTransport.ConnectionPriority priority;
+        boolean closed;
+
+        @Override
+        public boolean connect(Callback callback) {
+            this.callback = callback;
+            callback.onConnectionStateChanged(true);
+            return true;
+        }
+
+        @Override
+        public boolean discoverServices() {
+            callback.onServicesDiscovered(true);
+            return true;
+        }
+
+        @Override
+        public boolean requestMtu(int mtu) {
+            callback.onMtuChanged(Math.min(mtu, grantedMtu), true);
+            return true;
+        }
+
+        @Override
+        public boolean requestConnectionPriority(BleTransport.ConnectionPriority priority) {
+            this.priority = priority;
+            return true;
+        }
+
+        @Override
+        public boolean enableNotifications(UUID service, UUID characteristic) {
+            if (!hasService) return false;
+            assertEquals(BleTransport.SERVICE_UUID, service);
+            callback.onNotificationsEnabled(true);
+            return true;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        // A notification as the ESP32 packs it
+        void notify(int firstSequence, int[] values, boolean leadOff) {
+            byte[] packet = new byte[2 + 2 * values.length];
+            packet[0] = (byte) firstSequence;
+            packet[1] = (byte) (firstSequence >> 8);
+            for (int i = 0; i < values.length; i++) {
+                int word = values[i] | (leadOff ? 1 << 14 : 0);
+                packet[2 + 2 * i] = (byte) word;
+                packet[3 + 2 * i] = (byte) (word >> 8);
+            }
+            callback.onNotification(packet);
+        }
+    }
+
+    private static final class Sample {
+        final int value;
+        final int loPlus;
+        final long sequence;
+
+        Sample(int value, int loPlus, long sequence) {
+            this.value = value;
+            this.loPlus = loPlus;
+            this.sequence = sequence;
+        }
+    }
+
+    private static int[] ramp(int from, int count) {
+        int[] values = new int[count];
+        for (int i = 0; i < count; i++) values[i] = from + i;
+        return values;
+    }
+
+    @Test
+    public void negotiatesMtuAndTheLowestPowerInterval() throws IOException {
+        FakeGatt gatt = new FakeGatt();
+        BleTransport transport = new BleTransport(gatt, RATE);
+        transport.connect();
+
+        assertEquals(BleTransport.REQUESTED_MTU, transport.getMtu());
+        assertEquals(121, BleTransport.samplesPerNotification(transport.getMtu()));
+        // About two notifications a second fit the slowest interval
+        assertEquals(BleTransport.ConnectionPriority.LOW_POWER, gatt.priority);
+
+        FakeGatt smallMtu = new FakeGatt();
+        smallMtu.grantedMtu = BleTransport.DEFAULT_MTU;
+        new BleTransport(smallMtu, RATE).connect();
+        assertEquals(BleTransport.ConnectionPriority.HIGH, smallMtu.priority);
+        assertEquals(BleTransport.ConnectionPriority.BALANCED, BleTransport.choosePriority(40, RATE));
+    }
+
+    @Test
+    public void unpacksSamplesAndCountsLostNotifications() throws IOException {
+        FakeGatt gatt = new FakeGatt();
+        BleTransport transport = new BleTransport(gatt, RATE);
+        transport.connect();
+        List<Sample> samples = new ArrayList<>();
+        EcgTransport.SampleSink sink = (ecg, loPlus, loMinus, sequence, arrival) ->
+                samples.add(new Sample(ecg, loPlus, sequence));
+
+        gatt.notify(65530, ramp(2000, 10), false);
+        // The notification with sequence 4 is lost; the one after wraps past it
+        gatt.notify(14, ramp(3000, 10), true);
+        assertEquals(22, transport.read(sink));
+        assertEquals(22, transport.read(sink));
+        assertEquals(0, transport.read(sink));
+
+        assertEquals(20, samples.size());
+        assertEquals(2000, samples.get(0).value);
+        assertEquals(65530, samples.get(0).sequence);
+        assertEquals(3, samples.get(9).sequence);
+        assertEquals(3000, samples.get(10).value);
+        assertEquals(1, samples.get(10).loPlus);
+        assertEquals(14, samples.get(10).sequence);
+
+        EcgTransport.Stats stats = transport.getStats();
+        assertEquals(2, stats.getPackets());
+        assertEquals(1, stats.getLostPackets());
+        assertEquals(1 / 3.0, stats.getLossRate(), 1e-9);
+        assertEquals(2.2, stats.getBytesPerSample(), 1e-9);
+    }
+
+    @Test
+    public void failsWithoutTheEcgService() {
+        FakeGatt gatt = new FakeGatt();
+        gatt.hasService = false;
+        try {
+            new BleTransport(gatt, RATE).connect();
+            fail("Connected without the service");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("service"));
+        }
+        assertTrue(gatt.closed);
+    }
+
+    @Test(expected = IOException.class)
+    public void readFailsOnceTheLinkDrops() throws IOException {
+        FakeGatt gatt = new FakeGatt();
+        BleTransport transport = new BleTransport(gatt, RATE);
+        transport.connect();
+        gatt.callback.onConnectionStateChanged(false);
+        transport.read((ecg, loPlus, loMinus, sequence, arrival) -> fail());
+    }
+}
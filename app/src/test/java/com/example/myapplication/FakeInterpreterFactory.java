@@ -0,0 +1,176 @@
+package com.example.myapplication;
+
+import org.tensorflow.lite.DataType;
+import org.tensorflow.lite.InterpreterApi;
+import org.tensorflow.lite.Tensor;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+/**
+ * Interpreters for tests on the plain JVM: each run sleeps for its backend's time and outputs the
+ * same score for every class, so no TFLite natives are needed.
+ */
+class FakeInterpreterFactory implements InterpreterPool.Factory {
+    final long xnnpackMillis;
+    final long builtinMillis;
+    final boolean xnnpackFails;
+    int created = 0;
+
+    FakeInterpreterFactory(long xnnpackMillis, long builtinMillis, boolean xnnpackFails) {
+        this.xnnpackMillis = xnnpackMillis;
+        this.builtinMillis = builtinMillis;
+        this.xnnpackFails = xnnpackFails;
+    }
+
+    @Override
+    public InterpreterApi create(ByteBuffer model, InterpreterApi.Options options) {
+        if (options.getUseXNNPACK() && xnnpackFails) {
+            throw new IllegalArgumentException("Failed to apply XNNPACK delegate");
+        }
+        created++;
+        return new FakeInterpreter(options.getUseXNNPACK() ? xnnpackMillis : builtinMillis);
+    }
+
+    private static class FakeInterpreter implements InterpreterApi {
+        private final long runMillis;
+        private final FakeTensor input = new FakeTensor(new int[]{1, ECGPreprocessor.SEGMENT_LENGTH, 1});
+        private final FakeTensor output = new FakeTensor(new int[]{1, 5});
+
+        FakeInterpreter(long runMillis) {
+            this.runMillis = runMillis;
+        }
+
+        @Override
+        public void run(Object in, Object out) {
+            try {
+                Thread.sleep(runMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            ByteBuffer buffer = (ByteBuffer) out;
+            while (buffer.remaining() >= 4) {
+                buffer.putFloat(0.2f);
+            }
+        }
+
+        @Override
+        public void runForMultipleInputsOutputs(Object[] inputs, Map<Integer, Object> outputs) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void allocateTensors() {
+        }
+
+        @Override
+        public void resizeInput(int idx, int[] dims) {
+            input.shape = dims.clone();
+            output.shape = new int[]{dims[0], 5};
+        }
+
+        @Override
+        public void resizeInput(int idx, int[] dims, boolean strict) {
+            resizeInput(idx, dims);
+        }
+
+        @Override
+        public int getInputTensorCount() {
+            return 1;
+        }
+
+        @Override
+        public int getInputIndex(String opName) {
+            return 0;
+        }
+
+        @Override
+        public Tensor getInputTensor(int inputIndex) {
+            return input;
+        }
+
+        @Override
+        public int getOutputTensorCount() {
+            return 1;
+        }
+
+        @Override
+        public int getOutputIndex(String opName) {
+            return 0;
+        }
+
+        @Override
+        public Tensor getOutputTensor(int outputIndex) {
+            return output;
+        }
+
+        @Override
+        public Long getLastNativeInferenceDurationNanoseconds() {
+            return null;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static class FakeTensor implements Tensor {
+        int[] shape;
+
+        FakeTensor(int[] shape) {
+            this.shape = shape;
+        }
+
+        @Override
+        public DataType dataType() {
+            return DataType.FLOAT32;
+        }
+
+        @Override
+        public int numDimensions() {
+            return shape.length;
+        }
+
+        @Override
+        public int numBytes() {
+            return numElements() * 4;
+        }
+
+        @Override
+        public int numElements() {
+            int n = 1;
+            for (int d : shape) n *= d;
+            return n;
+        }
+
+        @Override
+        public int[] shape() {
+            return shape.clone();
+        }
+
+        @Override
+        public int[] shapeSignature() {
+            return shape.clone();
+        }
+
+        @Override
+        public int index() {
+            return 0;
+        }
+
+        @Override
+        public String name() {
+            return "fake";
+        }
+
+        @Override
+        public QuantizationParams quantizationParams() {
+            return new QuantizationParams(0f, 0);
+        }
+
+        @Override
+        public ByteBuffer asReadOnlyBuffer() {
+            return ByteBuffer.allocate(numBytes()).asReadOnlyBuffer();
+        }
+    }
+}
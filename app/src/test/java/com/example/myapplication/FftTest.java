@@ -0,0 +1,60 @@
+package com.example.myapplication;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FftTest {
+    private static final int SIZE = 64;
+
+    @Test
+    public void cosineLandsInItsTwoBins() {
+        float[] re = new float[SIZE];
+        float[] im = new float[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            re[i] = (float) Math.cos(2 * Math.PI * 5 * i / SIZE);
+        }
+        new Fft(SIZE).transform(re, im);
+
+        for (int k = 0; k < SIZE; k++) {
+            float expected = k == 5 || k == SIZE - 5 ? SIZE / 2f : 0f;
+            assertEquals("re[" + k + "]", expected, re[k], 1e-3f);
+            assertEquals("im[" + k + "]", 0f, im[k], 1e-3f);
+        }
+    }
+
+    @Test
+    public void sineHasImaginaryBinsOfOppositeSign() {
+        float[] re = new float[SIZE];
+        float[] im = new float[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            re[i] = (float) Math.sin(2 * Math.PI * 3 * i / SIZE);
+        }
+        new Fft(SIZE).transform(re, im);
+
+        assertEquals(-SIZE / 2f, im[3], 1e-3f);
+        assertEquals(SIZE / 2f, im[SIZE - 3], 1e-3f);
+        for (int k = 0; k < SIZE; k++) {
+            assertEquals(0f, re[k], 1e-3f);
+        }
+    }
+
+    @Test
+    public void constantIsAllInTheDcBin() {
+        float[] re = new float[SIZE];
+        float[] im = new float[SIZE];
+        java.util.Arrays.fill(re, 2f);
+        new Fft(SIZE).transform(re, im);
+
+        assertEquals(2f * SIZE, re[0], 1e-3f);
+        for (int k = 1; k < SIZE; k++) {
+            assertEquals(0f, re[k], 1e-3f);
+            assertEquals(0f, im[k], 1e-3f);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void sizeMustBeAPowerOfTwo() {
+        new Fft(48);
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.myapplication;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class HrvEngineTest {
+    // Peaks in milliseconds, so RR intervals are exact
+    private static final int RATE = 1000;
+
+    private static HrvEngine withIntervals(float... rrMs) {
+        HrvEngine engine = new HrvEngine(RATE);
+        for (float rr : rrMs) {
+            engine.addInterval(rr);
+        }
+        return engine;
+    }
+
+    @Test
+    public void timeDomainMetricsOfAFixedSeries() {
+        // Mean 830; successive differences 50, -70, 120, -80
+        HrvEngine.Metrics metrics = withIntervals(800, 850, 780, 900, 820).getMetrics();
+
+        assertEquals(5, metrics.nnCount);
+        assertEquals(0, metrics.rejectedCount);
+        assertEquals(830f, metrics.meanNnMs, 1e-3f);
+        assertEquals((float) Math.sqrt(8800 / 4.0), metrics.sdnnMs, 1e-3f);
+        assertEquals((float) Math.sqrt((2500 + 4900 + 14400 + 6400) / 4.0), metrics.rmssdMs, 1e-3f);
+        // A difference of exactly 50 ms does not count
+        assertEquals(75f, metrics.pnn50, 1e-3f);
+        // Everything is still inside the window
+        assertEquals(metrics.sdnnMs, metrics.windowSdnnMs, 1e-2f);
+        assertEquals(metrics.rmssdMs, metrics.windowRmssdMs, 1e-2f);
+        assertEquals(metrics.pnn50, metrics.windowPnn50, 1e-3f);
+        assertFalse(metrics.hasSpectrum());
+    }
+
+    @Test
+    public void beatsGiveTheSameMetricsAsTheirIntervals() {
+        HrvEngine engine = new HrvEngine(RATE);
+        long peak = 0;
+        engine.addBeat(peak);
+        for (int rr : new int[]{800, 850, 780, 900, 820}) {
+            engine.addBeat(peak += rr);
+        }
+        HrvEngine.Metrics metrics = engine.getMetrics();
+        HrvEngine.Metrics expected = withIntervals(800, 850, 780, 900, 820).getMetrics();
+        assertEquals(expected.sdnnMs, metrics.sdnnMs, 1e-3f);
+        assertEquals(expected.rmssdMs, metrics.rmssdMs, 1e-3f);
+        assertEquals(expected.pnn50, metrics.pnn50, 1e-3f);
+    }
+
+    @Test
+    public void artefactIntervalsAreLeftOut() {
+        // 250 ms is out of range; 1100 after 800 jumps too far. Neither joins a difference.
+        HrvEngine.Metrics metrics = withIntervals(800, 810, 250, 820, 1100, 830).getMetrics();
+
+        assertEquals(4, metrics.nnCount);
+        assertEquals(2, metrics.rejectedCount);
+        assertEquals(815f, metrics.meanNnMs, 1e-3f);
+        // Only 800 -> 810 are adjacent NN intervals
+        assertEquals(10f, metrics.rmssdMs, 1e-3f);
+        assertEquals(0f, metrics.pnn50, 1e-3f);
+    }
+
+    @Test
+    public void changedRateIsAcceptedAfterRepeatedRejects() {
+        // 600 is a jump from 1000, but three in a row means the rate really changed
+        HrvEngine.Metrics metrics = withIntervals(1000, 600, 600, 600, 600, 600).getMetrics();
+        assertEquals(3, metrics.rejectedCount);
+        assertEquals(3, metrics.nnCount);
+    }
+
+    @Test
+    public void windowForgetsIntervalsOlderThanFiveMinutes() {
+        HrvEngine engine = new HrvEngine(RATE);
+        // 200 s alternating 800/900 ms, then 400 s at a steady 1000 ms
+        for (int i = 0; i < 236; i++) {
+            engine.addInterval(i % 2 == 0 ? 800 : 900);
+        }
+        HrvEngine.Metrics early = engine.getMetrics();
+        assertEquals(100f, early.windowRmssdMs, 1e-2f);
+        assertEquals(100f, early.windowPnn50, 1e-3f);
+
+        for (int i = 0; i < 400; i++) {
+            engine.addInterval(1000);
+        }
+        HrvEngine.Metrics late = engine.getMetrics();
+        assertEquals(0f, late.windowSdnnMs, 1e-2f);
+        assertEquals(0f, late.windowRmssdMs, 1e-2f);
+        assertEquals(0f, late.windowPnn50, 1e-3f);
+        // The whole-recording figures keep the alternating part
+        assertTrue(late.sdnnMs > 40);
+        assertTrue(late.rmssdMs > 50);
+        assertEquals(636, late.nnCount);
+    }
+
+    @Test
+    public void resetClearsEverything() {
+        HrvEngine engine = withIntervals(800, 850, 780, 900, 820);
+        engine.reset();
+        HrvEngine.Metrics metrics = engine.getMetrics();
+        assertEquals(0, metrics.nnCount);
+        assertEquals(0f, metrics.sdnnMs, 0f);
+        assertEquals(0f, metrics.windowSdnnMs, 0f);
+    }
+
+    // Beats whose RR intervals follow 1000 + amplitude * sin(2 pi f t), for the given seconds
+    private static long[] modulatedBeats(double hz, double amplitudeMs, double seconds) {
+        long[] peaks = new long[(int) (seconds * 1.2)];
+        double t = 0;
+        int count = 0;
+        while (t * 1000 < seconds * 1000 && count < peaks.length) {
+            peaks[count++] = Math.round(t * 1000);
+            t += (1000 + amplitudeMs * Math.sin(2 * Math.PI * hz * t)) / 1000;
+        }
+        return java.util.Arrays.copyOf(peaks, count);
+    }
+
+    private static HrvEngine.Metrics spectrumOf(long[] peaks, int breakEvery) {
+        HrvEngine engine = new HrvEngine(RATE);
+        for (int i = 0; i < peaks.length; i++) {
+            if (breakEvery > 0 && i % breakEvery == breakEvery - 1) {
+                // A skipped beat: the sequence breaks and this beat is never added
+                engine.breakSequence();
+                continue;
+            }
+            engine.addBeat(peaks[i]);
+        }
+        return engine.getMetrics();
+    }
+
+    @Test
+    public void respiratoryModulationIsHighFrequencyPower() {
+        // 0.25 Hz, 30 ms: a sinusoid of amplitude A has power A^2 / 2. The tachogram is only
+        // known once a beat, about four times a cycle, and interpolating between beats loses
+        // about a third of that.
+        HrvEngine.Metrics metrics = spectrumOf(modulatedBeats(0.25, 30, 300), 0);
+
+        assertTrue(metrics.hasSpectrum());
+        assertTrue("HF " + metrics.hfPower, metrics.hfPower > 450f * 0.55f && metrics.hfPower < 450f * 1.1f);
+        assertTrue(metrics.lfPower < metrics.hfPower * 0.05f);
+        assertTrue(metrics.lfHfRatio < 0.05f);
+    }
+
+    @Test
+    public void slowModulationIsLowFrequencyPower() {
+        HrvEngine.Metrics metrics = spectrumOf(modulatedBeats(0.1, 30, 300), 0);
+
+        assertEquals(450f, metrics.lfPower, 450f * 0.25f);
+        assertTrue(metrics.lfHfRatio > 20f);
+    }
+
+    @Test
+    public void gapsKeepTheirTimeInTheTachogram() {
+        // 0.14 Hz is just under the LF/HF boundary. Dropping one beat in ten would squeeze the
+        // time axis by about a fifth, and push it over into HF, if gaps took no time.
+        long[] peaks = modulatedBeats(0.14, 30, 300);
+        HrvEngine.Metrics whole = spectrumOf(peaks, 0);
+        HrvEngine.Metrics broken = spectrumOf(peaks, 10);
+
+        assertTrue(whole.lfHfRatio > 5f);
+        assertTrue("LF/HF " + broken.lfHfRatio, broken.lfHfRatio > 5f);
+        assertEquals(whole.lfPower, broken.lfPower, whole.lfPower * 0.3f);
+    }
+
+    @Test
+    public void noSpectrumUntilTwoMinutes() {
+        assertFalse(spectrumOf(modulatedBeats(0.25, 30, 100), 0).hasSpectrum());
+        assertTrue(spectrumOf(modulatedBeats(0.25, 30, 140), 0).hasSpectrum());
+    }
+}
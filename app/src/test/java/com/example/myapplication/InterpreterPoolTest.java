@@ -0,0 +1,61 @@
+package com.example.myapplication;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs on the plain JVM: interpreters come from a fake factory, so no TFLite natives are needed.
+ */
+public class InterpreterPoolTest {
+
+    @Test
+    public void releasedSessionIsReused() throws Exception {
+        FakeInterpreterFactory factory = new FakeInterpreterFactory(1, 1, false);
+        InterpreterPool pool = new InterpreterPool(ByteBuffer.allocateDirect(16), 2,
+                InferenceBackend.BUILTIN_CPU, factory);
+
+        InferenceSession first = pool.acquire();
+        pool.release(first);
+        assertSame(first, pool.acquire());
+        assertEquals(1, factory.created);
+        pool.close();
+    }
+
+    @Test
+    public void closeWakesCallersWaitingForASession() throws Exception {
+        InterpreterPool pool = new InterpreterPool(ByteBuffer.allocateDirect(16), 1,
+                InferenceBackend.BUILTIN_CPU, new FakeInterpreterFactory(1, 1, false));
+        InferenceSession session = pool.acquire();
+
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread waiter = new Thread(() -> {
+            try {
+                pool.acquire();
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        });
+        waiter.start();
+        Thread.sleep(50);
+        assertTrue(waiter.isAlive());
+
+        pool.close();
+        waiter.join(5_000);
+        assertFalse(waiter.isAlive());
+        assertTrue(failure.get() instanceof IllegalStateException);
+        pool.release(session);
+        assertEquals(0, pool.getBusyThreads());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void acquireAfterCloseFails() throws Exception {
+        InterpreterPool pool = new InterpreterPool(ByteBuffer.allocateDirect(16), 1,
+                InferenceBackend.BUILTIN_CPU, new FakeInterpreterFactory(1, 1, false));
+        pool.close();
+        pool.acquire();
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.myapplication;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class LeadOffChannelTest {
+
+    private static LeadOffChannel channel(String pattern) {
+        // One character per sample: '.' in contact, 'x' lead-off, 'g' lost in transit
+        LeadOffChannel channel = new LeadOffChannel();
+        for (char c : pattern.toCharArray()) {
+            if (c == 'g') {
+                channel.addGap(1);
+            } else {
+                channel.add(c == 'x');
+            }
+        }
+        return channel;
+    }
+
+    @Test
+    public void adjacentLeadOffSamplesMergeIntoOneSpan() {
+        LeadOffChannel channel = channel("..xxx..x.");
+
+        assertEquals(Arrays.asList(2, 3, 7, 1), channel.getSpans());
+        assertEquals(9, channel.getSampleCount());
+        assertEquals(4, channel.getLeadOffCount());
+        assertEquals(100.0 * 5 / 9, channel.getContactPercent(), 1e-9);
+        assertTrue(channel.getGapSpans().isEmpty());
+    }
+
+    @Test
+    public void gapsAreLeadOffAndMergeWithTouchingSpans() {
+        LeadOffChannel channel = new LeadOffChannel();
+        channel.add(false);
+        channel.add(true);
+        channel.addGap(3);
+        channel.add(false);
+        channel.addGap(2);
+
+        assertEquals(Arrays.asList(1, 4, 6, 2), channel.getSpans());
+        assertEquals(Arrays.asList(2, 3, 6, 2), channel.getGapSpans());
+        assertEquals(5, channel.getGapSampleCount());
+        assertTrue(channel.isGap(2, 3));
+        assertFalse(channel.isGap(1, 4));
+        assertTrue(channel.isLeadOff(1));
+        assertFalse(channel.isGap(1));
+    }
+
+    @Test
+    public void spanAtTheEndStopsAtTheLastSample() {
+        LeadOffChannel channel = channel("...xx");
+        assertEquals(Arrays.asList(3, 2), channel.getSpans());
+
+        channel.clear();
+        assertEquals(0, channel.getSampleCount());
+        assertTrue(channel.getSpans().isEmpty());
+        assertEquals(100.0, channel.getContactPercent(), 0);
+    }
+
+    @Test
+    public void timelineBucketsContactAndShortLastBucket() {
+        LeadOffChannel channel = channel("....xxxx..xx");
+
+        // 4 of 4, 0 of 4, then 2 of 4 in contact
+        assertEquals(Arrays.asList(100, 0, 50), channel.getContactTimeline(4));
+        // 4 of 5, 2 of 5, then 0 of 2
+        assertEquals(Arrays.asList(80, 40, 0), channel.getContactTimeline(5));
+        assertTrue(new LeadOffChannel().getContactTimeline(4).isEmpty());
+    }
+
+    @Test
+    public void sparklineMapsPercentToBlockHeight() {
+        assertEquals(" ▄█", LeadOffChannel.sparkline(Arrays.asList(0, 50, 100)));
+        // Out of range values are clamped
+        assertEquals(" █", LeadOffChannel.sparkline(Arrays.asList(-20, 150)));
+        assertEquals("▁", LeadOffChannel.sparkline(Collections.singletonList(12)));
+        assertEquals("", LeadOffChannel.sparkline(Collections.<Integer>emptyList()));
+    }
+
+    @Test
+    public void writeSamplesMarksSpansAtTheirPositions() throws IOException {
+        // Samples 0-1 stored, 2-3 lead-off, 4 stored, 5-7 lost, 8-9 stored
+        LeadOffChannel channel = channel("..xx.ggg..");
+        StringWriter out = new StringWriter();
+        channel.writeSamples(out, "10\n11\n14\n18\n19\n");
+
+        assertEquals("10\n11\n# lead-off 2 samples\n14\n# gap 3 samples\n18\n19\n", out.toString());
+    }
+
+    @Test
+    public void writeSamplesHandlesSpansAtBothEnds() throws IOException {
+        LeadOffChannel channel = channel("xx..g");
+        StringWriter out = new StringWriter();
+        channel.writeSamples(out, "2\n3\n");
+
+        assertEquals("# lead-off 2 samples\n2\n3\n# gap 1 samples\n", out.toString());
+    }
+
+    @Test
+    public void writeSamplesLabelsAMixedSpanLeadOff() throws IOException {
+        LeadOffChannel channel = channel(".xgg.");
+        StringWriter out = new StringWriter();
+        channel.writeSamples(out, "0\n4\n");
+
+        assertEquals("0\n# lead-off 3 samples\n4\n", out.toString());
+    }
+}
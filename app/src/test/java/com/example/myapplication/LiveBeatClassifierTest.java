@@ -0,0 +1,203 @@
+package com.example.myapplication;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Feeds synthetic recordings through the live classifier on the shared inference pool, with a
+ * stand-in model that records the batches it is given.
+ */
+public class LiveBeatClassifierTest {
+    private static final int RATE = ECGPreprocessor.DEFAULT_SAMPLE_RATE;
+    private static final int HALF_SEGMENT = ECGPreprocessor.SEGMENT_LENGTH / 2;
+
+    private final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<Integer>());
+    private final List<Integer> modelPeaks = Collections.synchronizedList(new ArrayList<Integer>());
+    private final List<Integer> classified = Collections.synchronizedList(new ArrayList<Integer>());
+    private final List<Long> latencies = Collections.synchronizedList(new ArrayList<Long>());
+    private final List<Long> skipped = Collections.synchronizedList(new ArrayList<Long>());
+    private final List<SignalQualityIndex.Issue> issues = Collections.synchronizedList(new ArrayList<SignalQualityIndex.Issue>());
+    private LiveBeatClassifier live;
+
+    private final WindowedAnalyzer.BeatClassifier allNormal = (beats, peaks) -> {
+        batchSizes.add(beats.size());
+        modelPeaks.addAll(peaks);
+        List<BeatClassification> results = new ArrayList<>();
+        for (int peak : peaks) {
+            BeatClassification beat = new BeatClassification();
+            beat.beatIndex = peak;
+            beat.type = BeatTypes.BEAT_TYPE_NORMAL;
+            beat.confidence = 1f;
+            results.add(beat);
+        }
+        return results;
+    };
+
+    private final LiveBeatClassifier.Listener listener = new LiveBeatClassifier.Listener() {
+        @Override
+        public void onBeatClassified(BeatClassification beat, long latencyNanos) {
+            classified.add(beat.beatIndex);
+            latencies.add(latencyNanos);
+        }
+
+        @Override
+        public void onBeatSkipped(long peakIndex, SignalQualityIndex.Issue issue) {
+            skipped.add(peakIndex);
+            issues.add(issue);
+        }
+    };
+
+    @After
+    public void tearDown() {
+        if (live != null) {
+            live.stop();
+        }
+    }
+
+    private static SyntheticEcg cleanEcg(long seed) {
+        SyntheticEcg ecg = new SyntheticEcg(RATE, seed);
+        ecg.setNoise(0);
+        ecg.setBaselineWander(0);
+        return ecg;
+    }
+
+    // Beats the detector emits from a recording: R peaks past warm-up whose window is complete
+    private static int expectedBeats(SyntheticEcg ecg, int samples) {
+        int count = 0;
+        for (SyntheticEcg.Beat beat : ecg.getBeats()) {
+            if (beat.peakSample > 2 * RATE + 4 && beat.peakSample + HALF_SEGMENT + 4 < samples) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void awaitBeats(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (classified.size() + skipped.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    // Until nothing more has been delivered for a while
+    private void awaitIdle() throws InterruptedException {
+        int seen = -1;
+        long deadline = System.currentTimeMillis() + 5000;
+        while (classified.size() + skipped.size() != seen && System.currentTimeMillis() < deadline) {
+            seen = classified.size() + skipped.size();
+            Thread.sleep(200);
+        }
+    }
+
+    @Test
+    public void fillsBatchesUpToTheBatchSize() throws Exception {
+        live = new LiveBeatClassifier(allNormal, 4, RATE, 10_000, 2_000, listener);
+        live.start();
+        SyntheticEcg ecg = cleanEcg(1);
+        float[] samples = ecg.generate(RATE * 60);
+        for (float sample : samples) {
+            live.addSample(sample, false);
+        }
+        int expected = expectedBeats(ecg, samples.length);
+        awaitBeats(expected);
+
+        assertEquals(expected, classified.size());
+        // Stream order, and each beat reported with its own peak
+        assertEquals(modelPeaks, classified);
+        List<Integer> sorted = new ArrayList<>(classified);
+        Collections.sort(sorted);
+        assertEquals(sorted, classified);
+        // The samples arrive far faster than real time, so only the last batch can be short
+        for (int i = 0; i < batchSizes.size() - 1; i++) {
+            assertEquals(4, (int) batchSizes.get(i));
+        }
+        assertEquals(batchSizes.size(), live.getBatchCount());
+        assertEquals(expected, live.getClassifiedBeats());
+    }
+
+    @Test
+    public void partialBatchIsFlushedAfterTheLinger() throws Exception {
+        live = new LiveBeatClassifier(allNormal, 32, RATE, 500, 50, listener);
+        live.start();
+        SyntheticEcg ecg = cleanEcg(2);
+        float[] samples = ecg.generate(RATE * 6);
+        for (float sample : samples) {
+            live.addSample(sample, false);
+        }
+        int expected = expectedBeats(ecg, samples.length);
+        assertTrue(expected > 0 && expected < 32);
+        awaitBeats(expected);
+
+        assertEquals(expected, classified.size());
+        assertEquals(Collections.singletonList(expected), batchSizes);
+        // Held open for the linger after the oldest beat, then delivered well within the budget
+        assertTrue("latency " + latencies.get(0), latencies.get(0) >= 40_000_000L);
+        for (long latency : latencies) {
+            assertTrue("latency " + latency, latency < 500_000_000L);
+        }
+        assertEquals(0, live.getDeadlineMisses());
+    }
+
+    @Test
+    public void rejectedWindowsNeverReachTheModel() throws Exception {
+        live = new LiveBeatClassifier(allNormal, 1, RATE, 10_000, 0, listener);
+        live.start();
+        SyntheticEcg ecg = cleanEcg(3);
+        float[] samples = ecg.generate(RATE * 20);
+        // Electrodes come off halfway through the window of a beat and stay off for two seconds
+        long peak = 0;
+        for (SyntheticEcg.Beat beat : ecg.getBeats()) {
+            if (beat.peakSample > 6 * RATE) {
+                peak = beat.peakSample;
+                break;
+            }
+        }
+        boolean[] leadOff = new boolean[samples.length];
+        Arrays.fill(leadOff, (int) peak + HALF_SEGMENT / 2, (int) peak + HALF_SEGMENT / 2 + 2 * RATE, true);
+        for (int i = 0; i < samples.length; i++) {
+            live.addSample(samples[i], leadOff[i]);
+        }
+        awaitIdle();
+
+        assertFalse(skipped.isEmpty());
+        assertTrue(issues.contains(SignalQualityIndex.Issue.LEAD_OFF));
+        for (long rejected : skipped) {
+            assertFalse(modelPeaks.contains((int) rejected));
+            assertFalse(classified.contains((int) rejected));
+        }
+        assertTrue(live.getSignalQuality().getRejectedCount(SignalQualityIndex.Issue.LEAD_OFF) > 0);
+    }
+
+    @Test
+    public void resetRequestedElsewhereIsAppliedWithTheNextSample() throws Exception {
+        live = new LiveBeatClassifier(allNormal, 1, RATE, 10_000, 0, listener);
+        live.start();
+        for (float sample : cleanEcg(4).generate(RATE * 10)) {
+            live.addSample(sample, false);
+        }
+        Thread reset = new Thread(live::resetStream);
+        reset.start();
+        reset.join();
+        awaitIdle();
+        int before = classified.size();
+        assertTrue(before > 0);
+
+        for (float sample : cleanEcg(5).generate(RATE * 10)) {
+            live.addSample(sample, false);
+        }
+        awaitIdle();
+        List<Integer> after = new ArrayList<>(classified.subList(before, classified.size()));
+        assertFalse(after.isEmpty());
+        for (int peak : after) {
+            // Counted from the reset, after a fresh warm-up
+            assertTrue("peak at " + peak, peak >= 2 * RATE - 4 && peak < RATE * 10);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.myapplication;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class LiveECGStreamTest {
+    private final LiveECGStream stream = LiveECGStream.getInstance();
+    private final List<String> events = new ArrayList<>();
+    private final List<Thread> threads = new ArrayList<>();
+
+    private final LiveECGStream.Listener listener = new LiveECGStream.Listener() {
+        @Override
+        public void onStreamStarted(int sampleRate) {
+            events.add("start " + sampleRate);
+            threads.add(Thread.currentThread());
+        }
+
+        @Override
+        public void onSample(int ecgValue, boolean leadOff) {
+            events.add("sample " + ecgValue);
+            threads.add(Thread.currentThread());
+        }
+
+        @Override
+        public void onStreamStopped() {
+            events.add("stop");
+        }
+    };
+
+    @After
+    public void tearDown() {
+        stream.removeListener(listener);
+        stream.stop();
+    }
+
+    @Test
+    public void listenerAddedMidStreamIsStartedOnTheReaderThread() throws Exception {
+        Thread reader = new Thread(() -> stream.start(250));
+        reader.start();
+        reader.join();
+
+        stream.addListener(listener);
+        assertTrue(events.isEmpty());
+
+        Thread next = new Thread(() -> {
+            stream.publish(1, false);
+            stream.publish(2, false);
+        });
+        next.start();
+        next.join();
+        assertEquals(Arrays.asList("start 250", "sample 1", "sample 2"), events);
+        for (Thread thread : threads) {
+            assertSame(next, thread);
+        }
+    }
+
+    @Test
+    public void listenerRemovedBeforeItsFirstSampleIsNotStarted() {
+        stream.start(250);
+        stream.addListener(listener);
+        stream.removeListener(listener);
+        stream.publish(1, false);
+        assertTrue(events.isEmpty());
+    }
+
+    @Test
+    public void listenerAddedBeforeTheStreamIsStartedOnce() {
+        stream.addListener(listener);
+        stream.start(250);
+        stream.publish(1, false);
+        stream.stop();
+        assertEquals(Arrays.asList("start 250", "sample 1", "stop"), events);
+    }
+}
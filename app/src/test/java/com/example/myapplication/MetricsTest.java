@@ -0,0 +1,80 @@
+package com.example.myapplication;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs on the plain JVM against a fresh registry rather than the process-wide one.
+ */
+public class MetricsTest {
+
+    @Test
+    public void lookupsReturnTheSameMetric() {
+        Metrics metrics = new Metrics();
+        metrics.counter("beats").increment();
+        metrics.counter("beats").add(2);
+        metrics.gauge("rate").set(250.5);
+
+        assertSame(metrics.histogram("parse"), metrics.histogram("parse"));
+        assertEquals(3, metrics.counter("beats").get());
+        assertEquals(250.5, metrics.gauge("rate").get(), 0);
+    }
+
+    @Test
+    public void registeredHistogramReplacesOneWithTheSameName() {
+        Metrics metrics = new Metrics();
+        metrics.histogram("inference_run").record(1_000_000);
+        LatencyHistogram owned = new LatencyHistogram("inference_run");
+        metrics.register(owned);
+
+        assertSame(owned, metrics.histogram("inference_run"));
+    }
+
+    @Test
+    public void jsonHasSortedMetricsAndPercentilesInMilliseconds() {
+        Metrics metrics = new Metrics();
+        metrics.counter("b_count").add(7);
+        metrics.counter("a_count").add(1);
+        metrics.gauge("not_measured").set(Double.NaN);
+        LatencyHistogram latency = metrics.histogram("latency");
+        for (int i = 0; i < 1000; i++) {
+            latency.record(2_000_000); // 2 ms
+        }
+        latency.record(100_000_000); // two 100 ms outliers, just over 0.1%
+        latency.record(100_000_000);
+
+        String json = metrics.toJson(1234);
+
+        assertTrue(json, json.startsWith("{\"timestamp\":1234,"));
+        assertTrue(json, json.contains("\"counters\":{\"a_count\":1,\"b_count\":7}"));
+        assertTrue(json, json.contains("\"gauges\":{\"not_measured\":null}"));
+        assertTrue(json, json.contains("\"count\":1002"));
+        assertTrue(json, json.contains("\"max_ms\":100.000"));
+        // Within the histogram's 25% bucket error
+        double p50 = valueAfter(json, "\"p50_ms\":");
+        double p999 = valueAfter(json, "\"p999_ms\":");
+        assertEquals(2.0, p50, 0.5);
+        assertTrue(json, p999 >= 75);
+    }
+
+    @Test
+    public void resetZeroesValuesButKeepsMetrics() {
+        Metrics metrics = new Metrics();
+        Metrics.Counter counter = metrics.counter("samples");
+        counter.add(5);
+        metrics.histogram("parse").record(10);
+        metrics.reset();
+
+        assertEquals(0, counter.get());
+        assertSame(counter, metrics.counter("samples"));
+        assertEquals(0, metrics.histogram("parse").getCount());
+    }
+
+    private static double valueAfter(String json, String key) {
+        int start = json.indexOf(key) + key.length();
+        int end = start;
+        while (end < json.length() && (Character.isDigit(json.charAt(end)) || json.charAt(end) == '.')) end++;
+        return Double.parseDouble(json.substring(start, end));
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.myapplication;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SampleClockTest {
+    private static final int RATE = ECGPreprocessor.DEFAULT_SAMPLE_RATE;
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    public void sequenceJumpsBecomeGaps() {
+        SampleClock clock = new SampleClock(RATE);
+        long now = 0;
+        for (int seq = 0; seq < 100; seq++) {
+            assertEquals(0, clock.onSample(seq, now += 4_000_000));
+        }
+        assertEquals(10, clock.onSample(110, now += 44_000_000));
+        assertEquals(111, clock.getSampleIndex());
+        // Repeats and stale packets are dropped without moving the clock
+        assertEquals(-1, clock.onSample(110, now));
+        assertEquals(-1, clock.onSample(105, now));
+        assertEquals(111, clock.getSampleIndex());
+        assertEquals(1, clock.getGapCount());
+        assertEquals(10, clock.getLostSamples());
+        assertEquals(2, clock.getRejectedSamples());
+    }
+
+    @Test
+    public void sequenceWrapsWithoutGap() {
+        SampleClock clock = new SampleClock(RATE);
+        long now = 0;
+        for (int seq = SampleClock.SEQUENCE_MODULUS - 3; seq < SampleClock.SEQUENCE_MODULUS + 3; seq++) {
+            assertEquals(0, clock.onSample(seq % SampleClock.SEQUENCE_MODULUS, now += 4_000_000));
+        }
+        assertEquals(2, clock.onSample(5, now += 12_000_000));
+        assertEquals(9, clock.getSampleIndex());
+    }
+
+    @Test
+    public void measuresDriftAndFindsLossFromArrivalTimes() {
+        SampleClock clock = new SampleClock(RATE);
+        Random random = new Random(1);
+        double deviceRate = 251.0;
+        // Blocks of ten samples, delivered up to 40 ms late
+        long device = 0;
+        for (; device < 60 * deviceRate; device += 10) {
+            long arrival = Math.round((device + 10) / deviceRate * SECOND) + (long) (random.nextDouble() * 40e6);
+            for (int i = 0; i < 10; i++) {
+                assertEquals(0, clock.onSample(SampleClock.NO_SEQUENCE, arrival));
+            }
+        }
+        assertEquals(deviceRate, clock.getEffectiveRate(), 0.1);
+        assertEquals(0, clock.getGapCount());
+
+        // Two seconds of packets never arrive
+        device += Math.round(2 * deviceRate);
+        long arrival = Math.round((device + 1) / deviceRate * SECOND);
+        int missing = clock.onSample(SampleClock.NO_SEQUENCE, arrival);
+        assertEquals(2 * deviceRate, missing, 15);
+        assertEquals(device + 1, clock.getSampleIndex(), 15);
+    }
+
+    @Test
+    public void resyncSizesTheOutageAcrossAReconnect() {
+        SampleClock clock = new SampleClock(RATE);
+        for (int seq = 0; seq < 100; seq++) {
+            clock.onSample(seq, (seq + 1) * 4_000_000L);
+        }
+        // The device kept counting through five seconds without a link
+        clock.resync();
+        assertEquals(1250, clock.onSample(1350, 1351 * 4_000_000L));
+
+        // It restarted during the next one: the counter goes back, and half a second late is a gap
+        clock.resync();
+        assertEquals(125, clock.onSample(0, 1352 * 4_000_000L + SECOND / 2));
+        assertEquals(0, clock.onSample(1, 1353 * 4_000_000L + SECOND / 2));
+        assertEquals(1478, clock.getSampleIndex());
+        assertEquals(0, clock.getRejectedSamples());
+        // Without a resync the restarted counter would have been taken for stale samples
+        assertEquals(-1, clock.onSample(0, 1354 * 4_000_000L + SECOND / 2));
+    }
+
+    @Test
+    public void gapsAreMarkedOnTheLeadOffTimeline() {
+        LeadOffChannel channel = new LeadOffChannel();
+        channel.add(false);
+        channel.add(true);
+        channel.addGap(3);
+        channel.add(false);
+        channel.addGap(2);
+
+        assertEquals(8, channel.getSampleCount());
+        assertEquals(Arrays.asList(1, 4, 6, 2), channel.getSpans());
+        assertEquals(Arrays.asList(2, 3, 6, 2), channel.getGapSpans());
+        assertTrue(channel.isGap(2, 3));
+        assertFalse(channel.isGap(1, 4));
+        assertEquals(5, channel.getGapSampleCount());
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.myapplication;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Feeds a synthetic recording through the live beat detector into the analyzer, with a stand-in
+ * classifier on a plain executor.
+ */
+public class SessionAnalyzerTest {
+    private static final int RATE = ECGPreprocessor.DEFAULT_SAMPLE_RATE;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final AtomicInteger classifiedBeats = new AtomicInteger();
+
+    private final WindowedAnalyzer.BeatClassifier allNormal = (beats, peaks) -> {
+        classifiedBeats.addAndGet(beats.size());
+        List<BeatClassification> results = new ArrayList<>();
+        for (int peak : peaks) {
+            BeatClassification beat = new BeatClassification();
+            beat.beatIndex = peak;
+            beat.type = BeatTypes.BEAT_TYPE_NORMAL;
+            beat.confidence = 1f;
+            results.add(beat);
+        }
+        return results;
+    };
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private static void feed(StreamingBeatDetector detector, SyntheticEcg ecg, int samples) {
+        for (int i = 0; i < samples; i++) {
+            detector.addSample(ecg.nextSample(), false);
+        }
+    }
+
+    @Test
+    public void classifiesDuringRecordingAndReportsAtFinish() throws Exception {
+        CountDownLatch ready = new CountDownLatch(1);
+        SessionAnalyzer analyzer = new SessionAnalyzer(RATE, allNormal, executor, report -> ready.countDown());
+        StreamingBeatDetector detector = new StreamingBeatDetector(RATE, analyzer);
+        SyntheticEcg ecg = new SyntheticEcg(RATE, 7);
+        feed(detector, ecg, 120 * RATE);
+
+        // Most of the work is done before the session ends
+        long deadline = System.currentTimeMillis() + 5000;
+        while (classifiedBeats.get() < 100 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(classifiedBeats.get() >= 100);
+        assertNull(analyzer.getReport());
+
+        analyzer.finish(detector.getSampleCount());
+        assertTrue(ready.await(1, TimeUnit.SECONDS));
+        SessionAnalyzer.Report report = analyzer.getReport();
+        assertNotNull(report);
+
+        int expected = ecg.getBeats().size();
+        AnalysisResult result = report.result;
+        assertEquals(120 * RATE, result.totalSamples);
+        assertTrue("beats " + result.getBeatCount() + " of " + expected,
+                Math.abs(result.getBeatCount() - expected) <= 3);
+        assertEquals(result.getBeatCount(), result.countOfType(BeatTypes.BEAT_TYPE_NORMAL));
+        assertEquals(0, report.unclassifiedBeats);
+        assertEquals(72f, result.meanHeartRate, 3f);
+        assertTrue(report.hrv.nnCount > 100);
+        for (int i = 1; i < result.beatIndices.length; i++) {
+            assertTrue(result.beatIndices[i] > result.beatIndices[i - 1]);
+        }
+    }
+
+    @Test
+    public void keepsBeatsAsUnknownWithoutModel() throws Exception {
+        SessionAnalyzer analyzer = new SessionAnalyzer(RATE, (beats, peaks) -> null, executor, null);
+        StreamingBeatDetector detector = new StreamingBeatDetector(RATE, analyzer);
+        feed(detector, new SyntheticEcg(RATE, 3), 30 * RATE);
+        analyzer.finish(detector.getSampleCount());
+
+        long deadline = System.currentTimeMillis() + 1000;
+        while (analyzer.getReport() == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        SessionAnalyzer.Report report = analyzer.getReport();
+        assertNotNull(report);
+        assertTrue(report.result.getBeatCount() > 20);
+        assertEquals(report.result.getBeatCount(), report.unclassifiedBeats);
+        assertEquals(report.result.getBeatCount(), report.result.countOfType(BeatTypes.BEAT_TYPE_UNKNOWN));
+    }
+
+    @Test
+    public void finishesOnFallbackWorkerWhenExecutorIsGone() throws Exception {
+        executor.shutdown();
+        CountDownLatch ready = new CountDownLatch(1);
+        AtomicReference<Thread> reportThread = new AtomicReference<>();
+        SessionAnalyzer analyzer = new SessionAnalyzer(RATE, allNormal, executor, report -> {
+            reportThread.set(Thread.currentThread());
+            ready.countDown();
+        });
+        StreamingBeatDetector detector = new StreamingBeatDetector(RATE, analyzer);
+        feed(detector, new SyntheticEcg(RATE, 5), 10 * RATE);
+        analyzer.finish(detector.getSampleCount());
+
+        assertTrue(ready.await(1, TimeUnit.SECONDS));
+        assertNotSame(Thread.currentThread(), reportThread.get());
+        assertTrue(analyzer.getReport().result.getBeatCount() > 5);
+        assertEquals(0, analyzer.getReport().unclassifiedBeats);
+
+        // Beats after the end are ignored
+        analyzer.onBeat(detector.getSampleCount() + 10, new float[ECGPreprocessor.SEGMENT_LENGTH]);
+        analyzer.finish(detector.getSampleCount() + 100);
+        assertEquals(10 * RATE, analyzer.getReport().result.totalSamples);
+    }
+
+    @Test
+    public void dropsSamplesOnceClassificationFallsFarBehind() throws Exception {
+        CountDownLatch stalling = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        WindowedAnalyzer.BeatClassifier stalled = (beats, peaks) -> {
+            stalling.countDown();
+            release.await();
+            return allNormal.classify(beats, peaks);
+        };
+        CountDownLatch ready = new CountDownLatch(1);
+        SessionAnalyzer analyzer = new SessionAnalyzer(RATE, stalled, executor, report -> ready.countDown());
+        int total = SessionAnalyzer.MAX_QUEUED_BEATS + 10 * SessionAnalyzer.BATCH_BEATS;
+        for (int i = 0; i < total; i++) {
+            analyzer.onBeat(200L * (i + 1), new float[ECGPreprocessor.SEGMENT_LENGTH]);
+            if (i == SessionAnalyzer.BATCH_BEATS - 1) {
+                assertTrue(stalling.await(1, TimeUnit.SECONDS));
+            }
+        }
+        release.countDown();
+        analyzer.finish(200L * (total + 1));
+
+        assertTrue(ready.await(2, TimeUnit.SECONDS));
+        AnalysisResult result = analyzer.getReport().result;
+        // The first batch was taken before the stall, then the queue filled up
+        int kept = SessionAnalyzer.BATCH_BEATS + SessionAnalyzer.MAX_QUEUED_BEATS;
+        assertEquals(kept, result.getBeatCount());
+        assertEquals(total - kept, result.skippedBeatIndices.length);
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.myapplication;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * One case per {@link SignalQualityIndex.Issue}, each built from the same clean beat window so
+ * the only thing that changes is the defect under test.
+ */
+public class SignalQualityIndexTest {
+    private static final int RATE = ECGPreprocessor.DEFAULT_SAMPLE_RATE;
+    private static final int LENGTH = ECGPreprocessor.SEGMENT_LENGTH;
+
+    private final SignalQualityIndex quality = new SignalQualityIndex();
+    private float[] clean;
+
+    @Before
+    public void setUp() {
+        SyntheticEcg ecg = new SyntheticEcg(RATE, 1);
+        ecg.setNoise(2);
+        float[] samples = ecg.generate(RATE * 10);
+        long peak = ecg.getBeats().get(3).peakSample;
+        clean = Arrays.copyOfRange(samples, (int) peak - LENGTH / 2, (int) peak + LENGTH / 2);
+    }
+
+    private static float stdDev(float[] window) {
+        double mean = 0;
+        for (float x : window) mean += x;
+        mean /= window.length;
+        double m2 = 0;
+        for (float x : window) m2 += (x - mean) * (x - mean);
+        return (float) Math.sqrt(m2 / window.length);
+    }
+
+    private float score(float[] window) {
+        return quality.score(window, 0, window.length, 0);
+    }
+
+    @Test
+    public void cleanBeatIsAccepted() {
+        assertTrue(quality.accept(clean, 0, LENGTH, 0));
+        assertEquals(1f, quality.getLastScore(), 0f);
+        assertEquals(SignalQualityIndex.Issue.NONE, quality.getLastIssue());
+    }
+
+    @Test
+    public void scaleDoesNotMatter() {
+        float[] scaled = clean.clone();
+        for (int i = 0; i < scaled.length; i++) {
+            scaled[i] = (scaled[i] - SyntheticEcg.ADC_BASELINE) / 4096f;
+        }
+        assertEquals(score(clean), score(scaled), 1e-3f);
+    }
+
+    @Test
+    public void leadOffRejectsWhateverTheSignal() {
+        assertFalse(quality.accept(clean, 0, LENGTH, 1));
+        assertEquals(0f, quality.getLastScore(), 0f);
+        assertEquals(SignalQualityIndex.Issue.LEAD_OFF, quality.getLastIssue());
+    }
+
+    @Test
+    public void flatLine() {
+        float[] flat = new float[LENGTH];
+        Arrays.fill(flat, 2048f);
+        assertEquals(0f, score(flat), 0f);
+        assertEquals(SignalQualityIndex.Issue.FLAT_LINE, quality.getLastIssue());
+
+        // A detached electrode for the first 60% of the window
+        float[] detached = clean.clone();
+        Arrays.fill(detached, 0, LENGTH * 6 / 10, detached[0]);
+        assertFalse(quality.accept(detached, 0, LENGTH, 0));
+        assertEquals(SignalQualityIndex.Issue.FLAT_LINE, quality.getLastIssue());
+
+        // Short runs of repeated samples are normal at low amplitude
+        float[] stuck = clean.clone();
+        Arrays.fill(stuck, 0, LENGTH / 10, stuck[0]);
+        assertTrue(quality.accept(stuck, 0, LENGTH, 0));
+    }
+
+    @Test
+    public void saturation() {
+        float[] sorted = clean.clone();
+        Arrays.sort(sorted);
+        // A tenth of the samples at each rail
+        float[] clipped = clipped(sorted[LENGTH / 10], sorted[LENGTH - 1 - LENGTH / 10]);
+        assertFalse(quality.accept(clipped, 0, LENGTH, 0));
+        assertEquals(SignalQualityIndex.Issue.SATURATION, quality.getLastIssue());
+
+        // Only the tip of the R wave clipped: one percent of the samples
+        float[] tip = clipped(-Float.MAX_VALUE, sorted[LENGTH - 1 - LENGTH / 100]);
+        assertTrue(quality.accept(tip, 0, LENGTH, 0));
+    }
+
+    private float[] clipped(float low, float high) {
+        float[] window = clean.clone();
+        for (int i = 0; i < window.length; i++) {
+            window[i] = Math.max(low, Math.min(high, window[i]));
+        }
+        return window;
+    }
+
+    @Test
+    public void highFrequencyNoise() {
+        // Pickup alternating sample to sample, as strong as the signal itself
+        float amplitude = stdDev(clean);
+        float[] noisy = clean.clone();
+        for (int i = 0; i < noisy.length; i++) {
+            noisy[i] += i % 2 == 0 ? amplitude : -amplitude;
+        }
+        assertFalse(quality.accept(noisy, 0, LENGTH, 0));
+        assertEquals(SignalQualityIndex.Issue.HIGH_FREQUENCY_NOISE, quality.getLastIssue());
+
+        // A twentieth of that is tolerated
+        float[] slight = clean.clone();
+        for (int i = 0; i < slight.length; i++) {
+            slight[i] += i % 2 == 0 ? amplitude / 20 : -amplitude / 20;
+        }
+        assertTrue(quality.accept(slight, 0, LENGTH, 0));
+    }
+
+    @Test
+    public void lowKurtosisIsArtefact() {
+        // Slow motion artefact: smooth, unclipped, but no sharp QRS (kurtosis 1.5)
+        float[] sway = new float[LENGTH];
+        for (int i = 0; i < LENGTH; i++) {
+            sway[i] = 2048f + 500f * (float) Math.sin(2 * Math.PI * 1.3 * i / LENGTH);
+        }
+        assertFalse(quality.accept(sway, 0, LENGTH, 0));
+        assertEquals(SignalQualityIndex.Issue.ARTEFACT, quality.getLastIssue());
+    }
+
+    @Test
+    public void countsRejectionsByIssue() {
+        quality.accept(clean, 0, LENGTH, 0);
+        quality.accept(clean, 0, LENGTH, 1);
+        quality.accept(clean, 0, LENGTH, 1);
+        float[] flat = new float[LENGTH];
+        quality.accept(flat, 0, LENGTH, 0);
+
+        assertEquals(4, quality.getAssessedCount());
+        assertEquals(3, quality.getRejectedCount());
+        assertEquals(2, quality.getRejectedCount(SignalQualityIndex.Issue.LEAD_OFF));
+        assertEquals(1, quality.getRejectedCount(SignalQualityIndex.Issue.FLAT_LINE));
+        assertEquals("skipped 3/4 windows (lead off 2, flat line 1), saved ~3 ms inference",
+                quality.summary(1_000_000));
+
+        quality.resetCounters();
+        assertEquals("skipped 0/0 windows", quality.summary(0));
+    }
+}
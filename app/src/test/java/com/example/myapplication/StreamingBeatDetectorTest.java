@@ -0,0 +1,190 @@
+package com.example.myapplication;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class StreamingBeatDetectorTest {
+    private static final int RATE = ECGPreprocessor.DEFAULT_SAMPLE_RATE;
+    private static final int HALF_SEGMENT = ECGPreprocessor.SEGMENT_LENGTH / 2;
+    // Peaks are placed after the smoothing delay is taken off; allow a few samples either way
+    private static final int PEAK_TOLERANCE = 4;
+
+    private static class Recorder implements StreamingBeatDetector.BeatListener {
+        final List<Long> peaks = new ArrayList<>();
+        final List<float[]> beats = new ArrayList<>();
+        // Samples fed when each beat was emitted
+        final List<Long> emittedAt = new ArrayList<>();
+        final List<Long> rejected = new ArrayList<>();
+        final List<SignalQualityIndex.Issue> issues = new ArrayList<>();
+        StreamingBeatDetector detector;
+
+        @Override
+        public void onBeat(long peakIndex, float[] beat) {
+            peaks.add(peakIndex);
+            beats.add(beat);
+            emittedAt.add(detector.getSampleCount());
+        }
+
+        @Override
+        public void onBeatRejected(long peakIndex, SignalQualityIndex.Issue issue) {
+            rejected.add(peakIndex);
+            issues.add(issue);
+        }
+    }
+
+    private static SyntheticEcg cleanEcg(long seed) {
+        SyntheticEcg ecg = new SyntheticEcg(RATE, seed);
+        ecg.setNoise(0);
+        ecg.setBaselineWander(0);
+        ecg.setHrv(0);
+        return ecg;
+    }
+
+    private static Recorder detect(float[] samples, boolean[] leadOff, SignalQualityIndex quality) {
+        Recorder recorder = new Recorder();
+        StreamingBeatDetector detector = new StreamingBeatDetector(RATE, quality, recorder);
+        recorder.detector = detector;
+        for (int i = 0; i < samples.length; i++) {
+            detector.addSample(samples[i], leadOff != null && leadOff[i]);
+        }
+        return recorder;
+    }
+
+    private static boolean nearAny(long peak, List<SyntheticEcg.Beat> beats) {
+        for (SyntheticEcg.Beat beat : beats) {
+            if (Math.abs(beat.peakSample - peak) <= PEAK_TOLERANCE) return true;
+        }
+        return false;
+    }
+
+    @Test
+    public void findsEveryBeatAfterWarmUp() {
+        SyntheticEcg ecg = cleanEcg(1);
+        float[] samples = ecg.generate(RATE * 30);
+        Recorder recorder = detect(samples, null, null);
+
+        int expected = 0;
+        for (SyntheticEcg.Beat beat : ecg.getBeats()) {
+            if (beat.peakSample > 2 * RATE + PEAK_TOLERANCE && beat.peakSample + HALF_SEGMENT < samples.length) {
+                expected++;
+            }
+        }
+        assertEquals(expected, recorder.peaks.size());
+        for (long peak : recorder.peaks) {
+            assertTrue(nearAny(peak, ecg.getBeats()));
+        }
+    }
+
+    @Test
+    public void nothingIsDetectedDuringWarmUp() {
+        float[] samples = cleanEcg(2).generate(RATE * 10);
+        Recorder recorder = detect(samples, null, null);
+
+        assertFalse(recorder.peaks.isEmpty());
+        for (long peak : recorder.peaks) {
+            assertTrue("peak at " + peak, peak >= 2 * RATE - PEAK_TOLERANCE);
+        }
+    }
+
+    @Test
+    public void beatIsTheNormalizedRawWindowAroundThePeak() {
+        float[] samples = cleanEcg(3).generate(RATE * 20);
+        Recorder recorder = detect(samples, null, null);
+
+        assertFalse(recorder.beats.isEmpty());
+        for (int b = 0; b < recorder.beats.size(); b++) {
+            int peak = (int) (long) recorder.peaks.get(b);
+            float[] expected = Arrays.copyOfRange(samples, peak - HALF_SEGMENT, peak + HALF_SEGMENT);
+            ECGPreprocessor.normalizeBeat(expected);
+            assertArrayEquals(expected, recorder.beats.get(b), 1e-5f);
+            // Emitted as soon as the last sample of the window arrived
+            assertEquals(peak + HALF_SEGMENT + 1, (long) recorder.emittedAt.get(b));
+        }
+    }
+
+    @Test
+    public void leadOffRestartsDetectionAndKeepsNumbering() {
+        SyntheticEcg ecg = cleanEcg(4);
+        float[] samples = ecg.generate(RATE * 30);
+        int offStart = RATE * 10;
+        int offEnd = RATE * 13;
+        boolean[] leadOff = new boolean[samples.length];
+        Arrays.fill(leadOff, offStart, offEnd, true);
+        Arrays.fill(samples, offStart, offEnd, 0f);
+
+        Recorder recorder = detect(samples, leadOff, null);
+
+        boolean before = false;
+        boolean after = false;
+        for (long peak : recorder.peaks) {
+            assertFalse("peak at " + peak, peak >= offStart && peak < offEnd + 2 * RATE - PEAK_TOLERANCE);
+            before |= peak < offStart;
+            if (peak >= offEnd + 2 * RATE) {
+                after = true;
+                // Still counted from the start of the stream
+                assertTrue(nearAny(peak, ecg.getBeats()));
+            }
+        }
+        assertTrue(before);
+        assertTrue(after);
+    }
+
+    @Test
+    public void windowsRunningIntoLeadOffAreRejected() {
+        SyntheticEcg ecg = cleanEcg(5);
+        float[] samples = ecg.generate(RATE * 20);
+        // Lead-off starts just after a peak, before its window is complete
+        long peak = 0;
+        for (SyntheticEcg.Beat beat : ecg.getBeats()) {
+            if (beat.peakSample > 6 * RATE) {
+                peak = beat.peakSample;
+                break;
+            }
+        }
+        int offStart = (int) peak + HALF_SEGMENT / 2;
+        boolean[] leadOff = new boolean[samples.length];
+        Arrays.fill(leadOff, offStart, offStart + 2 * RATE, true);
+
+        Recorder recorder = detect(samples, leadOff, new SignalQualityIndex());
+
+        assertFalse(recorder.rejected.isEmpty());
+        boolean found = false;
+        for (int i = 0; i < recorder.rejected.size(); i++) {
+            if (Math.abs(recorder.rejected.get(i) - peak) <= PEAK_TOLERANCE) {
+                found = true;
+                assertEquals(SignalQualityIndex.Issue.LEAD_OFF, recorder.issues.get(i));
+            }
+        }
+        assertTrue(found);
+        for (long accepted : recorder.peaks) {
+            assertFalse(Math.abs(accepted - peak) <= PEAK_TOLERANCE);
+        }
+    }
+
+    @Test
+    public void resetStartsNumberingAndWarmUpAgain() {
+        Recorder recorder = new Recorder();
+        StreamingBeatDetector detector = new StreamingBeatDetector(RATE, recorder);
+        recorder.detector = detector;
+        for (float sample : cleanEcg(6).generate(RATE * 10)) {
+            detector.addSample(sample);
+        }
+        assertFalse(recorder.peaks.isEmpty());
+
+        detector.reset();
+        recorder.peaks.clear();
+        assertEquals(0, detector.getSampleCount());
+        for (float sample : cleanEcg(7).generate(RATE * 10)) {
+            detector.addSample(sample);
+        }
+        assertFalse(recorder.peaks.isEmpty());
+        for (long peak : recorder.peaks) {
+            assertTrue(peak >= 2 * RATE - PEAK_TOLERANCE && peak < RATE * 10);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.myapplication;
+
+import org.junit.Test;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class StreamingSampleParserTest {
+
+    private static StreamingSampleParser.Result parse(String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        return new StreamingSampleParser().parse(
+                Channels.newChannel(new ByteArrayInputStream(bytes)), bytes.length);
+    }
+
+    @Test
+    public void parsesExportedRecordingWithHeader() throws IOException {
+        StreamingSampleParser.Result result = parse("ECG_Value\n512\n530\n-7\n1.5e2\n");
+
+        assertTrue(result.format.hasHeader);
+        assertArrayEquals(new float[]{512, 530, -7, 150}, result.toArray(), 0f);
+        assertEquals(0, result.skippedLines);
+    }
+
+    @Test
+    public void picksNamedColumnAndSkipsBadLines() throws IOException {
+        StreamingSampleParser.Result result = parse(
+                "time,ecg,lo\r\n0.000,1.25,0\r\n0.004,\"1.50\",0\r\n0.008,oops,0\r\n\r\n0.012,-0.75,0");
+
+        assertEquals(',', result.format.delimiter);
+        assertEquals(1, result.format.column);
+        assertArrayEquals(new float[]{1.25f, 1.5f, -0.75f}, result.toArray(), 0f);
+        assertEquals(1, result.skippedLines);
+    }
+
+    @Test
+    public void detectsSemicolonAndDecimalComma() throws IOException {
+        StreamingSampleParser.Result result = parse("1;0,5;9\n2;-0,25;9\n3;0,125;9\n");
+
+        assertEquals(';', result.format.delimiter);
+        assertEquals(',', result.format.decimalSeparator);
+        // First column that is numeric throughout, as the old per-line parser did
+        assertArrayEquals(new float[]{1, 2, 3}, result.toArray(), 0f);
+    }
+
+    @Test
+    public void readsSingleColumnWithDecimalComma() throws IOException {
+        StreamingSampleParser.Result result = parse("1,5\n2,25\n-0,75\n");
+
+        assertEquals(0, result.format.delimiter);
+        assertEquals(',', result.format.decimalSeparator);
+        assertArrayEquals(new float[]{1.5f, 2.25f, -0.75f}, result.toArray(), 0f);
+
+        result = parse("ECG_Value\n1,5\n2,25\n");
+        assertEquals(',', result.format.decimalSeparator);
+        assertArrayEquals(new float[]{1.5f, 2.25f}, result.toArray(), 0f);
+
+        // A header with two names keeps the comma as the delimiter
+        result = parse("ecg,lo\n512,0\n515,1\n");
+        assertEquals(',', result.format.delimiter);
+        assertArrayEquals(new float[]{512, 515}, result.toArray(), 0f);
+    }
+
+    @Test
+    public void parsesWireFormatWithoutHeader() throws IOException {
+        StreamingSampleParser.Result result = parse("2048,0,0\n2051,0,1\n");
+
+        assertFalse(result.format.hasHeader);
+        assertArrayEquals(new float[]{2048, 2051}, result.toArray(), 0f);
+    }
+
+    @Test
+    public void matchesDoubleParsingAcrossBufferBoundaries() throws IOException {
+        Random random = new Random(7);
+        StringBuilder text = new StringBuilder("value\n");
+        float[] expected = new float[40_000];
+        for (int i = 0; i < expected.length; i++) {
+            double v = (random.nextDouble() - 0.5) * 4000;
+            String s = String.format(Locale.US, "%.6f", v);
+            expected[i] = (float) Double.parseDouble(s);
+            text.append(s).append('\n');
+        }
+
+        StreamingSampleParser.Result result = parse(text.toString());
+
+        assertEquals(expected.length, result.count);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], result.samples[i], Math.ulp(expected[i]));
+        }
+    }
+
+    @Test(expected = CancellationException.class)
+    public void cancelStopsParsing() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 500_000; i++) text.append(i).append('\n');
+        byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+
+        StreamingSampleParser parser = new StreamingSampleParser();
+        parser.setProgressListener((read, total) -> parser.cancel());
+        parser.parse(Channels.newChannel(new ByteArrayInputStream(bytes)), bytes.length);
+    }
+
+    /**
+     * Throughput check on a 100 MB file against a plain channel read of the same file. Slow, so
+     * it only runs with ECG_BENCHMARK=1 in the environment.
+     */
+    @Test
+    public void benchmark100MegabyteFile() throws IOException {
+        assumeTrue("1".equals(System.getenv("ECG_BENCHMARK")));
+
+        File file = File.createTempFile("ecg-bench", ".csv");
+        file.deleteOnExit();
+        Random random = new Random(1);
+        long lines = 0;
+        long bytes = 0;
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 1 << 16)) {
+            out.write("timestamp,ECG_Value,lo_plus,lo_minus\n".getBytes(StandardCharsets.US_ASCII));
+            while (bytes < 100_000_000L) {
+                byte[] line = (lines * 4 + "," + (1800 + random.nextInt(600)) + ",0,0\n")
+                        .getBytes(StandardCharsets.US_ASCII);
+                out.write(line);
+                bytes += line.length;
+                lines++;
+            }
+        }
+        double megabytes = file.length() / 1e6;
+
+        // Warm-up pass also brings the file into the page cache
+        long rawNanos = Long.MAX_VALUE;
+        long parseNanos = Long.MAX_VALUE;
+        StreamingSampleParser.Result result = null;
+        for (int run = 0; run < 3; run++) {
+            long t0 = System.nanoTime();
+            try (FileChannel channel = new FileInputStream(file).getChannel()) {
+                ByteBuffer buffer = ByteBuffer.allocate(StreamingSampleParser.BUFFER_SIZE);
+                while (channel.read(buffer) >= 0) buffer.clear();
+            }
+            rawNanos = Math.min(rawNanos, System.nanoTime() - t0);
+
+            t0 = System.nanoTime();
+            try (FileChannel channel = new FileInputStream(file).getChannel()) {
+                result = new StreamingSampleParser().parse(channel, file.length());
+            }
+            parseNanos = Math.min(parseNanos, System.nanoTime() - t0);
+        }
+
+        double rawRate = megabytes / (rawNanos / 1e9);
+        double parseRate = megabytes / (parseNanos / 1e9);
+        System.out.println(String.format(Locale.US,
+                "%.0f MB, %d samples: read %.0f MB/s, parse %.0f MB/s (%.0f%% of read), %.1f M samples/s",
+                megabytes, result.count, rawRate, parseRate, 100 * parseRate / rawRate,
+                result.count / (parseNanos / 1e3)));
+        assertEquals(lines, result.count);
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.myapplication;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SyntheticEcgTest {
+    private static final int RATE = ECGPreprocessor.DEFAULT_SAMPLE_RATE;
+
+    @Test
+    public void sameSeedGivesTheSameRecording() {
+        SyntheticEcg first = new SyntheticEcg(RATE, 7);
+        SyntheticEcg second = new SyntheticEcg(RATE, 7);
+        first.setEctopicRate(BeatTypes.BEAT_TYPE_PREMATURE_VENTRICULAR, 0.1f);
+        second.setEctopicRate(BeatTypes.BEAT_TYPE_PREMATURE_VENTRICULAR, 0.1f);
+
+        assertArrayEquals(first.generate(RATE * 60), second.generate(RATE * 60), 0);
+        assertEquals(first.getBeats().size(), second.getBeats().size());
+        assertFalse(Arrays.equals(first.generate(RATE), new SyntheticEcg(RATE, 8).generate(RATE)));
+    }
+
+    @Test
+    public void beatsFollowTheHeartRate() {
+        SyntheticEcg ecg = new SyntheticEcg(360, 1);
+        ecg.setHeartRate(90);
+        ecg.generate(360 * 120);
+
+        List<SyntheticEcg.Beat> beats = ecg.getBeats();
+        assertEquals(180, beats.size(), 6);
+        for (SyntheticEcg.Beat beat : beats) {
+            assertEquals(BeatTypes.BEAT_TYPE_NORMAL, beat.type);
+            assertTrue(beat.peakSample < ecg.getPosition());
+        }
+    }
+
+    @Test
+    public void rPeaksAreTheLocalMaxima() {
+        SyntheticEcg ecg = new SyntheticEcg(RATE, 3);
+        ecg.setNoise(0);
+        ecg.setBaselineWander(0);
+        float[] samples = ecg.generate(RATE * 30);
+
+        for (SyntheticEcg.Beat beat : ecg.getBeats()) {
+            int peak = (int) beat.peakSample;
+            if (peak < RATE / 4 || peak + RATE / 4 >= samples.length) continue;
+            for (int i = peak - RATE / 4; i < peak + RATE / 4; i++) {
+                assertTrue(samples[i] <= samples[peak]);
+            }
+            assertEquals(SyntheticEcg.ADC_BASELINE + 1400, samples[peak], 100);
+        }
+    }
+
+    @Test
+    public void ectopicBeatsAreInjectedAtTheirRate() {
+        SyntheticEcg ecg = new SyntheticEcg(RATE, 11);
+        ecg.setEctopicRate(BeatTypes.BEAT_TYPE_PREMATURE_VENTRICULAR, 0.1f);
+        ecg.setEctopicRate(BeatTypes.BEAT_TYPE_ATRIAL_PREMATURE, 0.05f);
+        ecg.generate(RATE * 600);
+
+        int[] counts = new int[5];
+        List<SyntheticEcg.Beat> beats = ecg.getBeats();
+        for (int i = 0; i < beats.size(); i++) {
+            counts[beats.get(i).type]++;
+            if (beats.get(i).type == BeatTypes.BEAT_TYPE_PREMATURE_VENTRICULAR && i > 0 && i + 1 < beats.size()) {
+                long before = beats.get(i).peakSample - beats.get(i - 1).peakSample;
+                long after = beats.get(i + 1).peakSample - beats.get(i).peakSample;
+                assertTrue("PVC is premature with a pause after it", after > before);
+            }
+        }
+        assertEquals(0.10, counts[BeatTypes.BEAT_TYPE_PREMATURE_VENTRICULAR] / (double) beats.size(), 0.03);
+        assertEquals(0.05, counts[BeatTypes.BEAT_TYPE_ATRIAL_PREMATURE] / (double) beats.size(), 0.03);
+        assertEquals(0, counts[BeatTypes.BEAT_TYPE_LEFT_BUNDLE_BRANCH_BLOCK]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void ectopicRatesCannotExceedOne() {
+        SyntheticEcg ecg = new SyntheticEcg(RATE, 1);
+        ecg.setEctopicRate(BeatTypes.BEAT_TYPE_LEFT_BUNDLE_BRANCH_BLOCK, 0.7f);
+        ecg.setEctopicRate(BeatTypes.BEAT_TYPE_RIGHT_BUNDLE_BRANCH_BLOCK, 0.7f);
+    }
+
+    @Test
+    public void wireFormatMatchesTheDevice() throws IOException {
+        SyntheticEcg ecg = new SyntheticEcg(RATE, 5);
+        ecg.setPowerline(30, 50);
+        StringWriter out = new StringWriter();
+        ecg.writeWireFormat(out, 100);
+
+        String[] lines = out.toString().split("\n");
+        assertEquals(100, lines.length);
+        for (String line : lines) {
+            String[] fields = line.split(",");
+            assertEquals(3, fields.length);
+            int value = Integer.parseInt(fields[0]);
+            assertTrue(value >= 0 && value <= SyntheticEcg.ADC_MAX);
+            assertEquals("0", fields[1]);
+            assertEquals("0", fields[2]);
+        }
+    }
+}
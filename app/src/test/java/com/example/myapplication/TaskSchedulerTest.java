@@ -0,0 +1,153 @@
+package com.example.myapplication;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs on the plain JVM. Each test blocks a one-thread pool first so that queue order, bounds and
+ * cancellation can be observed deterministically.
+ */
+public class TaskSchedulerTest {
+
+    @Test
+    public void liveLanesRunBeforeQueuedBatchWork() throws Exception {
+        TaskScheduler scheduler = new TaskScheduler(1, 1, 1, 8);
+        CountDownLatch release = new CountDownLatch(1);
+        scheduler.submit(TaskScheduler.Pool.CPU, TaskScheduler.Priority.BATCH, this, "blocker", () -> await(release));
+
+        List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        List<TaskScheduler.Task<Void>> tasks = new ArrayList<>();
+        tasks.add(scheduler.submit(TaskScheduler.Pool.CPU, TaskScheduler.Priority.BATCH, this, "b1", () -> { order.add("b1"); }));
+        tasks.add(scheduler.submit(TaskScheduler.Pool.CPU, TaskScheduler.Priority.LIVE_CLASSIFICATION, this, "c", () -> { order.add("c"); }));
+        tasks.add(scheduler.submit(TaskScheduler.Pool.CPU, TaskScheduler.Priority.BATCH, this, "b2", () -> { order.add("b2"); }));
+        tasks.add(scheduler.submit(TaskScheduler.Pool.CPU, TaskScheduler.Priority.LIVE_INGEST, this, "i", () -> { order.add("i"); }));
+        release.countDown();
+        for (TaskScheduler.Task<Void> task : tasks) {
+            task.get(5, TimeUnit.SECONDS);
+        }
+
+        assertEquals(Arrays.asList("i", "c", "b1", "b2"), order);
+    }
+
+    @Test
+    public void batchQueueIsBoundedButLiveWorkIsNot() throws Exception {
+        TaskScheduler scheduler = new TaskScheduler(1, 1, 1, 2);
+        CountDownLatch release = new CountDownLatch(1);
+        scheduler.submit(TaskScheduler.Pool.IO, TaskScheduler.Priority.LIVE_INGEST, this, "blocker", () -> await(release));
+        scheduler.submit(TaskScheduler.Pool.IO, TaskScheduler.Priority.BATCH, this, "b1", () -> { });
+        scheduler.submit(TaskScheduler.Pool.IO, TaskScheduler.Priority.BATCH, this, "b2", () -> { });
+
+        try {
+            scheduler.submit(TaskScheduler.Pool.IO, TaskScheduler.Priority.BATCH, this, "b3", () -> { });
+            fail("Third batch task should not fit");
+        } catch (RejectedExecutionException expected) {
+            // Queue full
+        }
+        scheduler.submit(TaskScheduler.Pool.IO, TaskScheduler.Priority.LIVE_INGEST, this, "live", () -> { });
+        assertEquals(1, scheduler.getStats(TaskScheduler.Pool.IO).rejected);
+        assertEquals(3, scheduler.getStats(TaskScheduler.Pool.IO).queued);
+        release.countDown();
+    }
+
+    @Test
+    public void cancelAllStopsOnlyThatOwnersTasks() throws Exception {
+        TaskScheduler scheduler = new TaskScheduler(1, 1, 1, 8);
+        Object fragment = new Object();
+        Object other = new Object();
+        CountDownLatch started = new CountDownLatch(1);
+        TaskScheduler.Task<Void> running = scheduler.submit(TaskScheduler.Pool.INFERENCE,
+                TaskScheduler.Priority.BATCH, fragment, "running", () -> {
+                    started.countDown();
+                    await(new CountDownLatch(1)); // Until interrupted
+                });
+        TaskScheduler.Task<Void> queued = scheduler.submit(TaskScheduler.Pool.INFERENCE,
+                TaskScheduler.Priority.BATCH, fragment, "queued", () -> { });
+        TaskScheduler.Task<String> survivor = scheduler.submit(TaskScheduler.Pool.INFERENCE,
+                TaskScheduler.Priority.BATCH, other, "survivor", () -> "done");
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        assertEquals(2, scheduler.cancelAll(fragment));
+        assertTrue(running.isCancelled());
+        assertTrue(queued.isCancelled());
+        assertEquals("done", survivor.get(5, TimeUnit.SECONDS));
+        assertEquals(0, scheduler.cancelAll(fragment));
+        assertEquals(2, scheduler.getStats(TaskScheduler.Pool.INFERENCE).cancelled);
+    }
+
+    @Test
+    public void utilizationReflectsBusyTime() throws Exception {
+        TaskScheduler scheduler = new TaskScheduler(1, 1, 1, 8);
+        scheduler.submit(TaskScheduler.Pool.CPU, TaskScheduler.Priority.BATCH, this, "work", () -> {
+            long end = System.nanoTime() + 50_000_000L;
+            while (System.nanoTime() < end) {
+                Thread.yield();
+            }
+        }).get(5, TimeUnit.SECONDS);
+        // Busy time is recorded just after the task's result is published
+        while (scheduler.getStats(TaskScheduler.Pool.CPU).completed == 0) {
+            Thread.sleep(1);
+        }
+
+        TaskScheduler.PoolStats stats = scheduler.getStats(TaskScheduler.Pool.CPU);
+        assertTrue(stats.toString(), stats.utilization > 0.2f);
+        assertEquals(1, stats.queueWait.getCount());
+    }
+
+    @Test
+    public void failuresOfFireAndForgetWorkAreLogged() throws Exception {
+        TaskScheduler scheduler = new TaskScheduler(1, 1, 1, 8);
+        Logger logger = Logger.getLogger("TaskScheduler");
+        List<LogRecord> records = Collections.synchronizedList(new ArrayList<LogRecord>());
+        CountDownLatch logged = new CountDownLatch(1);
+        Handler handler = new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                records.add(record);
+                logged.countDown();
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        logger.addHandler(handler);
+        try {
+            scheduler.submit(TaskScheduler.Pool.IO, TaskScheduler.Priority.BATCH, this, "export", () -> {
+                throw new IllegalStateException("disk full");
+            });
+            assertTrue(logged.await(5, TimeUnit.SECONDS));
+        } finally {
+            logger.removeHandler(handler);
+        }
+
+        assertEquals(1, records.size());
+        assertEquals(Level.SEVERE, records.get(0).getLevel());
+        assertTrue(records.get(0).getMessage().contains("export"));
+        assertEquals("disk full", records.get(0).getThrown().getMessage());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.myapplication;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs on the plain JVM with a stand-in classifier that calls every beat normal.
+ */
+public class WindowedAnalyzerTest {
+    private static final int RATE = ECGPreprocessor.DEFAULT_SAMPLE_RATE;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final WindowedAnalyzer.BeatClassifier ALL_NORMAL = (beats, peaks) -> {
+        List<BeatClassification> results = new ArrayList<>();
+        for (int peak : peaks) {
+            BeatClassification beat = new BeatClassification();
+            beat.beatIndex = peak;
+            beat.type = BeatTypes.BEAT_TYPE_NORMAL;
+            beat.confidence = 1f;
+            results.add(beat);
+        }
+        return results;
+    };
+
+    @Test
+    public void binaryRecordingRoundTripsWithLeadOff() throws IOException {
+        File file = folder.newFile("short.ecgb");
+        try (OutputStream out = new FileOutputStream(file)) {
+            BinaryRecording.Writer writer = new BinaryRecording.Writer(out, 500);
+            writer.writeSample(2048);
+            writer.writeSample(2100);
+            writer.writeLeadOff(2);
+            writer.writeSample(1990);
+        }
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            BinaryRecording recording = BinaryRecording.open(channel);
+            assertEquals(500, recording.getSampleRate());
+            assertEquals(5, recording.getSampleCount());
+            float[] samples = new float[8];
+            assertEquals(5, recording.read(0, samples, 8));
+            // Lead-off samples hold the last reading in contact
+            assertArrayEquals(new float[]{2048, 2100, 2100, 2100, 1990}, Arrays.copyOf(samples, 5), 0);
+            assertEquals(2, recording.read(3, samples, 8));
+            assertArrayEquals(new float[]{1990, 1990}, Arrays.copyOf(samples, 2), 0);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void csvIsNotABinaryRecording() throws IOException {
+        File file = folder.newFile("rec.csv");
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write("ECG_Value\n2048\n2050\n2047\n2046\n".getBytes());
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            BinaryRecording.open(raf.getChannel());
+        }
+    }
+
+    @Test
+    public void windowsFindTheSameBeatsAsOnePassWithoutDuplicates() throws Exception {
+        File file = writeSynthetic(RATE * 300, RATE * 100, RATE * 10);
+
+        ByteArrayOutputStream windowedBeats = new ByteArrayOutputStream();
+        WindowedAnalyzer.Summary windowed = analyze(file, 20, windowedBeats);
+        WindowedAnalyzer.Summary whole = analyze(file, 600, new ByteArrayOutputStream());
+
+        assertEquals(RATE * 300, windowed.totalSamples);
+        assertTrue(windowed.beatCount > 300);
+        assertEquals(whole.beatCount, windowed.beatCount, windowed.beatCount / 100.0 + 2);
+        assertEquals(windowed.beatCount, windowed.countOfType(BeatTypes.BEAT_TYPE_NORMAL));
+        assertTrue(windowed.meanHeartRate > 0);
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(windowedBeats.toByteArray()));
+        int previous = -1;
+        for (long i = 0; i < windowed.beatCount; i++) {
+            int index = in.readInt();
+            assertEquals(BeatTypes.BEAT_TYPE_NORMAL, in.readByte());
+            assertEquals(1f, in.readFloat(), 0);
+            assertTrue(index - previous >= ECGPreprocessor.PEAK_REFRACTORY_SAMPLES);
+            // None inside the lead-off span, away from its edges
+            assertFalse(index > RATE * 101 && index < RATE * 109);
+            previous = index;
+        }
+        assertEquals(0, in.available());
+    }
+
+    @Test
+    public void rangeSpansTheWholeRecordingNotOneWindow() throws IOException {
+        File file = folder.newFile("range.ecgb");
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+            BinaryRecording.Writer writer = new BinaryRecording.Writer(out, RATE);
+            for (int i = 0; i < 1000; i++) {
+                // A spike near the end, far from the first chunk
+                writer.writeSample(i == 950 ? 4000 : 2000 + i % 7);
+            }
+            writer.writeLeadOff(5);
+            writer.writeSample(1500);
+        }
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            float[] range = WindowedAnalyzer.valueRange(BinaryRecording.open(channel), new float[64]);
+            assertArrayEquals(new float[]{1500, 4000}, range, 0);
+        }
+    }
+
+    private static WindowedAnalyzer.Summary analyze(File file, int windowSeconds, ByteArrayOutputStream beats)
+            throws Exception {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             DataOutputStream out = new DataOutputStream(beats)) {
+            return new WindowedAnalyzer(windowSeconds).analyze(BinaryRecording.open(raf.getChannel()),
+                    ALL_NORMAL, out, null);
+        }
+    }
+
+    private File writeSynthetic(int length, int leadOffStart, int leadOffLength) throws IOException {
+        SyntheticEcg ecg = new SyntheticEcg(RATE, 21);
+        File file = folder.newFile("synthetic.ecgb");
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+            BinaryRecording.Writer writer = new BinaryRecording.Writer(out, RATE);
+            for (int i = 0; i < length; i++) {
+                int value = Math.round(ecg.nextSample());
+                if (i >= leadOffStart && i < leadOffStart + leadOffLength) {
+                    writer.writeLeadOff(1);
+                } else {
+                    writer.writeSample(value);
+                }
+            }
+        }
+        return file;
+    }
+}
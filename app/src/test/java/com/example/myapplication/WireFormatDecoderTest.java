@@ -0,0 +1,43 @@
+package com.example.myapplication;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class WireFormatDecoderTest {
+    private static final class Sample {
+        final int value;
+        final int loPlus;
+        final long sequence;
+
+        Sample(int value, int loPlus, long sequence) {
+            this.value = value;
+            this.loPlus = loPlus;
+            this.sequence = sequence;
+        }
+    }
+
+    @Test
+    public void splitsLinesAcrossReads() {
+        WireFormatDecoder decoder = new WireFormatDecoder();
+        List<Sample> samples = new ArrayList<>();
+        EcgTransport.SampleSink sink = (ecg, loPlus, loMinus, sequence, arrival) ->
+                samples.add(new Sample(ecg, loPlus, sequence));
+
+        byte[] first = "2048,0,0\r\n2100,1,0,7\n21".getBytes();
+        byte[] second = "50,0,0\nbad,0,0\n\n1,2\n-5,0,0\n".getBytes();
+        assertEquals(2, decoder.decode(first, first.length, 0, sink));
+        assertEquals(2, decoder.decode(second, second.length, 0, sink));
+
+        assertEquals(4, samples.size());
+        assertEquals(2048, samples.get(0).value);
+        assertEquals(SampleClock.NO_SEQUENCE, samples.get(0).sequence);
+        assertEquals(1, samples.get(1).loPlus);
+        assertEquals(7, samples.get(1).sequence);
+        assertEquals(2150, samples.get(2).value);
+        assertEquals(-5, samples.get(3).value);
+    }
+}
@@ -0,0 +1,305 @@
+package com.example.myapplication;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic synthetic ECG for load tests, soak tests and benchmarks, so none of them need
+ * patient data. It follows the ECGSYN dynamical model (McSharry et al. 2003). An RR tachogram
+ * with low-frequency (Mayer wave) and respiratory components sets the beat times. Each beat is a
+ * sum of Gaussian waves whose positions and widths stretch with the square root of its RR
+ * interval. Ectopic beats can be injected with the morphology of each class the model knows:
+ * <ul>
+ *     <li>V: premature, wide QRS, discordant T, then a compensatory pause.</li>
+ *     <li>A: premature, with an abnormal P wave.</li>
+ *     <li>L: broad notched R and an inverted T.</li>
+ *     <li>R: rsR' with a slurred S.</li>
+ * </ul>
+ * Baseline wander, powerline interference and sensor noise are added on top. The signal is scaled
+ * like the ESP32's 12-bit ADC readings.
+ * <p>
+ * Samples are produced one at a time, so recordings of any length can be streamed; only the beat
+ * annotations are kept. The same seed and settings always give the same samples and beats. Not
+ * thread-safe.
+ */
+public class SyntheticEcg {
+    public static final float DEFAULT_HEART_RATE = 72f;
+    public static final float DEFAULT_SDNN_MS = 40f;
+    public static final float ADC_BASELINE = 2048f;
+    public static final int ADC_MAX = 4095;
+
+    /**
+     * One generated beat: its R-peak sample and {@link BeatTypes} code, as an annotation.
+     */
+    public static final class Beat {
+        public final long peakSample;
+        public final int type;
+
+        Beat(long peakSample, int type) {
+            this.peakSample = peakSample;
+            this.type = type;
+        }
+    }
+
+    // Waves per beat type, at an RR interval of 1 s: offset from the R peak (s), width (s) and
+    // amplitude relative to a normal R wave
+    private static final double[][] NORMAL = {
+            {-0.20, 0.025, 0.09}, {-0.03, 0.010, -0.11}, {0, 0.012, 1}, {0.03, 0.010, -0.21}, {0.28, 0.060, 0.18}};
+    private static final double[][] ATRIAL_PREMATURE = {
+            {-0.16, 0.020, -0.06}, {-0.03, 0.010, -0.11}, {0, 0.012, 1}, {0.03, 0.010, -0.21}, {0.28, 0.060, 0.18}};
+    private static final double[][] PREMATURE_VENTRICULAR = {
+            {0, 0.035, 1.3}, {0.07, 0.030, -0.3}, {0.32, 0.080, -0.35}};
+    private static final double[][] LEFT_BUNDLE_BRANCH_BLOCK = {
+            {-0.20, 0.025, 0.09}, {0, 0.025, 0.8}, {0.04, 0.022, 0.7}, {0.30, 0.070, -0.2}};
+    private static final double[][] RIGHT_BUNDLE_BRANCH_BLOCK = {
+            {-0.20, 0.025, 0.09}, {-0.03, 0.010, -0.10}, {0, 0.012, 0.7}, {0.035, 0.012, -0.35},
+            {0.07, 0.018, 0.6}, {0.30, 0.060, 0.12}};
+    // Coupling of premature beats as a fraction of the sinus RR interval
+    private static final double VENTRICULAR_COUPLING = 0.6;
+    private static final double ATRIAL_COUPLING = 0.7;
+    private static final double LF_HZ = 0.1;
+    private static final double HF_HZ = 0.25;
+    // Beats are scheduled this far (s) ahead so their P waves can start before the R peak
+    private static final double LOOKAHEAD_SECONDS = 1.0;
+
+    private final int sampleRate;
+    private final Random random;
+    private final double lfPhase;
+    private final double hfPhase;
+    private final double wanderPhase;
+
+    private float heartRate = DEFAULT_HEART_RATE;
+    private float sdnnMs = DEFAULT_SDNN_MS;
+    private float amplitude = 1400f;
+    private float noise = 8f;
+    private float baselineWander = 60f;
+    private float powerline = 0f;
+    private float powerlineHz = 50f;
+    // Probability of each ectopic type per beat, indexed by BEAT_TYPE_* code
+    private final float[] ectopicRates = new float[5];
+
+    private long position;
+    private double nextPeakTime = 0.5;
+    private double lastPeakTime = Double.NaN;
+    private final ArrayDeque<ScheduledBeat> active = new ArrayDeque<>();
+    private final List<Beat> beats = new ArrayList<>();
+
+    private static final class ScheduledBeat {
+        final double peakTime;
+        final double[][] waves;
+        final double scale; // sqrt(RR), stretching the waves with the cycle length
+        final double end;
+
+        ScheduledBeat(double peakTime, double[][] waves, double rr) {
+            this.peakTime = peakTime;
+            this.waves = waves;
+            this.scale = Math.sqrt(rr);
+            double last = 0;
+            for (double[] wave : waves) last = Math.max(last, wave[0] + 4 * wave[1]);
+            this.end = peakTime + last * scale;
+        }
+    }
+
+    public SyntheticEcg(int sampleRate, long seed) {
+        this.sampleRate = sampleRate;
+        this.random = new Random(seed);
+        lfPhase = random.nextDouble() * 2 * Math.PI;
+        hfPhase = random.nextDouble() * 2 * Math.PI;
+        wanderPhase = random.nextDouble() * 2 * Math.PI;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public void setHeartRate(float bpm) {
+        heartRate = bpm;
+    }
+
+    /**
+     * Standard deviation of the sinus RR intervals, split between the low-frequency, respiratory
+     * and random components.
+     */
+    public void setHrv(float sdnnMs) {
+        this.sdnnMs = sdnnMs;
+    }
+
+    /** Height of a normal R wave above the baseline, in ADC counts. */
+    public void setAmplitude(float adcCounts) {
+        amplitude = adcCounts;
+    }
+
+    /** Standard deviation of white sensor noise, in ADC counts. */
+    public void setNoise(float adcCounts) {
+        noise = adcCounts;
+    }
+
+    /** Amplitude of respiratory and slower baseline drift, in ADC counts. */
+    public void setBaselineWander(float adcCounts) {
+        baselineWander = adcCounts;
+    }
+
+    public void setPowerline(float adcCounts, float hz) {
+        powerline = adcCounts;
+        powerlineHz = hz;
+    }
+
+    /**
+     * Sets the chance that any beat is of {@code beatType}: A, V, L or R. The chances of all
+     * types together must not exceed 1. A rate of 1 for L or R gives a bundle branch block
+     * recording.
+     */
+    public void setEctopicRate(int beatType, float probability) {
+        if (beatType <= BeatTypes.BEAT_TYPE_NORMAL || beatType >= ectopicRates.length) {
+            throw new IllegalArgumentException("Not an ectopic beat type: " + beatType);
+        }
+        float others = 0;
+        for (int i = 0; i < ectopicRates.length; i++) {
+            if (i != beatType) others += ectopicRates[i];
+        }
+        if (probability < 0 || others + probability > 1) {
+            throw new IllegalArgumentException("Ectopic rates must be in [0, 1] and sum to at most 1");
+        }
+        ectopicRates[beatType] = probability;
+    }
+
+    /** Samples generated so far. */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * Beats whose R peak has been generated so far, in order.
+     */
+    public List<Beat> getBeats() {
+        int count = beats.size();
+        while (count > 0 && beats.get(count - 1).peakSample >= position) count--;
+        return Collections.unmodifiableList(beats.subList(0, count));
+    }
+
+    public float nextSample() {
+        double t = (double) position / sampleRate;
+        while (nextPeakTime < t + LOOKAHEAD_SECONDS) {
+            scheduleBeat();
+        }
+
+        double value = ADC_BASELINE;
+        Iterator<ScheduledBeat> iterator = active.iterator();
+        while (iterator.hasNext()) {
+            ScheduledBeat beat = iterator.next();
+            if (beat.end < t) {
+                iterator.remove();
+                continue;
+            }
+            for (double[] wave : beat.waves) {
+                double x = (t - beat.peakTime - wave[0] * beat.scale) / (wave[1] * beat.scale);
+                if (x > -4 && x < 4) value += amplitude * wave[2] * Math.exp(-0.5 * x * x);
+            }
+        }
+        value += baselineWander * (Math.sin(2 * Math.PI * HF_HZ * t + wanderPhase)
+                + 0.5 * Math.sin(2 * Math.PI * 0.05 * t));
+        if (powerline != 0) value += powerline * Math.sin(2 * Math.PI * powerlineHz * t);
+        if (noise != 0) value += noise * random.nextGaussian();
+        position++;
+        return (float) value;
+    }
+
+    public void fill(float[] samples, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            samples[i] = nextSample();
+        }
+    }
+
+    public float[] generate(int length) {
+        float[] samples = new float[length];
+        fill(samples, 0, length);
+        return samples;
+    }
+
+    /**
+     * Writes {@code length} samples as a recording exported by the app: a header, then one ADC
+     * reading per line.
+     */
+    public void writeCsv(Writer writer, long length) throws IOException {
+        writer.write("ECG_Value\n");
+        for (long i = 0; i < length; i++) {
+            writer.write(Integer.toString(nextAdcValue()));
+            writer.write('\n');
+        }
+    }
+
+    /**
+     * Writes {@code length} samples as the ESP32 sends them, {@code ecg,loPlus,loMinus} per line
+     * with the leads attached.
+     */
+    public void writeWireFormat(Writer writer, long length) throws IOException {
+        for (long i = 0; i < length; i++) {
+            writer.write(Integer.toString(nextAdcValue()));
+            writer.write(",0,0\n");
+        }
+    }
+
+    private int nextAdcValue() {
+        return Math.max(0, Math.min(ADC_MAX, Math.round(nextSample())));
+    }
+
+    private void scheduleBeat() {
+        double t = nextPeakTime;
+        double meanRr = 60.0 / heartRate;
+        double sd = sdnnMs / 1000.0;
+        // Unit variance overall: 0.36 each from the two oscillations, the rest random
+        double sinusRr = meanRr + sd * (0.85 * Math.sin(2 * Math.PI * LF_HZ * t + lfPhase)
+                + 0.85 * Math.sin(2 * Math.PI * HF_HZ * t + hfPhase) + 0.53 * random.nextGaussian());
+        sinusRr = Math.max(sinusRr, 0.25);
+
+        int type = pickType();
+        double[][] waves;
+        double rrBefore = sinusRr;
+        switch (type) {
+            case BeatTypes.BEAT_TYPE_PREMATURE_VENTRICULAR:
+                waves = PREMATURE_VENTRICULAR;
+                break;
+            case BeatTypes.BEAT_TYPE_ATRIAL_PREMATURE:
+                waves = ATRIAL_PREMATURE;
+                break;
+            case BeatTypes.BEAT_TYPE_LEFT_BUNDLE_BRANCH_BLOCK:
+                waves = LEFT_BUNDLE_BRANCH_BLOCK;
+                break;
+            case BeatTypes.BEAT_TYPE_RIGHT_BUNDLE_BRANCH_BLOCK:
+                waves = RIGHT_BUNDLE_BRANCH_BLOCK;
+                break;
+            default:
+                waves = NORMAL;
+        }
+
+        // nextPeakTime assumed a sinus beat; a premature one comes early and, for a PVC, the
+        // following sinus beat keeps its original time
+        double previousPeak = Double.isNaN(lastPeakTime) ? t - meanRr : lastPeakTime;
+        double sinusInterval = t - previousPeak;
+        if (type == BeatTypes.BEAT_TYPE_PREMATURE_VENTRICULAR || type == BeatTypes.BEAT_TYPE_ATRIAL_PREMATURE) {
+            double coupling = type == BeatTypes.BEAT_TYPE_PREMATURE_VENTRICULAR ? VENTRICULAR_COUPLING : ATRIAL_COUPLING;
+            t = previousPeak + coupling * sinusInterval;
+            rrBefore = coupling * sinusInterval;
+        }
+
+        active.addLast(new ScheduledBeat(t, waves, Math.max(rrBefore, 0.25)));
+        beats.add(new Beat(Math.round(t * sampleRate), type));
+        lastPeakTime = t;
+        nextPeakTime = type == BeatTypes.BEAT_TYPE_PREMATURE_VENTRICULAR ? nextPeakTime + sinusRr : t + sinusRr;
+    }
+
+    private int pickType() {
+        float draw = random.nextFloat();
+        for (int type = 1; type < ectopicRates.length; type++) {
+            draw -= ectopicRates[type];
+            if (draw < 0) return type;
+        }
+        return BeatTypes.BEAT_TYPE_NORMAL;
+    }
+}
@@ -0,0 +1,100 @@
+// JMH benchmarks for the signal-processing hot paths. Run with ./gradlew :benchmark:jmh; results
+// are written to build/reports/jmh/results.json. Select benchmarks or sizes with e.g.
+// -Pjmh.includes=parseCsv -Pjmh.params=durationSeconds=420
+// classifyBeats loads the models from app/src/main/assets (override with -Pbenchmark.models=dir)
+// and needs a host build of libtensorflowlite_jni: -Ptflite.jni=<directory containing it>
+plugins {
+    `java-library`
+    id("me.champeau.jmh")
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_1_8
+    targetCompatibility = JavaVersion.VERSION_1_8
+}
+
+// These classes are plain Java, so they are compiled straight from the app's sources rather than
+// copied or moved into a library module
+sourceSets {
+    main {
+        java {
+            srcDir("../app/src/main/java")
+            include(
+                "com/example/myapplication/BeatBatchClassifier.java",
+                "com/example/myapplication/BeatClassification.java",
+                "com/example/myapplication/BeatTypes.java",
+                "com/example/myapplication/ECGPreprocessor.java",
+                "com/example/myapplication/Fft.java",
+                "com/example/myapplication/HrvEngine.java",
+                "com/example/myapplication/InferenceBackend.java",
+                "com/example/myapplication/InferenceSession.java",
+                "com/example/myapplication/InterpreterPool.java",
+                "com/example/myapplication/LatencyHistogram.java",
+                "com/example/myapplication/Metrics.java",
+                "com/example/myapplication/SignalQualityIndex.java",
+                "com/example/myapplication/StreamingBeatDetector.java",
+                "com/example/myapplication/StreamingSampleParser.java"
+            )
+        }
+    }
+    // The app's test fixtures, e.g. SyntheticEcg, which generates the benchmark recordings
+    named("jmh") {
+        java {
+            srcDir("../app/src/testFixtures/java")
+        }
+    }
+}
+
+// TFLite is only published as Android archives; the JVM needs just the classes.jar inside each,
+// extracted as in :analyzer
+val tfliteAar: Configuration by configurations.creating {
+    isTransitive = false
+}
+
+val extractTflite by tasks.registering {
+    val aars = tfliteAar
+    val outputDir = layout.buildDirectory.dir("tflite")
+    inputs.files(aars)
+    outputs.dir(outputDir)
+    doLast {
+        aars.forEach { aar ->
+            copy {
+                from(zipTree(aar)) { include("classes.jar") }
+                into(outputDir)
+                rename { aar.nameWithoutExtension + ".jar" }
+            }
+        }
+    }
+}
+
+dependencies {
+    tfliteAar("org.tensorflow:tensorflow-lite-api:2.17.0@aar")
+    tfliteAar("org.tensorflow:tensorflow-lite:2.17.0@aar")
+
+    implementation(files(extractTflite.map { it.outputs.files.asFileTree.matching { include("*.jar") } })
+        .builtBy(extractTflite))
+}
+
+jmh {
+    jmhVersion.set("1.37")
+    // Allocation rate and bytes per operation next to every score
+    profilers.set(listOf("gc"))
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("reports/jmh/results.json"))
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    // A 24-hour recording at 1000 Hz is 86.4M samples, about 350 MB as floats and more as CSV
+    val models = project.findProperty("benchmark.models") as String?
+        ?: rootProject.file("app/src/main/assets").absolutePath
+    jvmArgs.set(listOfNotNull(
+        "-Xmx8g",
+        "-Dbenchmark.models=$models",
+        (project.findProperty("tflite.jni") as String?)?.let { "-Djava.library.path=$it" }
+    ))
+    (project.findProperty("jmh.includes") as String?)?.let { includes.set(listOf(it)) }
+    (project.findProperty("jmh.params") as String?)?.let { spec ->
+        val (name, values) = spec.split("=", limit = 2)
+        benchmarkParameters.put(name, objects.listProperty(String::class.java).value(values.split(",")))
+    }
+}
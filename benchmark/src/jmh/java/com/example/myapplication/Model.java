@@ -0,0 +1,81 @@
+package com.example.myapplication;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The ECG model, float or int8, in the same {@link InterpreterPool} the app's classifier uses,
+ * with the normalized beats of one seeded 7-minute session to classify. Models and labels are
+ * read from the directory in the {@code benchmark.models} system property, the app's assets by
+ * default. As for :analyzer, running a model needs a host build of libtensorflowlite_jni on
+ * java.library.path.
+ */
+@State(Scope.Benchmark)
+public class Model {
+    private static final long SEED = 42;
+    private static final int SESSION_SECONDS = 420;
+
+    @Param({"float", "int8"})
+    public String variant;
+
+    @Param({"1", "32"})
+    public int batchSize;
+
+    public InterpreterPool pool;
+    /** Model output index to BEAT_TYPE constant, from the label file. */
+    public int[] classTypes;
+    public BeatBatchClassifier classifier;
+    public List<float[]> beats;
+    public List<Integer> peaks;
+
+    @Setup(Level.Trial)
+    public void load() throws IOException {
+        File directory = new File(System.getProperty("benchmark.models", "../app/src/main/assets"));
+        File modelFile = new File(directory, "int8".equals(variant) ? "ecg_model_int8.tflite" : "ecg_model.tflite");
+        if (!modelFile.isFile()) {
+            throw new IOException("No model at " + modelFile.getAbsolutePath());
+        }
+        ByteBuffer buffer;
+        try (RandomAccessFile file = new RandomAccessFile(modelFile, "r");
+             FileChannel channel = file.getChannel()) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        pool = new InterpreterPool(buffer, 1);
+
+        List<String> labels = new ArrayList<>();
+        for (String line : Files.readAllLines(new File(directory, "class_names.txt").toPath(), StandardCharsets.UTF_8)) {
+            if (!line.trim().isEmpty()) labels.add(line.trim());
+        }
+        classTypes = new int[labels.size()];
+        for (int i = 0; i < classTypes.length; i++) {
+            classTypes[i] = BeatTypes.getBeatTypeForCode(labels.get(i));
+        }
+        classifier = new BeatBatchClassifier(pool, classTypes,
+                new LatencyHistogram("inference_queue_wait"), new LatencyHistogram("inference_run"));
+
+        int sampleRate = ECGPreprocessor.DEFAULT_SAMPLE_RATE;
+        float[] samples = new SyntheticEcg(sampleRate, SEED).generate(SESSION_SECONDS * sampleRate);
+        ECGPreprocessor.ProcessedECGData processed = new ECGPreprocessor().processSamples(samples, samples.length);
+        beats = processed.normalizedBeats;
+        peaks = processed.rPeakIndices;
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        pool.close();
+    }
+}
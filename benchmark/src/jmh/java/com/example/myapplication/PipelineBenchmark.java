@@ -0,0 +1,116 @@
+package com.example.myapplication;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One benchmark per stage of file analysis, from CSV bytes to HRV, plus the live detector. Every
+ * stage runs over a whole {@link Recording}, so scores are milliseconds per recording; the gc
+ * profiler adds allocated bytes per recording next to each score. Classification runs over the
+ * beats of one {@link Model} session instead.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PipelineBenchmark {
+
+    /**
+     * Fresh copies of the recording's beats for every call, for stages that change them in place.
+     */
+    @State(Scope.Thread)
+    public static class BeatCopies {
+        List<float[]> beats;
+
+        @Setup(Level.Invocation)
+        public void copy(Recording recording) {
+            beats = new ArrayList<>(recording.beats.size());
+            for (float[] beat : recording.beats) {
+                beats.add(beat.clone());
+            }
+        }
+    }
+
+    @Benchmark
+    public StreamingSampleParser.Result parseCsv(Recording recording) throws IOException {
+        return new StreamingSampleParser().parse(
+                Channels.newChannel(new ByteArrayInputStream(recording.csv)), recording.csv.length);
+    }
+
+    /**
+     * The older line-by-line path: BufferedReader, Float.parseFloat, then the full preprocessing.
+     */
+    @Benchmark
+    public ECGPreprocessor.ProcessedECGData processCsvData(Recording recording) {
+        return new ECGPreprocessor().processCSVData(new ByteArrayInputStream(recording.csv));
+    }
+
+    @Benchmark
+    public List<Integer> detectRPeaks(Recording recording) {
+        return new ECGPreprocessor().detectRPeaks(recording.samples, recording.samples.length);
+    }
+
+    /**
+     * Peak detection, beat extraction, signal quality gating and normalization.
+     */
+    @Benchmark
+    public ECGPreprocessor.ProcessedECGData processSamples(Recording recording) {
+        return new ECGPreprocessor().processSamples(recording.samples, recording.samples.length);
+    }
+
+    /**
+     * Normalizes raw beats in place, on copies made outside the measured call.
+     */
+    @Benchmark
+    public int normalizeBeats(BeatCopies copies) {
+        for (float[] beat : copies.beats) {
+            ECGPreprocessor.normalizeBeat(beat);
+        }
+        return copies.beats.size();
+    }
+
+    /**
+     * The model part of ECGClassifier.classifyBeats, through the same {@link BeatBatchClassifier}:
+     * borrow a session, run the beats one batch per Interpreter.run and build the results.
+     */
+    @Benchmark
+    public List<BeatClassification> classifyBeats(Model model) throws InterruptedException {
+        List<BeatClassification> results = new ArrayList<>(model.beats.size());
+        model.classifier.classify(model.beats, model.peaks, model.batchSize, results);
+        return results;
+    }
+
+    /**
+     * The live path: filtering, peak detection and quality scoring, one sample at a time.
+     */
+    @Benchmark
+    public long streamingBeatDetector(Recording recording) {
+        long[] beats = new long[1];
+        StreamingBeatDetector detector = new StreamingBeatDetector(recording.sampleRate,
+                new SignalQualityIndex(), (peakIndex, beat) -> beats[0]++);
+        for (float sample : recording.samples) {
+            detector.addSample(sample, false);
+        }
+        return beats[0];
+    }
+
+    @Benchmark
+    public HrvEngine.Metrics hrv(Recording recording) {
+        HrvEngine engine = new HrvEngine(recording.sampleRate);
+        for (int peak : recording.peaks) {
+            engine.addBeat(peak);
+        }
+        return engine.getMetrics();
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.myapplication;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A seeded synthetic recording at one of the benchmark sizes: 7 minutes (one app session),
+ * 1 hour and 24 hours (Holter length), at the ESP32's 250 Hz and the 360 Hz and 1000 Hz of common
+ * reference databases, from {@link SyntheticEcg} with its default sinus rhythm.
+ */
+@State(Scope.Benchmark)
+public class Recording {
+    private static final long SEED = 42;
+
+    @Param({"420", "3600", "86400"})
+    public int durationSeconds;
+
+    @Param({"250", "360", "1000"})
+    public int sampleRate;
+
+    /** Samples as the app holds them after parsing. */
+    public float[] samples;
+    /** The same samples as an exported CSV file, one integer per line after a header. */
+    public byte[] csv;
+    /** R-peak sample indices found by the batch preprocessor. */
+    public List<Integer> peaks;
+    /** Beat windows around {@link #peaks}, before normalization. */
+    public List<float[]> beats;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        samples = new SyntheticEcg(sampleRate, SEED).generate(durationSeconds * sampleRate);
+        csv = toCsv(samples);
+        peaks = new ECGPreprocessor().detectRPeaks(samples, samples.length);
+        beats = new ArrayList<>(peaks.size());
+        int half = ECGPreprocessor.SEGMENT_LENGTH / 2;
+        for (int peak : peaks) {
+            if (peak - half < 0 || peak + half >= samples.length) continue;
+            float[] beat = new float[ECGPreprocessor.SEGMENT_LENGTH];
+            System.arraycopy(samples, peak - half, beat, 0, beat.length);
+            beats.add(beat);
+        }
+    }
+
+    static byte[] toCsv(float[] samples) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(samples.length * 5 + 16);
+        byte[] header = "ECG_Value\n".getBytes();
+        out.write(header, 0, header.length);
+        for (float sample : samples) {
+            byte[] line = (Math.round(sample) + "\n").getBytes();
+            out.write(line, 0, line.length);
+        }
+        return out.toByteArray();
+    }
+}
@@ -2,4 +2,5 @@
 plugins {
     alias(libs.plugins.android.application) apply false
     id("com.google.gms.google-services") version "4.4.3" apply false
+    id("me.champeau.jmh") version "0.7.2" apply false
 }